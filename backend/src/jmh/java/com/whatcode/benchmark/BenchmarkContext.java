@@ -0,0 +1,41 @@
+package com.whatcode.benchmark;
+
+import com.whatcode.WhatCodeApplication;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application context without a web server. The result cache is
+ * always off so every invocation does the real work; {@code stub} engines
+ * disable the Python and Java engines and tracers so only trace generation
+ * from source is measured. Extra arguments override further properties.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String engines, String... properties) {
+        boolean live = "live".equals(engines);
+        List<String> arguments = new ArrayList<>(List.of(
+                "--code.cache.enabled=false",
+                "--code.warmup.enabled=false",
+                "--code.execution.python.enabled=" + live,
+                "--code.execution.java.in-process=" + live,
+                "--code.visualization.java.tracer.enabled=" + live,
+                "--logging.level.root=WARN",
+                "--logging.level.com.whatcode=WARN"));
+        arguments.addAll(List.of(properties));
+        return new SpringApplicationBuilder(WhatCodeApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .bannerMode(Banner.Mode.OFF)
+                // Passed as arguments so they take precedence over application.properties
+                .run(arguments.toArray(String[]::new));
+    }
+}
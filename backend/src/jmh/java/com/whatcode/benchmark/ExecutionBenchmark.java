@@ -0,0 +1,57 @@
+package com.whatcode.benchmark;
+
+import com.whatcode.dto.CodeExecutionRequest;
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.CodeExecutionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionBenchmark {
+
+    @Param({"python", "java", "typescript", "react"})
+    public String language;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int lines;
+
+    @Param({"live"})
+    public String engines;
+
+    private ConfigurableApplicationContext context;
+    private CodeExecutionService service;
+    private CodeExecutionRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(engines);
+        service = context.getBean(CodeExecutionService.class);
+        request = new CodeExecutionRequest();
+        request.setLanguage(SupportedLanguage.fromString(language));
+        request.setCode(SnippetCorpus.generate(request.getLanguage(), lines));
+
+        CodeExecutionResponse probe = service.executeCode(request);
+        if (!probe.isSuccess()) {
+            throw new IllegalStateException("Corpus snippet failed for " + language + "/" + lines
+                    + ": " + probe.getError());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CodeExecutionResponse executeCode() {
+        return service.executeCode(request);
+    }
+}
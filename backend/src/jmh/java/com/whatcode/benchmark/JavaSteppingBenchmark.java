@@ -0,0 +1,119 @@
+package com.whatcode.benchmark;
+
+import com.whatcode.dto.CodeExecutionRequest;
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.dto.VisualizationStep;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.CodeExecutionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stepping throughput of the JDI tracer: line breakpoints against single
+ * stepping, each with and without change detection. {@code traceJava}
+ * traces a program of a few thousand steps, so the {@code steps} counter, in
+ * trace steps per second, is dominated by the cost of a step rather than by
+ * compiling the program and handing it to a debuggee. {@code traceEmpty}
+ * traces a program of one step and measures that fixed cost on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JavaSteppingBenchmark {
+
+    @Param({"breakpoints", "single-step"})
+    public String stepping;
+
+    @Param({"true", "false"})
+    public boolean changeDetection;
+
+    // Collatz sequences: about 6,500 steps over a few scalars, so every step
+    // costs about the same
+    private static final String PROGRAM = String.join("\n",
+            "public class Main {",
+            "    public static void main(String[] args) {",
+            "        long total = 0;",
+            "        for (int n = 1; n <= 70; n++) {",
+            "            long x = n;",
+            "            while (x != 1) {",
+            "                x = x % 2 == 0 ? x / 2 : 3 * x + 1;",
+            "                total++;",
+            "            }",
+            "        }",
+            "        System.out.println(total);",
+            "    }",
+            "}");
+
+    private static final String EMPTY_PROGRAM = String.join("\n",
+            "public class Main {",
+            "    public static void main(String[] args) {",
+            "        System.out.println(0);",
+            "    }",
+            "}");
+
+    private ConfigurableApplicationContext context;
+    private CodeExecutionService service;
+    private CodeExecutionRequest request;
+    private CodeExecutionRequest emptyRequest;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Steps {
+        public long steps;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("live",
+                "--code.visualization.java.stepping=" + stepping,
+                "--code.visualization.java.change-detection=" + changeDetection,
+                // The long program outgrows the default budgets. The byte budget
+                // counts each full step's control flow so far, as it would be
+                // sent; in memory the steps share it
+                "--code.visualization.max-wall-time-ms=60000",
+                "--code.visualization.max-trace-bytes=" + Long.MAX_VALUE,
+                "--code.execution.timeout=120000");
+        service = context.getBean(CodeExecutionService.class);
+        request = request(PROGRAM);
+        emptyRequest = request(EMPTY_PROGRAM);
+    }
+
+    private CodeExecutionRequest request(String code) {
+        CodeExecutionRequest request = new CodeExecutionRequest();
+        request.setLanguage(SupportedLanguage.JAVA);
+        request.setCode(code);
+        CodeExecutionResponse probe = service.visualizeCode(request);
+        if (!probe.isSuccess() || probe.isTruncated()) {
+            String reason = probe.getVisualizationSteps().stream()
+                    .map(VisualizationStep::getDescription)
+                    .filter(description -> description.startsWith("Trace truncated"))
+                    .findFirst()
+                    .orElse(probe.getError());
+            throw new IllegalStateException("Benchmark program did not trace fully: " + reason);
+        }
+        return request;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CodeExecutionResponse traceJava(Steps counter) {
+        CodeExecutionResponse response = service.visualizeCode(request);
+        counter.steps += response.getVisualizationSteps().size();
+        return response;
+    }
+
+    @Benchmark
+    public CodeExecutionResponse traceEmpty() {
+        return service.visualizeCode(emptyRequest);
+    }
+}
@@ -0,0 +1,69 @@
+package com.whatcode.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.config.SerializationConfig;
+import com.whatcode.dto.CodeExecutionRequest;
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.model.TraceMode;
+import com.whatcode.service.CodeExecutionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a precomputed visualization response with the application's
+ * ObjectMapper, as JSON or as one of the negotiable binary formats. The payload size of each configuration is printed once at
+ * setup so it lands next to the throughput figures in the JMH log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"python", "java", "typescript", "react"})
+    public String language;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int lines;
+
+    @Param({"full", "delta"})
+    public String traceMode;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private CodeExecutionResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        try (ConfigurableApplicationContext context = BenchmarkContext.start("stub")) {
+            objectMapper = switch (format) {
+                case "smile" -> context.getBean(Jackson2ObjectMapperBuilder.class)
+                        .factory(SerializationConfig.smileFactory()).build();
+                case "cbor" -> context.getBean(Jackson2ObjectMapperBuilder.class)
+                        .factory(SerializationConfig.cborFactory()).build();
+                default -> context.getBean(ObjectMapper.class);
+            };
+            CodeExecutionRequest request = new CodeExecutionRequest();
+            request.setLanguage(SupportedLanguage.fromString(language));
+            request.setCode(SnippetCorpus.generate(request.getLanguage(), lines));
+            request.setTraceMode(TraceMode.fromString(traceMode));
+            response = context.getBean(CodeExecutionService.class).visualizeCode(request);
+        }
+        System.out.printf("%nPayload: language=%s lines=%d traceMode=%s format=%s bytes=%d%n",
+                language, lines, traceMode, format, objectMapper.writeValueAsBytes(response).length);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,114 @@
+package com.whatcode.benchmark;
+
+import com.whatcode.model.SupportedLanguage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Generates runnable snippets of an exact line count for each language, built
+ * from repeated blocks that exercise every construct the trace builders know:
+ * function definitions, loops, conditions, assignments, prints and returns.
+ */
+public final class SnippetCorpus {
+
+    private SnippetCorpus() {
+    }
+
+    public static String generate(SupportedLanguage language, int lineCount) {
+        return switch (language) {
+            case PYTHON -> assemble(lineCount,
+                    List.of(),
+                    List.of("print(\"done\")"),
+                    k -> List.of(
+                            "def helper_" + k + "(n):",
+                            "    total = 0",
+                            "    values = [1, 2, 3]",
+                            "    for i in range(n):",
+                            "        total += i",
+                            "    if total > 10:",
+                            "        print(\"helper_" + k + "\", total)",
+                            "    return total",
+                            "result_" + k + " = helper_" + k + "(" + (k % 7 + 1) + ")",
+                            ""),
+                    k -> "pad_" + k + " = " + k);
+            case JAVA -> assemble(lineCount,
+                    List.of("public class Main {"),
+                    List.of(
+                            "    public static void main(String[] args) {",
+                            "        System.out.println(\"done\");",
+                            "    }",
+                            "}"),
+                    k -> List.of(
+                            "    static int helper" + k + "(int n) {",
+                            "        int total = 0;",
+                            "        int[] values = {1, 2, 3};",
+                            "        for (int i = 0; i < n; i++) {",
+                            "            total += i;",
+                            "        }",
+                            "        return total;",
+                            "    }",
+                            "    static int result" + k + " = helper" + k + "(" + (k % 7 + 1) + ");",
+                            ""),
+                    k -> "    static int pad" + k + " = " + k + ";");
+            case TYPESCRIPT -> assemble(lineCount,
+                    List.of(),
+                    List.of("console.log(\"done\");"),
+                    k -> List.of(
+                            "function helper" + k + "(n: number): number {",
+                            "  let total = 0;",
+                            "  const values = [1, 2, 3];",
+                            "  for (let i = 0; i < n; i++) {",
+                            "    total += i;",
+                            "  }",
+                            "  if (total > 10) {",
+                            "    console.log(\"helper" + k + "\", total);",
+                            "  }",
+                            "  return total;",
+                            "}",
+                            "const result" + k + " = helper" + k + "(" + (k % 7 + 1) + ");",
+                            ""),
+                    k -> "const pad" + k + " = " + k + ";");
+            case REACT -> assemble(lineCount,
+                    List.of("import React, { useState } from 'react';"),
+                    List.of("export default Item0;"),
+                    k -> List.of(
+                            "function Item" + k + "({ count }) {",
+                            "  const [value, setValue] = useState(count);",
+                            "  const items = [1, 2, 3];",
+                            "  if (value > 10) {",
+                            "    console.log(\"large\", value);",
+                            "  }",
+                            "  return <div className=\"item\">{value}</div>;",
+                            "}",
+                            ""),
+                    k -> "const pad" + k + " = " + k + ";");
+        };
+    }
+
+    private static String assemble(
+            int lineCount,
+            List<String> header,
+            List<String> footer,
+            IntFunction<List<String>> block,
+            IntFunction<String> padding
+    ) {
+        List<String> lines = new ArrayList<>(lineCount);
+        lines.addAll(header);
+        int k = 0;
+        while (true) {
+            List<String> next = block.apply(k);
+            if (lines.size() + next.size() + footer.size() > lineCount) {
+                break;
+            }
+            lines.addAll(next);
+            k++;
+        }
+        for (int pad = 0; lines.size() + footer.size() < lineCount; pad++) {
+            lines.add(padding.apply(pad));
+        }
+        lines.addAll(footer);
+        return String.join("\n", lines);
+    }
+}
@@ -0,0 +1,78 @@
+package com.whatcode.benchmark;
+
+import com.whatcode.dto.CodeExecutionRequest;
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.model.TraceMode;
+import com.whatcode.service.CodeExecutionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VisualizationBenchmark {
+
+    @Param({"python", "java", "typescript", "react"})
+    public String language;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int lines;
+
+    @Param({"full", "delta"})
+    public String traceMode;
+
+    @Param({"stub"})
+    public String engines;
+
+    private ConfigurableApplicationContext context;
+    private CodeExecutionService service;
+    private CodeExecutionRequest request;
+    // Two versions that differ only in their last line, traced alternately in one session
+    private CodeExecutionRequest[] edits;
+    private int edit;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(engines);
+        service = context.getBean(CodeExecutionService.class);
+        request = new CodeExecutionRequest();
+        request.setLanguage(SupportedLanguage.fromString(language));
+        request.setCode(SnippetCorpus.generate(request.getLanguage(), lines));
+        request.setTraceMode(TraceMode.fromString(traceMode));
+
+        edits = new CodeExecutionRequest[2];
+        for (int i = 0; i < edits.length; i++) {
+            edits[i] = new CodeExecutionRequest();
+            edits[i].setLanguage(request.getLanguage());
+            edits[i].setCode(request.getCode() + "\n" + switch (request.getLanguage()) {
+                case PYTHON -> "edited = " + i;
+                case JAVA -> "int edited = " + i + ";";
+                default -> "let edited = " + i + ";";
+            });
+            edits[i].setTraceMode(request.getTraceMode());
+            edits[i].setSessionId("benchmark");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CodeExecutionResponse visualizeCode() {
+        return service.visualizeCode(request);
+    }
+
+    @Benchmark
+    public CodeExecutionResponse visualizeEdit() {
+        edit ^= 1;
+        return service.visualizeCode(edits[edit]);
+    }
+}
@@ -0,0 +1,95 @@
+package com.whatcode.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of one load test run, stored as JSON so a later run can be
+ * compared against it. {@code scaling} maps each language to how much
+ * longer a 1,000-line visualization takes than a 100-line one: about 10
+ * when trace generation is linear, about 100 when it is quadratic.
+ */
+record LoadReport(String engines, List<LevelResult> levels, Map<String, Double> scaling) {
+
+    /** Throughput, latency and memory behaviour at one concurrency level. */
+    record LevelResult(
+            int concurrency,
+            long requests,
+            long errors,
+            long rejected,
+            double throughput,
+            double p50Millis,
+            double p99Millis,
+            double p999Millis,
+            double maxMillis,
+            long peakHeapBytes,
+            long gcCount,
+            long gcMillis
+    ) {
+
+        double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+    }
+
+    // Latency changes smaller than this are noise at any percentile
+    private static final double LATENCY_SLACK_MILLIS = 2;
+
+    /**
+     * What got worse than {@code baseline} by more than {@code tolerance}
+     * (a fraction): throughput, p50 or p99 latency or the error rate at a
+     * concurrency both runs measured, or a language's scaling ratio.
+     */
+    List<String> regressionsAgainst(LoadReport baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (LevelResult level : levels) {
+            LevelResult before = baseline.levels.stream()
+                    .filter(candidate -> candidate.concurrency() == level.concurrency())
+                    .findFirst()
+                    .orElse(null);
+            if (before == null) {
+                continue;
+            }
+            String at = "concurrency " + level.concurrency() + ": ";
+            if (level.throughput() < before.throughput() * (1 - tolerance)) {
+                regressions.add(at + String.format("throughput %.1f/s, baseline %.1f/s",
+                        level.throughput(), before.throughput()));
+            }
+            if (slower(level.p50Millis(), before.p50Millis(), tolerance)) {
+                regressions.add(at + String.format("p50 %.1f ms, baseline %.1f ms", level.p50Millis(), before.p50Millis()));
+            }
+            if (slower(level.p99Millis(), before.p99Millis(), tolerance)) {
+                regressions.add(at + String.format("p99 %.1f ms, baseline %.1f ms", level.p99Millis(), before.p99Millis()));
+            }
+            if (level.errorRate() > before.errorRate() + 0.01) {
+                regressions.add(at + String.format("error rate %.2f%%, baseline %.2f%%",
+                        level.errorRate() * 100, before.errorRate() * 100));
+            }
+        }
+        scaling.forEach((language, ratio) -> {
+            Double before = baseline.scaling.get(language);
+            if (before != null && ratio > before * (1 + tolerance)) {
+                regressions.add(String.format("%s: 10x longer program takes %.1fx as long, baseline %.1fx",
+                        language, ratio, before));
+            }
+        });
+        return regressions;
+    }
+
+    /** Languages whose trace time grows faster than {@code maxRatio} for a 10x longer program. */
+    List<String> superlinear(double maxRatio) {
+        List<String> problems = new ArrayList<>();
+        scaling.forEach((language, ratio) -> {
+            if (ratio > maxRatio) {
+                problems.add(String.format("%s: 10x longer program takes %.1fx as long (limit %.1fx)",
+                        language, ratio, maxRatio));
+            }
+        });
+        return problems;
+    }
+
+    private static boolean slower(double current, double baseline, double tolerance) {
+        return current > baseline * (1 + tolerance) && current - baseline > LATENCY_SLACK_MILLIS;
+    }
+}
@@ -0,0 +1,301 @@
+package com.whatcode.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.whatcode.WhatCodeApplication;
+import com.whatcode.model.SupportedLanguage;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays {@link TrafficMix} against the application on an embedded server
+ * at rising concurrency, one virtual thread per simulated client, and
+ * reports throughput, latency percentiles, peak heap and GC activity per
+ * level, plus how visualization time scales with program length.
+ *
+ * <p>The result is written to {@code target/loadtest-result.json}. With
+ * {@code --baseline=<file> --record} it also becomes the baseline; with
+ * {@code --baseline=<file>} alone the run is compared against it and the
+ * process exits with status 1 when anything regressed by more than
+ * {@code --tolerance}. A scaling ratio above {@code --max-scaling} fails
+ * the run either way.
+ *
+ * <p>Client and server share one JVM, so heap and GC figures include the
+ * client's own (small, constant) share.
+ */
+public final class LoadTest {
+
+    private record Options(
+            List<Integer> levels,
+            Duration duration,
+            Duration warmup,
+            String engines,
+            boolean cache,
+            Path baseline,
+            boolean record,
+            double tolerance,
+            double maxScaling,
+            Path output,
+            long seed
+    ) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unexpected argument " + arg);
+                }
+                int eq = arg.indexOf('=');
+                values.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+            }
+            return new Options(
+                    Arrays.stream(values.getOrDefault("levels", "1,10,100,1000").split(","))
+                            .map(String::trim).map(Integer::parseInt).toList(),
+                    Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "15"))),
+                    Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "10"))),
+                    values.getOrDefault("engines", "live"),
+                    Boolean.parseBoolean(values.getOrDefault("cache", "false")),
+                    values.containsKey("baseline") ? Path.of(values.get("baseline")) : null,
+                    Boolean.parseBoolean(values.getOrDefault("record", "false")),
+                    Double.parseDouble(values.getOrDefault("tolerance", "0.15")),
+                    Double.parseDouble(values.getOrDefault("max-scaling", "25")),
+                    Path.of(values.getOrDefault("output", "target/loadtest-result.json")),
+                    Long.parseLong(values.getOrDefault("seed", "42")));
+        }
+    }
+
+    private static final long MAX_LATENCY_MICROS = Duration.ofMinutes(5).toNanos() / 1000;
+    private static final int SCALING_RUNS = 9;
+
+    private final Options options;
+    private final HttpClient client;
+    private final URI base;
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadTest(Options options, HttpClient client, URI base) {
+        this.options = options;
+        this.client = client;
+        this.base = base;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        List<String> failures;
+        try (ConfigurableApplicationContext context = start(options);
+             ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(clientThreads)
+                    .build();
+            failures = new LoadTest(options, client, URI.create("http://localhost:" + port)).run();
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach(failure -> System.out.println("REGRESSION " + failure));
+        }
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private List<String> run() throws IOException, InterruptedException {
+        TrafficMix mix = TrafficMix.standard(mapper);
+        System.out.printf("Warming up for %d s%n", options.warmup().toSeconds());
+        runLevel(mix, Math.min(8, options.levels().stream().max(Integer::compare).orElse(1)), options.warmup());
+
+        List<LoadReport.LevelResult> levels = new ArrayList<>();
+        System.out.printf("%11s %9s %7s %8s %10s %9s %9s %9s %9s %9s %6s %7s%n", "concurrency", "requests",
+                "errors", "rejected", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "heap MB", "gcs", "gc ms");
+        for (int concurrency : options.levels()) {
+            LoadReport.LevelResult level = runLevel(mix, concurrency, options.duration());
+            levels.add(level);
+            System.out.printf("%11d %9d %7d %8d %10.1f %9.1f %9.1f %9.1f %9.1f %9d %6d %7d%n", level.concurrency(),
+                    level.requests(), level.errors(), level.rejected(), level.throughput(), level.p50Millis(),
+                    level.p99Millis(), level.p999Millis(), level.maxMillis(), level.peakHeapBytes() >> 20,
+                    level.gcCount(), level.gcMillis());
+        }
+
+        Map<String, Double> scaling = new LinkedHashMap<>();
+        for (SupportedLanguage language : SupportedLanguage.values()) {
+            double ratio = medianMillis(TrafficMix.visualization(mapper, language, 1000))
+                    / medianMillis(TrafficMix.visualization(mapper, language, 100));
+            scaling.put(language.getValue(), ratio);
+            System.out.printf("Scaling %-10s 1000 vs 100 lines: %.1fx%n", language.getValue(), ratio);
+        }
+
+        LoadReport report = new LoadReport(options.engines(), levels, scaling);
+        Files.createDirectories(options.output().toAbsolutePath().getParent());
+        mapper.writeValue(options.output().toFile(), report);
+        System.out.println("Results written to " + options.output());
+
+        List<String> failures = new ArrayList<>(report.superlinear(options.maxScaling()));
+        if (options.baseline() != null && options.record()) {
+            mapper.writeValue(options.baseline().toFile(), report);
+            System.out.println("Baseline written to " + options.baseline());
+        } else if (options.baseline() != null) {
+            LoadReport baseline = mapper.readValue(options.baseline().toFile(), LoadReport.class);
+            failures.addAll(report.regressionsAgainst(baseline, options.tolerance()));
+            System.out.printf("Compared with %s at %.0f%% tolerance%n", options.baseline(), options.tolerance() * 100);
+        }
+        return failures;
+    }
+
+    // A closed workload: each client sends its next request as soon as the last one completes
+    private LoadReport.LevelResult runLevel(TrafficMix mix, int concurrency, Duration duration)
+            throws InterruptedException {
+        Histogram[] latencies = new Histogram[concurrency];
+        AtomicLong errors = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong peakHeap = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+
+        Thread heapSampler = Thread.ofVirtual().start(() -> {
+            while (running.get()) {
+                peakHeap.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                Histogram histogram = new Histogram(MAX_LATENCY_MICROS, 3);
+                latencies[i] = histogram;
+                SplittableRandom random = new SplittableRandom(options.seed() + i);
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        TrafficMix.Request request = mix.next(random);
+                        long sent = System.nanoTime();
+                        int status = send(request);
+                        long micros = (System.nanoTime() - sent) / 1000;
+                        if (status == 200) {
+                            histogram.recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+                        } else if (status == 429) {
+                            rejected.incrementAndGet();
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running.set(false);
+        heapSampler.join();
+
+        Histogram all = new Histogram(MAX_LATENCY_MICROS, 3);
+        for (Histogram histogram : latencies) {
+            all.add(histogram);
+        }
+        long succeeded = all.getTotalCount();
+        return new LoadReport.LevelResult(
+                concurrency,
+                succeeded + errors.get() + rejected.get(),
+                errors.get(),
+                rejected.get(),
+                succeeded / seconds,
+                all.getValueAtPercentile(50) / 1000.0,
+                all.getValueAtPercentile(99) / 1000.0,
+                all.getValueAtPercentile(99.9) / 1000.0,
+                all.getMaxValue() / 1000.0,
+                peakHeap.get(),
+                gcCount() - gcCountBefore,
+                gcMillis() - gcMillisBefore);
+    }
+
+    private double medianMillis(TrafficMix.Request request) {
+        double[] millis = new double[SCALING_RUNS];
+        for (int i = -3; i < SCALING_RUNS; i++) {
+            long sent = System.nanoTime();
+            int status = send(request);
+            if (status != 200) {
+                throw new IllegalStateException(request.name() + " failed with status " + status);
+            }
+            if (i >= 0) {
+                millis[i] = (System.nanoTime() - sent) / 1e6;
+            }
+        }
+        Arrays.sort(millis);
+        return millis[SCALING_RUNS / 2];
+    }
+
+    // The status code, or -1 when the request failed without a response
+    private int send(TrafficMix.Request request) {
+        HttpRequest httpRequest = HttpRequest.newBuilder(base.resolve(request.path()))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(request.body()))
+                .build();
+        try {
+            return client.send(httpRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Options options) {
+        boolean live = "live".equals(options.engines());
+        return new SpringApplicationBuilder(WhatCodeApplication.class)
+                .logStartupInfo(false)
+                .bannerMode(Banner.Mode.OFF)
+                // Passed as arguments so they take precedence over application.properties
+                .run("--server.port=0",
+                        "--code.cache.enabled=" + options.cache(),
+                        // The load test runs its own warm-up phase
+                        "--code.warmup.enabled=false",
+                        "--code.execution.python.enabled=" + live,
+                        "--code.execution.java.in-process=" + live,
+                        "--code.visualization.java.tracer.enabled=" + live,
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.whatcode=WARN");
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
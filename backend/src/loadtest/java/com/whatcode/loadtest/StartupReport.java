@@ -0,0 +1,249 @@
+package com.whatcode.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Launches the packaged application in separate JVMs and measures, for each
+ * launch variant, how long it takes to report ready and how long until it
+ * serves {@link TrafficMix} at close to its peak throughput.
+ *
+ * <p>The default variants are the plain jar with warm-up disabled
+ * ({@code cold}), the plain jar with warm-up ({@code warm}), and, when
+ * {@code --archive} names an AppCDS archive, the class-path jar with that
+ * archive ({@code appcds}). Readiness is {@code /actuator/health/readiness}
+ * answering UP; time to peak runs from JVM launch to the end of the first
+ * one-second window that reaches {@code --peak-fraction} of the best window.
+ * The result is written to {@code target/startup-result.json}.
+ */
+public final class StartupReport {
+
+    private record Options(
+            Path jar,
+            Path cdsJar,
+            Path archive,
+            Duration duration,
+            int clients,
+            double peakFraction,
+            Path output,
+            long seed
+    ) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unexpected argument " + arg);
+                }
+                int eq = arg.indexOf('=');
+                values.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+            }
+            if (!values.containsKey("jar")) {
+                throw new IllegalArgumentException("--jar=<application jar> is required");
+            }
+            return new Options(
+                    Path.of(values.get("jar")),
+                    values.containsKey("cds-jar") ? Path.of(values.get("cds-jar")) : null,
+                    values.containsKey("archive") ? Path.of(values.get("archive")) : null,
+                    Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "30"))),
+                    Integer.parseInt(values.getOrDefault("clients", "8")),
+                    Double.parseDouble(values.getOrDefault("peak-fraction", "0.9")),
+                    Path.of(values.getOrDefault("output", "target/startup-result.json")),
+                    Long.parseLong(values.getOrDefault("seed", "42")));
+        }
+    }
+
+    /** How one launch variant started and ramped up. */
+    record VariantResult(
+            String name,
+            long readyMillis,
+            double peakThroughput,
+            long timeToPeakMillis,
+            List<Double> windowThroughput,
+            long errors
+    ) {
+    }
+
+    private static final Duration READY_TIMEOUT = Duration.ofMinutes(3);
+    private static final Duration WINDOW = Duration.ofSeconds(1);
+
+    private final Options options;
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient client;
+
+    private StartupReport(Options options, HttpClient client) {
+        this.options = options;
+        this.client = client;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(2))
+                    .executor(clientThreads)
+                    .build();
+            new StartupReport(options, client).run();
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("cold", List.of(java, "-jar", options.jar().toString(), "--code.warmup.enabled=false"));
+        variants.put("warm", List.of(java, "-jar", options.jar().toString()));
+        if (options.archive() != null && options.cdsJar() != null) {
+            variants.put("appcds", List.of(java, "-XX:SharedArchiveFile=" + options.archive(),
+                    "-jar", options.cdsJar().toString()));
+        }
+
+        TrafficMix mix = TrafficMix.standard(mapper);
+        List<VariantResult> results = new ArrayList<>();
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            System.out.printf("Measuring %s for %d s%n", variant.getKey(), options.duration().toSeconds());
+            results.add(measure(variant.getKey(), variant.getValue(), mix));
+        }
+
+        System.out.printf("%-8s %10s %12s %14s %8s%n", "variant", "ready ms", "peak req/s", "to peak ms", "errors");
+        for (VariantResult result : results) {
+            System.out.printf("%-8s %10d %12.1f %14d %8d%n", result.name(), result.readyMillis(),
+                    result.peakThroughput(), result.timeToPeakMillis(), result.errors());
+        }
+        Files.createDirectories(options.output().toAbsolutePath().getParent());
+        mapper.writeValue(options.output().toFile(), Map.of("variants", results));
+        System.out.println("Results written to " + options.output());
+    }
+
+    private VariantResult measure(String name, List<String> command, TrafficMix mix)
+            throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> arguments = new ArrayList<>(command);
+        arguments.addAll(List.of(
+                "--server.port=" + port,
+                // Every request should reach the engines, as it does for distinct user code
+                "--code.cache.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.whatcode=INFO"));
+        Path log = options.output().toAbsolutePath().resolveSibling("startup-" + name + ".log");
+        URI base = URI.create("http://localhost:" + port);
+
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(arguments)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            long readyMillis = awaitReady(process, base, launched);
+            int windows = (int) (options.duration().toMillis() / WINDOW.toMillis());
+            AtomicLongArray completed = new AtomicLongArray(windows);
+            AtomicLongArray errors = new AtomicLongArray(1);
+            long loadStart = System.nanoTime();
+            long deadline = loadStart + options.duration().toNanos();
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < options.clients(); i++) {
+                    SplittableRandom random = new SplittableRandom(options.seed() + i);
+                    clients.submit(() -> {
+                        while (System.nanoTime() < deadline) {
+                            int status = send(base, mix.next(random));
+                            long window = (System.nanoTime() - loadStart) / WINDOW.toNanos();
+                            if (status != 200 && status != 400) {
+                                errors.incrementAndGet(0);
+                            } else if (window < windows) {
+                                completed.incrementAndGet((int) window);
+                            }
+                        }
+                    });
+                }
+            }
+
+            List<Double> throughput = new ArrayList<>();
+            double peak = 0;
+            for (int i = 0; i < windows; i++) {
+                throughput.add(completed.get(i) / (WINDOW.toMillis() / 1000.0));
+                peak = Math.max(peak, throughput.get(i));
+            }
+            long loadOffsetMillis = (loadStart - launched) / 1_000_000;
+            long timeToPeak = -1;
+            for (int i = 0; i < windows; i++) {
+                if (throughput.get(i) >= peak * options.peakFraction()) {
+                    timeToPeak = loadOffsetMillis + (i + 1) * WINDOW.toMillis();
+                    break;
+                }
+            }
+            return new VariantResult(name, readyMillis, peak, timeToPeak, throughput, errors.get(0));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private long awaitReady(Process process, URI base, long launched) throws InterruptedException {
+        HttpRequest probe = HttpRequest.newBuilder(base.resolve("/actuator/health/readiness"))
+                .timeout(Duration.ofSeconds(2))
+                .GET()
+                .build();
+        long deadline = launched + READY_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with status " + process.exitValue()
+                        + " before it was ready");
+            }
+            try {
+                HttpResponse<String> response = client.send(probe, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200 && response.body().contains("\"UP\"")) {
+                    return (System.nanoTime() - launched) / 1_000_000;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("Application not ready within " + READY_TIMEOUT.toSeconds() + " s");
+    }
+
+    // The status code, or -1 when the request failed without a response;
+    // 400 is a submission the engine rejected, which still counts as served
+    private int send(URI base, TrafficMix.Request request) {
+        HttpRequest httpRequest = HttpRequest.newBuilder(base.resolve(request.path()))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(request.body()))
+                .build();
+        try {
+            return client.send(httpRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
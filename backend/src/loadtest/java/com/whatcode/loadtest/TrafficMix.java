@@ -0,0 +1,96 @@
+package com.whatcode.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.benchmark.SnippetCorpus;
+import com.whatcode.model.SupportedLanguage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The request mix a load level replays: every language, snippets of 10, 100
+ * and 1,000 lines weighted towards the small ones the editor mostly sends,
+ * and an even split between execution and visualization, the latter mostly
+ * in the UI's default full mode. Request bodies are serialized once up
+ * front so the client measures the server, not its own JSON encoding.
+ */
+final class TrafficMix {
+
+    /** One kind of request, with the share of traffic it gets. */
+    record Request(String name, String path, byte[] body, double weight) {
+    }
+
+    private static final int[] SIZES = {10, 100, 1000};
+    private static final double[] SIZE_WEIGHTS = {0.6, 0.3, 0.1};
+
+    private final List<Request> requests;
+    private final double[] cumulative;
+
+    private TrafficMix(List<Request> requests) {
+        this.requests = requests;
+        this.cumulative = new double[requests.size()];
+        double total = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            total += requests.get(i).weight();
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    static TrafficMix standard(ObjectMapper mapper) {
+        List<Request> requests = new ArrayList<>();
+        for (SupportedLanguage language : SupportedLanguage.values()) {
+            for (int i = 0; i < SIZES.length; i++) {
+                String code = SnippetCorpus.generate(language, SIZES[i]);
+                String name = language.getValue() + "/" + SIZES[i];
+                double weight = SIZE_WEIGHTS[i] / SupportedLanguage.values().length;
+                requests.add(new Request("execute " + name, "/api/execute",
+                        body(mapper, code, language, null), weight * 0.5));
+                requests.add(new Request("visualize " + name, "/api/visualize",
+                        body(mapper, code, language, "full"), weight * 0.35));
+                requests.add(new Request("visualize-delta " + name, "/api/visualize",
+                        body(mapper, code, language, "delta"), weight * 0.15));
+            }
+        }
+        return new TrafficMix(requests);
+    }
+
+    /**
+     * Single visualizations of {@code lines}-line snippets, used to measure
+     * how trace time grows with program length.
+     */
+    static Request visualization(ObjectMapper mapper, SupportedLanguage language, int lines) {
+        return new Request("visualize " + language.getValue() + "/" + lines, "/api/visualize",
+                body(mapper, SnippetCorpus.generate(language, lines), language, "full"), 1);
+    }
+
+    Request next(SplittableRandom random) {
+        double roll = random.nextDouble();
+        for (int i = 0; i < cumulative.length; i++) {
+            if (roll < cumulative[i]) {
+                return requests.get(i);
+            }
+        }
+        return requests.get(requests.size() - 1);
+    }
+
+    private static byte[] body(ObjectMapper mapper, String code, SupportedLanguage language, String traceMode) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("code", code);
+        body.put("language", language.getValue());
+        if (traceMode != null) {
+            body.put("traceMode", traceMode);
+        }
+        try {
+            return mapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
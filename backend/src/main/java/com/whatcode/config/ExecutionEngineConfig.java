@@ -0,0 +1,232 @@
+package com.whatcode.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.execution.ExecutionLimits;
+import com.whatcode.service.execution.InMemoryJavaCompiler;
+import com.whatcode.service.execution.JavaDebugEngine;
+import com.whatcode.service.execution.JavaInProcessEngine;
+import com.whatcode.service.execution.JavaScriptExecutionEngine;
+import com.whatcode.service.execution.ProcessExecutionEngine;
+import com.whatcode.service.execution.WorkerPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import javax.script.Compilable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class ExecutionEngineConfig {
+
+    @Bean
+    public WorkerPool.PoolSettings workerPoolSettings(
+            @Value("${code.execution.pool.min-workers:1}") int minWorkers,
+            @Value("${code.execution.pool.max-workers:4}") int maxWorkers,
+            @Value("${code.execution.pool.max-runs-per-worker:100}") int maxRunsPerWorker,
+            @Value("${code.execution.pool.acquire-timeout:5000}") long acquireTimeoutMillis
+    ) {
+        return new WorkerPool.PoolSettings(minWorkers, maxWorkers, maxRunsPerWorker,
+                Duration.ofMillis(acquireTimeoutMillis));
+    }
+
+    @Bean
+    public ExecutionLimits executionLimits(
+            @Value("${code.execution.limits.cpu-seconds:10}") int cpuSeconds,
+            @Value("${code.execution.limits.memory-mb:256}") long memoryMb,
+            @Value("${code.execution.limits.max-output-bytes:65536}") int maxOutputBytes
+    ) {
+        return new ExecutionLimits(cpuSeconds, memoryMb * 1024 * 1024, maxOutputBytes);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "code.execution.python.enabled", havingValue = "true", matchIfMissing = true)
+    public ProcessExecutionEngine pythonExecutionEngine(
+            @Value("${code.execution.python.command:python3}") String pythonCommand,
+            WorkerPool.PoolSettings poolSettings,
+            ExecutionLimits limits,
+            ObjectMapper objectMapper
+    ) {
+        List<String> command = new ArrayList<>(Arrays.asList(pythonCommand.trim().split("\\s+")));
+        command.add("-u");
+        command.add(extractWorkerScript("workers/python_worker.py").toString());
+        return new ProcessExecutionEngine(SupportedLanguage.PYTHON, command, poolSettings, limits, objectMapper);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "code.execution.java.in-process", havingValue = "true", matchIfMissing = true)
+    @Conditional(JavaCompilerAvailable.class)
+    public JavaInProcessEngine javaInProcessEngine(
+            @Value("${code.execution.java.max-concurrent-runs:4}") int maxConcurrentRuns,
+            @Value("${code.execution.java.queue-capacity:16}") int queueCapacity,
+            @Value("${code.execution.java.bytecode-cache-size:256}") int bytecodeCacheSize,
+            @Value("${code.execution.java.max-allocation-mb:1024}") long maxAllocationMb,
+            @Value("${code.execution.max-abandoned-runs:4}") int maxAbandonedRuns,
+            ExecutionLimits limits
+    ) {
+        return new JavaInProcessEngine(maxConcurrentRuns, queueCapacity, bytecodeCacheSize,
+                maxAllocationMb * 1024 * 1024, maxAbandonedRuns, limits);
+    }
+
+    /**
+     * Debuggee JVMs for the Java tracer. They run the same JDK as the server,
+     * with the JDWP agent on an ephemeral loopback port.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "code.visualization.java.tracer.enabled", havingValue = "true", matchIfMissing = true)
+    @Conditional(JavaDebuggerAvailable.class)
+    public JavaDebugEngine javaDebugEngine(
+            @Value("${code.visualization.java.pool.min-workers:1}") int minWorkers,
+            @Value("${code.visualization.java.pool.max-workers:2}") int maxWorkers,
+            @Value("${code.execution.pool.max-runs-per-worker:100}") int maxRunsPerWorker,
+            @Value("${code.execution.pool.acquire-timeout:5000}") long acquireTimeoutMillis,
+            @Value("${code.execution.java.bytecode-cache-size:256}") int bytecodeCacheSize,
+            @Value("${code.visualization.java.stepping:breakpoints}") String stepping,
+            ExecutionLimits limits
+    ) {
+        if (!stepping.equals("breakpoints") && !stepping.equals("single-step")) {
+            throw new IllegalArgumentException("code.visualization.java.stepping must be breakpoints or single-step");
+        }
+        List<String> command = List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=127.0.0.1:0",
+                "-Xmx" + limits.memoryBytes() / (1024 * 1024) + "m",
+                "-XX:+UseSerialGC",
+                "-XX:TieredStopAtLevel=1",
+                "-cp", compileWorkerClass("workers/WhatcodeDebuggee.java", "WhatcodeDebuggee").toString(),
+                "WhatcodeDebuggee");
+        WorkerPool.PoolSettings poolSettings = new WorkerPool.PoolSettings(minWorkers, maxWorkers, maxRunsPerWorker,
+                Duration.ofMillis(acquireTimeoutMillis));
+        return new JavaDebugEngine(command, poolSettings, limits, bytecodeCacheSize, stepping.equals("single-step"));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "code.execution.javascript.enabled", havingValue = "true", matchIfMissing = true)
+    @Conditional(JavaScriptEngineAvailable.class)
+    public JavaScriptExecutionEngine.Settings javaScriptEngineSettings(
+            @Value("${code.execution.javascript.pool.min-contexts:1}") int minContexts,
+            @Value("${code.execution.javascript.pool.max-contexts:4}") int maxContexts,
+            @Value("${code.execution.javascript.max-runs-per-context:100}") int maxRunsPerContext,
+            @Value("${code.execution.pool.acquire-timeout:5000}") long acquireTimeoutMillis,
+            @Value("${code.execution.javascript.queue-capacity:16}") int queueCapacity,
+            @Value("${code.execution.javascript.program-cache-size:256}") int programCacheSize,
+            @Value("${code.execution.javascript.max-statements:10000000}") long maxStatements,
+            @Value("${code.execution.javascript.max-allocation-mb:1024}") long maxAllocationMb,
+            @Value("${code.execution.max-abandoned-runs:4}") int maxAbandonedRuns
+    ) {
+        return new JavaScriptExecutionEngine.Settings(
+                new WorkerPool.PoolSettings(minContexts, maxContexts, maxRunsPerContext,
+                        Duration.ofMillis(acquireTimeoutMillis)),
+                queueCapacity, programCacheSize, maxStatements, maxAllocationMb * 1024 * 1024, maxAbandonedRuns);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "code.execution.javascript.enabled", havingValue = "true", matchIfMissing = true)
+    @Conditional(JavaScriptEngineAvailable.class)
+    public JavaScriptExecutionEngine typeScriptExecutionEngine(
+            @Value("${code.execution.javascript.engine:graal.js}") String engineName,
+            JavaScriptExecutionEngine.Settings settings,
+            ExecutionLimits limits,
+            ObjectMapper objectMapper
+    ) {
+        return new JavaScriptExecutionEngine(SupportedLanguage.TYPESCRIPT, scriptEngine(engineName), settings,
+                limits, objectMapper);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "code.execution.javascript.enabled", havingValue = "true", matchIfMissing = true)
+    @Conditional(JavaScriptEngineAvailable.class)
+    public JavaScriptExecutionEngine reactExecutionEngine(
+            @Value("${code.execution.javascript.engine:graal.js}") String engineName,
+            JavaScriptExecutionEngine.Settings settings,
+            ExecutionLimits limits,
+            ObjectMapper objectMapper
+    ) {
+        return new JavaScriptExecutionEngine(SupportedLanguage.REACT, scriptEngine(engineName), settings,
+                limits, objectMapper);
+    }
+
+    static class JavaCompilerAvailable implements Condition {
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return InMemoryJavaCompiler.isAvailable();
+        }
+    }
+
+    static class JavaDebuggerAvailable implements Condition {
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return InMemoryJavaCompiler.isAvailable() && ModuleLayer.boot().findModule("jdk.jdi").isPresent();
+        }
+    }
+
+    static class JavaScriptEngineAvailable implements Condition {
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            String name = context.getEnvironment().getProperty("code.execution.javascript.engine", "graal.js");
+            return new ScriptEngineManager().getEngineByName(name) instanceof Compilable;
+        }
+    }
+
+    // Each engine gets its own script engine instance; contexts of one engine share its compiled code.
+    private static ScriptEngine scriptEngine(String name) {
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName(name);
+        if (!(engine instanceof Compilable)) {
+            throw new IllegalStateException("JavaScript engine " + name + " is not available or cannot compile scripts");
+        }
+        return engine;
+    }
+
+    // Worker scripts live inside the application jar, so copy them to a file
+    // the interpreter can open.
+    private static Path extractWorkerScript(String resource) {
+        try (InputStream in = new ClassPathResource(resource).getInputStream()) {
+            Path script = Files.createTempFile("whatcode-worker-", "-" + Path.of(resource).getFileName());
+            Files.copy(in, script, StandardCopyOption.REPLACE_EXISTING);
+            script.toFile().deleteOnExit();
+            return script;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot extract worker script " + resource, e);
+        }
+    }
+
+    // Java workers ship as source; compile them once into a directory the
+    // worker JVM can use as its class path.
+    private static Path compileWorkerClass(String resource, String className) {
+        try (InputStream in = new ClassPathResource(resource).getInputStream()) {
+            InMemoryJavaCompiler.Result result = new InMemoryJavaCompiler()
+                    .compile(className, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            if (!result.success()) {
+                throw new IllegalStateException("Cannot compile worker " + resource + ": " + result.errors());
+            }
+            Path directory = Files.createTempDirectory("whatcode-worker-");
+            directory.toFile().deleteOnExit();
+            for (Map.Entry<String, byte[]> entry : result.classes().entrySet()) {
+                Path file = Files.write(directory.resolve(entry.getKey() + ".class"), entry.getValue());
+                file.toFile().deleteOnExit();
+            }
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot extract worker " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.whatcode.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Jackson converter for a binary data format (Smile, CBOR), selected by
+ * content negotiation and metered like the JSON converter.
+ */
+public class MeteredBinaryJacksonHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    private final ResponseMeter meter;
+
+    public MeteredBinaryJacksonHttpMessageConverter(ObjectMapper objectMapper, MediaType mediaType,
+                                                    ExecutionMetrics metrics) {
+        super(objectMapper, mediaType);
+        this.meter = new ResponseMeter(metrics, mediaType.getSubtype());
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        meter.write(object, outputMessage, message -> super.writeInternal(object, type, message));
+    }
+}
@@ -0,0 +1,30 @@
+package com.whatcode.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Jackson converter that records serialization time and body size for
+ * {@link CodeExecutionResponse} payloads. Declaring it as a bean replaces
+ * Spring Boot's default JSON converter.
+ */
+public class MeteredJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final ResponseMeter meter;
+
+    public MeteredJacksonHttpMessageConverter(ObjectMapper objectMapper, ExecutionMetrics metrics) {
+        super(objectMapper);
+        this.meter = new ResponseMeter(metrics, "json");
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        meter.write(object, outputMessage, message -> super.writeInternal(object, type, message));
+    }
+}
@@ -0,0 +1,124 @@
+package com.whatcode.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.admission.LanguageBulkhead;
+import com.whatcode.service.analysis.SyntaxParser;
+import com.whatcode.service.cache.ResultCache;
+import com.whatcode.service.execution.ExecutionEngine;
+import com.whatcode.service.execution.JavaInProcessEngine;
+import com.whatcode.service.execution.JavaScriptExecutionEngine;
+import com.whatcode.service.execution.ProcessExecutionEngine;
+import com.whatcode.service.execution.WorkerPool;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder resultCacheMetrics(ResultCache resultCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, resultCache.nativeCache(), "results");
+            FunctionCounter.builder("whatcode.cache.coalesced", resultCache, ResultCache::coalescedCount)
+                    .description("Cache misses that joined an identical in-flight computation")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder syntaxTreeCacheMetrics(SyntaxParser syntaxParser) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, syntaxParser.nativeCache(), "syntax-trees");
+    }
+
+    @Bean
+    public MeterBinder admissionMetrics(LanguageBulkhead bulkhead) {
+        return registry -> {
+            for (SupportedLanguage language : SupportedLanguage.values()) {
+                String tag = language.getValue();
+                Gauge.builder("whatcode.admission.in.flight", bulkhead, b -> b.inFlight(language))
+                        .description("Submissions currently holding an admission slot")
+                        .tag("language", tag)
+                        .register(registry);
+                Gauge.builder("whatcode.admission.waiting", bulkhead, b -> b.waiting(language))
+                        .description("Submissions waiting for an admission slot")
+                        .tag("language", tag)
+                        .register(registry);
+                FunctionCounter.builder("whatcode.admission.rejections", bulkhead, b -> b.rejections(language))
+                        .description("Submissions rejected with 429 by admission control")
+                        .tag("language", tag)
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder enginePoolMetrics(List<ExecutionEngine> engines) {
+        return registry -> {
+            for (ExecutionEngine engine : engines) {
+                String language = engine.language().getValue();
+                if (engine instanceof ProcessExecutionEngine processEngine) {
+                    WorkerPool<?> pool = processEngine.pool();
+                    workerGauge(registry, language, "live", pool, WorkerPool::liveWorkers);
+                    workerGauge(registry, language, "idle", pool, WorkerPool::idleWorkers);
+                    workerGauge(registry, language, "busy", pool, WorkerPool::busyWorkers);
+                    queueGauge(registry, language, pool, WorkerPool::queuedCallers);
+                } else if (engine instanceof JavaInProcessEngine javaEngine) {
+                    workerGauge(registry, language, "busy", javaEngine, JavaInProcessEngine::activeRuns);
+                    workerGauge(registry, language, "abandoned", javaEngine, JavaInProcessEngine::abandonedRuns);
+                    queueGauge(registry, language, javaEngine, JavaInProcessEngine::queuedRuns);
+                    Gauge.builder("whatcode.engine.bytecode.cached", javaEngine, JavaInProcessEngine::cachedPrograms)
+                            .description("Compiled programs held in the bytecode cache")
+                            .tag("language", language)
+                            .register(registry);
+                } else if (engine instanceof JavaScriptExecutionEngine scriptEngine) {
+                    WorkerPool<?> pool = scriptEngine.pool();
+                    workerGauge(registry, language, "live", pool, WorkerPool::liveWorkers);
+                    workerGauge(registry, language, "idle", pool, WorkerPool::idleWorkers);
+                    workerGauge(registry, language, "busy", pool, WorkerPool::busyWorkers);
+                    queueGauge(registry, language, pool, WorkerPool::queuedCallers);
+                    workerGauge(registry, language, "abandoned", scriptEngine,
+                            JavaScriptExecutionEngine::abandonedRuns);
+                    Gauge.builder("whatcode.engine.programs.cached", scriptEngine,
+                                    JavaScriptExecutionEngine::cachedPrograms)
+                            .description("Compiled programs held in the JavaScript program cache")
+                            .tag("language", language)
+                            .register(registry);
+                }
+            }
+        };
+    }
+
+    @Bean
+    public MeteredJacksonHttpMessageConverter meteredJacksonHttpMessageConverter(
+            ObjectMapper objectMapper,
+            ExecutionMetrics metrics
+    ) {
+        return new MeteredJacksonHttpMessageConverter(objectMapper, metrics);
+    }
+
+    private static <T> void workerGauge(MeterRegistry registry, String language, String state,
+                                        T source, ToDoubleFunction<T> value) {
+        Gauge.builder("whatcode.engine.workers", source, value)
+                .description("Execution engine workers by state")
+                .tag("language", language)
+                .tag("state", state)
+                .register(registry);
+    }
+
+    private static <T> void queueGauge(MeterRegistry registry, String language, T source, ToDoubleFunction<T> value) {
+        Gauge.builder("whatcode.engine.queued", source, value)
+                .description("Callers waiting for an execution engine worker")
+                .tag("language", language)
+                .register(registry);
+    }
+}
@@ -0,0 +1,84 @@
+package com.whatcode.config;
+
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.metrics.CountingOutputStream;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records serialization time and body size of {@link CodeExecutionResponse}
+ * payloads for the metered Jackson converters, whatever their wire format.
+ */
+final class ResponseMeter {
+
+    interface Write {
+        void to(HttpOutputMessage message) throws IOException;
+    }
+
+    private final ExecutionMetrics metrics;
+    private final String format;
+
+    ResponseMeter(ExecutionMetrics metrics, String format) {
+        this.metrics = metrics;
+        this.format = format;
+    }
+
+    void write(Object object, HttpOutputMessage outputMessage, Write write) throws IOException {
+        if (!(object instanceof CodeExecutionResponse)) {
+            write.to(outputMessage);
+            return;
+        }
+
+        CountingOutputMessage counting = new CountingOutputMessage(outputMessage);
+        long start = System.nanoTime();
+        write.to(counting);
+        long elapsed = System.nanoTime() - start;
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        String endpoint = "unknown";
+        SupportedLanguage language = null;
+        if (request != null) {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE,
+                    RequestAttributes.SCOPE_REQUEST);
+            if (pattern != null) {
+                endpoint = pattern.toString();
+            }
+            language = (SupportedLanguage) request.getAttribute(ExecutionMetrics.LANGUAGE_ATTRIBUTE,
+                    RequestAttributes.SCOPE_REQUEST);
+        }
+        metrics.recordPhase(ExecutionMetrics.Phase.SERIALIZATION, language, elapsed);
+        metrics.recordResponseSize(endpoint, format, counting.body != null ? counting.body.getCount() : 0);
+    }
+
+    private static final class CountingOutputMessage implements HttpOutputMessage {
+        private final HttpOutputMessage delegate;
+        private CountingOutputStream body;
+
+        CountingOutputMessage(HttpOutputMessage delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            if (body == null) {
+                // The servlet container owns the response stream, so never close it
+                body = new CountingOutputStream(StreamUtils.nonClosing(delegate.getBody()));
+            }
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+    }
+}
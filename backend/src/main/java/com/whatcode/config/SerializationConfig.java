@@ -0,0 +1,65 @@
+package com.whatcode.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Binary alternatives to JSON, chosen with the Accept header. Both formats
+ * keep a per-document string table: Smile back-references repeated property
+ * names and short string values, CBOR does the same through the stringref
+ * extension. JSON stays the default for clients that accept anything.
+ */
+@Configuration
+public class SerializationConfig implements WebMvcConfigurer {
+
+    public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+    private final ExecutionMetrics metrics;
+
+    public SerializationConfig(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder,
+                               ExecutionMetrics metrics) {
+        this.objectMapperBuilder = objectMapperBuilder;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring registers plain Smile/CBOR converters when the libraries are
+        // present; replace them, appending after JSON so "Accept: */*" keeps
+        // getting JSON
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+                || converter instanceof MappingJackson2CborHttpMessageConverter);
+
+        converters.add(new MeteredBinaryJacksonHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(smileFactory()).build(), SMILE, metrics));
+        converters.add(new MeteredBinaryJacksonHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(cborFactory()).build(), MediaType.APPLICATION_CBOR, metrics));
+    }
+
+    public static SmileFactory smileFactory() {
+        return SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+    }
+
+    public static CBORFactory cborFactory() {
+        return CBORFactory.builder()
+                .enable(CBORGenerator.Feature.STRINGREF)
+                .build();
+    }
+}
@@ -0,0 +1,25 @@
+package com.whatcode.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.whatcode.model.TraceMode;
+
+import java.io.IOException;
+
+public class TraceModeDeserializer extends JsonDeserializer<TraceMode> {
+
+    @Override
+    public TraceMode deserialize(JsonParser p, DeserializationContext ctxt)
+            throws IOException {
+        String value = p.getText();
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return TraceMode.fromString(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid trace mode value: " + value, e);
+        }
+    }
+}
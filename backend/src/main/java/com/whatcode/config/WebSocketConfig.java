@@ -0,0 +1,41 @@
+package com.whatcode.config;
+
+import com.whatcode.controller.InteractiveSessionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final InteractiveSessionHandler interactiveSessionHandler;
+
+    public WebSocketConfig(InteractiveSessionHandler interactiveSessionHandler) {
+        this.interactiveSessionHandler = interactiveSessionHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(interactiveSessionHandler, InteractiveSessionHandler.ENDPOINT)
+                .setAllowedOrigins("http://localhost:3000", "http://localhost:3001");
+    }
+
+    // The container closes sockets idle for longer than the timeout, which ends their sessions
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer(
+            @Value("${code.visualization.interactive.idle-timeout-ms:300000}") long idleTimeoutMillis,
+            @Value("${code.visualization.interactive.max-message-bytes:1048576}") int maxMessageBytes
+    ) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxSessionIdleTimeout(idleTimeoutMillis);
+        container.setMaxTextMessageBufferSize(maxMessageBytes);
+        return container;
+    }
+}
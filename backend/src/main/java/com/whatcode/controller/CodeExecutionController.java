@@ -1,44 +1,266 @@
 package com.whatcode.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.whatcode.dto.BatchExecutionRequest;
+import com.whatcode.dto.CacheStatistics;
 import com.whatcode.dto.CodeExecutionRequest;
 import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.BatchExecutionService;
 import com.whatcode.service.CodeExecutionService;
+import com.whatcode.exception.ServerSaturatedException;
+import com.whatcode.service.admission.LanguageBulkhead;
+import com.whatcode.service.metrics.CountingOutputStream;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
 public class CodeExecutionController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final CodeExecutionService codeExecutionService;
+    private final BatchExecutionService batchExecutionService;
+    private final LanguageBulkhead languageBulkhead;
+    private final ExecutionMetrics metrics;
+    private final ObjectWriter streamWriter;
 
-    public CodeExecutionController(CodeExecutionService codeExecutionService) {
+    public CodeExecutionController(
+            CodeExecutionService codeExecutionService,
+            BatchExecutionService batchExecutionService,
+            LanguageBulkhead languageBulkhead,
+            ExecutionMetrics metrics,
+            ObjectMapper objectMapper
+    ) {
         this.codeExecutionService = codeExecutionService;
+        this.batchExecutionService = batchExecutionService;
+        this.languageBulkhead = languageBulkhead;
+        this.metrics = metrics;
+        this.streamWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     @PostMapping("/execute")
     public ResponseEntity<CodeExecutionResponse> executeCode(
             @Valid @RequestBody CodeExecutionRequest request
     ) {
-        CodeExecutionResponse response = codeExecutionService.executeCode(request);
-        return ResponseEntity.status(
-                response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST
-        ).body(response);
+        return timed("/api/execute", request, codeExecutionService::executeCode);
+    }
+
+    /**
+     * Runs one submission like {@code /execute}, streaming its output as
+     * NDJSON chunks while it runs and ending with a complete event. Like
+     * batches, the body is written on the request thread, so a run that uses
+     * its whole timeout is not cut off by the async request timeout.
+     */
+    @PostMapping(value = "/execute/stream", produces = "application/x-ndjson")
+    public void streamExecution(
+            @Valid @RequestBody CodeExecutionRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        String endpoint = "/api/execute/stream";
+        long start = System.nanoTime();
+        LanguageBulkhead.Permit permit;
+        try {
+            permit = languageBulkhead.acquire(request.getLanguage());
+        } catch (ServerSaturatedException e) {
+            metrics.recordRequest(endpoint, request.getLanguage(), "rejected", System.nanoTime() - start);
+            throw e;
+        }
+
+        response.setContentType(NDJSON.toString());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        CountingOutputStream counted = new CountingOutputStream(response.getOutputStream());
+        String[] outcome = {"success"};
+        try (permit) {
+            codeExecutionService.streamExecution(request, event -> {
+                try {
+                    streamWriter.writeValue(counted, event);
+                    counted.write('\n');
+                    counted.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if ("error".equals(event.getType()) || Boolean.FALSE.equals(event.getSuccess())) {
+                    outcome[0] = "error";
+                }
+            });
+        } catch (UncheckedIOException e) {
+            outcome[0] = "aborted";
+            throw e.getCause();
+        } finally {
+            metrics.recordResponseSize(endpoint, "ndjson", counted.getCount());
+            metrics.recordRequest(endpoint, request.getLanguage(), outcome[0], System.nanoTime() - start);
+        }
     }
 
     @PostMapping("/visualize")
     public ResponseEntity<CodeExecutionResponse> visualizeCode(
             @Valid @RequestBody CodeExecutionRequest request
     ) {
-        CodeExecutionResponse response = codeExecutionService.visualizeCode(request);
+        return timed("/api/visualize", request, codeExecutionService::visualizeCode);
+    }
+
+    @PostMapping(value = "/visualize/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamVisualization(
+            @Valid @RequestBody CodeExecutionRequest request,
+            HttpServletRequest servletRequest
+    ) {
+        // Admit before the body starts so a saturated server can still answer 429;
+        // the slot is held until the last event has been written.
+        String endpoint = "/api/visualize/stream";
+        long start = System.nanoTime();
+        LanguageBulkhead.Permit permit;
+        try {
+            permit = languageBulkhead.acquire(request.getLanguage());
+        } catch (ServerSaturatedException e) {
+            metrics.recordRequest(endpoint, request.getLanguage(), "rejected", System.nanoTime() - start);
+            throw e;
+        }
+        // Also released when the async request ends without the body finishing,
+        // as when the client goes away or the dispatch fails before it runs
+        WebAsyncUtils.getAsyncManager(servletRequest).registerCallableInterceptor(endpoint,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                        permit.close();
+                    }
+                });
+
+        // Each event is serialized straight onto the response and flushed, so
+        // a slow client blocks the generator rather than letting steps pile up.
+        StreamingResponseBody body = out -> {
+            CountingOutputStream counted = new CountingOutputStream(out);
+            long[] serializationNanos = {0};
+            String[] outcome = {"success"};
+            try (permit) {
+                codeExecutionService.streamVisualization(request, event -> {
+                    try {
+                        long writeStart = System.nanoTime();
+                        streamWriter.writeValue(counted, event);
+                        counted.write('\n');
+                        serializationNanos[0] += System.nanoTime() - writeStart;
+                        counted.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if ("error".equals(event.getType())) {
+                        outcome[0] = "error";
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                outcome[0] = "aborted";
+                throw e;
+            } finally {
+                metrics.recordPhase(ExecutionMetrics.Phase.SERIALIZATION, request.getLanguage(),
+                        serializationNanos[0]);
+                metrics.recordResponseSize(endpoint, "ndjson", counted.getCount());
+                metrics.recordRequest(endpoint, request.getLanguage(), outcome[0], System.nanoTime() - start);
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * Streams one NDJSON result per submission and test case as runs finish.
+     * The body is written on the (virtual) request thread rather than as a
+     * StreamingResponseBody, so large batches are not cut off by the async
+     * request timeout.
+     */
+    @PostMapping(value = "/execute/batch", produces = "application/x-ndjson")
+    public void executeBatch(
+            @Valid @RequestBody BatchExecutionRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        String endpoint = "/api/execute/batch";
+        long start = System.nanoTime();
+        SupportedLanguage language = batchLanguage(request);
+
+        response.setContentType(NDJSON.toString());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        CountingOutputStream counted = new CountingOutputStream(response.getOutputStream());
+        String outcome = "success";
+        try {
+            batchExecutionService.executeBatch(request, event -> {
+                try {
+                    streamWriter.writeValue(counted, event);
+                    counted.write('\n');
+                    counted.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            outcome = "aborted";
+            throw e.getCause();
+        } finally {
+            metrics.recordResponseSize(endpoint, "ndjson", counted.getCount());
+            metrics.recordRequest(endpoint, language, outcome, System.nanoTime() - start);
+        }
+    }
+
+    // Batches are tagged with their language only when every submission shares it
+    private static SupportedLanguage batchLanguage(BatchExecutionRequest request) {
+        SupportedLanguage language = request.getSubmissions().get(0).getLanguage();
+        for (CodeExecutionRequest submission : request.getSubmissions()) {
+            if (submission.getLanguage() != language) {
+                return null;
+            }
+        }
+        return language;
+    }
+
+    private ResponseEntity<CodeExecutionResponse> timed(
+            String endpoint,
+            CodeExecutionRequest request,
+            Function<CodeExecutionRequest, CodeExecutionResponse> handler
+    ) {
+        // Lets the JSON converter tag serialization time with the language
+        RequestContextHolder.currentRequestAttributes().setAttribute(
+                ExecutionMetrics.LANGUAGE_ATTRIBUTE, request.getLanguage(), RequestAttributes.SCOPE_REQUEST);
+
+        long start = System.nanoTime();
+        CodeExecutionResponse response;
+        try {
+            response = handler.apply(request);
+        } catch (ServerSaturatedException e) {
+            metrics.recordRequest(endpoint, request.getLanguage(), "rejected", System.nanoTime() - start);
+            throw e;
+        }
+        metrics.recordRequest(endpoint, request.getLanguage(),
+                response.isSuccess() ? "success" : "error", System.nanoTime() - start);
+
         return ResponseEntity.status(
                 response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST
         ).body(response);
     }
 
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatistics> cacheStatistics() {
+        return ResponseEntity.ok(codeExecutionService.cacheStatistics());
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("WhatCode Backend is running");
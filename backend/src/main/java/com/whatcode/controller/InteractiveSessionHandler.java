@@ -0,0 +1,152 @@
+package com.whatcode.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.dto.CodeExecutionRequest;
+import com.whatcode.dto.InteractiveCommand;
+import com.whatcode.dto.InteractiveEvent;
+import com.whatcode.exception.ServerSaturatedException;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.CodeExecutionService;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import com.whatcode.service.trace.InteractiveSession;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * WebSocket endpoint for stepping through a trace. The client opens a
+ * session with a {@link CodeExecutionRequest} and then moves through it;
+ * every command is answered with the step it lands on, and steps are traced
+ * only as far as the client goes (see {@link InteractiveSession}). A socket
+ * that stays idle is closed by the container, which ends its session.
+ */
+@Component
+public class InteractiveSessionHandler extends TextWebSocketHandler {
+
+    public static final String ENDPOINT = "/api/visualize/session";
+
+    private static final String SESSION_ATTRIBUTE = InteractiveSession.class.getName();
+    private static final String LANGUAGE_ATTRIBUTE = SupportedLanguage.class.getName();
+
+    private final CodeExecutionService codeExecutionService;
+    private final ExecutionMetrics metrics;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int maxSessions;
+    private final AtomicInteger openSessions = new AtomicInteger();
+
+    public InteractiveSessionHandler(
+            CodeExecutionService codeExecutionService,
+            ExecutionMetrics metrics,
+            ObjectMapper objectMapper,
+            Validator validator,
+            @Value("${code.visualization.interactive.max-sessions:64}") int maxSessions
+    ) {
+        this.codeExecutionService = codeExecutionService;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.maxSessions = maxSessions;
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession socket, TextMessage message) throws IOException {
+        long start = System.nanoTime();
+        String outcome = "success";
+        InteractiveEvent event;
+        try {
+            InteractiveCommand command = objectMapper.readValue(message.getPayload(), InteractiveCommand.class);
+            String type = command.getType() != null ? command.getType() : "";
+            InteractiveSession session = "open".equals(type)
+                    ? open(socket, command.getRequest())
+                    : (InteractiveSession) socket.getAttributes().get(SESSION_ATTRIBUTE);
+            if (session == null) {
+                throw new IllegalArgumentException("No session is open; send an open command first");
+            }
+            InteractiveSession.Position position = switch (type) {
+                case "open", "forward" -> session.forward();
+                case "back" -> session.back();
+                case "runToLine" -> {
+                    if (command.getLine() == null) {
+                        throw new IllegalArgumentException("runToLine needs a line");
+                    }
+                    yield session.runToLine(command.getLine());
+                }
+                case "continue" -> session.resume();
+                case "breakpoints" -> {
+                    session.breakpoints(command.getLines() != null ? command.getLines() : List.of());
+                    yield session.position();
+                }
+                default -> throw new IllegalArgumentException("Unknown command: " + type);
+            };
+            event = InteractiveEvent.builder()
+                    .type(position.step() != null ? "step" : "end")
+                    .step(position.step())
+                    .last(position.last() ? Boolean.TRUE : null)
+                    .build();
+        } catch (JsonProcessingException e) {
+            outcome = "error";
+            event = InteractiveEvent.builder().type("error").error("Malformed command: " + e.getOriginalMessage())
+                    .build();
+        } catch (ServerSaturatedException e) {
+            outcome = "rejected";
+            event = InteractiveEvent.builder().type("error").error(e.getMessage()).build();
+        } catch (RuntimeException e) {
+            outcome = "error";
+            event = InteractiveEvent.builder().type("error").error(e.getMessage()).build();
+        }
+        long nanos = System.nanoTime() - start;
+        event.setExecutionTime(TimeUnit.NANOSECONDS.toMillis(nanos));
+        metrics.recordRequest(ENDPOINT, (SupportedLanguage) socket.getAttributes().get(LANGUAGE_ATTRIBUTE),
+                outcome, nanos);
+        socket.sendMessage(new TextMessage(objectMapper.writeValueAsString(event)));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession socket, CloseStatus status) {
+        release(socket);
+    }
+
+    // Replaces the socket's session, if any, with one for the request
+    private InteractiveSession open(WebSocketSession socket, CodeExecutionRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("open needs a request");
+        }
+        String violations = validator.validate(request).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations);
+        }
+        release(socket);
+        if (openSessions.incrementAndGet() > maxSessions) {
+            openSessions.decrementAndGet();
+            throw new IllegalStateException("Too many interactive sessions are open, please retry shortly");
+        }
+        InteractiveSession session = codeExecutionService.openInteractiveSession(request);
+        socket.getAttributes().put(SESSION_ATTRIBUTE, session);
+        socket.getAttributes().put(LANGUAGE_ATTRIBUTE, request.getLanguage());
+        return session;
+    }
+
+    private void release(WebSocketSession socket) {
+        InteractiveSession session = (InteractiveSession) socket.getAttributes().remove(SESSION_ATTRIBUTE);
+        if (session != null) {
+            session.close();
+            openSessions.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.whatcode.controller;
+
+import com.whatcode.dto.TraceWindow;
+import com.whatcode.service.CodeExecutionService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/traces")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+public class TraceController {
+
+    private final CodeExecutionService codeExecutionService;
+
+    public TraceController(CodeExecutionService codeExecutionService) {
+        this.codeExecutionService = codeExecutionService;
+    }
+
+    /**
+     * Returns steps [from, to) of a trace produced by a {@code paged}
+     * visualization. Omitting {@code to} returns one default-sized page.
+     */
+    @GetMapping("/{traceId}/steps")
+    public ResponseEntity<TraceWindow> traceSteps(
+            @PathVariable String traceId,
+            @RequestParam(required = false) Integer from,
+            @RequestParam(required = false) Integer to
+    ) {
+        return ResponseEntity.ok(codeExecutionService.traceSteps(traceId, from, to));
+    }
+}
@@ -0,0 +1,31 @@
+package com.whatcode.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchExecutionRequest {
+
+    @NotEmpty(message = "Submissions cannot be empty")
+    @Size(max = 1000, message = "A batch holds at most 1000 submissions")
+    private List<@Valid CodeExecutionRequest> submissions;
+
+    // Default stdin for submissions that carry none
+    private String stdin;
+
+    // Every submission runs once per test case, with the test case's stdin
+    @Size(max = 100, message = "A batch holds at most 100 test cases")
+    private List<@Valid BatchTestCase> testCases;
+
+    @Positive(message = "Parallelism must be positive")
+    private Integer parallelism;
+}
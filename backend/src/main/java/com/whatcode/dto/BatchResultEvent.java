@@ -0,0 +1,24 @@
+package com.whatcode.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResultEvent {
+    private String type; // result, complete
+    private Integer submission;
+    private Integer testCase;
+    private String testName;
+    private Boolean passed;
+    private CodeExecutionResponse result;
+    private Integer runs;
+    private Integer executed; // distinct code/stdin pairs actually run
+    private Long executionTime;
+}
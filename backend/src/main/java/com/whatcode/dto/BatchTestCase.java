@@ -0,0 +1,18 @@
+package com.whatcode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTestCase {
+
+    private String name;
+
+    private String stdin;
+
+    // Compared with stdout after trailing whitespace is stripped; omit to only run
+    private String expectedOutput;
+}
@@ -1,10 +1,16 @@
 package com.whatcode.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.whatcode.config.SupportedLanguageDeserializer;
+import com.whatcode.config.TraceModeDeserializer;
 import com.whatcode.model.SupportedLanguage;
+import com.whatcode.model.TraceMode;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -20,4 +26,43 @@ public class CodeExecutionRequest {
     @NotNull(message = "Language cannot be null")
     @JsonDeserialize(using = SupportedLanguageDeserializer.class)
     private SupportedLanguage language;
+
+    private String stdin;
+
+    // Editing session for incremental re-visualization of successive edits
+    @Size(max = 128, message = "sessionId must be at most 128 characters")
+    private String sessionId;
+
+    @JsonDeserialize(using = TraceModeDeserializer.class)
+    private TraceMode traceMode;
+
+    @Positive(message = "Keyframe interval must be positive")
+    private Integer keyframeInterval;
+
+    @Positive(message = "fromLine must be positive")
+    private Integer fromLine;
+
+    @Positive(message = "toLine must be positive")
+    private Integer toLine;
+
+    @Positive(message = "fromStep must be positive")
+    private Integer fromStep;
+
+    @Positive(message = "toStep must be positive")
+    private Integer toStep;
+
+    // Execute only: also return per-line hit counts and times
+    private boolean profile;
+
+    @JsonIgnore
+    @AssertTrue(message = "fromLine must not be greater than toLine")
+    public boolean isLineRangeValid() {
+        return fromLine == null || toLine == null || fromLine <= toLine;
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "fromStep must not be greater than toStep")
+    public boolean isStepRangeValid() {
+        return fromStep == null || toStep == null || fromStep <= toStep;
+    }
 }
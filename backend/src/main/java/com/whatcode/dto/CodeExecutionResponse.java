@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -16,5 +17,11 @@ public class CodeExecutionResponse {
     private String output;
     private String error;
     private List<VisualizationStep> visualizationSteps;
+    private List<StepDelta> stepDeltas;
+    private boolean truncated;
+    private String traceId;
+    private Integer stepCount;
+    private Map<Integer, List<Integer>> lineMap;
     private Long executionTime;
+    private LineProfile profile;
 }
@@ -1,20 +1,25 @@
 package com.whatcode.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
-import java.util.Map;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class DataStructure {
-    private String type; // array, linkedList, tree, graph, stack, queue
+    private int id; // id of the memory object holding it
+    private String name;
+    private String type; // array, linkedList, tree, graph, stack, queue, map
+    private int version;
     private Object data;
     private List<String> operations;
+    private List<StructureOperation> changes; // turn the previous version into this one; null when it was replaced
 }
 
@@ -0,0 +1,22 @@
+package com.whatcode.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExecutionStreamEvent {
+    private String type; // stdout, stderr, complete, error
+    private String text;
+    private Long omitted; // bytes of the stream dropped just before text
+    private Boolean success;
+    private String error;
+    private LineProfile profile;
+    private Long executionTime;
+}
@@ -0,0 +1,16 @@
+package com.whatcode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FunctionProfile {
+    private String name;
+    private int line;
+    private long calls;
+}
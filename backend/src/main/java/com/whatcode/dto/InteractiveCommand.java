@@ -0,0 +1,19 @@
+package com.whatcode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InteractiveCommand {
+    private String type; // open, forward, back, runToLine, continue, breakpoints
+    private CodeExecutionRequest request;
+    private Integer line;
+    private List<Integer> lines;
+}
@@ -0,0 +1,20 @@
+package com.whatcode.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InteractiveEvent {
+    private String type; // step, end, error
+    private VisualizationStep step;
+    private Boolean last;
+    private String error;
+    private Long executionTime;
+}
@@ -0,0 +1,24 @@
+package com.whatcode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Where a profiled run spent its time. Both arrays are indexed by line
+ * number, the numbering {@link VisualizationStep#getLineHighlight()} uses,
+ * so index 0 is always 0. A line's time is its own: time spent in functions
+ * it calls is counted on their lines.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LineProfile {
+    private long[] hits;
+    private long[] timeNanos;
+    private List<FunctionProfile> functions;
+}
@@ -12,9 +12,11 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 public class MemoryObject {
+    private int id;
     private String address;
     private String type;
     private Object value;
-    private List<String> references;
+    private List<String> references; // variables naming this object
+    private List<Integer> pointsTo; // ids of the objects this one references
 }
 
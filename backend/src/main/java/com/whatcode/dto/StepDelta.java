@@ -0,0 +1,36 @@
+package com.whatcode.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StepDelta {
+    private int stepNumber;
+    private boolean keyframe;
+    private VisualizationStep snapshot; // only set on keyframes
+
+    private String description;
+    private Integer lineHighlight;
+    private String output;
+    private Long timestamp;
+
+    private Map<String, Object> setVariables;
+    private List<String> removedVariables;
+    private Integer poppedFrames;
+    private List<StackFrame> pushedFrames;
+    private List<MemoryObject> addedMemoryObjects; // new or changed, replacing the object with the same id
+    private List<Integer> removedMemoryObjects; // ids of objects that are no longer reachable
+    private List<ControlFlow> addedControlFlow;
+    private List<DataStructure> addedDataStructures; // new or changed; a change of one version may carry only its operations
+    private List<Integer> removedDataStructures; // ids of objects whose structure is gone
+}
@@ -0,0 +1,19 @@
+package com.whatcode.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StructureOperation {
+    private String op; // set, push, pop, edge (append to the list at index), put, delete
+    private Integer index;
+    private String key;
+    private Object value;
+}
@@ -0,0 +1,20 @@
+package com.whatcode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TraceWindow {
+    private String traceId;
+    private int from;
+    private int to;
+    private int stepCount;
+    private List<VisualizationStep> steps;
+}
@@ -0,0 +1,22 @@
+package com.whatcode.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class VisualizationStreamEvent {
+    private String type; // step, delta, complete, error
+    private VisualizationStep step;
+    private StepDelta delta;
+    private String output;
+    private String error;
+    private Boolean truncated;
+    private Long executionTime;
+}
@@ -1,6 +1,7 @@
 package com.whatcode.exception;
 
 import com.whatcode.dto.CodeExecutionResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -33,6 +34,28 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
 
+    @ExceptionHandler(ServerSaturatedException.class)
+    public ResponseEntity<CodeExecutionResponse> handleServerSaturated(ServerSaturatedException ex) {
+        CodeExecutionResponse response = CodeExecutionResponse.builder()
+                .success(false)
+                .error(ex.getMessage())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+
+    @ExceptionHandler(TraceNotFoundException.class)
+    public ResponseEntity<CodeExecutionResponse> handleTraceNotFound(TraceNotFoundException ex) {
+        CodeExecutionResponse response = CodeExecutionResponse.builder()
+                .success(false)
+                .error(ex.getMessage())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<CodeExecutionResponse> handleGenericException(Exception ex) {
         CodeExecutionResponse response = CodeExecutionResponse.builder()
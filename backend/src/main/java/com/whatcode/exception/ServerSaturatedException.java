@@ -0,0 +1,23 @@
+package com.whatcode.exception;
+
+import com.whatcode.model.SupportedLanguage;
+
+public class ServerSaturatedException extends RuntimeException {
+
+    private final SupportedLanguage language;
+    private final long retryAfterSeconds;
+
+    public ServerSaturatedException(SupportedLanguage language, long retryAfterSeconds) {
+        super("Server is busy running " + language.getValue() + " submissions, please retry shortly");
+        this.language = language;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public SupportedLanguage getLanguage() {
+        return language;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,8 @@
+package com.whatcode.exception;
+
+public class TraceNotFoundException extends RuntimeException {
+
+    public TraceNotFoundException(String traceId) {
+        super("Trace " + traceId + " not found or expired; request the visualization again");
+    }
+}
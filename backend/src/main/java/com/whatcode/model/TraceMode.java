@@ -0,0 +1,26 @@
+package com.whatcode.model;
+
+public enum TraceMode {
+    FULL("full"),
+    DELTA("delta"),
+    PAGED("paged");
+
+    private final String value;
+
+    TraceMode(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static TraceMode fromString(String value) {
+        for (TraceMode mode : TraceMode.values()) {
+            if (mode.value.equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported trace mode: " + value);
+    }
+}
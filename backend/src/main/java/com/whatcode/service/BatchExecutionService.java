@@ -0,0 +1,200 @@
+package com.whatcode.service;
+
+import com.whatcode.dto.BatchExecutionRequest;
+import com.whatcode.dto.BatchResultEvent;
+import com.whatcode.dto.BatchTestCase;
+import com.whatcode.dto.CodeExecutionRequest;
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.exception.ServerSaturatedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs many submissions in one call. Runs are grouped by execution key
+ * (normalized code, language and stdin) so each distinct run executes once;
+ * a fixed number of virtual threads work through the distinct runs and the
+ * results reach the caller in completion order. Runs are not cached; each
+ * one goes through the per-language bulkhead.
+ */
+@Service
+public class BatchExecutionService {
+
+    private final CodeExecutionService codeExecutionService;
+    private final int defaultParallelism;
+    private final int maxParallelism;
+    private final int maxAttempts;
+
+    public BatchExecutionService(
+            CodeExecutionService codeExecutionService,
+            @Value("${code.batch.parallelism:4}") int defaultParallelism,
+            @Value("${code.batch.max-parallelism:16}") int maxParallelism,
+            @Value("${code.batch.max-attempts:3}") int maxAttempts
+    ) {
+        this.codeExecutionService = codeExecutionService;
+        this.defaultParallelism = defaultParallelism;
+        this.maxParallelism = maxParallelism;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Executes the batch, calling the sink from the calling thread only: one
+     * result event per submission and test case, then a complete event.
+     */
+    public void executeBatch(BatchExecutionRequest batch, Consumer<BatchResultEvent> sink) {
+        long startTime = System.nanoTime();
+        List<BatchTestCase> testCases = batch.getTestCases() == null || batch.getTestCases().isEmpty()
+                ? Collections.singletonList(null)
+                : batch.getTestCases();
+
+        Map<String, Run> runs = new LinkedHashMap<>();
+        int total = 0;
+        for (int s = 0; s < batch.getSubmissions().size(); s++) {
+            CodeExecutionRequest submission = batch.getSubmissions().get(s);
+            for (int t = 0; t < testCases.size(); t++) {
+                BatchTestCase testCase = testCases.get(t);
+                CodeExecutionRequest request = runRequest(submission, testCase, batch.getStdin());
+                runs.computeIfAbsent(codeExecutionService.executionKey(request), key -> new Run(request))
+                        .targets.add(new Target(s, testCase != null ? t : null, testCase));
+                total++;
+            }
+        }
+
+        Queue<Run> pending = new ConcurrentLinkedQueue<>(runs.values());
+        BlockingQueue<Run> finished = new LinkedBlockingQueue<>();
+        int workers = Math.min(parallelism(batch), runs.size());
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("batch-", 0).factory());
+        try {
+            for (int i = 0; i < workers; i++) {
+                executor.execute(() -> {
+                    Run run;
+                    while (!Thread.currentThread().isInterrupted() && (run = pending.poll()) != null) {
+                        run.response = execute(run.request);
+                        finished.add(run);
+                    }
+                });
+            }
+            for (int i = 0; i < runs.size(); i++) {
+                Run run = finished.take();
+                for (Target target : run.targets) {
+                    sink.accept(resultEvent(run.response, target));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch execution interrupted", e);
+        } finally {
+            // Stops outstanding runs when the client goes away mid-batch
+            executor.shutdownNow();
+        }
+
+        sink.accept(BatchResultEvent.builder()
+                .type("complete")
+                .runs(total)
+                .executed(runs.size())
+                .executionTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime))
+                .build());
+    }
+
+    private CodeExecutionResponse execute(CodeExecutionRequest request) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return codeExecutionService.executeCode(request);
+            } catch (ServerSaturatedException e) {
+                // The batch throttles itself, so back off instead of failing the item
+                if (attempt >= maxAttempts) {
+                    return failure(e.getMessage());
+                }
+                try {
+                    Thread.sleep(Duration.ofSeconds(e.getRetryAfterSeconds()));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return failure("Batch execution cancelled");
+                }
+            } catch (RuntimeException e) {
+                return failure(e.getMessage());
+            }
+        }
+    }
+
+    private static BatchResultEvent resultEvent(CodeExecutionResponse response, Target target) {
+        BatchTestCase testCase = target.testCase();
+        Boolean passed = null;
+        if (testCase != null && testCase.getExpectedOutput() != null) {
+            passed = response.isSuccess()
+                    && normalizeOutput(response.getOutput()).equals(normalizeOutput(testCase.getExpectedOutput()));
+        }
+        return BatchResultEvent.builder()
+                .type("result")
+                .submission(target.submission())
+                .testCase(target.testCaseIndex())
+                .testName(testCase != null ? testCase.getName() : null)
+                .passed(passed)
+                .result(response)
+                .build();
+    }
+
+    // Only what affects the execution result; the key is computed from this copy
+    private static CodeExecutionRequest runRequest(
+            CodeExecutionRequest submission,
+            BatchTestCase testCase,
+            String sharedStdin
+    ) {
+        String stdin = sharedStdin;
+        if (testCase != null && testCase.getStdin() != null) {
+            stdin = testCase.getStdin();
+        } else if (submission.getStdin() != null) {
+            stdin = submission.getStdin();
+        }
+        CodeExecutionRequest request = new CodeExecutionRequest();
+        request.setCode(submission.getCode());
+        request.setLanguage(submission.getLanguage());
+        request.setStdin(stdin);
+        request.setProfile(submission.isProfile());
+        return request;
+    }
+
+    private int parallelism(BatchExecutionRequest batch) {
+        return batch.getParallelism() != null
+                ? Math.min(batch.getParallelism(), maxParallelism)
+                : defaultParallelism;
+    }
+
+    private static String normalizeOutput(String output) {
+        return output == null ? "" : output.replace("\r\n", "\n").stripTrailing();
+    }
+
+    private static CodeExecutionResponse failure(String error) {
+        return CodeExecutionResponse.builder()
+                .success(false)
+                .error(error)
+                .build();
+    }
+
+    private record Target(int submission, Integer testCaseIndex, BatchTestCase testCase) {
+    }
+
+    private static final class Run {
+        private final CodeExecutionRequest request;
+        private final List<Target> targets = new ArrayList<>();
+        private volatile CodeExecutionResponse response;
+
+        private Run(CodeExecutionRequest request) {
+            this.request = request;
+        }
+    }
+}
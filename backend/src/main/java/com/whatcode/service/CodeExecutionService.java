@@ -1,38 +1,188 @@
 package com.whatcode.service;
 
 import com.whatcode.dto.*;
+import com.whatcode.exception.TraceNotFoundException;
 import com.whatcode.model.SupportedLanguage;
+import com.whatcode.model.TraceMode;
+import com.whatcode.service.admission.LanguageBulkhead;
+import com.whatcode.service.cache.ResultCache;
+import com.whatcode.service.execution.ExecutionEngineRegistry;
+import com.whatcode.service.execution.ExecutionResult;
+import com.whatcode.service.execution.ExecutionTask;
+import com.whatcode.service.execution.OutputListener;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import com.whatcode.service.metrics.ExecutionMetrics.Phase;
+import com.whatcode.service.trace.InteractiveSession;
+import com.whatcode.service.trace.StoredTrace;
+import com.whatcode.service.trace.TraceEngine;
+import com.whatcode.service.trace.TraceOptions;
+import com.whatcode.service.trace.TraceResult;
+import com.whatcode.service.trace.TraceSession;
+import com.whatcode.service.trace.TraceSessionStore;
+import com.whatcode.service.trace.TraceStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 public class CodeExecutionService {
 
+    private final TraceDeltaCodec traceDeltaCodec;
+    private final TraceEngine traceEngine;
+    private final ExecutionEngineRegistry executionEngineRegistry;
+    private final ResultCache resultCache;
+    private final LanguageBulkhead languageBulkhead;
+    private final ExecutionMetrics metrics;
+    private final TraceStore traceStore;
+    private final TraceSessionStore traceSessions;
+    private final Duration executionTimeout;
+    private final int defaultKeyframeInterval;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final InteractiveSession.Settings interactiveSettings;
+
+    public CodeExecutionService(
+            TraceDeltaCodec traceDeltaCodec,
+            TraceEngine traceEngine,
+            ExecutionEngineRegistry executionEngineRegistry,
+            ResultCache resultCache,
+            LanguageBulkhead languageBulkhead,
+            ExecutionMetrics metrics,
+            TraceStore traceStore,
+            TraceSessionStore traceSessions,
+            @Value("${code.execution.timeout:60000}") long executionTimeoutMillis,
+            @Value("${code.visualization.delta.keyframe-interval:20}") int defaultKeyframeInterval,
+            @Value("${code.traces.page-size:50}") int defaultPageSize,
+            @Value("${code.traces.max-page-size:500}") int maxPageSize,
+            @Value("${code.visualization.interactive.window:512}") int interactiveWindow,
+            @Value("${code.visualization.interactive.lookahead:16}") int interactiveLookahead,
+            @Value("${code.visualization.interactive.release-after-ms:1000}") long interactiveReleaseAfterMillis,
+            @Value("${code.visualization.interactive.max-pause-ms:20000}") long interactiveMaxPauseMillis
+    ) {
+        this.traceDeltaCodec = traceDeltaCodec;
+        this.traceEngine = traceEngine;
+        this.executionEngineRegistry = executionEngineRegistry;
+        this.resultCache = resultCache;
+        this.languageBulkhead = languageBulkhead;
+        this.metrics = metrics;
+        this.executionTimeout = Duration.ofMillis(executionTimeoutMillis);
+        this.defaultKeyframeInterval = defaultKeyframeInterval;
+        this.traceStore = traceStore;
+        this.traceSessions = traceSessions;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.interactiveSettings = new InteractiveSession.Settings(interactiveWindow, interactiveLookahead,
+                Duration.ofMillis(interactiveReleaseAfterMillis), Duration.ofMillis(interactiveMaxPauseMillis),
+                executionTimeout);
+    }
+
+    // Not cached: a program that uses randomness, the clock or threads must
+    // really run each time it is submitted
     public CodeExecutionResponse executeCode(CodeExecutionRequest request) {
-        long startTime = System.currentTimeMillis();
+        return admitted(request, this::computeExecution);
+    }
 
-        try {
-            // This is a placeholder implementation
-            // In a real implementation, you would:
-            // 1. Execute the code in a sandboxed environment
-            // 2. Capture stdout/stderr
-            // 3. Handle errors appropriately
+    /** Requests with the same key run the same program on the same input. */
+    public String executionKey(CodeExecutionRequest request) {
+        String variant = request.getStdin() == null || request.getStdin().isEmpty()
+                ? "execute"
+                : "execute:" + SourceHash.sha256(request.getStdin());
+        if (request.isProfile()) {
+            variant += ":profile";
+        }
+        return ResultCache.key(variant, request.getCode(), request.getLanguage());
+    }
 
-            String output = simulateExecution(request.getCode(), request.getLanguage());
-            long executionTime = System.currentTimeMillis() - startTime;
+    public CodeExecutionResponse visualizeCode(CodeExecutionRequest request) {
+        TraceMode mode = request.getTraceMode();
+        // A live trace runs the real program, so it is not cached either
+        if (traceEngine.tracesLive(request.getLanguage())) {
+            return mode == TraceMode.PAGED
+                    ? admitted(request, r -> computePagedVisualization(r, UUID.randomUUID().toString()))
+                    : admitted(request, this::computeVisualization);
+        }
+        String variant = "visualize:" + mode
+                + (mode == TraceMode.DELTA || mode == TraceMode.PAGED ? ":" + keyframeInterval(request) : "")
+                + traceOptions(request).key();
+        String key = ResultCache.key(variant, request.getCode(), request.getLanguage());
+        if (mode != TraceMode.PAGED) {
+            return resultCache.getOrCompute(key, () -> admitted(request, this::computeVisualization));
+        }
+
+        // The key doubles as the trace id. A cached summary is only useful
+        // while its trace is still in the store.
+        Function<CodeExecutionRequest, CodeExecutionResponse> compute = r -> computePagedVisualization(r, key);
+        CodeExecutionResponse response = resultCache.getOrCompute(key, () -> admitted(request, compute));
+        if (response.isSuccess() && !traceStore.contains(key)) {
+            resultCache.invalidate(key);
+            response = resultCache.getOrCompute(key, () -> admitted(request, compute));
+        }
+        return response;
+    }
+
+    public TraceWindow traceSteps(String traceId, Integer from, Integer to) {
+        StoredTrace trace = traceStore.get(traceId);
+        if (trace == null) {
+            throw new TraceNotFoundException(traceId);
+        }
+        int stepCount = trace.stepCount();
+        int start = Math.min(Math.max(from != null ? from : 0, 0), stepCount);
+        int end = to != null ? to : start + defaultPageSize;
+        end = Math.max(start, Math.min(end, Math.min(stepCount, start + maxPageSize)));
+
+        return TraceWindow.builder()
+                .traceId(traceId)
+                .from(start)
+                .to(end)
+                .stepCount(stepCount)
+                .steps(traceDeltaCodec.reconstructSteps(trace.deltas(), start, end))
+                .build();
+    }
+
+    // Cache hits never reach this point, so only real work competes for a slot
+    private CodeExecutionResponse admitted(
+            CodeExecutionRequest request,
+            Function<CodeExecutionRequest, CodeExecutionResponse> compute
+    ) {
+        try (LanguageBulkhead.Permit permit = languageBulkhead.acquire(request.getLanguage())) {
+            return compute.apply(request);
+        }
+    }
+
+    public CacheStatistics cacheStatistics() {
+        return resultCache.statistics();
+    }
+
+    private CodeExecutionResponse computeExecution(CodeExecutionRequest request) {
+        long startTime = System.nanoTime();
+
+        try {
+            ExecutionResult result = executionEngineRegistry.engineFor(request.getLanguage())
+                    .execute(new ExecutionTask(request.getCode(), request.getStdin(), executionTimeout,
+                            request.isProfile()));
+            metrics.recordPhase(Phase.EXECUTION, request.getLanguage(), System.nanoTime() - startTime);
+            long executionTime = elapsedMillis(startTime);
 
             return CodeExecutionResponse.builder()
-                    .success(true)
-                    .output(output)
+                    .success(result.success())
+                    .output(result.stdout())
+                    .error(result.success() ? null : result.stderr())
                     .executionTime(executionTime)
+                    .profile(result.profile())
                     .build();
         } catch (Exception e) {
-            long executionTime = System.currentTimeMillis() - startTime;
+            long executionTime = elapsedMillis(startTime);
             return CodeExecutionResponse.builder()
                     .success(false)
                     .error(e.getMessage())
@@ -41,25 +191,95 @@ public class CodeExecutionService {
         }
     }
 
-    public CodeExecutionResponse visualizeCode(CodeExecutionRequest request) {
-        long startTime = System.currentTimeMillis();
+    /**
+     * Runs the request like {@link #executeCode}, handing output to
+     * {@code sink} in chunks while the run goes, then a complete event.
+     * The caller admits the run.
+     */
+    public void streamExecution(CodeExecutionRequest request, Consumer<ExecutionStreamEvent> sink) {
+        long startTime = System.nanoTime();
+        boolean[] streamed = {false};
+        OutputListener listener = (stream, text, omitted) -> {
+            streamed[0] = true;
+            sink.accept(ExecutionStreamEvent.builder()
+                    .type(stream)
+                    .text(text)
+                    .omitted(omitted > 0 ? omitted : null)
+                    .build());
+        };
+
+        ExecutionResult result;
+        try {
+            result = executionEngineRegistry.engineFor(request.getLanguage())
+                    .execute(new ExecutionTask(request.getCode(), request.getStdin(), executionTimeout,
+                            request.isProfile(), listener));
+        } catch (UncheckedIOException e) {
+            // Client went away; nothing left to write to.
+            throw e;
+        } catch (Exception e) {
+            sink.accept(ExecutionStreamEvent.builder()
+                    .type("error")
+                    .error(e.getMessage())
+                    .executionTime(elapsedMillis(startTime))
+                    .build());
+            return;
+        }
+        metrics.recordPhase(Phase.EXECUTION, request.getLanguage(), System.nanoTime() - startTime);
+
+        // Engines that cannot stream only have the output at the end
+        if (!streamed[0] && result.stdout() != null && !result.stdout().isEmpty()) {
+            sink.accept(ExecutionStreamEvent.builder().type("stdout").text(result.stdout()).build());
+        }
+        sink.accept(ExecutionStreamEvent.builder()
+                .type("complete")
+                .success(result.success())
+                .error(result.success() ? null : result.stderr())
+                .profile(result.profile())
+                .executionTime(elapsedMillis(startTime))
+                .build());
+    }
+
+    private CodeExecutionResponse computeVisualization(CodeExecutionRequest request) {
+        long startTime = System.nanoTime();
 
         try {
-            List<VisualizationStep> steps = generateVisualizationSteps(
-                    request.getCode(),
-                    request.getLanguage());
-            long executionTime = System.currentTimeMillis() - startTime;
+            if (request.getTraceMode() == TraceMode.DELTA) {
+                TraceDeltaCodec.Encoder encoder = traceDeltaCodec.newEncoder(keyframeInterval(request));
+                TraceResult trace = trace(request, encoder);
+                metrics.recordSteps(request.getLanguage(), encoder.getDeltas().size());
+
+                long outputStart = System.nanoTime();
+                String output = extractDeltaOutput(encoder.getDeltas());
+                metrics.recordPhase(Phase.OUTPUT, request.getLanguage(), System.nanoTime() - outputStart);
+                long executionTime = elapsedMillis(startTime);
+
+                return CodeExecutionResponse.builder()
+                        .success(true)
+                        .output(output)
+                        .stepDeltas(encoder.getDeltas())
+                        .truncated(trace.truncated())
+                        .executionTime(executionTime)
+                        .build();
+            }
 
+            List<VisualizationStep> steps = new ArrayList<>();
+            TraceResult trace = trace(request, steps::add);
+            metrics.recordSteps(request.getLanguage(), steps.size());
+
+            long outputStart = System.nanoTime();
             String output = extractOutput(steps);
+            metrics.recordPhase(Phase.OUTPUT, request.getLanguage(), System.nanoTime() - outputStart);
+            long executionTime = elapsedMillis(startTime);
 
             return CodeExecutionResponse.builder()
                     .success(true)
                     .output(output)
                     .visualizationSteps(steps)
+                    .truncated(trace.truncated())
                     .executionTime(executionTime)
                     .build();
         } catch (Exception e) {
-            long executionTime = System.currentTimeMillis() - startTime;
+            long executionTime = elapsedMillis(startTime);
             return CodeExecutionResponse.builder()
                     .success(false)
                     .error(e.getMessage())
@@ -68,296 +288,166 @@ public class CodeExecutionService {
         }
     }
 
-    private String simulateExecution(String code, SupportedLanguage language) {
-        // Placeholder implementation - simulate code execution
-        // In production, this would use actual code execution engines
-        return switch (language) {
-            case PYTHON -> "Code executed successfully\nOutput: [Simulated Python execution]";
-            case JAVA -> "Code executed successfully\nOutput: [Simulated Java execution]";
-            case TYPESCRIPT -> "Code executed successfully\nOutput: [Simulated TypeScript execution]";
-            case REACT -> "Code executed successfully\nOutput: [Simulated React execution]";
-        };
-    }
-
-    private List<VisualizationStep> generateVisualizationSteps(
-            String code,
-            SupportedLanguage language) {
-        List<VisualizationStep> steps = new ArrayList<>();
-        String[] lines = code.split("\n");
-
-        // Generate enhanced visualization steps
-        int stepNum = 1;
-        Map<String, Object> variables = new HashMap<>();
-        List<StackFrame> stackFrames = new ArrayList<>();
-        List<MemoryObject> memoryObjects = new ArrayList<>();
-        List<ControlFlow> controlFlow = new ArrayList<>();
-        List<DataStructure> dataStructures = new ArrayList<>();
-
-        for (int i = 0; i < Math.min(lines.length, 15); i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty() || line.startsWith("//") || line.startsWith("#")) {
-                continue;
-            }
-
-            // Generate stack frames for function calls
-            if (line.contains("def ") || line.contains("function ") || line.contains("public static")) {
-                String funcName = extractFunctionName(line);
-                Map<String, Object> params = extractParameters(line);
-                stackFrames.add(StackFrame.builder()
-                        .functionName(funcName)
-                        .parameters(params)
-                        .localVariables(new HashMap<>())
-                        .lineNumber(i + 1)
-                        .build());
-            }
+    private CodeExecutionResponse computePagedVisualization(CodeExecutionRequest request, String traceId) {
+        long startTime = System.nanoTime();
 
-            // Generate control flow
-            if (i > 0) {
-                ControlFlow flow = generateControlFlow(lines, i, language);
-                if (flow != null) {
-                    controlFlow.add(flow);
-                }
-            }
-
-            // Detect data structures
-            detectDataStructures(line, variables, dataStructures);
-
-            // Generate memory objects for new variables
-            if (line.contains("=") && !line.contains("==")) {
-                String varName = extractVariableName(line);
-                Object value = extractVariableValue(line, variables);
-                variables.put(varName, value);
-                
-                memoryObjects.add(MemoryObject.builder()
-                        .address("0x" + UUID.randomUUID().toString().substring(0, 8))
-                        .type(detectType(value))
-                        .value(value)
-                        .references(List.of(varName))
-                        .build());
-            }
-
-            VisualizationStep step = VisualizationStep.builder()
-                    .stepNumber(stepNum++)
-                    .description(generateStepDescription(line, language))
-                    .lineHighlight(i + 1)
-                    .variableStates(new HashMap<>(variables))
-                    .stackFrames(new ArrayList<>(stackFrames))
-                    .memoryObjects(new ArrayList<>(memoryObjects))
-                    .controlFlow(new ArrayList<>(controlFlow))
-                    .dataStructures(new ArrayList<>(dataStructures))
-                    .timestamp(System.currentTimeMillis())
-                    .build();
-
-            steps.add(step);
-
-            // Remove stack frame on return
-            if (line.contains("return")) {
-                if (!stackFrames.isEmpty()) {
-                    stackFrames.remove(stackFrames.size() - 1);
+        try {
+            TraceDeltaCodec.Encoder encoder = traceDeltaCodec.newEncoder(keyframeInterval(request));
+            Map<Integer, List<Integer>> lineMap = new TreeMap<>();
+            TraceResult trace = trace(request, step -> {
+                if (step.getLineHighlight() != null) {
+                    lineMap.computeIfAbsent(step.getLineHighlight(), line -> new ArrayList<>())
+                            .add(encoder.getDeltas().size());
                 }
-            }
-        }
+                encoder.accept(step);
+            });
+            List<StepDelta> deltas = encoder.getDeltas();
+            metrics.recordSteps(request.getLanguage(), deltas.size());
 
-        // Add final output step
-        if (!steps.isEmpty()) {
-            steps.add(VisualizationStep.builder()
-                    .stepNumber(stepNum)
-                    .description("Execution completed")
-                    .output(simulateExecution(code, language))
-                    .variableStates(variables)
-                    .stackFrames(stackFrames)
-                    .memoryObjects(memoryObjects)
-                    .controlFlow(controlFlow)
-                    .dataStructures(dataStructures)
-                    .timestamp(System.currentTimeMillis())
-                    .build());
-        }
+            long outputStart = System.nanoTime();
+            String output = extractDeltaOutput(deltas);
+            metrics.recordPhase(Phase.OUTPUT, request.getLanguage(), System.nanoTime() - outputStart);
 
-        return steps;
-    }
+            traceStore.put(new StoredTrace(traceId, deltas, lineMap, output, trace.truncated(),
+                    trace.retainedBytes()));
+            long executionTime = elapsedMillis(startTime);
 
-    private String generateStepDescription(String line, SupportedLanguage language) {
-        // Generate human-readable descriptions
-        if (line.contains("def ") || line.contains("function ")) {
-            return "Defining a function";
-        } else if (line.contains("if ")) {
-            return "Checking condition";
-        } else if (line.contains("for ") || line.contains("while ")) {
-            return "Starting loop iteration";
-        } else if (line.contains("=")) {
-            return "Assigning value to variable";
-        } else if (line.contains("print") || line.contains("System.out.println") || line.contains("console.log")) {
-            return "Printing output";
-        } else if (line.contains("return")) {
-            return "Returning value";
+            return CodeExecutionResponse.builder()
+                    .success(true)
+                    .output(output)
+                    .traceId(traceId)
+                    .stepCount(deltas.size())
+                    .lineMap(lineMap)
+                    .truncated(trace.truncated())
+                    .executionTime(executionTime)
+                    .build();
+        } catch (Exception e) {
+            long executionTime = elapsedMillis(startTime);
+            return CodeExecutionResponse.builder()
+                    .success(false)
+                    .error(e.getMessage())
+                    .executionTime(executionTime)
+                    .build();
         }
-        return "Executing line: " + line.substring(0, Math.min(50, line.length()));
     }
 
-    private void trackVariables(String line, Map<String, Object> variables) {
-        // Simple variable tracking simulation
-        if (line.contains("=") && !line.contains("==")) {
-            String varName = extractVariableName(line);
-            Object value = extractVariableValue(line, variables);
-            variables.put(varName, value);
+    public void streamVisualization(
+            CodeExecutionRequest request,
+            Consumer<VisualizationStreamEvent> sink
+    ) {
+        long startTime = System.nanoTime();
+        StringBuilder output = new StringBuilder();
+
+        Consumer<VisualizationStep> stepSink;
+        if (request.getTraceMode() == TraceMode.DELTA) {
+            stepSink = traceDeltaCodec.newEncoder(keyframeInterval(request), delta -> sink.accept(
+                    VisualizationStreamEvent.builder().type("delta").delta(delta).build()));
+        } else {
+            stepSink = step -> sink.accept(
+                    VisualizationStreamEvent.builder().type("step").step(step).build());
         }
-    }
 
-    private String extractFunctionName(String line) {
-        if (line.contains("def ")) {
-            String afterDef = line.substring(line.indexOf("def ") + 4).trim();
-            return afterDef.split("[(\s]")[0];
-        } else if (line.contains("function ")) {
-            String afterFunc = line.substring(line.indexOf("function ") + 9).trim();
-            return afterFunc.split("[(\s]")[0];
-        } else if (line.contains("public static")) {
-            String[] parts = line.split("\\s+");
-            for (int i = 0; i < parts.length; i++) {
-                if (parts[i].contains("(")) {
-                    return parts[i].split("\\(")[0];
+        TraceResult trace;
+        try {
+            trace = trace(request, step -> {
+                if (step.getOutput() != null) {
+                    output.append(output.isEmpty() ? "" : "\n").append(step.getOutput());
                 }
-            }
+                stepSink.accept(step);
+            });
+        } catch (UncheckedIOException e) {
+            // Client went away; nothing left to write to.
+            throw e;
+        } catch (Exception e) {
+            sink.accept(VisualizationStreamEvent.builder()
+                    .type("error")
+                    .error(e.getMessage())
+                    .executionTime(elapsedMillis(startTime))
+                    .build());
+            return;
         }
-        return "unknown";
+        metrics.recordSteps(request.getLanguage(), trace.steps());
+
+        sink.accept(VisualizationStreamEvent.builder()
+                .type("complete")
+                .output(output.isEmpty() ? "Execution completed" : output.toString())
+                .truncated(trace.truncated() ? Boolean.TRUE : null)
+                .executionTime(elapsedMillis(startTime))
+                .build());
     }
 
-    private Map<String, Object> extractParameters(String line) {
-        Map<String, Object> params = new HashMap<>();
-        if (line.contains("(") && line.contains(")")) {
-            String paramStr = line.substring(line.indexOf("(") + 1, line.indexOf(")"));
-            String[] paramsArr = paramStr.split(",");
-            for (String param : paramsArr) {
-                String trimmed = param.trim();
-                if (!trimmed.isEmpty()) {
-                    String name = trimmed.split("[:\\s]")[0].trim();
-                    params.put(name, "value");
-                }
+    /**
+     * Opens a session that traces the request only as far as its client
+     * steps. Each run of the trace holds an interactive slot and an admission
+     * slot while it runs or waits for the client; there are fewer interactive
+     * slots than workers, so sessions cannot take every worker of a language.
+     */
+    public InteractiveSession openInteractiveSession(CodeExecutionRequest request) {
+        Supplier<String> output = () -> executionOutput(request.getCode(), request.getLanguage());
+        return new InteractiveSession((options, sink) -> {
+            try (LanguageBulkhead.Permit interactive = languageBulkhead.acquireInteractive(request.getLanguage());
+                 LanguageBulkhead.Permit permit = languageBulkhead.acquire(request.getLanguage())) {
+                TraceResult result = traceEngine.trace(request.getCode(), request.getLanguage(), options, output, sink);
+                metrics.recordSteps(request.getLanguage(), result.steps());
+                return result;
             }
-        }
-        return params;
+        }, interactiveSettings);
     }
 
-    private String extractVariableName(String line) {
-        String[] parts = line.split("=");
-        if (parts.length >= 2) {
-            String leftSide = parts[0].trim();
-            leftSide = leftSide.replaceAll("(var|let|const|int|String|double|float|final)\\s+", "");
-            return leftSide.split("[\\[\\s]")[0].trim();
+    private TraceResult trace(CodeExecutionRequest request, Consumer<VisualizationStep> sink) {
+        Supplier<String> output = () -> executionOutput(request.getCode(), request.getLanguage());
+        if (request.getSessionId() == null || !traceEngine.resumesSessions(request.getLanguage())) {
+            return traceEngine.trace(request.getCode(), request.getLanguage(), traceOptions(request), output, sink);
         }
-        return "unknown";
+        TraceSession session = traceSessions.session(request.getSessionId());
+        TraceResult result = traceEngine.trace(request.getCode(), request.getLanguage(), traceOptions(request),
+                output, sink, session);
+        traceSessions.updated(request.getSessionId(), session);
+        return result;
     }
 
-    private Object extractVariableValue(String line, Map<String, Object> existingVars) {
-        String[] parts = line.split("=");
-        if (parts.length >= 2) {
-            String rightSide = parts[1].trim().replaceAll("[;]", "");
-            
-            // Try to parse as number
-            try {
-                if (rightSide.contains(".")) {
-                    return Double.parseDouble(rightSide);
-                } else {
-                    return Integer.parseInt(rightSide);
-                }
-            } catch (NumberFormatException e) {
-                // Check if it's a string literal
-                if (rightSide.startsWith("\"") || rightSide.startsWith("'")) {
-                    return rightSide.substring(1, rightSide.length() - 1);
-                }
-                // Check if it's an array/list
-                if (rightSide.contains("[") || rightSide.contains("{")) {
-                    return parseArrayOrList(rightSide);
-                }
-                // Check if variable reference
-                if (existingVars.containsKey(rightSide)) {
-                    return existingVars.get(rightSide);
-                }
-            }
-        }
-        return "value";
+    private static TraceOptions traceOptions(CodeExecutionRequest request) {
+        return new TraceOptions(request.getFromLine(), request.getToLine(),
+                request.getFromStep(), request.getToStep(),
+                request.getTraceMode() == null || request.getTraceMode() == TraceMode.FULL);
     }
 
-    private Object parseArrayOrList(String str) {
-        if (str.contains("[")) {
-            String content = str.substring(str.indexOf("[") + 1, str.lastIndexOf("]"));
-            String[] items = content.split(",");
-            List<Object> list = new ArrayList<>();
-            for (String item : items) {
-                String trimmed = item.trim();
-                try {
-                    if (trimmed.contains(".")) {
-                        list.add(Double.parseDouble(trimmed));
-                    } else {
-                        list.add(Integer.parseInt(trimmed));
-                    }
-                } catch (NumberFormatException e) {
-                    list.add(trimmed.replaceAll("[\"']", ""));
-                }
-            }
-            return list;
-        }
-        return List.of();
+    private int keyframeInterval(CodeExecutionRequest request) {
+        return request.getKeyframeInterval() != null
+                ? request.getKeyframeInterval()
+                : defaultKeyframeInterval;
     }
 
-    private String detectType(Object value) {
-        if (value instanceof Integer) return "int";
-        if (value instanceof Double) return "double";
-        if (value instanceof String) return "String";
-        if (value instanceof List) return "List/Array";
-        return "Object";
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
 
-    private ControlFlow generateControlFlow(String[] lines, int currentIndex, SupportedLanguage language) {
-        if (currentIndex == 0) return null;
-        
-        String currentLine = lines[currentIndex].trim();
-        String prevLine = lines[currentIndex - 1].trim();
-        
-        int fromLine = currentIndex;
-        int toLine = currentIndex + 1;
-        String type = "sequential";
-        Boolean condition = null;
-
-        if (prevLine.contains("if ")) {
-            type = "branch";
-            condition = !currentLine.contains("else");
-        } else if (prevLine.contains("for ") || prevLine.contains("while ")) {
-            type = "loop";
-        } else if (currentLine.contains("return")) {
-            type = "return";
-        } else if (currentLine.contains("(") && !currentLine.contains("=")) {
-            type = "call";
+    private String executionOutput(String code, SupportedLanguage language) {
+        long start = System.nanoTime();
+        ExecutionResult result = executionEngineRegistry.engineFor(language)
+                .execute(new ExecutionTask(code, null, executionTimeout));
+        metrics.recordPhase(Phase.EXECUTION, language, System.nanoTime() - start);
+        if (result.success() || result.stderr() == null || result.stderr().isEmpty()) {
+            return result.stdout();
         }
+        return result.stdout() + result.stderr();
+    }
 
-        return ControlFlow.builder()
-                .fromLine(fromLine)
-                .toLine(toLine)
-                .type(type)
-                .condition(condition)
-                .build();
+    private String extractOutput(List<VisualizationStep> steps) {
+        return joinOutput(steps.stream()
+                .map(VisualizationStep::getOutput)
+                .filter(output -> output != null)
+                .toList());
     }
 
-    private void detectDataStructures(String line, Map<String, Object> variables, List<DataStructure> dataStructures) {
-        if (line.contains("=") && !line.contains("==")) {
-            String varName = extractVariableName(line);
-            Object value = extractVariableValue(line, variables);
-            
-            if (value instanceof List) {
-                List<?> list = (List<?>) value;
-                dataStructures.add(DataStructure.builder()
-                        .type(list.size() > 0 && list.get(0) instanceof List ? "graph" : "array")
-                        .data(list)
-                        .operations(List.of("read", "write"))
-                        .build());
-            }
-        }
+    private String extractDeltaOutput(List<StepDelta> deltas) {
+        return joinOutput(deltas.stream()
+                .map(delta -> delta.isKeyframe() ? delta.getSnapshot().getOutput() : delta.getOutput())
+                .filter(output -> output != null)
+                .toList());
     }
 
-    private String extractOutput(List<VisualizationStep> steps) {
-        return steps.stream()
-                .filter(step -> step.getOutput() != null)
-                .map(VisualizationStep::getOutput)
-                .reduce((a, b) -> a + "\n" + b)
-                .orElse("Execution completed");
+    private static String joinOutput(List<String> outputs) {
+        return outputs.isEmpty() ? "Execution completed" : String.join("\n", outputs);
     }
 }
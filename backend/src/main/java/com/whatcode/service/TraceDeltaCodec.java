@@ -0,0 +1,356 @@
+package com.whatcode.service;
+
+import com.whatcode.dto.*;
+import com.whatcode.service.trace.StructureTable;
+import com.whatcode.service.trace.VariableTable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Encodes a visualization trace as periodic keyframes plus per-step diffs,
+ * and rebuilds individual steps from that encoding.
+ */
+@Component
+public class TraceDeltaCodec {
+
+    public Encoder newEncoder(int keyframeInterval) {
+        List<StepDelta> deltas = new ArrayList<>();
+        return new Encoder(keyframeInterval, deltas::add, deltas);
+    }
+
+    /**
+     * Creates an encoder that forwards each delta downstream as soon as it is
+     * produced instead of collecting the trace.
+     */
+    public Encoder newEncoder(int keyframeInterval, Consumer<StepDelta> downstream) {
+        return new Encoder(keyframeInterval, downstream, null);
+    }
+
+    /**
+     * Rebuilds the full step at {@code index} by replaying deltas forward from
+     * the nearest preceding keyframe.
+     */
+    public VisualizationStep reconstructStep(List<StepDelta> deltas, int index) {
+        if (index < 0 || index >= deltas.size()) {
+            throw new IndexOutOfBoundsException("Step index " + index + " out of range");
+        }
+        return reconstructSteps(deltas, index, index + 1).get(0);
+    }
+
+    /**
+     * Rebuilds the full steps in [{@code from}, {@code to}) with a single
+     * forward replay from the keyframe at or before {@code from}.
+     */
+    public List<VisualizationStep> reconstructSteps(List<StepDelta> deltas, int from, int to) {
+        if (from < 0 || to > deltas.size() || from > to) {
+            throw new IndexOutOfBoundsException("Step range [" + from + ", " + to + ") out of range");
+        }
+        if (from == to) {
+            return List.of();
+        }
+
+        int keyframeIndex = from;
+        while (!deltas.get(keyframeIndex).isKeyframe()) {
+            keyframeIndex--;
+            if (keyframeIndex < 0) {
+                throw new IllegalStateException("Trace does not start with a keyframe");
+            }
+        }
+
+        List<VisualizationStep> steps = new ArrayList<>(to - from);
+        Map<String, Object> variables = null;
+        List<StackFrame> stackFrames = null;
+        Map<Integer, MemoryObject> memoryObjects = null;
+        List<ControlFlow> controlFlow = null;
+        Map<Integer, DataStructure> dataStructures = null;
+
+        for (int i = keyframeIndex; i < to; i++) {
+            StepDelta delta = deltas.get(i);
+            if (delta.isKeyframe()) {
+                VisualizationStep base = delta.getSnapshot();
+                if (i >= from) {
+                    steps.add(base);
+                }
+                variables = copyMap(base.getVariableStates());
+                stackFrames = copyList(base.getStackFrames());
+                memoryObjects = new LinkedHashMap<>();
+                for (MemoryObject object : orEmpty(base.getMemoryObjects())) {
+                    memoryObjects.put(object.getId(), object);
+                }
+                controlFlow = copyList(base.getControlFlow());
+                dataStructures = new LinkedHashMap<>();
+                for (DataStructure structure : orEmpty(base.getDataStructures())) {
+                    dataStructures.put(structure.getId(), structure);
+                }
+                continue;
+            }
+
+            if (delta.getRemovedVariables() != null) {
+                delta.getRemovedVariables().forEach(variables::remove);
+            }
+            if (delta.getSetVariables() != null) {
+                variables.putAll(delta.getSetVariables());
+            }
+            if (delta.getPoppedFrames() != null) {
+                stackFrames.subList(stackFrames.size() - delta.getPoppedFrames(), stackFrames.size()).clear();
+            }
+            appendAll(stackFrames, delta.getPushedFrames());
+            if (delta.getRemovedMemoryObjects() != null) {
+                delta.getRemovedMemoryObjects().forEach(memoryObjects::remove);
+            }
+            if (delta.getAddedMemoryObjects() != null) {
+                for (MemoryObject object : delta.getAddedMemoryObjects()) {
+                    memoryObjects.put(object.getId(), object);
+                }
+            }
+            appendAll(controlFlow, delta.getAddedControlFlow());
+            if (delta.getRemovedDataStructures() != null) {
+                delta.getRemovedDataStructures().forEach(dataStructures::remove);
+            }
+            if (delta.getAddedDataStructures() != null) {
+                for (DataStructure structure : delta.getAddedDataStructures()) {
+                    dataStructures.put(structure.getId(), structure.getData() != null
+                            ? structure
+                            : patched(dataStructures.get(structure.getId()), structure));
+                }
+            }
+
+            if (i >= from) {
+                steps.add(VisualizationStep.builder()
+                        .stepNumber(delta.getStepNumber())
+                        .description(delta.getDescription())
+                        .lineHighlight(delta.getLineHighlight())
+                        .output(delta.getOutput())
+                        .timestamp(delta.getTimestamp())
+                        .variableStates(new HashMap<>(variables))
+                        .stackFrames(new ArrayList<>(stackFrames))
+                        .memoryObjects(new ArrayList<>(memoryObjects.values()))
+                        .controlFlow(new ArrayList<>(controlFlow))
+                        .dataStructures(new ArrayList<>(dataStructures.values()))
+                        .build());
+            }
+        }
+        return steps;
+    }
+
+    // A patch carries only the operations leading from the previous version
+    private static DataStructure patched(DataStructure previous, DataStructure patch) {
+        return DataStructure.builder()
+                .id(patch.getId())
+                .name(patch.getName())
+                .type(patch.getType())
+                .version(patch.getVersion())
+                .data(StructureTable.replay(previous.getData(), patch.getChanges()))
+                .operations(previous.getOperations())
+                .changes(patch.getChanges())
+                .build();
+    }
+
+    /**
+     * Consumes full steps as they are generated and keeps only their deltas,
+     * so the encoder never holds more than one full step at a time.
+     */
+    public static class Encoder implements Consumer<VisualizationStep> {
+
+        private final int keyframeInterval;
+        private final Consumer<StepDelta> downstream;
+        private final List<StepDelta> deltas;
+        private VisualizationStep previous;
+        private int count;
+
+        private Encoder(int keyframeInterval, Consumer<StepDelta> downstream, List<StepDelta> deltas) {
+            if (keyframeInterval < 1) {
+                throw new IllegalArgumentException("Keyframe interval must be positive");
+            }
+            this.keyframeInterval = keyframeInterval;
+            this.downstream = downstream;
+            this.deltas = deltas;
+        }
+
+        @Override
+        public void accept(VisualizationStep step) {
+            StepDelta delta = previous == null || count % keyframeInterval == 0
+                    ? null
+                    : diff(previous, step);
+            downstream.accept(delta != null ? delta : keyframe(step));
+            previous = step;
+            count++;
+        }
+
+        public List<StepDelta> getDeltas() {
+            if (deltas == null) {
+                throw new IllegalStateException("Streaming encoder does not retain deltas");
+            }
+            return deltas;
+        }
+
+        private StepDelta keyframe(VisualizationStep step) {
+            return StepDelta.builder()
+                    .stepNumber(step.getStepNumber())
+                    .keyframe(true)
+                    .snapshot(step)
+                    .build();
+        }
+
+        // Returns null when the steps cannot be expressed as a diff, in which
+        // case the caller falls back to a keyframe.
+        private StepDelta diff(VisualizationStep prev, VisualizationStep cur) {
+            List<ControlFlow> addedFlow = appended(prev.getControlFlow(), cur.getControlFlow());
+            if (addedFlow == null) {
+                return null;
+            }
+            List<DataStructure> addedStructures = new ArrayList<>();
+            List<Integer> removedStructures = new ArrayList<>();
+            diffStructures(orEmpty(prev.getDataStructures()), orEmpty(cur.getDataStructures()),
+                    addedStructures, removedStructures);
+            List<MemoryObject> addedMemory = new ArrayList<>();
+            List<Integer> removedMemory = new ArrayList<>();
+            diffHeap(orEmpty(prev.getMemoryObjects()), orEmpty(cur.getMemoryObjects()), addedMemory, removedMemory);
+
+            Map<String, Object> prevVars = orEmpty(prev.getVariableStates());
+            Map<String, Object> curVars = orEmpty(cur.getVariableStates());
+            Map<String, Object> setVariables = null;
+            List<String> removedVariables = new ArrayList<>();
+            // Versioned snapshots know their own writes, which avoids a full map comparison
+            if (prevVars instanceof VariableTable.Snapshot prevSnapshot
+                    && curVars instanceof VariableTable.Snapshot curSnapshot) {
+                setVariables = curSnapshot.changedSince(prevSnapshot);
+            }
+            if (setVariables == null) {
+                Map<String, Object> changed = new HashMap<>();
+                curVars.forEach((name, value) -> {
+                    if (!prevVars.containsKey(name) || !Objects.equals(prevVars.get(name), value)) {
+                        changed.put(name, value);
+                    }
+                });
+                for (String name : prevVars.keySet()) {
+                    if (!curVars.containsKey(name)) {
+                        removedVariables.add(name);
+                    }
+                }
+                setVariables = changed;
+            }
+
+            List<StackFrame> prevFrames = orEmpty(prev.getStackFrames());
+            List<StackFrame> curFrames = orEmpty(cur.getStackFrames());
+            int common = 0;
+            while (common < prevFrames.size() && common < curFrames.size()
+                    && Objects.equals(prevFrames.get(common), curFrames.get(common))) {
+                common++;
+            }
+            int popped = prevFrames.size() - common;
+
+            return StepDelta.builder()
+                    .stepNumber(cur.getStepNumber())
+                    .description(cur.getDescription())
+                    .lineHighlight(cur.getLineHighlight())
+                    .output(cur.getOutput())
+                    .timestamp(cur.getTimestamp())
+                    .setVariables(setVariables.isEmpty() ? null : setVariables)
+                    .removedVariables(removedVariables.isEmpty() ? null : removedVariables)
+                    .poppedFrames(popped == 0 ? null : popped)
+                    .pushedFrames(common == curFrames.size() ? null : new ArrayList<>(curFrames.subList(common, curFrames.size())))
+                    .addedMemoryObjects(addedMemory.isEmpty() ? null : addedMemory)
+                    .removedMemoryObjects(removedMemory.isEmpty() ? null : removedMemory)
+                    .addedControlFlow(addedFlow.isEmpty() ? null : addedFlow)
+                    .addedDataStructures(addedStructures.isEmpty() ? null : addedStructures)
+                    .removedDataStructures(removedStructures.isEmpty() ? null : removedStructures)
+                    .build();
+        }
+
+        // A structure one version on from the previous step is sent as the
+        // operations between the versions rather than its contents
+        private static void diffStructures(List<DataStructure> prev, List<DataStructure> cur,
+                                           List<DataStructure> added, List<Integer> removed) {
+            if (prev == cur) {
+                return;
+            }
+            Map<Integer, DataStructure> previous = new HashMap<>();
+            for (DataStructure structure : prev) {
+                previous.put(structure.getId(), structure);
+            }
+            for (DataStructure structure : cur) {
+                DataStructure before = previous.remove(structure.getId());
+                if (before == structure || structure.equals(before)) {
+                    continue;
+                }
+                if (before != null && structure.getChanges() != null
+                        && structure.getVersion() == before.getVersion() + 1) {
+                    added.add(DataStructure.builder()
+                            .id(structure.getId())
+                            .name(structure.getName())
+                            .type(structure.getType())
+                            .version(structure.getVersion())
+                            .changes(structure.getChanges())
+                            .build());
+                } else {
+                    added.add(structure);
+                }
+            }
+            removed.addAll(previous.keySet());
+        }
+
+        // Heap objects keep their id for life and unchanged ones are shared
+        // between steps, so a step's heap is diffed by id and identity
+        private static void diffHeap(List<MemoryObject> prev, List<MemoryObject> cur,
+                                     List<MemoryObject> added, List<Integer> removed) {
+            if (prev == cur) {
+                return;
+            }
+            Map<Integer, MemoryObject> previous = new HashMap<>();
+            for (MemoryObject object : prev) {
+                previous.put(object.getId(), object);
+            }
+            for (MemoryObject object : cur) {
+                MemoryObject before = previous.remove(object.getId());
+                if (before != object && !object.equals(before)) {
+                    added.add(object);
+                }
+            }
+            removed.addAll(previous.keySet());
+        }
+
+        // Other step lists only ever grow by appending, so checking the boundary
+        // element is enough to confirm the previous list is a prefix.
+        private static <T> List<T> appended(List<T> prev, List<T> cur) {
+            prev = orEmpty(prev);
+            cur = orEmpty(cur);
+            if (cur.size() < prev.size()) {
+                return null;
+            }
+            if (!prev.isEmpty() && cur.get(prev.size() - 1) != prev.get(prev.size() - 1)) {
+                return null;
+            }
+            return new ArrayList<>(cur.subList(prev.size(), cur.size()));
+        }
+    }
+
+    private static <K, V> Map<K, V> orEmpty(Map<K, V> map) {
+        return map != null ? map : Map.of();
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list != null ? list : List.of();
+    }
+
+    private static Map<String, Object> copyMap(Map<String, Object> map) {
+        return map != null ? new HashMap<>(map) : new HashMap<>();
+    }
+
+    private static <T> List<T> copyList(List<T> list) {
+        return list != null ? new ArrayList<>(list) : new ArrayList<>();
+    }
+
+    private static <T> void appendAll(List<T> target, List<T> items) {
+        if (items != null) {
+            target.addAll(items);
+        }
+    }
+}
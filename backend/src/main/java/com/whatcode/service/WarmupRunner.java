@@ -0,0 +1,223 @@
+package com.whatcode.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.model.SupportedLanguage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends rounds of {@code /api/execute} and {@code /api/visualize} requests
+ * for every language to the server's own port before the application
+ * reports itself ready, so class loading, the JIT and the engine pools are
+ * warm when real traffic arrives. Spring Boot publishes the readiness state
+ * only after application runners return, so {@code /actuator/health/readiness}
+ * stays down until warm-up is done. Each round changes a literal in every
+ * snippet so the result cache does not answer for the engines.
+ *
+ * <p>With {@code code.warmup.exit=true} the application exits after warm-up;
+ * the AppCDS training run uses this to archive the classes real requests load.
+ */
+@Component
+@ConditionalOnProperty(name = "code.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final List<String> TRACE_MODES = List.of("full", "delta");
+
+    private final ApplicationContext context;
+    private final ObjectMapper objectMapper;
+    private final int rounds;
+    private final int concurrency;
+    private final Duration maxDuration;
+    private final boolean exit;
+
+    public WarmupRunner(
+            ApplicationContext context,
+            ObjectMapper objectMapper,
+            @Value("${code.warmup.rounds:20}") int rounds,
+            @Value("${code.warmup.concurrency:4}") int concurrency,
+            @Value("${code.warmup.max-duration-ms:30000}") long maxDurationMillis,
+            @Value("${code.warmup.exit:false}") boolean exit
+    ) {
+        this.context = context;
+        this.objectMapper = objectMapper;
+        this.rounds = rounds;
+        this.concurrency = concurrency;
+        this.maxDuration = Duration.ofMillis(maxDurationMillis);
+        this.exit = exit;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!(context instanceof WebServerApplicationContext web) || web.getWebServer() == null) {
+            return;
+        }
+        URI base = URI.create("http://localhost:" + web.getWebServer().getPort());
+        long start = System.nanoTime();
+        long deadline = start + maxDuration.toNanos();
+        AtomicInteger failures = new AtomicInteger();
+        Set<String> failing = new ConcurrentSkipListSet<>();
+        List<Long> roundMillis = new ArrayList<>();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+            Semaphore permits = new Semaphore(concurrency);
+            for (int round = 0; round < rounds && System.nanoTime() < deadline; round++) {
+                long roundStart = System.nanoTime();
+                try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (SupportedLanguage language : SupportedLanguage.values()) {
+                        String code = snippet(language, round);
+                        List<HttpRequest> calls = new ArrayList<>();
+                        calls.add(request(base.resolve("/api/execute"), code, language, null));
+                        for (String traceMode : TRACE_MODES) {
+                            calls.add(request(base.resolve("/api/visualize"), code, language, traceMode));
+                        }
+                        for (HttpRequest call : calls) {
+                            requests.submit(() -> {
+                                permits.acquireUninterruptibly();
+                                try {
+                                    if (send(client, call) != 200) {
+                                        failures.incrementAndGet();
+                                        failing.add(language.getValue() + " " + call.uri().getPath());
+                                    }
+                                } finally {
+                                    permits.release();
+                                }
+                            });
+                        }
+                    }
+                }
+                roundMillis.add((System.nanoTime() - roundStart) / 1_000_000);
+            }
+        }
+
+        int requests = roundMillis.size() * SupportedLanguage.values().length * (1 + TRACE_MODES.size());
+        log.info("Warm-up sent {} requests in {} rounds in {} ms; first round {} ms, last round {} ms",
+                requests, roundMillis.size(), (System.nanoTime() - start) / 1_000_000,
+                roundMillis.isEmpty() ? 0 : roundMillis.get(0),
+                roundMillis.isEmpty() ? 0 : roundMillis.get(roundMillis.size() - 1));
+        if (failures.get() > 0) {
+            log.warn("{} warm-up requests failed: {}", failures.get(), failing);
+        }
+        if (exit) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private HttpRequest request(URI uri, String code, SupportedLanguage language, String traceMode) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("code", code);
+        body.put("language", language.getValue());
+        if (traceMode != null) {
+            body.put("traceMode", traceMode);
+        }
+        try {
+            return HttpRequest.newBuilder(uri)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The status code, or -1 when the request failed without a response
+    private static int send(HttpClient client, HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    // A function, a loop, a condition and output in each language, seeded by round
+    private static String snippet(SupportedLanguage language, int round) {
+        return switch (language) {
+            case PYTHON -> """
+                    def square(x):
+                        return x * x
+
+                    total = %d
+                    for i in range(6):
+                        if i %% 2 == 0:
+                            total += square(i)
+                    print("total", total)
+                    """.formatted(round);
+            case JAVA -> """
+                    public class Main {
+                        static int square(int x) {
+                            return x * x;
+                        }
+
+                        public static void main(String[] args) {
+                            int total = %d;
+                            for (int i = 0; i < 6; i++) {
+                                if (i %% 2 == 0) {
+                                    total += square(i);
+                                }
+                            }
+                            System.out.println("total " + total);
+                        }
+                    }
+                    """.formatted(round);
+            case TYPESCRIPT -> """
+                    function square(x: number): number {
+                      return x * x;
+                    }
+
+                    let total: number = %d;
+                    for (let i = 0; i < 6; i++) {
+                      if (i %% 2 === 0) {
+                        total += square(i);
+                      }
+                    }
+                    console.log("total", total);
+                    """.formatted(round);
+            case REACT -> """
+                    function Item(props: { value: number }) {
+                      return <li>{props.value * props.value}</li>;
+                    }
+
+                    function App() {
+                      const values = [1, 2, 3].map(function (i) { return i + %d; });
+                      return <ul>{values.map(function (v) { return <Item key={v} value={v} />; })}</ul>;
+                    }
+                    """.formatted(round);
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.whatcode.service.admission;
+
+import com.whatcode.exception.ServerSaturatedException;
+import com.whatcode.model.SupportedLanguage;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-language admission control. Each language has its own concurrency
+ * limit and a bounded wait queue; requests beyond the queue, or that wait
+ * longer than the configured time, are rejected immediately so that heavy
+ * submissions in one language cannot starve the others. Runs of interactive
+ * sessions, which hold their worker while the client reads, also take a slot
+ * of a smaller per-language limit, so they always leave workers for plain
+ * requests.
+ */
+@Component
+public class LanguageBulkhead {
+
+    private final Map<SupportedLanguage, Compartment> compartments = new EnumMap<>(SupportedLanguage.class);
+    private final Map<SupportedLanguage, Compartment> interactive = new EnumMap<>(SupportedLanguage.class);
+    private final long retryAfterSeconds;
+
+    public LanguageBulkhead(Environment environment) {
+        int defaultConcurrent = environment.getProperty("code.admission.max-concurrent", Integer.class, 8);
+        int defaultQueue = environment.getProperty("code.admission.max-queue", Integer.class, 32);
+        long maxWaitMillis = environment.getProperty("code.admission.max-wait-ms", Long.class, 2000L);
+        this.retryAfterSeconds = environment.getProperty("code.admission.retry-after-seconds", Long.class, 2L);
+        int defaultInteractive = environment.getProperty("code.admission.interactive.max-concurrent", Integer.class, 1);
+
+        for (SupportedLanguage language : SupportedLanguage.values()) {
+            String prefix = "code.admission." + language.getValue() + ".";
+            compartments.put(language, new Compartment(
+                    environment.getProperty(prefix + "max-concurrent", Integer.class, defaultConcurrent),
+                    environment.getProperty(prefix + "max-queue", Integer.class, defaultQueue),
+                    maxWaitMillis));
+            interactive.put(language, new Compartment(
+                    environment.getProperty(prefix + "interactive.max-concurrent", Integer.class, defaultInteractive),
+                    defaultQueue,
+                    maxWaitMillis));
+        }
+    }
+
+    /**
+     * Blocks until a slot is free for the language, or throws
+     * {@link ServerSaturatedException} if the wait queue is full or the
+     * wait times out. The returned permit must be closed when the work ends.
+     */
+    public Permit acquire(SupportedLanguage language) {
+        return acquire(language, compartments.get(language));
+    }
+
+    /**
+     * Like {@link #acquire}, for a run of an interactive session; the run
+     * takes a regular slot as well.
+     */
+    public Permit acquireInteractive(SupportedLanguage language) {
+        return acquire(language, interactive.get(language));
+    }
+
+    private Permit acquire(SupportedLanguage language, Compartment compartment) {
+        if (compartment.semaphore.tryAcquire()) {
+            return new Permit(compartment.semaphore);
+        }
+        if (compartment.waiting.incrementAndGet() > compartment.maxQueue) {
+            compartment.waiting.decrementAndGet();
+            throw reject(language);
+        }
+        try {
+            if (!compartment.semaphore.tryAcquire(compartment.maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw reject(language);
+            }
+            return new Permit(compartment.semaphore);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject(language);
+        } finally {
+            compartment.waiting.decrementAndGet();
+        }
+    }
+
+    public int inFlight(SupportedLanguage language) {
+        Compartment compartment = compartments.get(language);
+        return compartment.maxConcurrent - compartment.semaphore.availablePermits();
+    }
+
+    public int waiting(SupportedLanguage language) {
+        return compartments.get(language).waiting.get();
+    }
+
+    public long rejections(SupportedLanguage language) {
+        return compartments.get(language).rejections.sum();
+    }
+
+    private ServerSaturatedException reject(SupportedLanguage language) {
+        compartments.get(language).rejections.increment();
+        return new ServerSaturatedException(language, retryAfterSeconds);
+    }
+
+    /** A held slot; closing it more than once, or from several threads, releases it once. */
+    public static final class Permit implements AutoCloseable {
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+
+    private static final class Compartment {
+        private final int maxConcurrent;
+        private final int maxQueue;
+        private final long maxWaitMillis;
+        private final Semaphore semaphore;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final LongAdder rejections = new LongAdder();
+
+        Compartment(int maxConcurrent, int maxQueue, long maxWaitMillis) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueue = maxQueue;
+            this.maxWaitMillis = maxWaitMillis;
+            this.semaphore = new Semaphore(maxConcurrent, true);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.whatcode.service.analysis;
+
+import com.whatcode.model.SupportedLanguage;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled keyword table for one language. Lookups compare a region of the
+ * scanned line against the table in place, so matching a token never
+ * allocates a substring.
+ */
+final class KeywordTable {
+
+    enum Keyword {
+        FUNCTION,
+        MODIFIER,
+        CONDITION,
+        ELSE,
+        LOOP,
+        RETURN,
+        PRINT,
+        DECLARATION
+    }
+
+    private static final Map<SupportedLanguage, KeywordTable> TABLES = new EnumMap<>(SupportedLanguage.class);
+
+    static {
+        TABLES.put(SupportedLanguage.PYTHON, new Builder(true, "#")
+                .add(Keyword.FUNCTION, "def")
+                .add(Keyword.CONDITION, "if", "elif")
+                .add(Keyword.ELSE, "else")
+                .add(Keyword.LOOP, "for", "while")
+                .add(Keyword.RETURN, "return")
+                .add(Keyword.PRINT, "print")
+                .build());
+
+        TABLES.put(SupportedLanguage.JAVA, new Builder(false, "//")
+                .add(Keyword.MODIFIER, "public", "private", "protected", "static")
+                .add(Keyword.CONDITION, "if")
+                .add(Keyword.ELSE, "else")
+                .add(Keyword.LOOP, "for", "while")
+                .add(Keyword.RETURN, "return")
+                .add(Keyword.PRINT, "println", "print", "printf")
+                .add(Keyword.DECLARATION, "var", "int", "long", "short", "byte", "char", "boolean",
+                        "double", "float", "String", "final")
+                .build());
+
+        KeywordTable script = new Builder(false, "//")
+                .add(Keyword.FUNCTION, "function")
+                .add(Keyword.CONDITION, "if")
+                .add(Keyword.ELSE, "else")
+                .add(Keyword.LOOP, "for", "while")
+                .add(Keyword.RETURN, "return")
+                .add(Keyword.PRINT, "console")
+                .add(Keyword.DECLARATION, "var", "let", "const", "export")
+                .build();
+        TABLES.put(SupportedLanguage.TYPESCRIPT, script);
+        TABLES.put(SupportedLanguage.REACT, script);
+    }
+
+    private final String[] words;
+    private final Keyword[] kinds;
+    private final boolean hashComments;
+    private final String lineComment;
+
+    private KeywordTable(String[] words, Keyword[] kinds, boolean hashComments, String lineComment) {
+        this.words = words;
+        this.kinds = kinds;
+        this.hashComments = hashComments;
+        this.lineComment = lineComment;
+    }
+
+    static KeywordTable forLanguage(SupportedLanguage language) {
+        return TABLES.get(language);
+    }
+
+    Keyword lookup(String line, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (word.length() == length && line.regionMatches(start, word, 0, length)) {
+                return kinds[i];
+            }
+        }
+        return null;
+    }
+
+    boolean hashComments() {
+        return hashComments;
+    }
+
+    boolean isCommentStart(String line, int index, int end) {
+        if (hashComments) {
+            return line.charAt(index) == '#';
+        }
+        return index + lineComment.length() <= end && line.startsWith(lineComment, index);
+    }
+
+    boolean isBlockCommentLine(String line, int start) {
+        return !hashComments && (line.startsWith("/*", start) || line.charAt(start) == '*');
+    }
+
+    private static final class Builder {
+        private final List<String> words = new ArrayList<>();
+        private final List<Keyword> kinds = new ArrayList<>();
+        private final boolean hashComments;
+        private final String lineComment;
+
+        Builder(boolean hashComments, String lineComment) {
+            this.hashComments = hashComments;
+            this.lineComment = lineComment;
+        }
+
+        Builder add(Keyword kind, String... keywords) {
+            for (String keyword : keywords) {
+                words.add(keyword);
+                kinds.add(kind);
+            }
+            return this;
+        }
+
+        KeywordTable build() {
+            return new KeywordTable(words.toArray(new String[0]), kinds.toArray(new Keyword[0]),
+                    hashComments, lineComment);
+        }
+    }
+}
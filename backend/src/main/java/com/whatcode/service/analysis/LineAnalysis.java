@@ -0,0 +1,64 @@
+package com.whatcode.service.analysis;
+
+import java.util.List;
+
+/**
+ * Classification of a single source line, produced once by {@link LineAnalyzer}
+ * and shared by every step, control-flow and data-structure builder.
+ * The line text is kept as bounds into the original string so that no
+ * substring is allocated unless a builder actually needs it.
+ */
+public record LineAnalysis(
+        String line,
+        int start,
+        int end,
+        LineKind kind,
+        boolean functionDef,
+        boolean condition,
+        boolean loop,
+        boolean elseBranch,
+        boolean assignment,
+        boolean print,
+        boolean returns,
+        boolean callLike,
+        String functionName,
+        List<String> parameters,
+        String variableName,
+        String valueText
+) {
+
+    static LineAnalysis blank(String line) {
+        return new LineAnalysis(line, 0, 0, LineKind.BLANK, false, false, false, false,
+                false, false, false, false, null, List.of(), null, null);
+    }
+
+    static LineAnalysis comment(String line, int start, int end) {
+        return new LineAnalysis(line, start, end, LineKind.COMMENT, false, false, false, false,
+                false, false, false, false, null, List.of(), null, null);
+    }
+
+    static LineAnalysis continuation(String line) {
+        int start = 0;
+        int end = line.length();
+        while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        return new LineAnalysis(line, start, end, LineKind.CONTINUATION, false, false, false, false,
+                false, false, false, false, null, List.of(), null, null);
+    }
+
+    public boolean isExecutable() {
+        return kind != LineKind.BLANK && kind != LineKind.COMMENT && kind != LineKind.CONTINUATION;
+    }
+
+    public String text() {
+        return line.substring(start, end);
+    }
+
+    public String preview(int maxLength) {
+        return line.substring(start, Math.min(end, start + maxLength));
+    }
+}
@@ -0,0 +1,360 @@
+package com.whatcode.service.analysis;
+
+import com.whatcode.model.SupportedLanguage;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass lexer/classifier for one line of source. The line is scanned
+ * exactly once; keywords are matched in place against a precompiled
+ * {@link KeywordTable}, and the only allocations are the emitted
+ * {@link LineAnalysis} and the names it carries.
+ */
+@Component
+public class LineAnalyzer {
+
+    public LineAnalysis[] analyzeAll(String[] lines, SupportedLanguage language) {
+        LineAnalysis[] analyses = new LineAnalysis[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            analyses[i] = analyze(lines[i], language);
+        }
+        return analyses;
+    }
+
+    public LineAnalysis analyze(String line, SupportedLanguage language) {
+        KeywordTable table = KeywordTable.forLanguage(language);
+        boolean java = language == SupportedLanguage.JAVA;
+
+        int start = 0;
+        int end = line.length();
+        while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return LineAnalysis.blank(line);
+        }
+        if (table.isCommentStart(line, start, end) || table.isBlockCommentLine(line, start)) {
+            return LineAnalysis.comment(line, start, end);
+        }
+
+        boolean functionKeyword = false;
+        boolean modifierFirst = false;
+        boolean condition = false;
+        boolean loop = false;
+        boolean elseBranch = false;
+        boolean print = false;
+        boolean returns = false;
+        int tokenCount = 0;
+
+        boolean expectFunctionName = false;
+        int nameStart = -1;
+        int nameEnd = -1;
+        int lastIdentStart = -1;
+        int lastIdentEnd = -1;
+
+        // Assignment and left-hand-side tracking
+        int eqPos = -1;
+        int rhsEnd = -1;
+        boolean doubleEquals = false;
+        boolean equalsChar = false;
+        boolean annotation = false;
+        boolean dotPending = false;
+        int depth = 0;
+        int candStart = -1;
+        int candEnd = -1;
+        int firstIdentStart = -1;
+        int firstIdentEnd = -1;
+
+        // Parentheses and parameter collection
+        int firstParen = -1;
+        int parenDepth = 0;
+        List<String> params = null;
+        boolean collectingParams = false;
+        int paramsParenDepth = 0;
+        int paramsDepth = 0;
+        int paramAngle = 0;
+        int paramStart = -1;
+        int paramEnd = -1;
+
+        char quote = 0;
+        int i = start;
+        while (i < end) {
+            char c = line.charAt(i);
+
+            if (quote != 0) {
+                if (c == '\\') {
+                    i += 2;
+                    continue;
+                }
+                if (c == quote) {
+                    quote = 0;
+                }
+                i++;
+                continue;
+            }
+            if (c == '"' || c == '\'' || c == '`') {
+                quote = c;
+                dotPending = false;
+                i++;
+                continue;
+            }
+            if (table.isCommentStart(line, i, end)) {
+                end = i;
+                while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+                    end--;
+                }
+                break;
+            }
+
+            if (Character.isDigit(c)) {
+                int j = i + 1;
+                while (j < end && (Character.isJavaIdentifierPart(line.charAt(j)) || line.charAt(j) == '.')) {
+                    j++;
+                }
+                dotPending = false;
+                i = j;
+                continue;
+            }
+
+            if (Character.isJavaIdentifierStart(c)) {
+                int j = i + 1;
+                while (j < end && Character.isJavaIdentifierPart(line.charAt(j))) {
+                    j++;
+                }
+
+                KeywordTable.Keyword keyword = table.lookup(line, i, j);
+                if (keyword != null) {
+                    switch (keyword) {
+                        case FUNCTION -> {
+                            functionKeyword = true;
+                            expectFunctionName = true;
+                        }
+                        case MODIFIER -> modifierFirst |= tokenCount == 0;
+                        case CONDITION -> condition = true;
+                        case ELSE -> elseBranch = true;
+                        case LOOP -> loop = true;
+                        case RETURN -> returns = true;
+                        case PRINT -> print = true;
+                        case DECLARATION -> { }
+                    }
+                } else {
+                    if (expectFunctionName) {
+                        nameStart = i;
+                        nameEnd = j;
+                        expectFunctionName = false;
+                    }
+                    if (eqPos < 0 && !annotation) {
+                        if (firstIdentStart < 0) {
+                            firstIdentStart = i;
+                            firstIdentEnd = j;
+                        }
+                        if (depth == 0) {
+                            if (!dotPending) {
+                                candStart = i;
+                            }
+                            candEnd = j;
+                        }
+                    }
+                    if (collectingParams && parenDepth == paramsParenDepth && depth == paramsDepth
+                            && paramAngle == 0 && (java || paramStart < 0)) {
+                        // Java parameters end with their name; Python/TypeScript start with it
+                        paramStart = i;
+                        paramEnd = j;
+                    }
+                    lastIdentStart = i;
+                    lastIdentEnd = j;
+                }
+                tokenCount++;
+                dotPending = false;
+                i = j;
+                continue;
+            }
+
+            switch (c) {
+                case '(' -> {
+                    if (firstParen < 0) {
+                        firstParen = i;
+                    }
+                    if (params == null && eqPos < 0) {
+                        boolean javaMethod = java && modifierFirst && lastIdentEnd >= 0
+                                && isBlank(line, lastIdentEnd, i);
+                        if (javaMethod) {
+                            nameStart = lastIdentStart;
+                            nameEnd = lastIdentEnd;
+                        }
+                        if (javaMethod || functionKeyword) {
+                            params = new ArrayList<>();
+                            collectingParams = true;
+                            paramsParenDepth = parenDepth + 1;
+                            paramsDepth = depth;
+                            expectFunctionName = false;
+                        }
+                    }
+                    parenDepth++;
+                }
+                case ')' -> {
+                    parenDepth--;
+                    if (collectingParams && parenDepth < paramsParenDepth) {
+                        addParam(line, params, paramStart, paramEnd);
+                        paramStart = -1;
+                        collectingParams = false;
+                    }
+                }
+                case ',' -> {
+                    if (collectingParams && parenDepth == paramsParenDepth && depth == paramsDepth
+                            && paramAngle == 0) {
+                        addParam(line, params, paramStart, paramEnd);
+                        paramStart = -1;
+                    }
+                }
+                case '[', '{' -> depth++;
+                case ']', '}' -> depth = Math.max(0, depth - 1);
+                case '<' -> {
+                    if (collectingParams) {
+                        paramAngle++;
+                    } else if (eqPos < 0) {
+                        depth++;
+                    }
+                }
+                case '>' -> {
+                    if (collectingParams) {
+                        paramAngle = Math.max(0, paramAngle - 1);
+                    } else if (eqPos < 0) {
+                        depth = Math.max(0, depth - 1);
+                    }
+                }
+                case '.' -> {
+                    if (eqPos < 0 && candEnd == i) {
+                        dotPending = true;
+                        i++;
+                        continue;
+                    }
+                }
+                case ':' -> {
+                    // Type annotation (TypeScript, Python) ends the assignable name
+                    if (eqPos < 0 && depth == 0 && parenDepth == 0) {
+                        annotation = true;
+                    }
+                }
+                case ';' -> {
+                    if (eqPos >= 0 && rhsEnd < 0) {
+                        rhsEnd = i;
+                    }
+                }
+                case '=' -> {
+                    equalsChar = true;
+                    char prev = i > start ? line.charAt(i - 1) : 0;
+                    char next = i + 1 < end ? line.charAt(i + 1) : 0;
+                    if (next == '=') {
+                        doubleEquals = true;
+                        i += 2;
+                        while (i < end && line.charAt(i) == '=') {
+                            i++;
+                        }
+                        dotPending = false;
+                        continue;
+                    }
+                    if (next == '>') {
+                        i += 2;
+                        dotPending = false;
+                        continue;
+                    }
+                    boolean comparison = prev == '!' || prev == '<' || prev == '>';
+                    if (!comparison && eqPos < 0 && (parenDepth == 0 || loop)) {
+                        eqPos = i;
+                    }
+                }
+                default -> { }
+            }
+            dotPending = false;
+            i++;
+        }
+
+        boolean functionDef = java
+                ? modifierFirst && params != null && line.charAt(end - 1) != ';'
+                : functionKeyword && (language != SupportedLanguage.PYTHON || nameStart >= 0);
+        boolean jsxElement = language == SupportedLanguage.REACT && line.charAt(start) == '<';
+        boolean assignment = eqPos >= 0 && !doubleEquals && !functionDef && !jsxElement;
+
+        String functionName = null;
+        if (functionDef) {
+            functionName = nameStart >= 0 ? line.substring(nameStart, nameEnd) : "anonymous";
+        }
+
+        String variableName = null;
+        String valueText = null;
+        if (assignment) {
+            if (candStart >= 0) {
+                variableName = line.substring(candStart, candEnd);
+            } else if (firstIdentStart >= 0) {
+                variableName = line.substring(firstIdentStart, firstIdentEnd);
+            } else {
+                variableName = "unknown";
+            }
+            int valueStart = eqPos + 1;
+            int valueEnd = rhsEnd >= 0 ? rhsEnd : end;
+            while (valueStart < valueEnd && Character.isWhitespace(line.charAt(valueStart))) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && Character.isWhitespace(line.charAt(valueEnd - 1))) {
+                valueEnd--;
+            }
+            valueText = line.substring(valueStart, valueEnd);
+        }
+
+        LineKind kind;
+        if (functionDef) {
+            kind = LineKind.FUNCTION_DEF;
+        } else if (condition) {
+            kind = LineKind.CONDITION;
+        } else if (loop) {
+            kind = LineKind.LOOP;
+        } else if (assignment) {
+            kind = LineKind.ASSIGNMENT;
+        } else if (print) {
+            kind = LineKind.PRINT;
+        } else if (returns) {
+            kind = LineKind.RETURN;
+        } else {
+            kind = LineKind.OTHER;
+        }
+
+        return new LineAnalysis(
+                line,
+                start,
+                end,
+                kind,
+                functionDef,
+                condition,
+                loop,
+                elseBranch,
+                assignment,
+                print,
+                returns,
+                firstParen >= 0 && !equalsChar,
+                functionName,
+                params != null ? params : List.of(),
+                variableName,
+                valueText);
+    }
+
+    private static void addParam(String line, List<String> params, int start, int end) {
+        if (start >= 0) {
+            params.add(line.substring(start, end));
+        }
+    }
+
+    private static boolean isBlank(String line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
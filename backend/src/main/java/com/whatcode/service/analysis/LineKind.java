@@ -0,0 +1,15 @@
+package com.whatcode.service.analysis;
+
+public enum LineKind {
+    BLANK,
+    COMMENT,
+    // Part of a statement that starts on an earlier line, or only closes a block
+    CONTINUATION,
+    FUNCTION_DEF,
+    CONDITION,
+    LOOP,
+    ASSIGNMENT,
+    PRINT,
+    RETURN,
+    OTHER
+}
@@ -0,0 +1,115 @@
+package com.whatcode.service.analysis;
+
+/**
+ * An in-place list change made by a source line: an element write
+ * ({@code xs[i] = v}), an append ({@code xs.append(v)}, {@code xs.push(v)},
+ * {@code xs.add(v)}) or a removal from the end ({@code xs.pop()}). Index and
+ * value are left as source text for the caller to evaluate.
+ */
+public record ListMutation(Kind kind, String target, String indexText, String valueText) {
+
+    public enum Kind { SET, PUSH, POP }
+
+    /** Returns the mutation {@code line} makes, or null when it makes none this parser recognizes. */
+    public static ListMutation parse(LineAnalysis line) {
+        String text = line.text().trim();
+        if (text.endsWith(";")) {
+            text = text.substring(0, text.length() - 1).trim();
+        }
+        int nameEnd = identifierEnd(text, 0);
+        if (nameEnd == 0 || nameEnd == text.length()) {
+            return null;
+        }
+        String target = text.substring(0, nameEnd);
+
+        if (line.assignment() && target.equals(line.variableName())) {
+            int open = skipSpaces(text, nameEnd);
+            if (open >= text.length() || text.charAt(open) != '[') {
+                return null;
+            }
+            int close = matching(text, open, '[', ']');
+            int eq = close < 0 ? -1 : skipSpaces(text, close + 1);
+            if (eq < 0 || eq >= text.length() || text.charAt(eq) != '=') {
+                return null;
+            }
+            return new ListMutation(Kind.SET, target, text.substring(open + 1, close).trim(), line.valueText());
+        }
+
+        if (!line.callLike() || text.charAt(nameEnd) != '.') {
+            return null;
+        }
+        int methodEnd = identifierEnd(text, nameEnd + 1);
+        String method = text.substring(nameEnd + 1, methodEnd);
+        if (methodEnd >= text.length() || text.charAt(methodEnd) != '('
+                || matching(text, methodEnd, '(', ')') != text.length() - 1) {
+            return null;
+        }
+        String argument = text.substring(methodEnd + 1, text.length() - 1).trim();
+        return switch (method) {
+            case "append", "push", "add" -> argument.isEmpty() || hasTopLevelComma(argument)
+                    ? null
+                    : new ListMutation(Kind.PUSH, target, null, argument);
+            case "pop" -> argument.isEmpty() ? new ListMutation(Kind.POP, target, null, null) : null;
+            default -> null;
+        };
+    }
+
+    private static int identifierEnd(String text, int start) {
+        int i = start;
+        while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_'
+                || text.charAt(i) == '$')) {
+            i++;
+        }
+        return i > start && !Character.isDigit(text.charAt(start)) ? i : start;
+    }
+
+    private static int skipSpaces(String text, int i) {
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    // Index of the bracket closing the one at 'open', or -1
+    private static int matching(String text, int open, char opening, char closing) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == opening) {
+                depth++;
+            } else if (c == closing && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasTopLevelComma(String text) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,455 @@
+package com.whatcode.service.analysis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.SourceHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the {@link SyntaxTree} of a program in one pass over its text.
+ * Python blocks follow indentation; the other languages follow braces,
+ * telling block braces from object and array literals by what precedes
+ * them. Brackets, strings and trailing operators continue a statement onto
+ * the next line. Each statement is then classified once by
+ * {@link LineAnalyzer}.
+ *
+ * <p>Trees are cached by language and source hash, so every trace of the
+ * same code, whatever its mode or window, shares one parse.
+ */
+@Component
+public class SyntaxParser {
+
+    private final LineAnalyzer lineAnalyzer;
+    private final Cache<String, SyntaxTree> trees;
+
+    public SyntaxParser(
+            LineAnalyzer lineAnalyzer,
+            @Value("${code.analysis.tree-cache-size:256}") long cacheSize
+    ) {
+        this.lineAnalyzer = lineAnalyzer;
+        this.trees = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+    }
+
+    public SyntaxTree parse(String code, SupportedLanguage language) {
+        return trees.get(language.getValue() + ":" + SourceHash.sha256(code),
+                key -> build(code.split("\n"), language));
+    }
+
+    public Cache<String, SyntaxTree> nativeCache() {
+        return trees;
+    }
+
+    SyntaxTree build(String[] lines, SupportedLanguage language) {
+        TreeBuilder builder = language == SupportedLanguage.PYTHON
+                ? new IndentedBuilder(lines, language)
+                : new BracedBuilder(lines, language);
+        return builder.build();
+    }
+
+    private abstract class TreeBuilder {
+        final String[] lines;
+        final SupportedLanguage language;
+        final LineAnalysis[] analyses;
+        final SyntaxTree.Block[] statements;
+        // End of each line's code, before any trailing comment
+        final int[] codeEnd;
+        final boolean[] commentLines;
+        final SyntaxTree.Block root = new SyntaxTree.Block(null, -1, -1, null);
+
+        TreeBuilder(String[] lines, SupportedLanguage language) {
+            this.lines = lines;
+            this.language = language;
+            this.analyses = new LineAnalysis[lines.length];
+            this.statements = new SyntaxTree.Block[lines.length];
+            this.codeEnd = new int[lines.length];
+            this.commentLines = new boolean[lines.length];
+        }
+
+        abstract void scan();
+
+        SyntaxTree build() {
+            scan();
+            for (int i = 0; i < lines.length; i++) {
+                if (analyses[i] != null) {
+                    continue;
+                }
+                LineAnalysis analysis = lineAnalyzer.analyze(lines[i], language);
+                if (analysis.isExecutable()) {
+                    // Inside a block comment, or only closing braces and brackets
+                    analysis = commentLines[i]
+                            ? LineAnalysis.comment(lines[i], analysis.start(), analysis.end())
+                            : LineAnalysis.continuation(lines[i]);
+                }
+                analyses[i] = analysis;
+            }
+            return new SyntaxTree(root, analyses, statements);
+        }
+
+        SyntaxTree.Block statement(int first, int last, SyntaxTree.Block parent) {
+            LineAnalysis analysis = first == last
+                    ? lineAnalyzer.analyze(lines[first], language)
+                    : lineAnalyzer.analyze(joined(first, last), language);
+            SyntaxTree.Block block = new SyntaxTree.Block(analysis, first, last, parent);
+            parent.add(block);
+            analyses[first] = analysis;
+            statements[first] = block;
+            for (int i = first + 1; i <= last; i++) {
+                analyses[i] = LineAnalysis.continuation(lines[i]);
+                statements[i] = block;
+            }
+            return block;
+        }
+
+        private String joined(int first, int last) {
+            StringBuilder text = new StringBuilder();
+            for (int i = first; i <= last; i++) {
+                String code = lines[i].substring(0, codeEnd[i]).strip();
+                if (!code.isEmpty()) {
+                    if (!text.isEmpty()) {
+                        text.append(' ');
+                    }
+                    text.append(code);
+                }
+            }
+            return text.toString();
+        }
+
+        char lastCodeChar(int line) {
+            for (int i = codeEnd[line] - 1; i >= 0; i--) {
+                if (!Character.isWhitespace(lines[line].charAt(i))) {
+                    return lines[line].charAt(i);
+                }
+            }
+            return 0;
+        }
+    }
+
+    /** Python: statements end at a line end outside brackets and strings; blocks are indented. */
+    private final class IndentedBuilder extends TreeBuilder {
+
+        IndentedBuilder(String[] lines, SupportedLanguage language) {
+            super(lines, language);
+        }
+
+        @Override
+        void scan() {
+            List<SyntaxTree.Block> open = new ArrayList<>(List.of(root));
+            List<Integer> indents = new ArrayList<>(List.of(-1));
+            int start = -1;
+            int indent = 0;
+            int depth = 0;
+            char triple = 0;
+            for (int line = 0; line < lines.length; line++) {
+                String text = lines[line];
+                codeEnd[line] = text.length();
+                if (start < 0) {
+                    int first = indentEnd(text);
+                    if (first == text.length() || text.charAt(first) == '#') {
+                        codeEnd[line] = first;
+                        continue;
+                    }
+                    start = line;
+                    indent = indentWidth(text, first);
+                    depth = 0;
+                }
+
+                int i = 0;
+                while (i < text.length()) {
+                    char c = text.charAt(i);
+                    if (triple != 0) {
+                        if (c == '\\') {
+                            i += 2;
+                            continue;
+                        }
+                        if (text.startsWith(String.valueOf(triple).repeat(3), i)) {
+                            triple = 0;
+                            i += 3;
+                            continue;
+                        }
+                        i++;
+                    } else if (c == '"' || c == '\'') {
+                        if (text.startsWith(String.valueOf(c).repeat(3), i)) {
+                            triple = c;
+                            i += 3;
+                        } else {
+                            i = stringEnd(text, i);
+                        }
+                    } else if (c == '#') {
+                        codeEnd[line] = i;
+                        break;
+                    } else {
+                        if (c == '(' || c == '[' || c == '{') {
+                            depth++;
+                        } else if (c == ')' || c == ']' || c == '}') {
+                            depth = Math.max(0, depth - 1);
+                        }
+                        i++;
+                    }
+                }
+
+                if (depth > 0 || triple != 0 || lastCodeChar(line) == '\\') {
+                    continue;
+                }
+                while (indents.get(indents.size() - 1) >= indent) {
+                    open.remove(open.size() - 1);
+                    indents.remove(indents.size() - 1);
+                }
+                SyntaxTree.Block block = statement(start, line, open.get(open.size() - 1));
+                if (lastCodeChar(line) == ':') {
+                    open.add(block);
+                    indents.add(indent);
+                }
+                start = -1;
+            }
+            if (start >= 0) {
+                while (indents.get(indents.size() - 1) >= indent) {
+                    open.remove(open.size() - 1);
+                    indents.remove(indents.size() - 1);
+                }
+                statement(start, lines.length - 1, open.get(open.size() - 1));
+            }
+        }
+
+        private static int indentEnd(String text) {
+            int i = 0;
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        // Tabs advance to the next multiple of 8, as in the Python tokenizer
+        private static int indentWidth(String text, int end) {
+            int width = 0;
+            for (int i = 0; i < end; i++) {
+                width = text.charAt(i) == '\t' ? (width / 8 + 1) * 8 : width + 1;
+            }
+            return width;
+        }
+    }
+
+    /**
+     * Java, TypeScript and React: a brace after {@code )}, an arrow, a
+     * keyword or a name opens a block; any other brace is a literal and
+     * continues the statement like a bracket. Statements end at a line end
+     * outside brackets unless the line ends in an operator or the next line
+     * starts with {@code .}.
+     */
+    private final class BracedBuilder extends TreeBuilder {
+
+        private final List<SyntaxTree.Block> open = new ArrayList<>();
+        // Bracket depth of the statement a block was opened in, restored when it closes
+        private final List<Integer> openDepths = new ArrayList<>();
+
+        BracedBuilder(String[] lines, SupportedLanguage language) {
+            super(lines, language);
+        }
+
+        @Override
+        void scan() {
+            open.add(root);
+            openDepths.add(0);
+            int start = -1;
+            int depth = 0;
+            // The rest of a statement whose block has just closed, as in "});"
+            boolean tail = false;
+            boolean blockComment = false;
+            char template = 0;
+            char last = 0;
+            char beforeLast = 0;
+            boolean afterReturn = false;
+            SyntaxTree.Block previous = null;
+            char previousEnd = 0;
+
+            for (int line = 0; line < lines.length; line++) {
+                String text = lines[line];
+                codeEnd[line] = text.length();
+                commentLines[line] = blockComment;
+                // Set once a block opens on this line, whose statement then owns the line
+                boolean taken = false;
+
+                int i = 0;
+                while (i < text.length()) {
+                    char c = text.charAt(i);
+                    if (blockComment) {
+                        if (text.startsWith("*/", i)) {
+                            blockComment = false;
+                            i += 2;
+                        } else {
+                            i++;
+                        }
+                        continue;
+                    }
+                    if (template != 0) {
+                        if (c == '\\') {
+                            i += 2;
+                            continue;
+                        }
+                        if (c == template) {
+                            template = 0;
+                        }
+                        i++;
+                        continue;
+                    }
+                    if (Character.isWhitespace(c)) {
+                        i++;
+                        continue;
+                    }
+                    if (text.startsWith("//", i)) {
+                        codeEnd[line] = i;
+                        break;
+                    }
+                    if (text.startsWith("/*", i)) {
+                        blockComment = true;
+                        i += 2;
+                        continue;
+                    }
+
+                    if (c == '}' && depth == 0 && open.size() > 1) {
+                        if (start >= 0) {
+                            previous = statement(start, line, top());
+                            start = -1;
+                        }
+                        SyntaxTree.Block closed = open.remove(open.size() - 1);
+                        closed.extend(line);
+                        depth = openDepths.remove(openDepths.size() - 1);
+                        tail = depth > 0;
+                        previous = closed;
+                        previousEnd = '}';
+                        last = '}';
+                        i++;
+                        continue;
+                    }
+                    if (start < 0 && !tail && !taken) {
+                        if (c == '{' && previous != null && previous.parent() == top() && !previous.hasBody()
+                                && previousEnd != ';' && previousEnd != '}') {
+                            // A brace on its own line opens the block of the statement before it
+                            open.add(previous);
+                            openDepths.add(0);
+                            taken = true;
+                            last = '{';
+                            i++;
+                            continue;
+                        }
+                        start = line;
+                        last = 0;
+                        beforeLast = 0;
+                        afterReturn = false;
+                    }
+
+                    if (c == '"' || c == '\'') {
+                        i = stringEnd(text, i);
+                        beforeLast = last;
+                        last = c;
+                        continue;
+                    }
+                    if (c == '`') {
+                        template = c;
+                        i++;
+                        beforeLast = last;
+                        last = c;
+                        continue;
+                    }
+                    if (Character.isJavaIdentifierPart(c)) {
+                        int end = i + 1;
+                        while (end < text.length() && Character.isJavaIdentifierPart(text.charAt(end))) {
+                            end++;
+                        }
+                        afterReturn = text.startsWith("return", i) && end - i == 6;
+                        beforeLast = last;
+                        last = text.charAt(end - 1);
+                        i = end;
+                        continue;
+                    }
+
+                    if (c == '{') {
+                        boolean block = last == ')'
+                                || last == '>' && (beforeLast == '=' || beforeLast == '-')
+                                || Character.isJavaIdentifierPart(last) && !afterReturn;
+                        if (block && start >= 0) {
+                            SyntaxTree.Block header = statement(start, line, top());
+                            open.add(header);
+                            openDepths.add(depth);
+                            depth = 0;
+                            start = -1;
+                            taken = true;
+                        } else if (block) {
+                            // A further block on a line another statement owns, as in
+                            // "if (a) { x(); } else { y(); }"; it belongs to that statement
+                            open.add(statements[line] != null ? statements[line] : top());
+                            openDepths.add(depth);
+                            depth = 0;
+                        } else {
+                            depth++;
+                        }
+                    } else if (c == '(' || c == '[') {
+                        depth++;
+                    } else if (c == ')' || c == ']' || c == '}') {
+                        depth = Math.max(0, depth - 1);
+                    }
+                    afterReturn = false;
+                    beforeLast = last;
+                    last = c;
+                    i++;
+                }
+
+                if (template != 0 || depth > 0) {
+                    continue;
+                }
+                tail = false;
+                if (start >= 0 && !continues(line, last, beforeLast)) {
+                    previous = statement(start, line, top());
+                    previousEnd = last;
+                    start = -1;
+                }
+            }
+            if (start >= 0) {
+                statement(start, lines.length - 1, top());
+            }
+        }
+
+        private SyntaxTree.Block top() {
+            return open.get(open.size() - 1);
+        }
+
+        private boolean continues(int line, char last, char beforeLast) {
+            boolean increment = (last == '+' || last == '-') && beforeLast == last;
+            if ("=+-*/%&|,.?(".indexOf(last) >= 0 && last != 0 && !increment) {
+                return true;
+            }
+            for (int next = line + 1; next < lines.length; next++) {
+                String text = lines[next].strip();
+                if (!text.isEmpty() && !text.startsWith("//")) {
+                    return text.startsWith(".") && !text.startsWith("..");
+                }
+            }
+            return false;
+        }
+    }
+
+    // Index just past the string starting at 'open'; strings end with their line
+    private static int stringEnd(String text, int open) {
+        char quote = text.charAt(open);
+        int i = open + 1;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            i++;
+            if (c == quote) {
+                break;
+            }
+        }
+        return i;
+    }
+}
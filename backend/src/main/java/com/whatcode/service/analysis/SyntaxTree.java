@@ -0,0 +1,194 @@
+package com.whatcode.service.analysis;
+
+import com.whatcode.dto.ControlFlow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The statement structure of one program, built by {@link SyntaxParser}:
+ * every statement, however many lines it spans, is a {@link Block}, and
+ * compound statements (functions, conditions, loops, classes) hold the
+ * statements of their body. Control flow edges and call stack frames are
+ * derived from this tree rather than from neighbouring lines.
+ *
+ * <p>Trees are shared between requests for the same code and never change
+ * after they are built.
+ */
+public final class SyntaxTree {
+
+    /** One statement and, for compound statements, its body. Lines are 0-based. */
+    public static final class Block {
+        private final LineAnalysis analysis;
+        private final int firstLine;
+        private final int headerEnd;
+        private final Block parent;
+        private final List<Block> children = new ArrayList<>();
+        private int lastLine;
+
+        Block(LineAnalysis analysis, int firstLine, int headerEnd, Block parent) {
+            this.analysis = analysis;
+            this.firstLine = firstLine;
+            this.headerEnd = headerEnd;
+            this.parent = parent;
+            this.lastLine = headerEnd;
+        }
+
+        /** The classification of the whole statement, continuation lines included. */
+        public LineAnalysis analysis() {
+            return analysis;
+        }
+
+        public int firstLine() {
+            return firstLine;
+        }
+
+        /** Last line of the statement itself, before any body. */
+        public int headerEnd() {
+            return headerEnd;
+        }
+
+        /** Last line of the statement including its body and closing brace. */
+        public int lastLine() {
+            return lastLine;
+        }
+
+        public Block parent() {
+            return parent;
+        }
+
+        public List<Block> children() {
+            return Collections.unmodifiableList(children);
+        }
+
+        public boolean hasBody() {
+            return lastLine > headerEnd;
+        }
+
+        void add(Block child) {
+            children.add(child);
+            extend(child.lastLine);
+        }
+
+        void extend(int line) {
+            for (Block block = this; block != null && block.lastLine < line; block = block.parent) {
+                block.lastLine = line;
+            }
+        }
+    }
+
+    private final Block root;
+    private final LineAnalysis[] analyses;
+    private final Block[] statements;
+
+    SyntaxTree(Block root, LineAnalysis[] analyses, Block[] statements) {
+        this.root = root;
+        this.analyses = analyses;
+        this.statements = statements;
+    }
+
+    /** The top-level statements. */
+    public List<Block> statements() {
+        return root.children();
+    }
+
+    /**
+     * One analysis per line. A statement's first line carries the analysis
+     * of the whole statement; its other lines and lines that only close a
+     * block are {@link LineKind#CONTINUATION}. The array is shared and must
+     * not be modified.
+     */
+    public LineAnalysis[] analyses() {
+        return analyses;
+    }
+
+    public int lineCount() {
+        return analyses.length;
+    }
+
+    /** The statement covering {@code line}, or null for blank, comment and block-closing lines. */
+    public Block statementAt(int line) {
+        return line >= 0 && line < statements.length ? statements[line] : null;
+    }
+
+    /** The analysis of the statement covering {@code line}, or of the line itself. */
+    public LineAnalysis analysisAt(int line) {
+        Block statement = statementAt(line);
+        return statement != null ? statement.analysis : analyses[line];
+    }
+
+    /** First line of the statement covering {@code line}; {@code line} itself when none does. */
+    public int statementStart(int line) {
+        Block statement = statementAt(line);
+        return statement != null ? statement.firstLine : line;
+    }
+
+    /** The functions whose definition encloses {@code line}, outermost first. */
+    public List<Block> functionsAt(int line) {
+        List<Block> functions = new ArrayList<>();
+        for (Block block = statementAt(line); block != null && block != root; block = block.parent) {
+            if (block.analysis.functionDef()) {
+                functions.add(block);
+            }
+        }
+        Collections.reverse(functions);
+        return functions;
+    }
+
+    /**
+     * The control flow edge for execution moving from line {@code from} to
+     * line {@code to}: a back edge to an enclosing loop, a branch out of a
+     * condition (taken when it enters the condition's body), entry to and
+     * exit from a function, or a sequential step.
+     */
+    public ControlFlow flow(int from, int to) {
+        Block previous = statementAt(from);
+        Block current = statementAt(to);
+        String type = "sequential";
+        Boolean condition = null;
+        // Lines of one statement follow each other sequentially
+        if (previous != null && current != null && previous != current) {
+            // A definition runs in the scope around it; only its body is inside the function
+            Block entered = innermostFunction(current.parent);
+            Block left = innermostFunction(previous.parent);
+            if (current.analysis.loop() && within(previous, current)) {
+                type = "loop";
+            } else if (previous.analysis.loop()) {
+                type = "loop";
+            } else if (previous.analysis.condition()) {
+                type = "branch";
+                condition = previous.hasBody() ? within(current, previous) : !current.analysis.elseBranch();
+            } else if (current.analysis.returns()) {
+                type = "return";
+            } else if (entered != null && !within(previous, entered)) {
+                type = "call";
+            } else if (left != null && !within(current, left)) {
+                type = "return";
+            } else if (to <= from) {
+                type = "loop";
+            }
+        }
+        return ControlFlow.builder()
+                .fromLine(from + 1)
+                .toLine(to + 1)
+                .type(type)
+                .condition(condition)
+                .build();
+    }
+
+    // Whether 'block' is 'ancestor' or part of its body
+    private static boolean within(Block block, Block ancestor) {
+        while (block != null && block != ancestor) {
+            block = block.parent;
+        }
+        return block != null;
+    }
+
+    private Block innermostFunction(Block block) {
+        while (block != null && block != root && !block.analysis.functionDef()) {
+            block = block.parent;
+        }
+        return block != root ? block : null;
+    }
+}
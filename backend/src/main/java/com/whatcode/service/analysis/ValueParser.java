@@ -0,0 +1,149 @@
+package com.whatcode.service.analysis;
+
+import com.whatcode.model.SupportedLanguage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the right-hand side of an assignment into a display value without
+ * regular expressions or exception-driven number parsing.
+ */
+public final class ValueParser {
+
+    private ValueParser() {
+    }
+
+    public static Object parse(String text, SupportedLanguage language, Map<String, Object> existingVars) {
+        if (text == null || text.isEmpty()) {
+            return "value";
+        }
+
+        Object number = parseNumber(text, 0, text.length());
+        if (number != null) {
+            return number;
+        }
+
+        char first = text.charAt(0);
+        if (first == '"' || first == '\'') {
+            return text.length() >= 2 ? text.substring(1, text.length() - 1) : "";
+        }
+        if (first == '[' || (first == '{' && language == SupportedLanguage.JAVA)) {
+            return parseList(text, 0, text.length());
+        }
+        if (first == '{') {
+            // A new list each time, since the trace tells objects apart by identity
+            return new ArrayList<>();
+        }
+        int brace = text.indexOf('{');
+        if (brace > 0 && text.startsWith("new ")) {
+            return parseList(text, brace, text.length());
+        }
+        if (existingVars.containsKey(text)) {
+            return existingVars.get(text);
+        }
+        return "value";
+    }
+
+    // Parses the bracketed list that opens at 'open', splitting only on
+    // top-level commas so nested lists stay nested.
+    private static List<Object> parseList(String text, int open, int limit) {
+        char closeChar = text.charAt(open) == '{' ? '}' : ']';
+        List<Object> list = new ArrayList<>();
+        int depth = 0;
+        int itemStart = open + 1;
+        char quote = 0;
+        for (int i = open + 1; i < limit; i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '[' || c == '{' || c == '(') {
+                depth++;
+            } else if (depth > 0 && (c == ']' || c == '}' || c == ')')) {
+                depth--;
+            } else if (depth == 0 && (c == ',' || c == closeChar)) {
+                addItem(text, itemStart, i, list);
+                itemStart = i + 1;
+                if (c == closeChar) {
+                    break;
+                }
+            }
+        }
+        return list;
+    }
+
+    private static void addItem(String text, int start, int end, List<Object> list) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        char first = text.charAt(start);
+        if (first == '[' || first == '{') {
+            list.add(parseList(text, start, end));
+            return;
+        }
+        Object number = parseNumber(text, start, end);
+        if (number != null) {
+            list.add(number);
+            return;
+        }
+        if ((first == '"' || first == '\'') && end - start >= 2 && text.charAt(end - 1) == first) {
+            list.add(text.substring(start + 1, end - 1));
+            return;
+        }
+        list.add(text.substring(start, end));
+    }
+
+    /**
+     * Returns an Integer or Double when [start, end) is a plain decimal
+     * literal, or null otherwise.
+     */
+    static Object parseNumber(String text, int start, int end) {
+        int i = start;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        int dots = 0;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && dots == 0) {
+                dots++;
+            } else {
+                return null;
+            }
+        }
+        if (digits == 0) {
+            return null;
+        }
+        if (dots > 0) {
+            return Double.parseDouble(text.substring(start, end));
+        }
+        if (digits <= 9) {
+            int value = 0;
+            boolean negative = text.charAt(start) == '-';
+            for (int k = start; k < end; k++) {
+                char c = text.charAt(k);
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                }
+            }
+            return negative ? -value : value;
+        }
+        return null;
+    }
+}
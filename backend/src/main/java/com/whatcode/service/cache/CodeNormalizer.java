@@ -0,0 +1,140 @@
+package com.whatcode.service.cache;
+
+import com.whatcode.model.SupportedLanguage;
+
+/**
+ * Produces a canonical form of a submission for cache keys: comments are
+ * removed and runs of whitespace collapsed, while string literals (including
+ * Python triple-quoted strings and Java text blocks), line structure
+ * (visualizations refer to line numbers) and, for Python, leading
+ * indentation are preserved.
+ *
+ * <p>TypeScript and React code only loses whitespace at the ends of lines:
+ * a {@code //} or a run of spaces inside a regex literal or JSX text is part
+ * of the program, and telling those apart from comments takes a parser.
+ */
+public final class CodeNormalizer {
+
+    private CodeNormalizer() {
+    }
+
+    public static String normalize(String code, SupportedLanguage language) {
+        boolean python = language == SupportedLanguage.PYTHON;
+        boolean java = language == SupportedLanguage.JAVA;
+        boolean script = !python && !java;
+        StringBuilder out = new StringBuilder(code.length());
+        int n = code.length();
+
+        // Open string state carried across characters (and lines, for
+        // triple-quoted Python strings, Java text blocks and template literals)
+        String openQuote = null;
+        boolean blockComment = false;
+        boolean lineStart = true;
+        boolean pendingSpace = false;
+        int lineMark = 0;
+
+        for (int i = 0; i < n; i++) {
+            char c = code.charAt(i);
+
+            if (c == '\r') {
+                continue;
+            }
+            if (c == '\n') {
+                if (openQuote != null && openQuote.length() == 1 && openQuote.charAt(0) != '`') {
+                    openQuote = null; // unterminated single-line string
+                }
+                if (openQuote != null) {
+                    out.append(c);
+                    continue;
+                }
+                trimTrailing(out, lineMark);
+                out.append('\n');
+                lineMark = out.length();
+                lineStart = true;
+                pendingSpace = false;
+                continue;
+            }
+
+            if (blockComment) {
+                if (c == '*' && i + 1 < n && code.charAt(i + 1) == '/') {
+                    blockComment = false;
+                    i++;
+                }
+                continue;
+            }
+
+            if (openQuote != null) {
+                out.append(c);
+                if (c == '\\' && i + 1 < n) {
+                    out.append(code.charAt(++i));
+                } else if (code.startsWith(openQuote, i)) {
+                    out.append(openQuote, 1, openQuote.length());
+                    i += openQuote.length() - 1;
+                    openQuote = null;
+                }
+                continue;
+            }
+
+            if (Character.isWhitespace(c)) {
+                if (lineStart) {
+                    if (python) {
+                        out.append(c);
+                    }
+                } else if (script) {
+                    out.append(c);
+                } else {
+                    pendingSpace = true;
+                }
+                continue;
+            }
+
+            if (python ? c == '#' : java && c == '/' && i + 1 < n && code.charAt(i + 1) == '/') {
+                while (i + 1 < n && code.charAt(i + 1) != '\n') {
+                    i++;
+                }
+                continue;
+            }
+            if (java && c == '/' && i + 1 < n && code.charAt(i + 1) == '*') {
+                blockComment = true;
+                i++;
+                continue;
+            }
+
+            if (pendingSpace) {
+                out.append(' ');
+                pendingSpace = false;
+            }
+            lineStart = false;
+
+            if (c == '"' || c == '\'' || c == '`') {
+                String quote = String.valueOf(c);
+                if ((python || java && c == '"') && code.startsWith(quote.repeat(3), i)) {
+                    quote = quote.repeat(3);
+                }
+                out.append(quote);
+                i += quote.length() - 1;
+                openQuote = quote;
+                continue;
+            }
+            out.append(c);
+        }
+        trimTrailing(out, lineMark);
+
+        // Blank lines at the end carry no meaning
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == '\n') {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    private static void trimTrailing(StringBuilder out, int lineMark) {
+        int end = out.length();
+        while (end > lineMark && Character.isWhitespace(out.charAt(end - 1))) {
+            end--;
+        }
+        // A line left with only indentation is blank
+        out.setLength(end);
+    }
+}
@@ -0,0 +1,114 @@
+package com.whatcode.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.whatcode.dto.CacheStatistics;
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.SourceHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, content-addressed cache of visualization results.
+ * Keys hash the normalized code, the language and a request variant, so
+ * submissions that differ only in whitespace or comments share an entry.
+ * Concurrent misses for the same key are coalesced into one computation.
+ */
+@Component
+public class ResultCache {
+
+    private final boolean enabled;
+    private final Cache<String, CodeExecutionResponse> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<CodeExecutionResponse>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public ResultCache(
+            @Value("${code.cache.enabled:true}") boolean enabled,
+            @Value("${code.cache.max-entries:1000}") long maxEntries,
+            @Value("${code.cache.ttl-seconds:600}") long ttlSeconds
+    ) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public static String key(String variant, String code, SupportedLanguage language) {
+        return SourceHash.sha256(language.getValue() + '\0' + variant + '\0' + CodeNormalizer.normalize(code, language));
+    }
+
+    /**
+     * Returns the cached response for the key, or computes it once no matter
+     * how many callers ask concurrently. Only successful responses are kept.
+     */
+    public CodeExecutionResponse getOrCompute(String key, Supplier<CodeExecutionResponse> compute) {
+        if (!enabled) {
+            return compute.get();
+        }
+
+        CodeExecutionResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<CodeExecutionResponse> mine = new CompletableFuture<>();
+        CompletableFuture<CodeExecutionResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            CodeExecutionResponse response = compute.get();
+            if (response.isSuccess()) {
+                cache.put(key, response);
+            }
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    public Cache<String, CodeExecutionResponse> nativeCache() {
+        return cache;
+    }
+
+    public CacheStatistics statistics() {
+        var stats = cache.stats();
+        return CacheStatistics.builder()
+                .enabled(enabled)
+                .size(cache.estimatedSize())
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictions(stats.evictionCount())
+                .coalesced(coalesced.sum())
+                .build();
+    }
+}
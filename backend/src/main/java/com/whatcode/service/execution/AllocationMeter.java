@@ -0,0 +1,37 @@
+package com.whatcode.service.execution;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes one thread has allocated since {@link #begin}, for engines that run
+ * submissions inside the server JVM and bound their memory as an allocation
+ * budget. Reads zero where the JVM does not count allocations per thread.
+ */
+final class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private volatile long threadId = -1;
+    private volatile long allocatedAtStart;
+
+    /** Starts counting for the calling thread. */
+    void begin() {
+        if (THREADS != null) {
+            allocatedAtStart = THREADS.getCurrentThreadAllocatedBytes();
+            threadId = Thread.currentThread().threadId();
+        }
+    }
+
+    long allocated() {
+        long id = threadId;
+        return id < 0 ? 0 : THREADS.getThreadAllocatedBytes(id) - allocatedAtStart;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,258 @@
+package com.whatcode.service.execution;
+
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.ConstantDynamic;
+import org.springframework.asm.Handle;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks what compiled submissions reach for. Every class a submission's
+ * bytecode names, and every method or field it calls or reads, must be its
+ * own or come from the parts of the JDK a program can use without leaving
+ * its run: the core of java.lang, collections, streams, concurrency, math,
+ * text and time, and console I/O. Reflection, class loading, processes,
+ * files, the network and JVM-wide switches such as System.exit are refused.
+ * So is running code on another thread, whether one the submission starts
+ * or a shared pool's (parallel streams, ForkJoin tasks, async completions),
+ * since the run's limits only follow its own thread.
+ *
+ * <p>The check works on bytecode rather than source, so spacing, comments,
+ * unicode escapes and string literals neither hide a call nor trip one.
+ */
+final class BytecodeAllowlist {
+
+    private static final List<String> PACKAGE_TREES = List.of(
+            "java/util/", "java/math/", "java/text/", "java/time/");
+    private static final List<String> DENIED_PACKAGE_TREES = List.of(
+            "java/util/jar/", "java/util/logging/", "java/util/prefs/", "java/util/spi/", "java/util/zip/");
+    private static final Set<String> IO_CLASSES = Set.of(
+            "java/io/BufferedOutputStream", "java/io/BufferedReader", "java/io/BufferedWriter", "java/io/Closeable",
+            "java/io/EOFException", "java/io/Flushable", "java/io/InputStream", "java/io/InputStreamReader",
+            "java/io/IOException", "java/io/OutputStream", "java/io/OutputStreamWriter", "java/io/PrintStream",
+            "java/io/PrintWriter", "java/io/Reader", "java/io/Serializable", "java/io/StringReader",
+            "java/io/StringWriter", "java/io/UncheckedIOException", "java/io/Writer");
+    // Inside the allowed packages, by class name prefix so nested classes go too
+    private static final List<String> DENIED_CLASSES = List.of(
+            "java/lang/ClassLoader", "java/lang/Module", "java/lang/Package", "java/lang/Process",
+            "java/lang/SecurityManager", "java/lang/StackWalker", "java/lang/Thread$", "java/lang/ThreadGroup",
+            "java/util/ServiceLoader", "java/util/Timer", "java/util/concurrent/CountedCompleter",
+            "java/util/concurrent/Executors", "java/util/concurrent/ForkJoin", "java/util/concurrent/Recursive",
+            "java/util/concurrent/ScheduledThreadPoolExecutor", "java/util/concurrent/SubmissionPublisher",
+            "java/util/concurrent/ThreadPoolExecutor", "java/util/stream/StreamSupport");
+    // Classes of which only these members may be used
+    private static final Map<String, Set<String>> ONLY_MEMBERS = Map.of(
+            "java/lang/System", Set.of("out", "err", "in", "currentTimeMillis", "nanoTime", "arraycopy",
+                    "identityHashCode", "lineSeparator"),
+            "java/lang/Runtime", Set.of("getRuntime", "availableProcessors", "freeMemory", "totalMemory", "maxMemory"),
+            "java/lang/Thread", Set.of("currentThread", "sleep", "onSpinWait", "yield", "interrupted", "isInterrupted",
+                    "interrupt", "getName", "getId", "threadId", "getStackTrace", "holdsLock"));
+    // Members refused by name prefix
+    private static final Map<String, List<String>> DENIED_MEMBERS = Map.of(
+            "java/lang/Class", List.of("forName", "getClassLoader", "getConstructor", "getDeclared", "getEnclosing",
+                    "getField", "getMethod", "getModule", "getPackage", "getProtectionDomain", "getRecordComponents",
+                    "getResource", "newInstance"),
+            "java/util/concurrent/CompletableFuture", List.of("completeOnTimeout", "defaultExecutor",
+                    "delayedExecutor", "orTimeout"));
+    // Members of every class in these packages, by name prefix: parallel streams and sorts use the common pool
+    private static final Map<String, List<String>> DENIED_PACKAGE_MEMBERS = Map.of(
+            "java/util/", List.of("parallel"),
+            "java/util/stream/", List.of("parallel"));
+    // Constructors that open the file their first argument names
+    private static final Set<String> FILE_CONSTRUCTORS = Set.of(
+            "java/io/PrintStream", "java/io/PrintWriter", "java/util/Formatter");
+    // Bootstrap methods javac uses for lambdas, string concatenation, records and pattern switches
+    private static final Set<String> BOOTSTRAPS = Set.of(
+            "java/lang/invoke/LambdaMetafactory", "java/lang/invoke/StringConcatFactory",
+            "java/lang/runtime/ObjectMethods", "java/lang/runtime/SwitchBootstraps");
+
+    private BytecodeAllowlist() {
+    }
+
+    /**
+     * Checks a compiled program's classes, keyed by binary name, and throws
+     * {@link JavaProgramCompiler.CompilationException} naming the line of the
+     * first use that is not allowed.
+     */
+    static void check(Map<String, byte[]> classes) {
+        Map<String, String> superclasses = new HashMap<>();
+        for (byte[] bytes : classes.values()) {
+            ClassReader reader = new ClassReader(bytes);
+            superclasses.put(reader.getClassName(), reader.getSuperName());
+        }
+        for (byte[] bytes : classes.values()) {
+            new ClassReader(bytes).accept(new Checker(superclasses), ClassReader.SKIP_FRAMES);
+        }
+    }
+
+    private static final class Checker extends ClassVisitor {
+
+        private final Map<String, String> superclasses;
+
+        Checker(Map<String, String> superclasses) {
+            super(Opcodes.ASM9);
+            this.superclasses = superclasses;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            if (superName != null) {
+                checkClass(superName, 0);
+            }
+            for (String type : interfaces) {
+                checkClass(type, 0);
+            }
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                         String[] exceptions) {
+            return new MethodVisitor(Opcodes.ASM9) {
+                private int line;
+
+                @Override
+                public void visitLineNumber(int line, Label start) {
+                    this.line = line;
+                }
+
+                @Override
+                public void visitTypeInsn(int opcode, String type) {
+                    checkClass(type, line);
+                }
+
+                @Override
+                public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+                    checkType(Type.getType(descriptor), line);
+                }
+
+                @Override
+                public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                    if (type != null) {
+                        checkClass(type, line);
+                    }
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                    checkMember(owner, name, descriptor, line);
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String descriptor,
+                                            boolean isInterface) {
+                    checkMember(owner, name, descriptor, line);
+                }
+
+                @Override
+                public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                                   Object... bootstrapMethodArguments) {
+                    if (!BOOTSTRAPS.contains(bootstrapMethodHandle.getOwner())) {
+                        refuse(display(bootstrapMethodHandle.getOwner()), line);
+                    }
+                    for (Object argument : bootstrapMethodArguments) {
+                        checkConstant(argument, line);
+                    }
+                }
+
+                @Override
+                public void visitLdcInsn(Object value) {
+                    checkConstant(value, line);
+                }
+            };
+        }
+
+        private void checkConstant(Object value, int line) {
+            if (value instanceof Type type) {
+                checkType(type, line);
+            } else if (value instanceof Handle handle) {
+                checkMember(handle.getOwner(), handle.getName(), handle.getDesc(), line);
+            } else if (value instanceof ConstantDynamic) {
+                refuse("dynamic constants", line);
+            }
+        }
+
+        private void checkType(Type type, int line) {
+            if (type.getSort() == Type.METHOD) {
+                checkType(type.getReturnType(), line);
+                for (Type argument : type.getArgumentTypes()) {
+                    checkType(argument, line);
+                }
+            } else if (type.getSort() == Type.ARRAY) {
+                checkType(type.getElementType(), line);
+            } else if (type.getSort() == Type.OBJECT) {
+                checkClass(type.getInternalName(), line);
+            }
+        }
+
+        private void checkClass(String name, int line) {
+            if (name.startsWith("[")) {
+                checkType(Type.getType(name), line);
+            } else if (!superclasses.containsKey(name) && !allowedClass(name)) {
+                refuse(display(name), line);
+            }
+        }
+
+        // A member reached through a submission class is checked against the JDK class it inherits from
+        private void checkMember(String owner, String name, String descriptor, int line) {
+            checkClass(owner, line);
+            String jdkOwner = owner;
+            while (superclasses.containsKey(jdkOwner)) {
+                jdkOwner = superclasses.get(jdkOwner);
+            }
+            if (jdkOwner == null || jdkOwner.startsWith("[")) {
+                return;
+            }
+            Set<String> only = ONLY_MEMBERS.get(jdkOwner);
+            List<String> denied = DENIED_MEMBERS.getOrDefault(jdkOwner, List.of());
+            boolean refused = only != null && !only.contains(name)
+                    || denied.stream().anyMatch(name::startsWith)
+                    || DENIED_PACKAGE_MEMBERS.getOrDefault(packageOf(jdkOwner), List.of()).stream()
+                    .anyMatch(name::startsWith)
+                    // *Async completions and ConcurrentHashMap's bulk operations, whose first argument
+                    // is a parallelism threshold, run on the common pool
+                    || jdkOwner.startsWith("java/util/concurrent/") && name.endsWith("Async")
+                    || jdkOwner.equals("java/util/concurrent/ConcurrentHashMap") && descriptor.startsWith("(J")
+                    || FILE_CONSTRUCTORS.contains(jdkOwner) && name.equals("<init>")
+                    && descriptor.startsWith("(Ljava/lang/String;");
+            if (refused) {
+                refuse(display(jdkOwner) + "." + (name.equals("<init>") ? "new" : name), line);
+            }
+        }
+
+        private static void refuse(String what, int line) {
+            String where = line > 0 ? "Line " + line + ": " : "";
+            throw new JavaProgramCompiler.CompilationException(where + what + " is not allowed in submissions");
+        }
+
+        private static String packageOf(String internalName) {
+            return internalName.substring(0, internalName.lastIndexOf('/') + 1);
+        }
+
+        private static String display(String internalName) {
+            return internalName.replace('/', '.');
+        }
+    }
+
+    private static boolean allowedClass(String name) {
+        if (DENIED_CLASSES.stream().anyMatch(name::startsWith)) {
+            return false;
+        }
+        if (name.startsWith("java/lang/") && name.indexOf('/', "java/lang/".length()) < 0) {
+            return true;
+        }
+        if (IO_CLASSES.contains(name)) {
+            return true;
+        }
+        return PACKAGE_TREES.stream().anyMatch(name::startsWith)
+                && DENIED_PACKAGE_TREES.stream().noneMatch(name::startsWith);
+    }
+}
@@ -0,0 +1,24 @@
+package com.whatcode.service.execution;
+
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+
+/**
+ * Receives the events of a Java run traced by {@link JavaDebugEngine}. Line
+ * and exit events arrive with the submission's thread suspended, so the
+ * listener can read its frames; field writes arrive without suspending
+ * anything. Returning false from a suspending event stops tracing, and the
+ * program runs on untraced.
+ */
+public interface DebugListener {
+
+    /** The thread is about to run the line at the event's location. */
+    boolean lineReached(LocatableEvent event);
+
+    /** A submission method is returning; its frame is still on the stack. */
+    boolean methodExiting(MethodExitEvent event);
+
+    /** A field declared by a submission class was assigned. */
+    void fieldModified(ModificationWatchpointEvent event);
+}
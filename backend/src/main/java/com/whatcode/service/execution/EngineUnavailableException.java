@@ -0,0 +1,16 @@
+package com.whatcode.service.execution;
+
+/**
+ * Thrown when no execution worker could be obtained in time, either because
+ * the pool is saturated or because workers fail to start.
+ */
+public class EngineUnavailableException extends RuntimeException {
+
+    public EngineUnavailableException(String message) {
+        super(message);
+    }
+
+    public EngineUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
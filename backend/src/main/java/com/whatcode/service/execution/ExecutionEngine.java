@@ -0,0 +1,14 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.model.SupportedLanguage;
+
+/**
+ * Runs submitted code for one language. Implementations are discovered as
+ * Spring beans by {@link ExecutionEngineRegistry}.
+ */
+public interface ExecutionEngine {
+
+    SupportedLanguage language();
+
+    ExecutionResult execute(ExecutionTask task);
+}
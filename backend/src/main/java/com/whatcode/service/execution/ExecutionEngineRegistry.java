@@ -0,0 +1,31 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.model.SupportedLanguage;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the execution engine for each language. Languages without a
+ * configured engine fall back to {@link StubExecutionEngine}.
+ */
+@Component
+public class ExecutionEngineRegistry {
+
+    private final Map<SupportedLanguage, ExecutionEngine> engines = new EnumMap<>(SupportedLanguage.class);
+
+    public ExecutionEngineRegistry(List<ExecutionEngine> available) {
+        for (ExecutionEngine engine : available) {
+            engines.putIfAbsent(engine.language(), engine);
+        }
+        for (SupportedLanguage language : SupportedLanguage.values()) {
+            engines.putIfAbsent(language, new StubExecutionEngine(language));
+        }
+    }
+
+    public ExecutionEngine engineFor(SupportedLanguage language) {
+        return engines.get(language);
+    }
+}
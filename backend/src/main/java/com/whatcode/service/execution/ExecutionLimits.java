@@ -0,0 +1,8 @@
+package com.whatcode.service.execution;
+
+/**
+ * Per-run resource limits applied inside the worker (rlimits) in addition to
+ * the wall-clock timeout carried by each {@link ExecutionTask}.
+ */
+public record ExecutionLimits(int cpuSeconds, long memoryBytes, int maxOutputBytes) {
+}
@@ -0,0 +1,26 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.dto.LineProfile;
+
+public record ExecutionResult(boolean success, String stdout, String stderr, boolean timedOut, LineProfile profile) {
+
+    public ExecutionResult(boolean success, String stdout, String stderr, boolean timedOut) {
+        this(success, stdout, stderr, timedOut, null);
+    }
+
+    public static ExecutionResult success(String stdout, String stderr) {
+        return new ExecutionResult(true, stdout, stderr, false);
+    }
+
+    public static ExecutionResult failure(String stdout, String stderr) {
+        return new ExecutionResult(false, stdout, stderr, false);
+    }
+
+    public static ExecutionResult timeout(String stdout) {
+        return new ExecutionResult(false, stdout, "Execution timed out", true);
+    }
+
+    public ExecutionResult withProfile(LineProfile profile) {
+        return new ExecutionResult(success, stdout, stderr, timedOut, profile);
+    }
+}
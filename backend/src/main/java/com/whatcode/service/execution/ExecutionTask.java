@@ -0,0 +1,19 @@
+package com.whatcode.service.execution;
+
+import java.time.Duration;
+
+/**
+ * One run of submitted code. With {@code profile}, engines that can profile
+ * also report per-line hit counts and times in {@link ExecutionResult#profile()}.
+ * A non-null {@code output} is given the run's output while it runs.
+ */
+public record ExecutionTask(String code, String stdin, Duration timeout, boolean profile, OutputListener output) {
+
+    public ExecutionTask(String code, String stdin, Duration timeout) {
+        this(code, stdin, timeout, false, null);
+    }
+
+    public ExecutionTask(String code, String stdin, Duration timeout, boolean profile) {
+        this(code, stdin, timeout, profile, null);
+    }
+}
@@ -0,0 +1,133 @@
+package com.whatcode.service.execution;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a single Java source unit entirely in memory: the source is read
+ * from a string and class files are written to byte arrays, so no temporary
+ * files are involved.
+ */
+public class InMemoryJavaCompiler {
+
+    private static final List<String> OPTIONS = List.of("-g", "-proc:none", "-Xlint:none");
+
+    private final JavaCompiler compiler;
+
+    public InMemoryJavaCompiler() {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler; the server must run on a JDK");
+        }
+    }
+
+    public static boolean isAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    public Result compile(String className, String source) {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, byte[]> classes = new HashMap<>();
+
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+             MemoryFileManager fileManager = new MemoryFileManager(standard, classes)) {
+            boolean ok = compiler.getTask(null, fileManager, diagnostics, OPTIONS, null,
+                    List.of(new SourceFile(className, source))).call();
+            if (!ok) {
+                return new Result(null, formatDiagnostics(diagnostics));
+            }
+        } catch (IOException e) {
+            return new Result(null, "Compilation failed: " + e.getMessage());
+        }
+        return new Result(Map.copyOf(classes), null);
+    }
+
+    private static String formatDiagnostics(DiagnosticCollector<JavaFileObject> diagnostics) {
+        StringBuilder message = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            message.append("Line ").append(diagnostic.getLineNumber()).append(": ")
+                    .append(diagnostic.getMessage(null)).append('\n');
+        }
+        return message.toString();
+    }
+
+    /**
+     * Compiled class files by binary name, or the compiler errors when
+     * compilation failed.
+     */
+    public record Result(Map<String, byte[]> classes, String errors) {
+
+        public boolean success() {
+            return classes != null;
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final String className;
+        private final Map<String, byte[]> classes;
+
+        ClassFile(String className, Map<String, byte[]> classes) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+            this.classes = classes;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    classes.put(className, toByteArray());
+                }
+            };
+        }
+    }
+
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        private final Map<String, byte[]> classes;
+
+        MemoryFileManager(JavaFileManager delegate, Map<String, byte[]> classes) {
+            super(delegate);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            return new ClassFile(className, classes);
+        }
+    }
+}
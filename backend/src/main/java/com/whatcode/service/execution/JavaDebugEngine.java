@@ -0,0 +1,79 @@
+package com.whatcode.service.execution;
+
+import com.sun.jdi.VMDisconnectedException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Runs Java submissions in a pool of pre-launched JVMs under the Java Debug
+ * Interface, so a tracer can observe them line by line. Submissions are
+ * compiled here, with the same rules and bytecode cache as in-process
+ * execution, and loaded by the debuggee in a throwaway class loader per run.
+ */
+public class JavaDebugEngine implements AutoCloseable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ExecutionLimits limits;
+    private final boolean singleStep;
+    private final JavaProgramCompiler compiler;
+    private final ScheduledExecutorService watchdog;
+    private final WorkerPool<JavaDebuggee> pool;
+
+    public JavaDebugEngine(
+            List<String> command,
+            WorkerPool.PoolSettings poolSettings,
+            ExecutionLimits limits,
+            int bytecodeCacheSize,
+            boolean singleStep
+    ) {
+        this.limits = limits;
+        this.singleStep = singleStep;
+        this.compiler = new JavaProgramCompiler(bytecodeCacheSize);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        this.pool = new WorkerPool<>(
+                "java-debuggee",
+                () -> JavaDebuggee.start(command, STARTUP_TIMEOUT, watchdog),
+                poolSettings);
+        this.pool.prewarm();
+    }
+
+    /**
+     * Compiles and runs the task, reporting its events to {@code listener}.
+     * A program that does not compile is reported as a failed result without
+     * any events.
+     */
+    public ExecutionResult debug(ExecutionTask task, DebugListener listener) {
+        JavaProgramCompiler.Program program;
+        try {
+            program = compiler.compile(task.code());
+        } catch (JavaProgramCompiler.CompilationException e) {
+            return ExecutionResult.failure("", e.getMessage());
+        }
+
+        JavaDebuggee debuggee = pool.acquire();
+        // Stays false if the listener fails mid-run, which leaves the
+        // debuggee suspended; such a debuggee is never handed out again
+        boolean healthy = false;
+        try {
+            ExecutionResult result = debuggee.run(program, task.stdin(), limits.maxOutputBytes(), task.timeout(),
+                    singleStep, listener);
+            healthy = !result.timedOut();
+            return result;
+        } catch (IOException | VMDisconnectedException e) {
+            return ExecutionResult.failure("", "Java debuggee failed: " + e.getMessage());
+        } finally {
+            pool.release(debuggee, healthy);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+        watchdog.shutdownNow();
+    }
+}
@@ -0,0 +1,327 @@
+package com.whatcode.service.execution;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.BooleanValue;
+import com.sun.jdi.Bootstrap;
+import com.sun.jdi.Field;
+import com.sun.jdi.IncompatibleThreadStateException;
+import com.sun.jdi.Location;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.StringReference;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.Value;
+import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.connect.AttachingConnector;
+import com.sun.jdi.connect.Connector;
+import com.sun.jdi.connect.IllegalConnectorArgumentsException;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventSet;
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.VMDeathEvent;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.request.BreakpointRequest;
+import com.sun.jdi.request.ClassPrepareRequest;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.MethodExitRequest;
+import com.sun.jdi.request.ModificationWatchpointRequest;
+import com.sun.jdi.request.StepRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A pre-launched JVM running {@code WhatcodeDebuggee} under the JDWP agent,
+ * with the server attached for the worker's whole life. Each run installs
+ * its event requests when the submission's classes are prepared and removes
+ * them when the run ends.
+ *
+ * <p>By default every line of the submission gets a breakpoint filtered to
+ * the submission's thread, so the debuggee only stops on submission lines
+ * and runs JDK code at full speed. Single stepping, which stops on every
+ * line the thread runs, is available for comparison.
+ */
+public class JavaDebuggee implements PooledWorker {
+
+    static final String RUNNER_CLASS = "WhatcodeDebuggee";
+    /** Class loader type the debuggee defines submission classes with. */
+    public static final String SUBMISSION_LOADER = RUNNER_CLASS + "$SubmissionLoader";
+
+    private static final Pattern PORT = Pattern.compile("address:\\s*(?:\\S*:)?(\\d+)");
+    private static final List<String> STEP_EXCLUSIONS = List.of(
+            "java.*", "javax.*", "jdk.*", "sun.*", "com.sun.*", RUNNER_CLASS + "*");
+
+    private static final SecureRandom NONCES = new SecureRandom();
+
+    private final ProcessWorker process;
+    private final VirtualMachine vm;
+    private final BreakpointRequest finished;
+    private volatile boolean retired;
+
+    private JavaDebuggee(ProcessWorker process, VirtualMachine vm, BreakpointRequest finished) {
+        this.process = process;
+        this.vm = vm;
+        this.finished = finished;
+    }
+
+    /**
+     * Starts the JVM, waits until the runner is ready and attaches to its
+     * JDWP port, which the agent prints as its first line.
+     */
+    public static JavaDebuggee start(List<String> command, Duration startupTimeout, ScheduledExecutorService watchdog) {
+        ProcessWorker process = ProcessWorker.start(command, startupTimeout, watchdog);
+        try {
+            Matcher port = PORT.matcher(process.greeting());
+            if (!port.find() || !"ready".equals(process.readLine(startupTimeout, watchdog))) {
+                throw new EngineUnavailableException("Java debuggee did not become ready");
+            }
+            VirtualMachine vm = attach(Integer.parseInt(port.group(1)), startupTimeout);
+            ReferenceType runner = vm.classesByName(RUNNER_CLASS).get(0);
+            BreakpointRequest finished = vm.eventRequestManager()
+                    .createBreakpointRequest(runner.methodsByName("finished").get(0).location());
+            finished.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+            finished.enable();
+            process.discardOutput();
+            return new JavaDebuggee(process, vm, finished);
+        } catch (IOException | IllegalConnectorArgumentsException | RuntimeException e) {
+            process.destroy();
+            if (e instanceof EngineUnavailableException unavailable) {
+                throw unavailable;
+            }
+            throw new EngineUnavailableException("Cannot attach to Java debuggee", e);
+        }
+    }
+
+    private static VirtualMachine attach(int port, Duration timeout)
+            throws IOException, IllegalConnectorArgumentsException {
+        AttachingConnector connector = Bootstrap.virtualMachineManager().attachingConnectors().stream()
+                .filter(c -> c.name().equals("com.sun.jdi.SocketAttach"))
+                .findFirst()
+                .orElseThrow(() -> new EngineUnavailableException("No JDI socket connector"));
+        Map<String, Connector.Argument> arguments = connector.defaultArguments();
+        arguments.get("hostname").setValue("127.0.0.1");
+        arguments.get("port").setValue(Integer.toString(port));
+        arguments.get("timeout").setValue(Long.toString(timeout.toMillis()));
+        return connector.attach(arguments);
+    }
+
+    /**
+     * Runs {@code program}, handing its events to {@code listener}, and
+     * returns the run's result. A run that outlasts {@code timeout} kills the
+     * debuggee; one that leaves threads of its own running retires it.
+     */
+    ExecutionResult run(JavaProgramCompiler.Program program, String stdin, int maxOutputBytes, Duration timeout,
+                        boolean singleStep, DebugListener listener)
+            throws IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Run run = new Run(program, singleStep, listener);
+        String nonce = Long.toHexString(NONCES.nextLong());
+        try {
+            process.send(nonce + "\t" + request(program, stdin, maxOutputBytes));
+            while (true) {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                EventSet events = remainingMillis > 0 ? vm.eventQueue().remove(remainingMillis) : null;
+                if (events == null) {
+                    destroy();
+                    return ExecutionResult.timeout("");
+                }
+                boolean ended = run.handle(events);
+                events.resume();
+                if (ended) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            destroy();
+            return ExecutionResult.failure("", "Execution interrupted");
+        } catch (VMDisconnectedException e) {
+            return ExecutionResult.failure("", "Execution terminated: the JVM exited");
+        } catch (IncompatibleThreadStateException e) {
+            destroy();
+            return ExecutionResult.failure("", "Cannot read the Java debuggee's result");
+        } finally {
+            run.close();
+        }
+
+        List<Value> reply = run.reply;
+        if (!nonce.equals(string(reply.get(0)))) {
+            destroy();
+            return ExecutionResult.failure("", "Java debuggee answered out of turn");
+        }
+        // Threads the submission left running would go on into later runs;
+        // the pool replaces the debuggee once the caller is done with it
+        retired = ((BooleanValue) reply.get(4)).value();
+        return new ExecutionResult(((BooleanValue) reply.get(1)).value(),
+                string(reply.get(2)), string(reply.get(3)), false);
+    }
+
+    private static String string(Value value) {
+        return value instanceof StringReference string ? string.value() : "";
+    }
+
+    private static String request(JavaProgramCompiler.Program program, String stdin, int maxOutputBytes) {
+        Base64.Encoder encoder = Base64.getEncoder();
+        StringBuilder request = new StringBuilder()
+                .append(maxOutputBytes).append('\t')
+                .append(program.mainClass()).append('\t')
+                .append(encoder.encodeToString((stdin != null ? stdin : "").getBytes(StandardCharsets.UTF_8)));
+        program.classes().forEach((name, bytes) ->
+                request.append('\t').append(name).append('=').append(encoder.encodeToString(bytes)));
+        return request.toString();
+    }
+
+    /** The event requests of one run, and the dispatch of their events. */
+    private final class Run {
+        private final JavaProgramCompiler.Program program;
+        private final boolean singleStep;
+        private final DebugListener listener;
+        private final EventRequestManager requests = vm.eventRequestManager();
+        private final Set<EventRequest> active = Collections.newSetFromMap(new IdentityHashMap<>());
+        private ThreadReference thread;
+        private boolean tracing = true;
+        private List<Value> reply;
+
+        Run(JavaProgramCompiler.Program program, boolean singleStep, DebugListener listener) {
+            this.program = program;
+            this.singleStep = singleStep;
+            this.listener = listener;
+            // Filters on one class prepare request are ANDed, so each class gets its own
+            for (String name : program.classes().keySet()) {
+                ClassPrepareRequest prepare = requests.createClassPrepareRequest();
+                prepare.addClassFilter(name);
+                prepare.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+                enable(prepare);
+            }
+        }
+
+        /** Returns true once the submission has returned and its reply has been read. */
+        boolean handle(EventSet events) throws IncompatibleThreadStateException {
+            boolean ended = false;
+            for (Event event : events) {
+                if (event instanceof VMDeathEvent || event instanceof VMDisconnectEvent) {
+                    throw new VMDisconnectedException();
+                }
+                if (event.request() == finished) {
+                    reply = ((LocatableEvent) event).thread().frame(0).getArgumentValues();
+                    ended = true;
+                    continue;
+                }
+                // Stale events from requests of an earlier run
+                if (!tracing || !active.contains(event.request())) {
+                    continue;
+                }
+                if (event instanceof ClassPrepareEvent prepared) {
+                    instrument(prepared.referenceType(), prepared.thread());
+                } else if (event instanceof ModificationWatchpointEvent write) {
+                    listener.fieldModified(write);
+                } else if (event instanceof MethodExitEvent exit) {
+                    tracing = listener.methodExiting(exit);
+                } else if (event instanceof LocatableEvent line) {
+                    if (program.classes().containsKey(line.location().declaringType().name())) {
+                        tracing = listener.lineReached(line);
+                    }
+                }
+            }
+            if (!tracing) {
+                // Nothing left to report; let the program finish at full speed
+                close();
+            }
+            return ended;
+        }
+
+        private void instrument(ReferenceType type, ThreadReference eventThread) {
+            if (thread == null) {
+                thread = eventThread;
+                if (singleStep) {
+                    StepRequest step = requests.createStepRequest(thread, StepRequest.STEP_LINE, StepRequest.STEP_INTO);
+                    STEP_EXCLUSIONS.forEach(step::addClassExclusionFilter);
+                    step.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+                    enable(step);
+                }
+            }
+            if (!singleStep) {
+                try {
+                    for (Location location : type.allLineLocations()) {
+                        BreakpointRequest breakpoint = requests.createBreakpointRequest(location);
+                        breakpoint.addThreadFilter(thread);
+                        breakpoint.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+                        enable(breakpoint);
+                    }
+                } catch (AbsentInformationException e) {
+                    // Compiled without line numbers; nothing to stop on
+                }
+            }
+            MethodExitRequest exit = requests.createMethodExitRequest();
+            exit.addClassFilter(type);
+            exit.addThreadFilter(thread);
+            exit.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+            enable(exit);
+            // Instance field writes are reported without stopping, so the
+            // listener can keep object fields current without reading them again
+            if (vm.canWatchFieldModification()) {
+                for (Field field : type.fields()) {
+                    if (field.isStatic()) {
+                        continue;
+                    }
+                    ModificationWatchpointRequest watch = requests.createModificationWatchpointRequest(field);
+                    watch.setSuspendPolicy(EventRequest.SUSPEND_NONE);
+                    enable(watch);
+                }
+            }
+        }
+
+        private void enable(EventRequest request) {
+            request.enable();
+            active.add(request);
+        }
+
+        void close() {
+            tracing = false;
+            if (!active.isEmpty()) {
+                try {
+                    requests.deleteEventRequests(new ArrayList<>(active));
+                } catch (VMDisconnectedException e) {
+                    // Nothing left to clean up
+                }
+                active.clear();
+            }
+        }
+    }
+
+    @Override
+    public int runs() {
+        return process.runs();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return !retired && process.isAlive();
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            vm.dispose();
+        } catch (VMDisconnectedException e) {
+            // Already gone
+        }
+        process.destroy();
+    }
+}
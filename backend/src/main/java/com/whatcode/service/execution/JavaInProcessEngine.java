@@ -0,0 +1,222 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.dto.LineProfile;
+import com.whatcode.model.SupportedLanguage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs Java submissions inside the server JVM. Sources are compiled in memory,
+ * bytecode is cached by source hash, and every run gets a throwaway class
+ * loader and a thread from a bounded executor with stdout/stderr routed into
+ * a size-limited capture.
+ *
+ * <p>The bytecode is checked against {@link BytecodeAllowlist} and rewritten
+ * by {@link RunLimiter}, so a run that goes past its timeout, or allocates
+ * more than its budget, is stopped at its next loop iteration or call, and
+ * is interrupted in case it is waiting. Only a run stuck inside a single JDK
+ * call outlives the grace period; it keeps its thread until the call returns,
+ * and {@link SubmissionExecutor} gives its slot to a new thread meanwhile.
+ */
+public class JavaInProcessEngine implements ExecutionEngine, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JavaInProcessEngine.class);
+    private static final long POLL_MILLIS = 50;
+    // Extra time a stopped run gets to unwind before it is abandoned
+    private static final Duration ABANDON_GRACE = Duration.ofSeconds(2);
+
+    private final ExecutionLimits limits;
+    private final long maxAllocationBytes;
+    private final JavaProgramCompiler compiler;
+    private final SubmissionExecutor executor;
+
+    public JavaInProcessEngine(int maxConcurrentRuns, int queueCapacity, int bytecodeCacheSize,
+                               long maxAllocationBytes, int maxAbandonedRuns, ExecutionLimits limits) {
+        this.limits = limits;
+        this.maxAllocationBytes = maxAllocationBytes;
+        this.compiler = new JavaProgramCompiler(bytecodeCacheSize, RunLimiter::instrument);
+        this.executor = new SubmissionExecutor("java-submission", maxConcurrentRuns, queueCapacity, maxAbandonedRuns);
+        ThreadRoutedStreams.install();
+    }
+
+    @Override
+    public SupportedLanguage language() {
+        return SupportedLanguage.JAVA;
+    }
+
+    @Override
+    public ExecutionResult execute(ExecutionTask task) {
+        JavaProgramCompiler.Program program;
+        try {
+            program = compiler.compile(task.code());
+        } catch (JavaProgramCompiler.CompilationException e) {
+            return ExecutionResult.failure("", e.getMessage());
+        }
+        LineProfiler.Run profile = task.profile() ? profile(program, task.code()) : null;
+
+        RunLimiter.Run limiter = new RunLimiter.Run(task.timeout().toNanos());
+        ThreadRoutedStreams.Capture capture = ThreadRoutedStreams.newCapture(
+                limits.maxOutputBytes(), task.stdin(), task.output());
+        SubmissionExecutor.Run<Boolean> run;
+        try {
+            run = executor.submit(() -> run(program, profile, limiter, capture));
+        } catch (RejectedExecutionException e) {
+            capture.output().close();
+            throw new EngineUnavailableException("Java execution queue is full", e);
+        }
+
+        try {
+            boolean success = await(run, limiter, capture.output(), task.timeout());
+            String limit = limiter.limit();
+            if ("time".equals(limit)) {
+                return ExecutionResult.timeout(capture.stdout()).withProfile(result(profile));
+            }
+            if ("memory".equals(limit)) {
+                return ExecutionResult.failure(capture.stdout(),
+                        "Allocation limit exceeded: the run allocated more than " + (maxAllocationBytes >> 20) + " MB")
+                        .withProfile(result(profile));
+            }
+            return new ExecutionResult(success, capture.stdout(), capture.stderr(), false, result(profile));
+        } catch (TimeoutException e) {
+            executor.abandon(run);
+            log.warn("Java submission {} abandoned after {} ms", program.mainClass(), task.timeout().toMillis());
+            return ExecutionResult.timeout(capture.stdout()).withProfile(result(profile));
+        } catch (ExecutionException e) {
+            return ExecutionResult.failure(capture.stdout(), String.valueOf(e.getCause())).withProfile(result(profile));
+        } catch (InterruptedException e) {
+            limiter.stop("time");
+            run.cancel(true);
+            Thread.currentThread().interrupt();
+            return ExecutionResult.failure(capture.stdout(), "Execution interrupted");
+        } catch (RuntimeException e) {
+            // The output listener failed, so nobody is waiting for the run
+            limiter.stop("time");
+            run.cancel(true);
+            throw e;
+        } finally {
+            capture.output().close();
+        }
+    }
+
+    // Waits for the run, passing its output on as it comes. Stops the run at
+    // its timeout or when it goes over its allocation budget, and gives up on
+    // it if it has not ended by the grace period after the timeout.
+    private boolean await(Future<Boolean> run, RunLimiter.Run limiter, RunOutput output, Duration timeout)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long abandon = deadline + ABANDON_GRACE.toNanos();
+        while (true) {
+            try {
+                return run.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                long now = System.nanoTime();
+                if (now > abandon) {
+                    throw e;
+                }
+                if (now > deadline) {
+                    limiter.stop("time");
+                } else if (limiter.allocated() > maxAllocationBytes) {
+                    limiter.stop("memory");
+                }
+            } finally {
+                output.drain();
+            }
+        }
+    }
+
+    public int cachedPrograms() {
+        return compiler.cachedPrograms();
+    }
+
+    public int activeRuns() {
+        return executor.activeRuns();
+    }
+
+    public int queuedRuns() {
+        return executor.queuedRuns();
+    }
+
+    /** Runs given up on that still hold a thread. */
+    public int abandonedRuns() {
+        return executor.abandonedRuns();
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    // Profiled runs load the instrumented classes; null when instrumenting failed
+    private static LineProfiler.Run profile(JavaProgramCompiler.Program program, String code) {
+        try {
+            return LineProfiler.instrument(program, (int) code.chars().filter(c -> c == '\n').count() + 1);
+        } catch (RuntimeException e) {
+            log.warn("Could not instrument {} for profiling, running it unprofiled: {}", program.mainClass(), e.toString());
+            return null;
+        }
+    }
+
+    private static LineProfile result(LineProfiler.Run profile) {
+        return profile == null ? null : profile.result();
+    }
+
+    private static boolean run(JavaProgramCompiler.Program program, LineProfiler.Run profile,
+                               RunLimiter.Run limiter, ThreadRoutedStreams.Capture capture) {
+        try (ThreadRoutedStreams.Capture bound = capture.bind()) {
+            try {
+                ClassLoader loader = new MemoryClassLoader(
+                        RunLimiter.withGuard(profile == null ? program.classes() : profile.classes()));
+                limiter.start(loader);
+                if (profile != null) {
+                    profile.start(loader);
+                }
+                Class<?> mainClass = loader.loadClass(program.mainClass());
+                Method main = mainClass.getMethod("main", String[].class);
+                if (!Modifier.isStatic(main.getModifiers())) {
+                    System.err.println("main method must be static");
+                    return false;
+                }
+                main.invoke(null, (Object) new String[0]);
+                return true;
+            } catch (InvocationTargetException e) {
+                printUserStackTrace(e.getCause(), program);
+                return false;
+            } catch (ReflectiveOperationException e) {
+                System.err.println("No runnable main method in class " + program.mainClass());
+                return false;
+            } finally {
+                if (profile != null) {
+                    profile.stop();
+                }
+                System.out.flush();
+                System.err.flush();
+            }
+        }
+    }
+
+    // Mirrors the JVM's uncaught exception report, keeping only frames that
+    // belong to the submission.
+    private static void printUserStackTrace(Throwable error, JavaProgramCompiler.Program program) {
+        String prefix = "Exception in thread \"main\" ";
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            System.err.println(prefix + t);
+            for (StackTraceElement frame : t.getStackTrace()) {
+                if (program.classes().containsKey(frame.getClassName())) {
+                    System.err.println("\tat " + frame.getClassName() + "." + frame.getMethodName()
+                            + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")");
+                }
+            }
+            prefix = "Caused by: ";
+        }
+    }
+}
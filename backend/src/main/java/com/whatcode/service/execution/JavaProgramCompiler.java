@@ -0,0 +1,99 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.service.SourceHash;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a Java submission into class files: finds the main class or wraps
+ * bare statements in one, rejects bytecode that reaches outside the run
+ * (see {@link BytecodeAllowlist}), applies the engine's rewrite, and caches
+ * the result by source hash.
+ */
+public class JavaProgramCompiler {
+
+    private static final Pattern PUBLIC_CLASS = Pattern.compile("public\\s+(?:final\\s+)?class\\s+([A-Za-z_$][\\w$]*)");
+    private static final Pattern ANY_CLASS = Pattern.compile("\\bclass\\s+([A-Za-z_$][\\w$]*)");
+
+    private final InMemoryJavaCompiler compiler = new InMemoryJavaCompiler();
+    private final UnaryOperator<Map<String, byte[]>> rewrite;
+    private final Map<String, Program> cache;
+
+    public JavaProgramCompiler(int cacheSize) {
+        this(cacheSize, UnaryOperator.identity());
+    }
+
+    /** {@code rewrite} transforms the checked class files before they are cached. */
+    public JavaProgramCompiler(int cacheSize, UnaryOperator<Map<String, byte[]>> rewrite) {
+        this.rewrite = rewrite;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Compiles {@code code}, or throws {@link CompilationException} with the
+     * message to show the user.
+     */
+    public Program compile(String code) {
+        String hash = SourceHash.sha256(code);
+        synchronized (cache) {
+            Program cached = cache.get(hash);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        String source = code;
+        String mainClass = findMainClass(code);
+        if (mainClass == null) {
+            // Bare statements: wrap them in a main method without shifting line numbers
+            mainClass = "Main";
+            source = "public class Main { public static void main(String[] args) throws Exception { "
+                    + code + "\n} }\n";
+        }
+
+        InMemoryJavaCompiler.Result result = compiler.compile(mainClass, source);
+        if (!result.success()) {
+            throw new CompilationException(result.errors());
+        }
+        BytecodeAllowlist.check(result.classes());
+        Program program = new Program(mainClass, rewrite.apply(result.classes()));
+        synchronized (cache) {
+            cache.put(hash, program);
+        }
+        return program;
+    }
+
+    public int cachedPrograms() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static String findMainClass(String code) {
+        Matcher matcher = PUBLIC_CLASS.matcher(code);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        matcher = ANY_CLASS.matcher(code);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /** Class files by binary name, and the class whose main method starts the program. */
+    public record Program(String mainClass, Map<String, byte[]> classes) {
+    }
+
+    public static final class CompilationException extends RuntimeException {
+        CompilationException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.whatcode.service.execution;
+
+import org.graalvm.polyglot.Context;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One JavaScript global scope with the runtime and React preloaded. Contexts
+ * share their engine's compiled scripts but no state, and serve one run at a
+ * time; the runtime removes whatever globals a run added before the next.
+ *
+ * <p>Host access is left at the engine's default, which on GraalJS only
+ * reaches members exported with {@code HostAccess.Export}; a run is given
+ * its settings as a string and a {@link JavaScriptHost}.
+ */
+class JavaScriptContext implements PooledWorker {
+
+    private final ScriptContext context = new SimpleScriptContext();
+    private final CompiledScript finish;
+    private int runs;
+    private volatile boolean alive = true;
+
+    JavaScriptContext(ScriptEngine engine, List<CompiledScript> preludes, CompiledScript finish) throws ScriptException {
+        this.finish = finish;
+        context.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+        // Output goes through the runtime's console; anything else is dropped
+        context.setWriter(new StringWriter());
+        context.setErrorWriter(new StringWriter());
+        for (CompiledScript prelude : preludes) {
+            prelude.eval(context);
+        }
+    }
+
+    /**
+     * Runs {@code program} with the given settings JSON and returns the
+     * runtime's report. Console output is written to {@code output} as it
+     * happens. Raising {@code stop} ends the run at its next statement check.
+     * A context whose run threw must not be reused.
+     */
+    String run(CompiledScript program, String settings, AtomicBoolean stop, RunOutput output)
+            throws ScriptException {
+        runs++;
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        bindings.put(TypeScriptTranspiler.RUNTIME + "Run", settings);
+        bindings.put(TypeScriptTranspiler.RUNTIME + "Host", new JavaScriptHost(stop, output));
+        program.eval(context);
+        return String.valueOf(finish.eval(context));
+    }
+
+    @Override
+    public int runs() {
+        return runs;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * Stops a run that is stuck past its deadline, where the engine allows
+     * it: a GraalJS context is closed with cancellation, which ends the script
+     * even inside a regex match or another builtin. The context cannot be
+     * used afterwards.
+     */
+    void cancel() {
+        alive = false;
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        Method getContext;
+        try {
+            getContext = bindings.getClass().getMethod("getContext");
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        try {
+            getContext.setAccessible(true);
+            if (getContext.invoke(bindings) instanceof Context polyglot) {
+                polyglot.close(true);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The run keeps its thread until it returns by itself
+        }
+    }
+
+    @Override
+    public void destroy() {
+        alive = false;
+        try {
+            // Engines that keep a native context per binding set release it on close
+            if (context.getBindings(ScriptContext.ENGINE_SCOPE) instanceof AutoCloseable closeable) {
+                closeable.close();
+            } else {
+                context.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+            }
+        } catch (Exception e) {
+            // Still in use by a run that outlived its deadline; dropped with the context
+        }
+    }
+}
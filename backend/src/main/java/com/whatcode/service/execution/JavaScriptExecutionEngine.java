@@ -0,0 +1,374 @@
+package com.whatcode.service.execution;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.dto.FunctionProfile;
+import com.whatcode.dto.LineProfile;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.SourceHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs TypeScript, or React with JSX, inside the server JVM on an embedded
+ * JSR-223 JavaScript engine. Submissions are transpiled and compiled once
+ * per source hash, then run in a pooled context that already has the
+ * runtime and React loaded, so a run costs no engine or library start-up.
+ *
+ * <p>Statement and time limits are enforced by the ticks the transpiler
+ * injects. The engine has no heap limit of its own, so memory is bounded as
+ * an allocation budget: the waiting caller samples the run thread's
+ * allocated bytes and stops the run when it goes over. A run stuck inside a
+ * single engine builtin, such as a backtracking regex, is cancelled with its
+ * context where the engine supports that (GraalJS); otherwise it keeps its
+ * thread until the builtin returns, and {@link SubmissionExecutor} gives its
+ * slot to a new thread meanwhile.
+ */
+public class JavaScriptExecutionEngine implements ExecutionEngine, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JavaScriptExecutionEngine.class);
+
+    // Extra time a run gets to report its own timeout before it is abandoned
+    private static final Duration ABANDON_GRACE = Duration.ofSeconds(2);
+    private static final long POLL_MILLIS = 50;
+    // Kept on the submission's first line so engine line numbers match the source
+    private static final String PROGRAM_PREFIX = TypeScriptTranspiler.RUNTIME + ".run(function () { 'use strict'; ";
+    private static final Pattern FIRST_LINE_POSITION = Pattern.compile(
+            "(main\\.tsx?:1:|line number 1 at column number )(\\d+)");
+
+    private final SupportedLanguage language;
+    private final ScriptEngine engine;
+    private final ExecutionLimits limits;
+    private final long maxStatements;
+    private final long maxAllocationBytes;
+    private final ObjectMapper objectMapper;
+    private final TypeScriptTranspiler transpiler = new TypeScriptTranspiler();
+    private final ReentrantLock compileLock = new ReentrantLock();
+    private final Map<String, Program> programs;
+    private final List<CompiledScript> preludes;
+    private final CompiledScript finish;
+    private final SubmissionExecutor executor;
+    private final WorkerPool<JavaScriptContext> pool;
+
+    /** Settings shared by the TypeScript and React engines; see {@code code.execution.javascript.*}. */
+    public record Settings(WorkerPool.PoolSettings pool, int queueCapacity, int programCacheSize,
+                           long maxStatements, long maxAllocationBytes, int maxAbandonedRuns) {
+    }
+
+    public JavaScriptExecutionEngine(
+            SupportedLanguage language,
+            ScriptEngine engine,
+            Settings settings,
+            ExecutionLimits limits,
+            ObjectMapper objectMapper
+    ) {
+        this.language = language;
+        this.engine = engine;
+        this.limits = limits;
+        this.maxStatements = settings.maxStatements();
+        this.maxAllocationBytes = settings.maxAllocationBytes();
+        this.objectMapper = objectMapper;
+        int programCacheSize = settings.programCacheSize();
+        this.programs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) {
+                return size() > programCacheSize;
+            }
+        };
+        try {
+            this.preludes = List.of(
+                    compile("runtime.js", resource("javascript/runtime.js")),
+                    compile("react.js", resource("javascript/react.js")),
+                    compile("snapshot.js", TypeScriptTranspiler.RUNTIME + "Snapshot();"));
+            this.finish = compile("finish.js", TypeScriptTranspiler.RUNTIME + ".finish();");
+        } catch (ScriptException e) {
+            throw new IllegalStateException("Cannot load the JavaScript runtime: " + e.getMessage(), e);
+        }
+
+        this.executor = new SubmissionExecutor(language.getValue() + "-submission", settings.pool().maxWorkers(),
+                settings.queueCapacity(), settings.maxAbandonedRuns());
+        this.pool = new WorkerPool<>(language.getValue(), this::newContext, settings.pool());
+        this.pool.prewarm();
+    }
+
+    @Override
+    public SupportedLanguage language() {
+        return language;
+    }
+
+    @Override
+    public ExecutionResult execute(ExecutionTask task) {
+        Program program;
+        try {
+            program = program(task.code(), task.profile());
+        } catch (TypeScriptTranspiler.TranspileException e) {
+            return ExecutionResult.failure("", e.getMessage());
+        } catch (ScriptException e) {
+            return ExecutionResult.failure("", describeCompileError(e));
+        }
+
+        String settings;
+        try {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("maxStatements", maxStatements);
+            values.put("deadline", System.currentTimeMillis() + task.timeout().toMillis());
+            values.put("stdin", task.stdin());
+            if (task.profile()) {
+                values.put("profile", Map.of("lines", program.lines() + 1, "functions", program.functions().size()));
+            }
+            settings = objectMapper.writeValueAsString(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        JavaScriptContext context = pool.acquire();
+        RunOutput output = new RunOutput(limits.maxOutputBytes(), task.output());
+        boolean healthy = false;
+        try {
+            RunState state = new RunState();
+            SubmissionExecutor.Run<String> run;
+            try {
+                run = executor.submit(() -> {
+                    state.allocation.begin();
+                    return context.run(program.script(), settings, state.stop, output);
+                });
+            } catch (RejectedExecutionException e) {
+                throw new EngineUnavailableException(language.getValue() + " execution queue is full", e);
+            }
+
+            Report report;
+            try {
+                report = await(run, state, output, System.nanoTime() + task.timeout().plus(ABANDON_GRACE).toNanos());
+            } catch (RuntimeException e) {
+                // The output listener failed, so nobody is waiting for the run
+                state.stop.set(true);
+                run.cancel(true);
+                throw e;
+            }
+            if (report == null) {
+                context.cancel();
+                executor.abandon(run);
+                log.warn("{} submission abandoned after {} ms", language.getValue(), task.timeout().toMillis());
+                return ExecutionResult.timeout(output.stdoutText());
+            }
+            // The runtime unwinds a run that hit a limit, so its context stays usable
+            healthy = true;
+            String stdout = output.stdoutText();
+            if (state.overBudget) {
+                return ExecutionResult.failure(stdout,
+                        "Allocation limit exceeded: the run allocated more than " + (maxAllocationBytes >> 20) + " MB")
+                        .withProfile(lineProfile(program, report));
+            }
+            if ("time".equals(report.limit())) {
+                return ExecutionResult.timeout(stdout).withProfile(lineProfile(program, report));
+            }
+            return new ExecutionResult(report.ok(), stdout, output.stderrText(), false, lineProfile(program, report));
+        } catch (ExecutionException e) {
+            return ExecutionResult.failure(output.stdoutText(), e.getCause() instanceof ScriptException script
+                    ? describe(script) : String.valueOf(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResult.failure("", "Execution interrupted");
+        } finally {
+            output.close();
+            pool.release(context, healthy);
+        }
+    }
+
+    // Waits for the run, passing its output on and stopping it if it goes
+    // over its allocation budget; null when it outlived the deadline and was abandoned
+    private Report await(Future<String> run, RunState state, RunOutput output, long deadlineNanos)
+            throws ExecutionException, InterruptedException {
+        while (true) {
+            try {
+                return objectMapper.readValue(run.get(POLL_MILLIS, TimeUnit.MILLISECONDS), Report.class);
+            } catch (TimeoutException e) {
+                if (System.nanoTime() > deadlineNanos) {
+                    state.stop.set(true);
+                    return null;
+                }
+                if (!state.overBudget && state.allocation.allocated() > maxAllocationBytes) {
+                    state.overBudget = true;
+                    state.stop.set(true);
+                }
+            } catch (IOException e) {
+                throw new ExecutionException("Unreadable run report", e);
+            } finally {
+                output.drain();
+            }
+        }
+    }
+
+    // Profiled runs use their own build of the program, with line probes
+    private Program program(String code, boolean profile) throws ScriptException {
+        String hash = SourceHash.sha256(code) + (profile ? ":profile" : "");
+        compileLock.lock();
+        try {
+            Program cached = programs.get(hash);
+            if (cached != null) {
+                return cached;
+            }
+        } finally {
+            compileLock.unlock();
+        }
+
+        boolean jsx = language == SupportedLanguage.REACT;
+        TypeScriptTranspiler.Program transpiled = transpiler.transpile(code, jsx, profile);
+        StringBuilder source = new StringBuilder(PROGRAM_PREFIX).append(transpiled.script()).append("\n");
+        if (transpiled.component() != null) {
+            // Inside the run, where the submission's declarations are in scope
+            source.append(";").append(TypeScriptTranspiler.RUNTIME).append(".render(")
+                    .append(transpiled.component()).append(");\n");
+        }
+        source.append("});");
+        Program program = new Program(compile(jsx ? "main.tsx" : "main.ts", source.toString()),
+                transpiled.functions(), (int) code.chars().filter(c -> c == '\n').count() + 1);
+        compileLock.lock();
+        try {
+            programs.put(hash, program);
+        } finally {
+            compileLock.unlock();
+        }
+        return program;
+    }
+
+    private CompiledScript compile(String fileName, String source) throws ScriptException {
+        compileLock.lock();
+        try {
+            engine.getContext().setAttribute(ScriptEngine.FILENAME, fileName, ScriptContext.ENGINE_SCOPE);
+            return ((Compilable) engine).compile(source);
+        } catch (RuntimeException e) {
+            // Some engines report unsupported syntax unchecked
+            ScriptException error = new ScriptException(String.valueOf(e.getMessage()));
+            error.initCause(e);
+            throw error;
+        } finally {
+            compileLock.unlock();
+        }
+    }
+
+    private JavaScriptContext newContext() {
+        try {
+            return new JavaScriptContext(engine, preludes, finish);
+        } catch (ScriptException e) {
+            throw new IllegalStateException("Cannot start a JavaScript context: " + e.getMessage(), e);
+        }
+    }
+
+    public int cachedPrograms() {
+        compileLock.lock();
+        try {
+            return programs.size();
+        } finally {
+            compileLock.unlock();
+        }
+    }
+
+    public WorkerPool<JavaScriptContext> pool() {
+        return pool;
+    }
+
+    /** Runs given up on that still hold a thread. */
+    public int abandonedRuns() {
+        return executor.abandonedRuns();
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+        executor.close();
+    }
+
+    // Engines quote the offending line and point a caret at the column; both
+    // are shifted by the wrapper on line 1, which is not the user's code
+    private static String describeCompileError(ScriptException e) {
+        StringBuilder message = new StringBuilder();
+        boolean afterWrappedLine = false;
+        for (String line : describe(e).split("\n", -1)) {
+            if (afterWrappedLine && line.startsWith(" ".repeat(PROGRAM_PREFIX.length())) && line.trim().startsWith("^")) {
+                line = line.substring(PROGRAM_PREFIX.length());
+            }
+            afterWrappedLine = line.contains(PROGRAM_PREFIX);
+            line = line.replace(PROGRAM_PREFIX, "");
+            Matcher position = FIRST_LINE_POSITION.matcher(line);
+            line = position.replaceAll(match -> match.group(1)
+                    + Math.max(0, Integer.parseInt(match.group(2)) - PROGRAM_PREFIX.length()));
+            message.append(message.isEmpty() ? "" : "\n").append(line);
+        }
+        return message.toString();
+    }
+
+    private static LineProfile lineProfile(Program program, Report report) {
+        ScriptProfile counts = report.profile();
+        if (counts == null) {
+            return null;
+        }
+        long[] timeNanos = new long[counts.timeMillis().length];
+        for (int line = 0; line < timeNanos.length; line++) {
+            timeNanos[line] = TimeUnit.MILLISECONDS.toNanos(counts.timeMillis()[line]);
+        }
+        List<FunctionProfile> functions = new ArrayList<>();
+        for (int i = 0; i < program.functions().size(); i++) {
+            TypeScriptTranspiler.FunctionSite site = program.functions().get(i);
+            functions.add(new FunctionProfile(site.name(), site.line(), counts.calls()[i]));
+        }
+        functions.sort(Comparator.comparingInt(FunctionProfile::getLine));
+        return new LineProfile(counts.hits(), timeNanos, functions);
+    }
+
+    private static String describe(ScriptException e) {
+        return e.getMessage() == null ? String.valueOf(e.getCause()) : e.getMessage();
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = JavaScriptExecutionEngine.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + name, e);
+        }
+    }
+
+    // The run's stop flag and what it has allocated so far
+    private static final class RunState {
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AllocationMeter allocation = new AllocationMeter();
+        volatile boolean overBudget;
+    }
+
+    private record Program(CompiledScript script, List<TypeScriptTranspiler.FunctionSite> functions, int lines) {
+    }
+
+    private record Report(boolean ok, String limit, ScriptProfile profile) {
+    }
+
+    private record ScriptProfile(long[] hits, long[] timeMillis, long[] calls) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.whatcode.service.execution;
+
+import org.graalvm.polyglot.HostAccess;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The one Java object a JavaScript run is given: the runtime polls it for
+ * the stop flag and writes console output through it. GraalJS only lets
+ * scripts call the exported methods, so neither this object nor a host
+ * exception reached through it leads to {@code getClass()} or any other
+ * Java member.
+ */
+public final class JavaScriptHost {
+
+    private final AtomicBoolean stop;
+    private final RunOutput output;
+
+    JavaScriptHost(AtomicBoolean stop, RunOutput output) {
+        this.stop = stop;
+        this.output = output;
+    }
+
+    @HostAccess.Export
+    public boolean stopped() {
+        return stop.get();
+    }
+
+    @HostAccess.Export
+    public void write(boolean error, String text) {
+        output.write(error, text);
+    }
+}
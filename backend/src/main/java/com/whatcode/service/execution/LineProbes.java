@@ -0,0 +1,65 @@
+package com.whatcode.service.execution;
+
+/**
+ * Counters that profiled Java submissions call into. The class is never used
+ * from the server's own loader: {@link LineProfiler} defines a fresh copy in
+ * each run's {@link MemoryClassLoader}, so every run has its own counts, and
+ * reads them back by reflection. It must only depend on the JDK.
+ */
+public final class LineProbes {
+
+    private static final int MAX_DEPTH = 1024;
+
+    private static long[] hits = new long[0];
+    private static long[] calls = new long[0];
+    // Read by the profiler's sampler thread while the run writes it
+    private static volatile int current;
+    private static final int[] callers = new int[MAX_DEPTH];
+    private static int depth;
+
+    private LineProbes() {
+    }
+
+    public static void init(int lines, int functions) {
+        hits = new long[lines];
+        calls = new long[functions];
+    }
+
+    public static void line(int line) {
+        if (line < hits.length) {
+            hits[line]++;
+            current = line;
+        }
+    }
+
+    public static void enter(int function) {
+        calls[function]++;
+        if (depth < MAX_DEPTH) {
+            callers[depth] = current;
+        }
+        depth++;
+    }
+
+    // Only normal returns reach here; a method left by an exception keeps its
+    // caller's slot until the next line probe moves on
+    public static void exit() {
+        if (depth > 0) {
+            depth--;
+            if (depth < MAX_DEPTH) {
+                current = callers[depth];
+            }
+        }
+    }
+
+    public static int current() {
+        return current;
+    }
+
+    public static long[] hits() {
+        return hits;
+    }
+
+    public static long[] calls() {
+        return calls;
+    }
+}
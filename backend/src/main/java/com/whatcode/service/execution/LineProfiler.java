@@ -0,0 +1,349 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.dto.FunctionProfile;
+import com.whatcode.dto.LineProfile;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Handle;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-line profile of a Java submission. The compiled classes are rewritten
+ * so that every line in the LineNumberTable first calls
+ * {@link LineProbes#line(int)}, and every method calls
+ * {@link LineProbes#enter(int)} on entry and {@link LineProbes#exit()} before
+ * it returns. Hit and call counts are exact for single-threaded programs.
+ * Time is sampled: a thread reads the current line every
+ * {@link #SAMPLE_INTERVAL_NANOS} and charges it the time since the last sample.
+ */
+final class LineProfiler {
+
+    private static final String PROBES = LineProbes.class.getName();
+    private static final String PROBES_INTERNAL = PROBES.replace('.', '/');
+    private static final byte[] PROBES_CLASS = probesClass();
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final AtomicInteger samplerCount = new AtomicInteger();
+
+    private LineProfiler() {
+    }
+
+    /** A function as the profile reports it; synthetic methods are counted but not reported. */
+    private record Site(String name, int line, boolean reported) {
+    }
+
+    /**
+     * Instruments a compiled program for one run. {@code lines} is the number
+     * of lines in the submission.
+     */
+    static Run instrument(JavaProgramCompiler.Program program, int lines) {
+        List<Site> sites = new ArrayList<>();
+        Map<String, byte[]> classes = new HashMap<>();
+        for (Map.Entry<String, byte[]> entry : program.classes().entrySet()) {
+            classes.put(entry.getKey(), instrument(entry.getValue(), sites));
+        }
+        classes.put(PROBES, PROBES_CLASS);
+        return new Run(classes, List.copyOf(sites), lines + 1);
+    }
+
+    private static byte[] instrument(byte[] bytes, List<Site> sites) {
+        ClassReader reader = new ClassReader(bytes);
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            private String owner;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName,
+                              String[] interfaces) {
+                owner = name.substring(name.lastIndexOf('/') + 1).replace('$', '.');
+                super.visit(version, access, name, signature, superName, interfaces);
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                MethodVisitor target = super.visitMethod(access, name, descriptor, signature, exceptions);
+                if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+                    return target;
+                }
+                boolean reported = (access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0
+                        && !"<clinit>".equals(name);
+                return new ProbeInserter(target, sites, owner + "." + name, reported);
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    private static byte[] probesClass() {
+        try (InputStream in = LineProbes.class.getResourceAsStream(LineProbes.class.getSimpleName() + ".class")) {
+            if (in == null) {
+                throw new IllegalStateException("LineProbes class file not found");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds the probes to one method. The class reader visits a line's label,
+     * then its line number, then any stack map frame at that offset, so the
+     * line probe waits for the next instruction: a branch to the label then
+     * lands on the probe, and the frame still describes it.
+     */
+    private static final class ProbeInserter extends MethodVisitor {
+
+        private final List<Site> sites;
+        private final int index;
+        private final String name;
+        private final boolean reported;
+        private int firstLine = Integer.MAX_VALUE;
+        private int pendingLine = -1;
+
+        ProbeInserter(MethodVisitor target, List<Site> sites, String name, boolean reported) {
+            super(Opcodes.ASM9, target);
+            this.sites = sites;
+            this.index = sites.size();
+            this.name = name;
+            this.reported = reported;
+            sites.add(new Site(name, 0, reported));
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            probe("enter", index);
+        }
+
+        @Override
+        public void visitLineNumber(int line, Label start) {
+            super.visitLineNumber(line, start);
+            firstLine = Math.min(firstLine, line);
+            pendingLine = line;
+        }
+
+        @Override
+        public void visitEnd() {
+            sites.set(index, new Site(name, firstLine == Integer.MAX_VALUE ? 0 : firstLine, reported));
+            super.visitEnd();
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            flushLine();
+            if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, PROBES_INTERNAL, "exit", "()V", false);
+            }
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            flushLine();
+            super.visitIntInsn(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int varIndex) {
+            flushLine();
+            super.visitVarInsn(opcode, varIndex);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            flushLine();
+            super.visitTypeInsn(opcode, type);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            flushLine();
+            super.visitFieldInsn(opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            flushLine();
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                           Object... bootstrapMethodArguments) {
+            flushLine();
+            super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            flushLine();
+            super.visitJumpInsn(opcode, label);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            flushLine();
+            super.visitLdcInsn(value);
+        }
+
+        @Override
+        public void visitIincInsn(int varIndex, int increment) {
+            flushLine();
+            super.visitIincInsn(varIndex, increment);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            flushLine();
+            super.visitTableSwitchInsn(min, max, dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            flushLine();
+            super.visitLookupSwitchInsn(dflt, keys, labels);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            flushLine();
+            super.visitMultiANewArrayInsn(descriptor, numDimensions);
+        }
+
+        private void flushLine() {
+            if (pendingLine >= 0) {
+                probe("line", pendingLine);
+                pendingLine = -1;
+            }
+        }
+
+        private void probe(String method, int argument) {
+            if (argument <= Short.MAX_VALUE) {
+                super.visitIntInsn(Opcodes.SIPUSH, argument);
+            } else {
+                super.visitLdcInsn(argument);
+            }
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, PROBES_INTERNAL, method, "(I)V", false);
+        }
+    }
+
+    /**
+     * One profiled run. {@link #start} is called on the run's thread once its
+     * class loader exists; {@link #result} may be called from any thread,
+     * including after a run that timed out and is still going.
+     */
+    static final class Run {
+
+        private final Map<String, byte[]> classes;
+        private final List<Site> sites;
+        private final long[] timeNanos;
+        private volatile Class<?> probes;
+        private volatile boolean stopped;
+        private Thread sampler;
+
+        private Run(Map<String, byte[]> classes, List<Site> sites, int lines) {
+            this.classes = classes;
+            this.sites = sites;
+            this.timeNanos = new long[lines];
+        }
+
+        Map<String, byte[]> classes() {
+            return classes;
+        }
+
+        synchronized void start(ClassLoader loader) throws ReflectiveOperationException {
+            Class<?> loaded = loader.loadClass(PROBES);
+            loaded.getMethod("init", int.class, int.class).invoke(null, timeNanos.length, sites.size());
+            Method current = loaded.getMethod("current");
+            probes = loaded;
+            if (!stopped) {
+                sampler = Thread.ofPlatform()
+                        .name("java-profiler-" + samplerCount.incrementAndGet())
+                        .daemon()
+                        .start(() -> sample(current));
+            }
+        }
+
+        // Takes one last sample after stop, so a run shorter than the interval still gets its time
+        private void sample(Method current) {
+            long last = System.nanoTime();
+            while (true) {
+                boolean finished = stopped;
+                if (!finished) {
+                    LockSupport.parkNanos(SAMPLE_INTERVAL_NANOS);
+                }
+                long now = System.nanoTime();
+                try {
+                    int line = (int) current.invoke(null);
+                    timeNanos[line] += now - last;
+                } catch (ReflectiveOperationException e) {
+                    return;
+                }
+                last = now;
+                if (finished) {
+                    return;
+                }
+            }
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            if (sampler != null) {
+                try {
+                    sampler.join(TimeUnit.NANOSECONDS.toMillis(SAMPLE_INTERVAL_NANOS) + 100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sampler = null;
+            }
+        }
+
+        /** The profile so far, or null when the run never got as far as loading its classes. */
+        LineProfile result() {
+            stop();
+            Class<?> loaded = probes;
+            if (loaded == null) {
+                return null;
+            }
+            long[] hits;
+            long[] calls;
+            try {
+                hits = ((long[]) loaded.getMethod("hits").invoke(null)).clone();
+                calls = ((long[]) loaded.getMethod("calls").invoke(null)).clone();
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+            long[] time;
+            synchronized (this) {
+                time = timeNanos.clone();
+            }
+            hits[0] = 0;
+            time[0] = 0;
+
+            List<FunctionProfile> functions = new ArrayList<>();
+            for (int i = 0; i < sites.size(); i++) {
+                Site site = sites.get(i);
+                if (site.reported() && site.line() > 0 && calls[i] > 0) {
+                    functions.add(new FunctionProfile(site.name(), site.line(), calls[i]));
+                }
+            }
+            functions.sort(Comparator.comparingInt(FunctionProfile::getLine));
+            return new LineProfile(hits, time, functions);
+        }
+    }
+}
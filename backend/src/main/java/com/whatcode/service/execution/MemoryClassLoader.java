@@ -0,0 +1,26 @@
+package com.whatcode.service.execution;
+
+import java.util.Map;
+
+/**
+ * Throwaway class loader for one submission. Its parent is the platform
+ * loader, so submitted code sees the JDK but none of the server's classes.
+ */
+public class MemoryClassLoader extends ClassLoader {
+
+    private final Map<String, byte[]> classes;
+
+    public MemoryClassLoader(Map<String, byte[]> classes) {
+        super("submission", ClassLoader.getPlatformClassLoader());
+        this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name);
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
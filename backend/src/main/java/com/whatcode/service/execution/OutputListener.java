@@ -0,0 +1,17 @@
+package com.whatcode.service.execution;
+
+/**
+ * Receives a run's output while the run is still going. Engines call it from
+ * the thread waiting on the run, never from the submitted code, in the order
+ * the output was written to each stream.
+ */
+@FunctionalInterface
+public interface OutputListener {
+
+    /**
+     * New text on {@code stream} ({@code stdout} or {@code stderr}).
+     * {@code omitted} bytes of that stream were dropped just before it,
+     * because the run wrote faster than they were passed on.
+     */
+    void output(String stream, String text, long omitted);
+}
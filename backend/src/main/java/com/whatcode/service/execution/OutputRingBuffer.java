@@ -0,0 +1,207 @@
+package com.whatcode.service.execution;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size capture of one output stream, held off-heap. It keeps the first
+ * half of its capacity and, in a ring over the second half, the most recent
+ * bytes; whatever falls in between is dropped and counted. Writers never
+ * block and never grow it, however much a run prints.
+ *
+ * <p>Positions are offsets in everything ever written, so a live reader can
+ * follow the stream with {@link #read} and learn how much it missed when the
+ * ring overtook it. Once closed, the memory goes back to a small pool and
+ * later writes are discarded.
+ */
+public class OutputRingBuffer extends OutputStream {
+
+    private static final int MAX_POOLED = 32;
+    private static final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private final int headCapacity;
+    private final int tailCapacity;
+    private ByteBuffer buffer;
+    private long written;
+
+    /** Bytes read from a position: how many were skipped to get there, the bytes, and the next position. */
+    public record Chunk(long skipped, byte[] bytes, long next) {
+    }
+
+    public OutputRingBuffer(int capacity) {
+        this.headCapacity = capacity / 2;
+        this.tailCapacity = Math.max(capacity - headCapacity, 1);
+        this.buffer = allocate(headCapacity + tailCapacity);
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (buffer == null) {
+            return;
+        }
+        if (written < headCapacity) {
+            int n = (int) Math.min(len, headCapacity - written);
+            buffer.put((int) written, b, off, n);
+            written += n;
+            off += n;
+            len -= n;
+        }
+        if (len > tailCapacity) {
+            off += len - tailCapacity;
+            written += len - tailCapacity;
+            len = tailCapacity;
+        }
+        while (len > 0) {
+            int at = ringIndex(written);
+            int n = Math.min(len, headCapacity + tailCapacity - at);
+            buffer.put(at, b, off, n);
+            written += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    public synchronized long written() {
+        return written;
+    }
+
+    /**
+     * Up to {@code max} bytes from position {@code from}, skipping ahead to
+     * the oldest byte still held when the ring has moved past it. A chunk
+     * never ends or starts inside a UTF-8 sequence, so each decodes on its own.
+     */
+    public synchronized Chunk read(long from, int max) {
+        long start = Math.max(from, 0);
+        if (buffer == null || start >= written) {
+            return new Chunk(Math.max(written - start, 0), new byte[0], Math.max(written, start));
+        }
+        long tailStart = Math.max(headCapacity, written - tailCapacity);
+        if (start >= headCapacity && start < tailStart) {
+            start = tailStart;
+        }
+        while (start < written && start != from && isContinuation(byteAt(start))) {
+            start++;
+        }
+        long end = Math.min(written, start + max);
+        long next;
+        if (start < headCapacity && tailStart > headCapacity && end >= headCapacity) {
+            // The head is followed by a gap, so a character cut at its end never completes
+            end = headCapacity;
+            next = end;
+            end = start + completeLength(start, end);
+        } else {
+            if (end < written) {
+                end = start + completeLength(start, end);
+            }
+            next = end;
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        copy(start, bytes);
+        return new Chunk(start - from, bytes, next);
+    }
+
+    /** Everything held, with a marker where bytes were dropped. */
+    public synchronized String contents() {
+        if (buffer == null) {
+            return "";
+        }
+        long headEnd = Math.min(written, headCapacity);
+        long tailStart = Math.max(headCapacity, written - tailCapacity);
+        if (tailStart == headCapacity) {
+            byte[] all = new byte[(int) written];
+            copy(0, all);
+            return new String(all, StandardCharsets.UTF_8);
+        }
+        byte[] head = new byte[completeLength(0, headEnd)];
+        copy(0, head);
+        long from = tailStart;
+        while (from < written && isContinuation(byteAt(from))) {
+            from++;
+        }
+        byte[] tail = new byte[(int) (written - from)];
+        copy(from, tail);
+        return new String(head, StandardCharsets.UTF_8)
+                + "\n... [" + (from - headEnd) + " bytes of output omitted] ...\n"
+                + new String(tail, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (buffer != null) {
+            release(buffer);
+            buffer = null;
+        }
+    }
+
+    private int ringIndex(long position) {
+        return headCapacity + (int) ((position - headCapacity) % tailCapacity);
+    }
+
+    private byte byteAt(long position) {
+        return buffer.get(position < headCapacity ? (int) position : ringIndex(position));
+    }
+
+    private void copy(long from, byte[] into) {
+        int done = 0;
+        while (done < into.length) {
+            long position = from + done;
+            int at;
+            int n;
+            if (position < headCapacity) {
+                at = (int) position;
+                n = (int) Math.min(into.length - done, headCapacity - position);
+            } else {
+                at = ringIndex(position);
+                n = Math.min(into.length - done, headCapacity + tailCapacity - at);
+            }
+            buffer.get(at, into, done, n);
+            done += n;
+        }
+    }
+
+    // Length of [from, end) without a UTF-8 sequence cut off at its end
+    private int completeLength(long from, long end) {
+        long lead = end - 1;
+        while (lead >= from && lead > end - 4 && isContinuation(byteAt(lead))) {
+            lead--;
+        }
+        if (lead < from) {
+            return (int) (end - from);
+        }
+        int b = byteAt(lead) & 0xff;
+        int needed = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc0 ? 2 : 1;
+        return (int) (end - lead >= needed ? end - from : lead - from);
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        ByteBuffer reused = pool.poll();
+        if (reused != null) {
+            pooled.decrementAndGet();
+            if (reused.capacity() == capacity) {
+                return reused;
+            }
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    private static void release(ByteBuffer buffer) {
+        if (pooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
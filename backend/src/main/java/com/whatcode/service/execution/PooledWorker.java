@@ -0,0 +1,11 @@
+package com.whatcode.service.execution;
+
+public interface PooledWorker {
+
+    /** Number of runs this worker has served since it was started. */
+    int runs();
+
+    boolean isAlive();
+
+    void destroy();
+}
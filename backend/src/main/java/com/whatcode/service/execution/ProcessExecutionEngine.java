@@ -0,0 +1,167 @@
+package com.whatcode.service.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.dto.LineProfile;
+import com.whatcode.model.SupportedLanguage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Engine backed by a pool of pre-warmed worker processes that speak a JSON
+ * line protocol: one request object in, one result object out. Traced runs,
+ * and runs whose output is streamed, send event lines (JSON arrays) ahead of
+ * the result object, which echoes the nonce its request carried.
+ */
+public class ProcessExecutionEngine implements ExecutionEngine, AutoCloseable {
+
+    // Extra time the worker gets to report its own timeout before it is killed
+    private static final Duration KILL_GRACE = Duration.ofSeconds(2);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+
+    private final SupportedLanguage language;
+    private final ExecutionLimits limits;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService watchdog;
+    private final WorkerPool<ProcessWorker> pool;
+    private final SecureRandom nonces = new SecureRandom();
+
+    public ProcessExecutionEngine(
+            SupportedLanguage language,
+            List<String> command,
+            WorkerPool.PoolSettings poolSettings,
+            ExecutionLimits limits,
+            ObjectMapper objectMapper
+    ) {
+        this.language = language;
+        this.limits = limits;
+        this.objectMapper = objectMapper;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        this.pool = new WorkerPool<>(
+                language.getValue(),
+                () -> ProcessWorker.start(command, STARTUP_TIMEOUT, watchdog),
+                poolSettings);
+        this.pool.prewarm();
+    }
+
+    @Override
+    public SupportedLanguage language() {
+        return language;
+    }
+
+    @Override
+    public ExecutionResult execute(ExecutionTask task) {
+        if (task.output() == null) {
+            return run(workerRequest(task), task.timeout(), null);
+        }
+        Map<String, Object> request = workerRequest(task);
+        request.put("stream", true);
+        try (RunOutput output = new RunOutput(limits.maxOutputBytes(), task.output())) {
+            ExecutionResult result = run(request, task.timeout(), line -> relay(line, output));
+            // The relayed output also covers a run the worker had to kill
+            return new ExecutionResult(result.success(), output.stdoutText(), result.stderr(), result.timedOut(),
+                    result.profile());
+        }
+    }
+
+    // Output events are ["o", stream, text]
+    private void relay(String line, RunOutput output) {
+        JsonNode event;
+        try {
+            event = objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (event.size() == 3 && "o".equals(event.get(0).asText())) {
+            output.write("stderr".equals(event.get(1).asText()), event.get(2).asText());
+            output.drain();
+        }
+    }
+
+    /**
+     * Runs the task under the worker's tracer. Each event line is handed to
+     * {@code events} as soon as the worker relays it; {@code options} are
+     * passed through to the tracer.
+     */
+    public ExecutionResult trace(ExecutionTask task, Map<String, Object> options, Consumer<String> events) {
+        Map<String, Object> request = workerRequest(task);
+        request.put("trace", true);
+        request.putAll(options);
+        return run(request, task.timeout(), events);
+    }
+
+    private ExecutionResult run(Map<String, Object> request, Duration timeout, Consumer<String> events) {
+        request.put("nonce", Long.toHexString(nonces.nextLong()));
+        ProcessWorker worker = pool.acquire();
+        // Stays false if the consumer fails mid-stream, so a worker with
+        // unread output is never handed out again
+        boolean healthy = false;
+        try {
+            long deadline = System.nanoTime() + timeout.plus(KILL_GRACE).toNanos();
+            String response = worker.exchange(objectMapper.writeValueAsString(request), remaining(deadline), watchdog);
+            while (events != null && response != null && response.startsWith("[")) {
+                events.accept(response);
+                response = worker.readLine(remaining(deadline), watchdog);
+            }
+            if (response == null) {
+                return ExecutionResult.timeout("");
+            }
+
+            WorkerResponse result = objectMapper.readValue(response, WorkerResponse.class);
+            if (!request.get("nonce").equals(result.nonce())) {
+                return ExecutionResult.failure("", "Execution worker answered out of turn");
+            }
+            healthy = true;
+            if (result.timedOut()) {
+                return ExecutionResult.timeout(result.stdout());
+            }
+            return new ExecutionResult(result.ok(), result.stdout(), result.stderr(), false, result.profile());
+        } catch (IOException e) {
+            return ExecutionResult.failure("", "Execution worker failed: " + e.getMessage());
+        } finally {
+            pool.release(worker, healthy);
+        }
+    }
+
+    private static Duration remaining(long deadlineNanos) {
+        return Duration.ofNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), deadlineNanos - System.nanoTime()));
+    }
+
+    public WorkerPool<ProcessWorker> pool() {
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+        watchdog.shutdownNow();
+    }
+
+    private Map<String, Object> workerRequest(ExecutionTask task) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("code", task.code());
+        request.put("stdin", task.stdin());
+        request.put("timeoutMs", task.timeout().toMillis());
+        request.put("cpuSeconds", limits.cpuSeconds());
+        request.put("memoryBytes", limits.memoryBytes());
+        request.put("maxOutputBytes", limits.maxOutputBytes());
+        if (task.profile()) {
+            request.put("profile", true);
+        }
+        return request;
+    }
+
+    private record WorkerResponse(boolean ok, String stdout, String stderr, boolean timedOut, LineProfile profile,
+                                  String nonce) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.whatcode.service.execution;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived worker process speaking a line-delimited request/response
+ * protocol over its stdin and stdout.
+ */
+public class ProcessWorker implements PooledWorker {
+
+    private final Process process;
+    private final BufferedWriter requests;
+    private final BufferedReader responses;
+    private String greeting;
+    private int runs;
+
+    private ProcessWorker(Process process) {
+        this.process = process;
+        this.requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.responses = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Starts the process and waits for its first line, which signals that the
+     * interpreter is loaded and ready to take requests.
+     */
+    public static ProcessWorker start(List<String> command, Duration startupTimeout, ScheduledExecutorService watchdog) {
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            ProcessWorker worker = new ProcessWorker(process);
+            worker.greeting = worker.readLine(startupTimeout, watchdog);
+            if (worker.greeting == null) {
+                worker.destroy();
+                throw new EngineUnavailableException("Worker did not become ready: " + String.join(" ", command));
+            }
+            return worker;
+        } catch (IOException e) {
+            throw new EngineUnavailableException("Cannot start worker: " + String.join(" ", command), e);
+        }
+    }
+
+    /**
+     * Sends one request line and waits for the response line. Returns null if
+     * the worker did not answer within the timeout, in which case it has been
+     * killed and must not be reused.
+     */
+    public String exchange(String request, Duration timeout, ScheduledExecutorService watchdog) throws IOException {
+        send(request);
+        return readLine(timeout, watchdog);
+    }
+
+    /** Sends one request line without waiting for the response. */
+    public void send(String request) throws IOException {
+        runs++;
+        requests.write(request);
+        requests.newLine();
+        requests.flush();
+    }
+
+    /** The first line the worker printed, which signalled that it was ready. */
+    public String greeting() {
+        return greeting;
+    }
+
+    /**
+     * Reads the next line from the worker; used directly by engines whose
+     * responses span several lines.
+     */
+    public String readLine(Duration timeout, ScheduledExecutorService watchdog) throws IOException {
+        ScheduledFuture<?> kill = watchdog.schedule(this::destroy, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            String line = responses.readLine();
+            return kill.isDone() ? null : line;
+        } catch (IOException e) {
+            if (kill.isDone()) {
+                return null;
+            }
+            throw e;
+        } finally {
+            kill.cancel(false);
+        }
+    }
+
+    /**
+     * Reads and drops everything the worker prints from now on, for workers
+     * that answer over another channel but must not block on a full pipe.
+     */
+    public void discardOutput() {
+        Thread.ofVirtual().name("worker-output-discard").start(() -> {
+            try {
+                responses.transferTo(Writer.nullWriter());
+            } catch (IOException e) {
+                // The worker is gone
+            }
+        });
+    }
+
+    @Override
+    public int runs() {
+        return runs;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    @Override
+    public void destroy() {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
@@ -0,0 +1,51 @@
+package com.whatcode.service.execution;
+
+/**
+ * Limit checks that in-process Java submissions call into at every method
+ * entry and backward branch. Like {@link LineProbes}, the class is never used
+ * from the server's own loader: {@link RunLimiter} defines a fresh copy in
+ * each run's {@link MemoryClassLoader}, so threads a run starts share its
+ * limits, and end by its deadline at the latest, and nothing else does. It must only depend on the JDK.
+ */
+public final class RunGuard {
+
+    // The clock is read once every this many checks
+    private static final int CLOCK_MASK = 0x3FF;
+
+    private static volatile long deadline = Long.MAX_VALUE;
+    private static volatile String limit;
+    private static int checks;
+
+    private RunGuard() {
+    }
+
+    public static void init(long deadlineNanos) {
+        deadline = deadlineNanos;
+    }
+
+    /**
+     * Throws once the run is past its deadline or has been stopped. Keeps
+     * throwing at every later check, so a submission that catches the error
+     * still cannot go round a loop or make another call.
+     */
+    public static void check() {
+        if (limit == null && (++checks & CLOCK_MASK) == 0 && System.nanoTime() - deadline > 0) {
+            stop("time");
+        }
+        String reason = limit;
+        if (reason != null) {
+            throw new Error("time".equals(reason) ? "Time limit exceeded" : "Allocation limit exceeded");
+        }
+    }
+
+    /** Stops the run at its next check; the first reason given is kept. */
+    public static synchronized void stop(String reason) {
+        if (limit == null) {
+            limit = reason;
+        }
+    }
+
+    public static String limit() {
+        return limit;
+    }
+}
@@ -0,0 +1,202 @@
+package com.whatcode.service.execution;
+
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Enforces the time and allocation limits of in-process Java runs. The
+ * compiled classes are rewritten so that every method entry and every
+ * backward branch calls {@link RunGuard#check()}, which throws once the run
+ * is over its deadline or has been stopped. A loop or a recursion therefore
+ * ends at its next iteration whether or not it heeds interruption; only a
+ * single call into the JDK that never returns still keeps its thread.
+ */
+final class RunLimiter {
+
+    private static final String GUARD = RunGuard.class.getName();
+    private static final String GUARD_INTERNAL = GUARD.replace('.', '/');
+    private static final byte[] GUARD_CLASS = guardClass();
+
+    private RunLimiter() {
+    }
+
+    /** Adds the checks to a compiled program's classes. */
+    static Map<String, byte[]> instrument(Map<String, byte[]> classes) {
+        Map<String, byte[]> instrumented = new HashMap<>();
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            instrumented.put(entry.getKey(), instrument(entry.getValue()));
+        }
+        return instrumented;
+    }
+
+    /** The classes for one run's loader: the program's plus its own guard. */
+    static Map<String, byte[]> withGuard(Map<String, byte[]> classes) {
+        Map<String, byte[]> all = new HashMap<>(classes);
+        all.put(GUARD, GUARD_CLASS);
+        return all;
+    }
+
+    private static byte[] instrument(byte[] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                MethodVisitor target = super.visitMethod(access, name, descriptor, signature, exceptions);
+                if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+                    return target;
+                }
+                return new CheckInserter(target);
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    private static byte[] guardClass() {
+        try (InputStream in = RunGuard.class.getResourceAsStream(RunGuard.class.getSimpleName() + ".class")) {
+            if (in == null) {
+                throw new IllegalStateException("RunGuard class file not found");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds the checks to one method. A jump or switch to a label the reader
+     * has already passed is a backward branch; the check goes just before it,
+     * where it leaves the operand stack and the label's frame alone.
+     */
+    private static final class CheckInserter extends MethodVisitor {
+
+        private final Set<Label> visited = new HashSet<>();
+
+        CheckInserter(MethodVisitor target) {
+            super(Opcodes.ASM9, target);
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            check();
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            visited.add(label);
+            super.visitLabel(label);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            if (visited.contains(label)) {
+                check();
+            }
+            super.visitJumpInsn(opcode, label);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            if (visited.contains(dflt) || Arrays.stream(labels).anyMatch(visited::contains)) {
+                check();
+            }
+            super.visitTableSwitchInsn(min, max, dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            if (visited.contains(dflt) || Arrays.stream(labels).anyMatch(visited::contains)) {
+                check();
+            }
+            super.visitLookupSwitchInsn(dflt, keys, labels);
+        }
+
+        private void check() {
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, GUARD_INTERNAL, "check", "()V", false);
+        }
+    }
+
+    /**
+     * The limits of one run. {@link #start} is called on the run's thread once
+     * its class loader exists; {@link #stop} and {@link #limit} may be called
+     * from any thread.
+     */
+    static final class Run {
+
+        private final long timeoutNanos;
+        private final AllocationMeter allocation = new AllocationMeter();
+        private volatile Class<?> guard;
+        private volatile Thread thread;
+        private volatile String pending;
+
+        Run(long timeoutNanos) {
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        synchronized void start(ClassLoader loader) throws ReflectiveOperationException {
+            allocation.begin();
+            thread = Thread.currentThread();
+            Class<?> loaded = loader.loadClass(GUARD);
+            loaded.getMethod("init", long.class).invoke(null, System.nanoTime() + timeoutNanos);
+            guard = loaded;
+            if (pending != null) {
+                invoke("stop", pending);
+            }
+        }
+
+        /** Bytes the run's thread has allocated; {@link BytecodeAllowlist} keeps the run on that thread. */
+        long allocated() {
+            return allocation.allocated();
+        }
+
+        /**
+         * Stops the run at its next check, for {@code reason} "time" or
+         * "memory", and interrupts it in case it is waiting.
+         */
+        synchronized void stop(String reason) {
+            if (limit() != null) {
+                return;
+            }
+            if (guard == null) {
+                pending = reason;
+                return;
+            }
+            invoke("stop", reason);
+            thread.interrupt();
+        }
+
+        /** The reason the run was stopped, or null. */
+        String limit() {
+            Class<?> loaded = guard;
+            return loaded == null ? pending : (String) invoke("limit");
+        }
+
+        private Object invoke(String name, Object... arguments) {
+            try {
+                Method method = arguments.length == 0
+                        ? guard.getMethod(name)
+                        : guard.getMethod(name, String.class);
+                return method.invoke(null, arguments);
+            } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+                throw new IllegalStateException("Cannot reach the run's guard", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.whatcode.service.execution;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Standard output and error of one run, each kept in an
+ * {@link OutputRingBuffer}, and how far an optional {@link OutputListener}
+ * has been given them. Close it once the result has been read; a run still
+ * writing afterwards writes into nothing.
+ */
+public final class RunOutput implements AutoCloseable {
+
+    private static final int CHUNK_BYTES = 8192;
+
+    private final OutputRingBuffer stdout;
+    private final OutputRingBuffer stderr;
+    private final OutputListener listener;
+    private long stdoutSent;
+    private long stderrSent;
+
+    public RunOutput(int maxOutputBytes, OutputListener listener) {
+        this.stdout = new OutputRingBuffer(maxOutputBytes);
+        this.stderr = new OutputRingBuffer(maxOutputBytes);
+        this.listener = listener;
+    }
+
+    public OutputRingBuffer stdout() {
+        return stdout;
+    }
+
+    public OutputRingBuffer stderr() {
+        return stderr;
+    }
+
+    public boolean streaming() {
+        return listener != null;
+    }
+
+    /** Appends text to one stream; the JavaScript runtime writes through this. */
+    public void write(boolean error, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        (error ? stderr : stdout).write(bytes, 0, bytes.length);
+    }
+
+    /** Passes everything written since the last call on to the listener. */
+    public synchronized void drain() {
+        if (listener != null) {
+            stdoutSent = drain("stdout", stdout, stdoutSent);
+            stderrSent = drain("stderr", stderr, stderrSent);
+        }
+    }
+
+    private long drain(String name, OutputRingBuffer buffer, long from) {
+        while (true) {
+            OutputRingBuffer.Chunk chunk = buffer.read(from, CHUNK_BYTES);
+            if (chunk.bytes().length == 0) {
+                return chunk.next();
+            }
+            listener.output(name, new String(chunk.bytes(), StandardCharsets.UTF_8), chunk.skipped());
+            from = chunk.next();
+        }
+    }
+
+    public String stdoutText() {
+        return stdout.contents();
+    }
+
+    public String stderrText() {
+        return stderr.contents();
+    }
+
+    @Override
+    public void close() {
+        stdout.close();
+        stderr.close();
+    }
+}
@@ -0,0 +1,32 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.model.SupportedLanguage;
+
+/**
+ * Local engine that returns canned output without running anything. Used for
+ * languages that have no real engine configured, and in tests.
+ */
+public class StubExecutionEngine implements ExecutionEngine {
+
+    private final SupportedLanguage language;
+
+    public StubExecutionEngine(SupportedLanguage language) {
+        this.language = language;
+    }
+
+    @Override
+    public SupportedLanguage language() {
+        return language;
+    }
+
+    @Override
+    public ExecutionResult execute(ExecutionTask task) {
+        String output = switch (language) {
+            case PYTHON -> "Code executed successfully\nOutput: [Simulated Python execution]";
+            case JAVA -> "Code executed successfully\nOutput: [Simulated Java execution]";
+            case TYPESCRIPT -> "Code executed successfully\nOutput: [Simulated TypeScript execution]";
+            case REACT -> "Code executed successfully\nOutput: [Simulated React execution]";
+        };
+        return ExecutionResult.success(output, "");
+    }
+}
@@ -0,0 +1,116 @@
+package com.whatcode.service.execution;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor for submissions that run inside the server JVM. A run the
+ * engine gives up on cannot be killed, so it keeps its thread until it
+ * returns; {@link #abandon} lends its slot to a new thread meanwhile, so the
+ * other slots stay usable. At most {@code maxAbandoned} replacement threads
+ * are started; past that, a stuck run keeps its slot until it returns.
+ */
+final class SubmissionExecutor implements AutoCloseable {
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int ABANDONED = 3;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int maxAbandoned;
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    SubmissionExecutor(String threadPrefix, int threads, int queueCapacity, int maxAbandoned) {
+        this.threads = threads;
+        this.maxAbandoned = maxAbandoned;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadPrefix + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Queues a run; {@link RejectedExecutionException} when the queue is full. */
+    <T> Run<T> submit(Callable<T> task) {
+        Run<T> run = new Run<>(task);
+        executor.execute(run);
+        return run;
+    }
+
+    /**
+     * Gives up on a run: interrupts it and, if it has started, runs queued
+     * work on a replacement thread until it returns.
+     */
+    void abandon(Run<?> run) {
+        run.cancel(true);
+        if (run.state.compareAndSet(RUNNING, ABANDONED)) {
+            abandoned.incrementAndGet();
+            resize();
+        }
+    }
+
+    int activeRuns() {
+        return executor.getActiveCount() - abandoned.get();
+    }
+
+    int queuedRuns() {
+        return executor.getQueue().size();
+    }
+
+    int abandonedRuns() {
+        return abandoned.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private synchronized void resize() {
+        int size = threads + Math.min(abandoned.get(), maxAbandoned);
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        } else {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+        }
+    }
+
+    /** A submitted run, which gives its slot back when it ends after being abandoned. */
+    final class Run<T> extends FutureTask<T> {
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        private Run(Callable<T> task) {
+            super(task);
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            try {
+                super.run();
+            } finally {
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    abandoned.decrementAndGet();
+                    resize();
+                }
+            }
+        }
+    }
+}
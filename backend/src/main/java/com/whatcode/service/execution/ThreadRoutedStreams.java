@@ -0,0 +1,137 @@
+package com.whatcode.service.execution;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replaces System.out, System.err and System.in once with streams that route
+ * to a per-thread capture when one is bound, and to the original streams
+ * otherwise. This lets in-process submissions run concurrently without
+ * seeing each other's output or the server's console.
+ */
+public final class ThreadRoutedStreams {
+
+    private static final InheritableThreadLocal<Capture> CURRENT = new InheritableThreadLocal<>();
+    private static boolean installed;
+
+    private ThreadRoutedStreams() {
+    }
+
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        InputStream in = System.in;
+        System.setOut(new PrintStream(new Router(out, false), true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(new Router(err, true), true, StandardCharsets.UTF_8));
+        System.setIn(new InputRouter(in));
+        installed = true;
+    }
+
+    public static Capture newCapture(int maxOutputBytes, String stdin, OutputListener listener) {
+        return new Capture(maxOutputBytes, stdin, listener);
+    }
+
+    public static final class Capture implements AutoCloseable {
+        private final RunOutput output;
+        private final InputStream stdin;
+
+        private Capture(int maxOutputBytes, String stdin, OutputListener listener) {
+            this.output = new RunOutput(maxOutputBytes, listener);
+            this.stdin = new ByteArrayInputStream(stdin != null ? stdin.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        }
+
+        /**
+         * Routes the calling thread (and threads it starts) to this capture
+         * until {@link #close()} is called on that thread.
+         */
+        public Capture bind() {
+            CURRENT.set(this);
+            return this;
+        }
+
+        public RunOutput output() {
+            return output;
+        }
+
+        public String stdout() {
+            return output.stdoutText();
+        }
+
+        public String stderr() {
+            return output.stderrText();
+        }
+
+        @Override
+        public void close() {
+            CURRENT.remove();
+        }
+    }
+
+    private static final class Router extends OutputStream {
+        private final OutputStream original;
+        private final boolean error;
+
+        Router(OutputStream original, boolean error) {
+            this.original = original;
+            this.error = error;
+        }
+
+        private OutputStream target() {
+            Capture capture = CURRENT.get();
+            if (capture == null) {
+                return original;
+            }
+            return error ? capture.output.stderr() : capture.output.stdout();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    private static final class InputRouter extends InputStream {
+        private final InputStream original;
+
+        InputRouter(InputStream original) {
+            this.original = original;
+        }
+
+        private InputStream target() {
+            Capture capture = CURRENT.get();
+            return capture != null ? capture.stdin : original;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return target().available();
+        }
+    }
+}
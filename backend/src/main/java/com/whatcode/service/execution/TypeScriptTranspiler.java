@@ -0,0 +1,1745 @@
+package com.whatcode.service.execution;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns a TypeScript submission, and for React one with JSX, into JavaScript
+ * the embedded engine runs. Type annotations, interfaces, type aliases,
+ * generics, access modifiers and the other type-only syntax are blanked out
+ * rather than removed, so line and column numbers in errors still match the
+ * submission. Enums become objects, parameter properties become assignments,
+ * imports from React bind the runtime's React, and JSX becomes
+ * {@code React.createElement} calls. Every loop condition and function body
+ * also calls the runtime's statement counter, which enforces the run's
+ * statement and time limits. For profiled runs the first statement on each
+ * line also reports its line to the runtime, and function bodies report
+ * each call.
+ *
+ * <p>This is type erasure, not a type checker: type errors are not reported,
+ * and syntax outside the common subset is passed through for the engine to
+ * reject.
+ */
+public class TypeScriptTranspiler {
+
+    static final String RUNTIME = "__whatcode";
+    private static final String TICK = RUNTIME + ".tick()";
+    private static final Set<String> LINE_CONTINUATIONS = Set.of(
+            "else", "catch", "finally", "case", "default", "in", "instanceof", "of", "as", "satisfies", "extends",
+            "implements");
+
+    private static final Set<String> EXPRESSION_KEYWORDS = Set.of(
+            "return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw", "case", "do", "else",
+            "yield", "await", "default");
+    private static final Set<String> CONTROL_KEYWORDS = Set.of(
+            "if", "for", "while", "switch", "catch", "with", "function", "return", "typeof", "new", "await", "yield");
+    private static final Set<String> MODIFIERS = Set.of(
+            "public", "private", "protected", "readonly", "override", "declare", "abstract", "static", "async",
+            "get", "set", "accessor");
+    private static final Set<String> TYPE_ONLY_MODIFIERS = Set.of(
+            "public", "private", "protected", "readonly", "override", "declare", "abstract");
+    private static final Set<String> TYPE_CONTINUATIONS = Set.of(
+            "|", "&", ":", "<", ",", "=>", "?", "keyof", "typeof", "extends", "infer", "readonly", "new", "unique",
+            "is", "asserts");
+    private static final String[] PUNCTUATORS = {
+            ">>>=", "...", "===", "!==", "**=", "<<=", ">>=", ">>>", "&&=", "||=", "??=",
+            "=>", "==", "!=", "<=", ">=", "&&", "||", "??", "?.", "++", "--", "+=", "-=", "*=", "/=", "%=",
+            "&=", "|=", "^=", "**", "<<", ">>"};
+
+    /**
+     * The JavaScript for a submission, and for React the name of the
+     * component to render: the default export, or else the last top-level
+     * function or class whose name starts with a capital letter.
+     */
+    public record Program(String script, String component, List<FunctionSite> functions) {
+    }
+
+    /** A function whose calls a profiled run counts, in the order of its index. */
+    public record FunctionSite(String name, int line) {
+    }
+
+    public static final class TranspileException extends RuntimeException {
+        TranspileException(String message) {
+            super(message);
+        }
+    }
+
+    public Program transpile(String source, boolean jsx) {
+        return transpile(source, jsx, false);
+    }
+
+    /**
+     * Transpiles {@code source}; with {@code profile} the script also calls
+     * the runtime's {@code line(n)} and {@code enter(index)}, where index
+     * refers to {@link Program#functions()}.
+     */
+    public Program transpile(String source, boolean jsx, boolean profile) {
+        if (source.contains(RUNTIME)) {
+            throw new TranspileException("Identifiers starting with " + RUNTIME + " are reserved");
+        }
+        Profiling profiling = profile ? new Profiling(source) : null;
+        Lexer lexer = new Lexer(source, 0, jsx, profiling);
+        int end = lexer.run(false);
+        Rewriter rewriter = new Rewriter(source, lexer.tokens, 0, end, jsx, true, profiling);
+        String script = rewriter.render();
+        String component = rewriter.defaultExport != null ? rewriter.defaultExport : rewriter.lastComponent;
+        return new Program(script, jsx ? component : null, profile ? List.copyOf(profiling.functions) : List.of());
+    }
+
+    private enum Kind { NAME, NUMBER, STRING, TEMPLATE, REGEX, PUNCT, JSX }
+
+    private record Token(Kind kind, String text, int start, int end, boolean newlineBefore, String replacement) {
+
+        boolean is(String value) {
+            return text.equals(value);
+        }
+    }
+
+    private static int lineOf(String source, int position) {
+        int line = 1;
+        for (int i = 0; i < position && i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    // Line numbers of a profiled submission and the functions found so far
+    private static final class Profiling {
+        final int[] lineStarts;
+        final List<FunctionSite> functions = new ArrayList<>();
+
+        Profiling(String source) {
+            int[] starts = new int[newlines(source, 0, source.length()) + 1];
+            int line = 1;
+            for (int i = 0; i < source.length(); i++) {
+                if (source.charAt(i) == '\n') {
+                    starts[line++] = i + 1;
+                }
+            }
+            this.lineStarts = starts;
+        }
+
+        int line(int position) {
+            int found = Arrays.binarySearch(lineStarts, position);
+            return found >= 0 ? found + 1 : -found - 1;
+        }
+
+        int function(String name, int position) {
+            functions.add(new FunctionSite(name, line(position)));
+            return functions.size() - 1;
+        }
+    }
+
+    private static int newlines(String text, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean identifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$' || c > 0x7f;
+    }
+
+    private static boolean identifierPart(char c) {
+        return identifierStart(c) || Character.isDigit(c);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Splits source into tokens. JSX elements and template literals become
+     * single tokens carrying their rewritten text, with the expressions
+     * nested in them transpiled recursively.
+     */
+    private static final class Lexer {
+        private final String src;
+        private final boolean jsx;
+        private final Profiling profiling;
+        private final List<Token> tokens = new ArrayList<>();
+        private int pos;
+
+        Lexer(String src, int pos, boolean jsx, Profiling profiling) {
+            this.src = src;
+            this.pos = pos;
+            this.jsx = jsx;
+            this.profiling = profiling;
+        }
+
+        /**
+         * Tokenizes to the end of the source or, when {@code nested}, to the
+         * '}' that closes the expression being read, returning its offset.
+         */
+        int run(boolean nested) {
+            int depth = 0;
+            while (true) {
+                boolean newline = skipTrivia();
+                if (pos >= src.length()) {
+                    if (nested) {
+                        throw error("Unterminated expression", pos);
+                    }
+                    return pos;
+                }
+                char c = src.charAt(pos);
+                if (nested && c == '}') {
+                    if (depth == 0) {
+                        return pos;
+                    }
+                    depth--;
+                } else if (nested && c == '{') {
+                    depth++;
+                }
+                tokens.add(next(c, newline));
+            }
+        }
+
+        private Token next(char c, boolean newline) {
+            int start = pos;
+            if (identifierStart(c) || (c == '#' && pos + 1 < src.length() && identifierStart(src.charAt(pos + 1)))) {
+                pos++;
+                while (pos < src.length() && identifierPart(src.charAt(pos))) {
+                    pos++;
+                }
+                return token(Kind.NAME, start, newline, null);
+            }
+            if (Character.isDigit(c) || (c == '.' && pos + 1 < src.length() && Character.isDigit(src.charAt(pos + 1)))) {
+                pos++;
+                while (pos < src.length()) {
+                    char d = src.charAt(pos);
+                    char previous = src.charAt(pos - 1);
+                    if (identifierPart(d) || d == '.'
+                            || ((d == '+' || d == '-') && (previous == 'e' || previous == 'E') && !src.startsWith("0x", start))) {
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+                return token(Kind.NUMBER, start, newline, null);
+            }
+            if (c == '"' || c == '\'') {
+                pos++;
+                while (pos < src.length() && src.charAt(pos) != c) {
+                    if (src.charAt(pos) == '\n') {
+                        throw error("Unterminated string literal", start);
+                    }
+                    pos += src.charAt(pos) == '\\' ? 2 : 1;
+                }
+                if (pos >= src.length()) {
+                    throw error("Unterminated string literal", start);
+                }
+                pos++;
+                return token(Kind.STRING, start, newline, null);
+            }
+            if (c == '`') {
+                return template(start, newline);
+            }
+            Token previous = tokens.isEmpty() ? null : tokens.get(tokens.size() - 1);
+            if (c == '/' && expressionAllowed(previous)) {
+                return regex(start, newline);
+            }
+            if (c == '<' && jsx && expressionAllowed(previous) && jsxStart()) {
+                String code = new JsxReader(this).element();
+                return token(Kind.JSX, start, newline, code);
+            }
+            for (String punctuator : PUNCTUATORS) {
+                if (src.startsWith(punctuator, pos)) {
+                    if (punctuator.equals("?.") && pos + 2 < src.length() && Character.isDigit(src.charAt(pos + 2))) {
+                        continue;
+                    }
+                    pos += punctuator.length();
+                    return token(Kind.PUNCT, start, newline, null);
+                }
+            }
+            pos++;
+            return token(Kind.PUNCT, start, newline, null);
+        }
+
+        private Token token(Kind kind, int start, boolean newline, String replacement) {
+            return new Token(kind, src.substring(start, pos), start, pos, newline, replacement);
+        }
+
+        // Whitespace and comments; true when they contain a line break
+        private boolean skipTrivia() {
+            boolean newline = false;
+            while (pos < src.length()) {
+                char c = src.charAt(pos);
+                if (c == '\n') {
+                    newline = true;
+                    pos++;
+                } else if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (src.startsWith("//", pos)) {
+                    while (pos < src.length() && src.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else if (src.startsWith("/*", pos)) {
+                    int close = src.indexOf("*/", pos + 2);
+                    if (close < 0) {
+                        throw error("Unterminated comment", pos);
+                    }
+                    newline |= newlines(src, pos, close) > 0;
+                    pos = close + 2;
+                } else {
+                    break;
+                }
+            }
+            return newline;
+        }
+
+        private Token template(int start, boolean newline) {
+            StringBuilder code = new StringBuilder("`");
+            pos++;
+            int chunk = pos;
+            while (true) {
+                if (pos >= src.length()) {
+                    throw error("Unterminated template literal", start);
+                }
+                char c = src.charAt(pos);
+                if (c == '\\') {
+                    pos += 2;
+                } else if (c == '`') {
+                    code.append(src, chunk, pos).append('`');
+                    pos++;
+                    return token(Kind.TEMPLATE, start, newline, code.toString());
+                } else if (c == '$' && pos + 1 < src.length() && src.charAt(pos + 1) == '{') {
+                    code.append(src, chunk, pos + 2);
+                    pos += 2;
+                    code.append(expression()).append('}');
+                    pos++;
+                    chunk = pos;
+                } else {
+                    pos++;
+                }
+            }
+        }
+
+        // Transpiles the expression starting at pos up to its closing '}', leaving pos on the '}'
+        String expression() {
+            Lexer inner = new Lexer(src, pos, jsx, profiling);
+            int close = inner.run(true);
+            String code = new Rewriter(src, inner.tokens, pos, close, jsx, false, profiling).render();
+            pos = close;
+            return code;
+        }
+
+        private Token regex(int start, boolean newline) {
+            pos++;
+            boolean inClass = false;
+            while (true) {
+                if (pos >= src.length() || src.charAt(pos) == '\n') {
+                    throw error("Unterminated regular expression", start);
+                }
+                char c = src.charAt(pos);
+                if (c == '\\') {
+                    pos += 2;
+                    continue;
+                }
+                if (c == '[') {
+                    inClass = true;
+                } else if (c == ']') {
+                    inClass = false;
+                } else if (c == '/' && !inClass) {
+                    break;
+                }
+                pos++;
+            }
+            pos++;
+            while (pos < src.length() && identifierPart(src.charAt(pos))) {
+                pos++;
+            }
+            return token(Kind.REGEX, start, newline, null);
+        }
+
+        // '<' opens an element unless it starts generic arrow parameters such as <T,> or <T extends U>
+        private boolean jsxStart() {
+            int i = pos + 1;
+            if (i < src.length() && src.charAt(i) == '>') {
+                return true;
+            }
+            if (i >= src.length() || !identifierStart(src.charAt(i))) {
+                return false;
+            }
+            while (i < src.length() && identifierPart(src.charAt(i))) {
+                i++;
+            }
+            while (i < src.length() && Character.isWhitespace(src.charAt(i))) {
+                i++;
+            }
+            return !(src.startsWith(",", i) || src.startsWith("extends ", i));
+        }
+
+        static boolean expressionAllowed(Token previous) {
+            if (previous == null) {
+                return true;
+            }
+            return switch (previous.kind()) {
+                case NAME -> EXPRESSION_KEYWORDS.contains(previous.text());
+                case PUNCT -> !(previous.is(")") || previous.is("]") || previous.is("++") || previous.is("--"));
+                default -> false;
+            };
+        }
+
+        TranspileException error(String message, int position) {
+            return new TranspileException(message + " at line " + lineOf(src, position));
+        }
+    }
+
+    /**
+     * Reads one JSX element and writes the equivalent createElement call,
+     * keeping the element's line breaks so code after it stays on its line.
+     */
+    private static final class JsxReader {
+        private final Lexer lexer;
+        private final String src;
+        private int pendingNewlines;
+
+        JsxReader(Lexer lexer) {
+            this.lexer = lexer;
+            this.src = lexer.src;
+        }
+
+        String element() {
+            StringBuilder code = new StringBuilder();
+            element(code);
+            newlines(code);
+            return code.toString();
+        }
+
+        private void element(StringBuilder code) {
+            int start = lexer.pos;
+            lexer.pos++;
+            String name = name();
+            String type;
+            if (name.isEmpty()) {
+                type = "React.Fragment";
+            } else if (Character.isLowerCase(name.charAt(0)) && name.indexOf('.') < 0) {
+                type = quote(name);
+            } else {
+                type = name;
+            }
+            newlines(code);
+            code.append("React.createElement(").append(type).append(", ");
+
+            List<String> props = new ArrayList<>();
+            List<String> spreads = new ArrayList<>();
+            boolean selfClosing = false;
+            while (true) {
+                skipWhitespace();
+                if (lexer.pos >= src.length()) {
+                    throw lexer.error("Unterminated JSX element <" + name + ">", start);
+                }
+                if (src.startsWith("/>", lexer.pos)) {
+                    lexer.pos += 2;
+                    selfClosing = true;
+                    break;
+                }
+                if (src.charAt(lexer.pos) == '>') {
+                    lexer.pos++;
+                    break;
+                }
+                if (src.charAt(lexer.pos) == '{') {
+                    lexer.pos++;
+                    skipWhitespace();
+                    if (!src.startsWith("...", lexer.pos)) {
+                        throw lexer.error("Expected ... in JSX attribute spread", lexer.pos);
+                    }
+                    lexer.pos += 3;
+                    spreads.add(props.size() + ":" + lexer.expression());
+                    lexer.pos++;
+                    continue;
+                }
+                String attribute = attributeName();
+                String key = attribute.matches("[A-Za-z_$][\\w$]*") ? attribute : quote(attribute);
+                skipWhitespace();
+                if (lexer.pos < src.length() && src.charAt(lexer.pos) == '=') {
+                    lexer.pos++;
+                    skipWhitespace();
+                    props.add(key + ": " + attributeValue());
+                } else {
+                    props.add(key + ": true");
+                }
+            }
+            code.append(props(props, spreads));
+
+            if (!selfClosing) {
+                children(code, name, start);
+            }
+            newlines(code);
+            code.append(")");
+        }
+
+        private String props(List<String> props, List<String> spreads) {
+            if (props.isEmpty() && spreads.isEmpty()) {
+                return "null";
+            }
+            if (spreads.isEmpty()) {
+                return "{" + String.join(", ", props) + "}";
+            }
+            // Later attributes override earlier spreads and the other way round
+            StringBuilder merged = new StringBuilder("Object.assign({}");
+            int next = 0;
+            for (String spread : spreads) {
+                int at = Integer.parseInt(spread.substring(0, spread.indexOf(':')));
+                if (at > next) {
+                    merged.append(", {").append(String.join(", ", props.subList(next, at))).append("}");
+                    next = at;
+                }
+                merged.append(", ").append(spread.substring(spread.indexOf(':') + 1));
+            }
+            if (next < props.size()) {
+                merged.append(", {").append(String.join(", ", props.subList(next, props.size()))).append("}");
+            }
+            return merged.append(")").toString();
+        }
+
+        private void children(StringBuilder code, String name, int start) {
+            while (true) {
+                if (lexer.pos >= src.length()) {
+                    throw lexer.error("Unterminated JSX element <" + name + ">", start);
+                }
+                char c = src.charAt(lexer.pos);
+                if (src.startsWith("</", lexer.pos)) {
+                    lexer.pos += 2;
+                    skipWhitespace();
+                    String closing = name();
+                    skipWhitespace();
+                    if (!closing.equals(name) || lexer.pos >= src.length() || src.charAt(lexer.pos) != '>') {
+                        throw lexer.error("Expected </" + name + "> to close <" + name + ">", lexer.pos);
+                    }
+                    lexer.pos++;
+                    return;
+                }
+                if (c == '<') {
+                    code.append(", ");
+                    element(code);
+                } else if (c == '{') {
+                    lexer.pos++;
+                    int expressionStart = lexer.pos;
+                    String expression = lexer.expression();
+                    lexer.pos++;
+                    if (!expression.isBlank() && !emptyExpression(expressionStart, lexer.pos - 1)) {
+                        newlines(code);
+                        code.append(", ").append(expression);
+                    } else {
+                        pendingNewlines += TypeScriptTranspiler.newlines(expression, 0, expression.length());
+                    }
+                } else {
+                    text(code);
+                }
+            }
+        }
+
+        // {/* comment */} children carry no value
+        private boolean emptyExpression(int from, int to) {
+            String inside = src.substring(from, to).replaceAll("(?s)/\\*.*?\\*/", "").replaceAll("//[^\n]*", "");
+            return inside.isBlank();
+        }
+
+        // JSX text: lines are trimmed, blank lines dropped and the rest joined by single spaces
+        private void text(StringBuilder code) {
+            int start = lexer.pos;
+            while (lexer.pos < src.length() && src.charAt(lexer.pos) != '<' && src.charAt(lexer.pos) != '{') {
+                lexer.pos++;
+            }
+            String raw = src.substring(start, lexer.pos);
+            String[] lines = raw.split("\n", -1);
+            List<String> kept = new ArrayList<>();
+            for (int i = 0; i < lines.length; i++) {
+                String line = lines[i].replace('\t', ' ');
+                if (i > 0) {
+                    line = line.stripLeading();
+                }
+                if (i < lines.length - 1) {
+                    line = line.stripTrailing();
+                }
+                if (!line.isEmpty()) {
+                    kept.add(line);
+                }
+            }
+            if (!kept.isEmpty()) {
+                newlines(code);
+                code.append(", ").append(quote(decodeEntities(String.join(" ", kept))));
+            }
+            pendingNewlines += lines.length - 1;
+        }
+
+        private String attributeValue() {
+            char c = src.charAt(lexer.pos);
+            if (c == '"' || c == '\'') {
+                int close = src.indexOf(c, lexer.pos + 1);
+                if (close < 0) {
+                    throw lexer.error("Unterminated JSX attribute", lexer.pos);
+                }
+                String value = src.substring(lexer.pos + 1, close);
+                pendingNewlines += TypeScriptTranspiler.newlines(value, 0, value.length());
+                lexer.pos = close + 1;
+                return quote(decodeEntities(value));
+            }
+            if (c == '{') {
+                lexer.pos++;
+                String expression = lexer.expression();
+                lexer.pos++;
+                return expression;
+            }
+            if (c == '<') {
+                StringBuilder nested = new StringBuilder();
+                element(nested);
+                return nested.toString();
+            }
+            throw lexer.error("Unexpected character in JSX attribute", lexer.pos);
+        }
+
+        private String name() {
+            int start = lexer.pos;
+            while (lexer.pos < src.length()) {
+                char c = src.charAt(lexer.pos);
+                if (identifierPart(c) || c == '.' || c == '-' || c == ':') {
+                    lexer.pos++;
+                } else {
+                    break;
+                }
+            }
+            return src.substring(start, lexer.pos);
+        }
+
+        private String attributeName() {
+            String name = name();
+            if (name.isEmpty()) {
+                throw lexer.error("Unexpected character in JSX element", lexer.pos);
+            }
+            return name;
+        }
+
+        private void skipWhitespace() {
+            while (lexer.pos < src.length()) {
+                char c = src.charAt(lexer.pos);
+                if (c == '\n') {
+                    pendingNewlines++;
+                } else if (!Character.isWhitespace(c)) {
+                    break;
+                }
+                lexer.pos++;
+            }
+        }
+
+        private void newlines(StringBuilder code) {
+            code.append("\n".repeat(pendingNewlines));
+            pendingNewlines = 0;
+        }
+
+        private static String decodeEntities(String text) {
+            if (text.indexOf('&') < 0) {
+                return text;
+            }
+            return text.replace("&nbsp;", " ").replace("&lt;", "<").replace("&gt;", ">")
+                    .replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+        }
+    }
+
+    private enum ScopeKind { BLOCK, CLASS, OBJECT, PARAMS, PAREN, BRACKET }
+
+    private static final class Scope {
+        final ScopeKind kind;
+        final String keyword;
+        boolean defaultValue;
+        boolean constructor;
+        boolean extendsClass;
+        int declarationStart = -1;
+        final List<String> properties = new ArrayList<>();
+
+        Scope(ScopeKind kind, String keyword) {
+            this.kind = kind;
+            this.keyword = keyword;
+        }
+    }
+
+    private record Edit(int start, int end, String text, int order) {
+    }
+
+    /**
+     * Rewrites one run of tokens: the whole submission, or an expression
+     * nested in JSX or a template literal.
+     */
+    private static final class Rewriter {
+        private final String src;
+        private final List<Token> tokens;
+        private final int from;
+        private final int to;
+        private final boolean jsx;
+        private final boolean topLevel;
+        private final Profiling profiling;
+        private final int[] match;
+        private final List<Edit> edits = new ArrayList<>();
+        private final Deque<Scope> scopes = new ArrayDeque<>();
+
+        private String defaultExport;
+        private String lastComponent;
+
+        // What the next '(' or '{' opens, when the tokens before it decided that
+        private int paramsAt = -1;
+        private boolean paramsConstructor;
+        private int paramsDeclaration = -1;
+        private int classBodyAt = -1;
+        private boolean classExtends;
+        private int bodyAt = -1;
+        private String bodyPrefix;
+        private String superSuffix;
+        private int declarationDepth = -1;
+
+        Rewriter(String src, List<Token> tokens, int from, int to, boolean jsx, boolean topLevel,
+                 Profiling profiling) {
+            this.src = src;
+            this.tokens = tokens;
+            this.from = from;
+            this.to = to;
+            this.jsx = jsx;
+            this.topLevel = topLevel;
+            this.profiling = profiling;
+            this.match = matchBrackets();
+        }
+
+        String render() {
+            rewrite();
+            for (Token token : tokens) {
+                if (token.replacement() != null) {
+                    edits.add(new Edit(token.start(), token.end(), token.replacement(), edits.size()));
+                }
+            }
+            edits.sort(Comparator.comparingInt(Edit::start)
+                    .thenComparing(edit -> edit.end() > edit.start())
+                    .thenComparing(edit -> -edit.end())
+                    .thenComparingInt(Edit::order));
+            StringBuilder out = new StringBuilder();
+            int cursor = from;
+            for (Edit edit : edits) {
+                if (edit.start() < cursor) {
+                    // Inside a range that was already blanked or replaced
+                    continue;
+                }
+                out.append(src, cursor, edit.start());
+                String text = edit.text();
+                int missing = newlines(src, edit.start(), edit.end()) - newlines(text, 0, text.length());
+                out.append(text).append("\n".repeat(Math.max(0, missing)));
+                cursor = edit.end();
+            }
+            out.append(src, cursor, to);
+            return out.toString();
+        }
+
+        private int[] matchBrackets() {
+            int[] result = new int[tokens.size()];
+            Arrays.fill(result, -1);
+            Deque<Integer> open = new ArrayDeque<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.kind() != Kind.PUNCT) {
+                    continue;
+                }
+                if (token.is("(") || token.is("[") || token.is("{")) {
+                    open.push(i);
+                } else if ((token.is(")") || token.is("]") || token.is("}")) && !open.isEmpty()) {
+                    int opener = open.pop();
+                    result[opener] = i;
+                    result[i] = opener;
+                }
+            }
+            return result;
+        }
+
+        private Token at(int i) {
+            return i >= 0 && i < tokens.size() ? tokens.get(i) : null;
+        }
+
+        private boolean is(int i, String text) {
+            Token token = at(i);
+            return token != null && token.text().equals(text) && token.kind() != Kind.STRING;
+        }
+
+        private boolean isName(int i) {
+            Token token = at(i);
+            return token != null && token.kind() == Kind.NAME;
+        }
+
+        private void blank(int fromToken, int toToken) {
+            if (toToken <= fromToken) {
+                return;
+            }
+            int start = tokens.get(fromToken).start();
+            int end = tokens.get(toToken - 1).end();
+            StringBuilder spaces = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                spaces.append(src.charAt(i) == '\n' ? '\n' : ' ');
+            }
+            edits.add(new Edit(start, end, spaces.toString(), edits.size()));
+        }
+
+        private void replace(int fromToken, int toToken, String text) {
+            edits.add(new Edit(tokens.get(fromToken).start(), tokens.get(toToken - 1).end(), text, edits.size()));
+        }
+
+        private void insertAfter(int token, String text) {
+            int position = tokens.get(token).end();
+            edits.add(new Edit(position, position, text, edits.size()));
+        }
+
+        private void insertBefore(int token, String text) {
+            int position = tokens.get(token).start();
+            edits.add(new Edit(position, position, text, edits.size()));
+        }
+
+        private Scope top() {
+            return scopes.peek();
+        }
+
+        private ScopeKind topKind() {
+            return scopes.isEmpty() ? ScopeKind.BLOCK : scopes.peek().kind;
+        }
+
+        private void rewrite() {
+            int i = 0;
+            while (i < tokens.size()) {
+                int next = step(i);
+                i = next > i ? next : i + 1;
+            }
+        }
+
+        // Handles the construct starting at token i; returns where to continue, or i to fall through
+        private int step(int i) {
+            Token token = tokens.get(i);
+            ScopeKind kind = topKind();
+            if (kind == ScopeKind.BLOCK && statementStart(i)) {
+                if (declarationDepth == scopes.size()) {
+                    declarationDepth = -1;
+                }
+                int next = statement(i);
+                if (next != i) {
+                    return next;
+                }
+                if (profiling != null) {
+                    lineProbe(i);
+                }
+            }
+            if (kind == ScopeKind.CLASS && statementStart(i)) {
+                int next = classMember(i);
+                if (next != i) {
+                    return next;
+                }
+            }
+            if (token.kind() == Kind.NAME) {
+                return name(i);
+            }
+            if (token.kind() == Kind.PUNCT) {
+                return punctuator(i);
+            }
+            return i + 1;
+        }
+
+        private boolean statementStart(int i) {
+            Token previous = at(i - 1);
+            if (previous == null) {
+                return true;
+            }
+            if (previous.is(";") || previous.is("{") || previous.is("}")) {
+                return previous.kind() == Kind.PUNCT;
+            }
+            return tokens.get(i).newlineBefore() && !continuesExpression(previous);
+        }
+
+        // Reports the line of a statement that starts one. The call goes at the
+        // end of the previous line, so columns on the statement's line still
+        // match the submission.
+        private void lineProbe(int i) {
+            Token token = tokens.get(i);
+            Token previous = at(i - 1);
+            if (token.kind() != Kind.NAME || LINE_CONTINUATIONS.contains(token.text())
+                    || (!topLevel && scopes.isEmpty())) {
+                return;
+            }
+            String probe = RUNTIME + ".line(" + profiling.line(token.start()) + ");";
+            if (previous == null) {
+                insertBefore(i, probe + " ");
+                return;
+            }
+            if (!token.newlineBefore() || token.is("while") && previous.is("}")) {
+                return;
+            }
+            // The body of if (...), for (...) or while (...) without braces
+            if (previous.is(")") && match[i - 1] >= 0 && isName(match[i - 1] - 1)
+                    && Set.of("if", "for", "while", "with").contains(at(match[i - 1] - 1).text())) {
+                return;
+            }
+            insertAfter(i - 1, (previous.is(";") || previous.is("{") ? " " : "; ") + probe);
+        }
+
+        // In profiled runs a function body counts the call, which also ticks
+        private String enterPrefix(int nameAt, int fallbackAt) {
+            if (profiling == null) {
+                return TICK + ";";
+            }
+            Token site = tokens.get(nameAt >= 0 ? nameAt : fallbackAt);
+            String name = nameAt >= 0 ? site.text() : "<anonymous>";
+            return RUNTIME + ".enter(" + profiling.function(name, site.start()) + ");";
+        }
+
+        // The token naming the function whose parameters start at open: its
+        // own name, or the variable or property it is assigned to; -1 if none
+        private int functionName(int open) {
+            int j = open - 1;
+            if (is(j, ">")) {
+                for (int depth = 0; j >= 0; j--) {
+                    if (is(j, ">")) {
+                        depth++;
+                    } else if (is(j, "<") && --depth == 0) {
+                        j--;
+                        break;
+                    }
+                }
+            }
+            if (isName(j) && !is(j, "function") && !is(j, "async") && !CONTROL_KEYWORDS.contains(at(j).text())) {
+                return j;
+            }
+            while (is(j, "function") || is(j, "async") || is(j, "*")) {
+                j--;
+            }
+            return (is(j, "=") || is(j, ":")) && isName(j - 1) ? j - 1 : -1;
+        }
+
+        private static boolean continuesExpression(Token previous) {
+            if (previous.kind() == Kind.PUNCT) {
+                return !(previous.is(")") || previous.is("]") || previous.is("++") || previous.is("--"));
+            }
+            return previous.kind() == Kind.NAME && (EXPRESSION_KEYWORDS.contains(previous.text())
+                    || MODIFIERS.contains(previous.text()) || previous.is("export"));
+        }
+
+        private boolean expressionEnd(int i) {
+            Token token = at(i);
+            if (token == null) {
+                return false;
+            }
+            return switch (token.kind()) {
+                case NAME -> !EXPRESSION_KEYWORDS.contains(token.text()) && !CONTROL_KEYWORDS.contains(token.text());
+                case NUMBER, STRING, TEMPLATE, REGEX, JSX -> true;
+                case PUNCT -> token.is(")") || token.is("]") || token.is("}");
+            };
+        }
+
+        // Statement-level type-only declarations, modules and enums
+        private int statement(int i) {
+            Token token = tokens.get(i);
+            if (token.kind() != Kind.NAME) {
+                return i;
+            }
+            switch (token.text()) {
+                case "import" -> {
+                    if (topLevel && !is(i + 1, "(") && !is(i + 1, ".")) {
+                        return importDeclaration(i);
+                    }
+                }
+                case "export" -> {
+                    if (topLevel) {
+                        return exportDeclaration(i);
+                    }
+                }
+                case "interface" -> {
+                    if (isName(i + 1)) {
+                        int brace = i + 1;
+                        while (brace < tokens.size() && !is(brace, "{")) {
+                            brace++;
+                        }
+                        int end = brace < tokens.size() && match[brace] > 0 ? match[brace] + 1 : tokens.size();
+                        blank(i, end);
+                        return end;
+                    }
+                }
+                case "type" -> {
+                    if (isName(i + 1) && (is(i + 2, "=") || is(i + 2, "<"))) {
+                        int equals = is(i + 2, "<") ? closeAngle(i + 2) + 1 : i + 2;
+                        if (equals == 0) {
+                            return i;
+                        }
+                        int end = skipType(equals + 1, Set.of());
+                        if (is(end, ";")) {
+                            end++;
+                        }
+                        blank(i, end);
+                        return end;
+                    }
+                }
+                case "declare" -> {
+                    if (isName(i + 1) && !tokens.get(i + 1).newlineBefore()) {
+                        int end = statementEnd(i + 1);
+                        blank(i, end);
+                        return end;
+                    }
+                }
+                case "abstract" -> {
+                    if (is(i + 1, "class")) {
+                        blank(i, i + 1);
+                        return i + 1;
+                    }
+                }
+                case "enum" -> {
+                    if (isName(i + 1) && is(i + 2, "{")) {
+                        return enumDeclaration(i, i);
+                    }
+                }
+                case "const" -> {
+                    if (is(i + 1, "enum") && isName(i + 2) && is(i + 3, "{")) {
+                        return enumDeclaration(i, i + 1);
+                    }
+                }
+                default -> {
+                }
+            }
+            return i;
+        }
+
+        // Up to and including ';', or to the next line that does not continue this statement
+        private int statementEnd(int i) {
+            int j = i;
+            while (j < tokens.size()) {
+                Token token = tokens.get(j);
+                if (j > i && token.newlineBefore() && !continuesExpression(tokens.get(j - 1))
+                        && !(token.is("{") || token.is(".") || token.is("|") || token.is("&"))) {
+                    return j;
+                }
+                if (token.is(";")) {
+                    return j + 1;
+                }
+                if (match[j] > j) {
+                    j = match[j];
+                    if (tokens.get(j).is("}") && at(j + 1) != null && at(j + 1).newlineBefore()) {
+                        return j + 1;
+                    }
+                }
+                j++;
+            }
+            return j;
+        }
+
+        private int importDeclaration(int i) {
+            int end = statementEnd(i);
+            if (at(i + 1) != null && at(i + 1).kind() == Kind.STRING) {
+                blank(i, end);
+                return end;
+            }
+            if (is(i + 1, "type") && !is(i + 2, ",") && !is(i + 2, "from")) {
+                blank(i, end);
+                return end;
+            }
+            String module = null;
+            String defaultName = null;
+            String namespace = null;
+            List<String> named = new ArrayList<>();
+            for (int j = i + 1; j < end; j++) {
+                Token token = tokens.get(j);
+                if (token.is("from") && at(j + 1) != null && at(j + 1).kind() == Kind.STRING) {
+                    module = at(j + 1).text().substring(1, at(j + 1).text().length() - 1);
+                    break;
+                }
+                if (token.is("*") && is(j + 1, "as")) {
+                    namespace = at(j + 2).text();
+                    j += 2;
+                } else if (token.is("{")) {
+                    int close = match[j];
+                    for (int k = j + 1; k < close; k++) {
+                        if (!isName(k) || is(k, "type") && isName(k + 1)) {
+                            continue;
+                        }
+                        if (is(k + 1, "as") && isName(k + 2)) {
+                            named.add(at(k).text() + ": " + at(k + 2).text());
+                            k += 2;
+                        } else {
+                            named.add(at(k).text());
+                        }
+                    }
+                    j = close;
+                } else if (token.kind() == Kind.NAME && defaultName == null) {
+                    defaultName = token.text();
+                }
+            }
+            String binding = module == null ? null : switch (module) {
+                case "react" -> "React";
+                case "react-dom", "react-dom/client" -> "ReactDOM";
+                case "react-dom/server" -> "ReactDOMServer";
+                default -> null;
+            };
+            StringBuilder code = new StringBuilder();
+            if (binding == null || !jsx) {
+                code.append("throw new Error(").append(quote("Cannot find module '" + module + "'")).append(");");
+            } else {
+                if (defaultName != null && !defaultName.equals(binding)) {
+                    code.append("const ").append(defaultName).append(" = ").append(binding).append("; ");
+                }
+                if (namespace != null && !namespace.equals(binding)) {
+                    code.append("const ").append(namespace).append(" = ").append(binding).append("; ");
+                }
+                if (!named.isEmpty()) {
+                    code.append("const { ").append(String.join(", ", named)).append(" } = ").append(binding).append(";");
+                }
+            }
+            replace(i, end, code.toString());
+            return end;
+        }
+
+        private int exportDeclaration(int i) {
+            if (is(i + 1, "default")) {
+                int k = i + 2;
+                int declaration = is(k, "async") ? k + 1 : k;
+                if (is(declaration, "function") || is(declaration, "class")) {
+                    int name = is(declaration + 1, "*") ? declaration + 2 : declaration + 1;
+                    if (isName(name) && !is(name, "extends") && !is(name, "implements")) {
+                        defaultExport = at(name).text();
+                        blank(i, k);
+                    } else {
+                        defaultExport = "__default";
+                        replace(i, k, "const __default =");
+                    }
+                    return k;
+                }
+                if (isName(k) && (at(k + 1) == null || is(k + 1, ";") || at(k + 1).newlineBefore())) {
+                    defaultExport = at(k).text();
+                    int end = is(k + 1, ";") ? k + 2 : k + 1;
+                    blank(i, end);
+                    return end;
+                }
+                defaultExport = "__default";
+                replace(i, k, "const __default =");
+                return k;
+            }
+            if (is(i + 1, "{") || is(i + 1, "*")) {
+                int end = statementEnd(i + 1);
+                blank(i, end);
+                return end;
+            }
+            blank(i, i + 1);
+            int next = statement(i + 1);
+            return next != i + 1 ? next : i + 1;
+        }
+
+        // enum E { A, B = 5, C = "c" } becomes an object with reverse mappings for numeric members
+        private int enumDeclaration(int start, int keyword) {
+            String name = at(keyword + 1).text();
+            int open = keyword + 2;
+            int close = match[open];
+            StringBuilder code = new StringBuilder("const ").append(name).append(" = (function (").append(name)
+                    .append(") { let next = -1; ");
+            int j = open + 1;
+            while (j < close) {
+                Token member = tokens.get(j);
+                String key = member.kind() == Kind.STRING ? member.text() : quote(member.text());
+                j++;
+                String value = null;
+                if (is(j, "=")) {
+                    int valueStart = j + 1;
+                    int valueEnd = valueStart;
+                    while (valueEnd < close && !is(valueEnd, ",")) {
+                        valueEnd = match[valueEnd] > valueEnd ? match[valueEnd] + 1 : valueEnd + 1;
+                    }
+                    value = src.substring(tokens.get(valueStart).start(), tokens.get(valueEnd - 1).end());
+                    j = valueEnd;
+                }
+                if (value != null && (value.startsWith("\"") || value.startsWith("'") || value.startsWith("`"))) {
+                    code.append(name).append("[").append(key).append("] = ").append(value).append("; ");
+                } else {
+                    code.append(name).append("[").append(name).append("[").append(key).append("] = next = ")
+                            .append(value != null ? "(" + value + ")" : "next + 1").append("] = ").append(key)
+                            .append("; ");
+                }
+                if (is(j, ",")) {
+                    j++;
+                }
+            }
+            code.append("return ").append(name).append("; })({});");
+            replace(start, close + 1, code.toString());
+            return close + 1;
+        }
+
+        // Class members: strips modifiers, optional markers, field types, index signatures and bodiless members
+        private int classMember(int i) {
+            int j = i;
+            boolean bodiless = false;
+            while (isName(j) && MODIFIERS.contains(at(j).text()) && memberNameFollows(j + 1)) {
+                if (is(j, "abstract") || is(j, "declare")) {
+                    bodiless = true;
+                }
+                if (TYPE_ONLY_MODIFIERS.contains(at(j).text())) {
+                    blank(j, j + 1);
+                }
+                j++;
+            }
+            if (is(j, "*")) {
+                j++;
+            }
+            if (is(j, "[")) {
+                if (isName(j + 1) && is(j + 2, ":")) {
+                    int end = statementEnd(j);
+                    blank(i, end);
+                    return end;
+                }
+                j = match[j] + 1;
+            } else if (isName(j) || (at(j) != null && (at(j).kind() == Kind.STRING || at(j).kind() == Kind.NUMBER))) {
+                j++;
+            } else {
+                return j == i ? i : j;
+            }
+            if (bodiless) {
+                int end = statementEnd(j);
+                blank(i, end);
+                return end;
+            }
+            if (is(j, "?") || is(j, "!")) {
+                blank(j, j + 1);
+                j++;
+            }
+            if (is(j, "<")) {
+                int close = closeAngle(j);
+                blank(j, close + 1);
+                j = close + 1;
+            }
+            if (is(j, "(")) {
+                paramsAt = j;
+                paramsConstructor = is(j - 1, "constructor");
+                paramsDeclaration = i;
+                return j;
+            }
+            if (is(j, ":")) {
+                int end = skipType(j + 1, Set.of());
+                blank(j, end);
+                return end;
+            }
+            return j;
+        }
+
+        private boolean memberNameFollows(int j) {
+            Token next = at(j);
+            if (next == null || next.newlineBefore()) {
+                return false;
+            }
+            return next.kind() == Kind.NAME || next.kind() == Kind.STRING || next.kind() == Kind.NUMBER
+                    || next.is("[") || next.is("*");
+        }
+
+        private int name(int i) {
+            Token token = tokens.get(i);
+            switch (token.text()) {
+                case "function" -> {
+                    int j = i + 1;
+                    if (is(j, "*")) {
+                        j++;
+                    }
+                    if (isName(j)) {
+                        component(j);
+                        j++;
+                    }
+                    if (is(j, "<")) {
+                        int close = closeAngle(j);
+                        blank(j, close + 1);
+                        j = close + 1;
+                    }
+                    if (is(j, "(")) {
+                        paramsAt = j;
+                        paramsConstructor = false;
+                        boolean declaration = statementStart(i) || is(i - 1, "export") || is(i - 1, "async");
+                        paramsDeclaration = declaration ? i : -1;
+                    }
+                    return j;
+                }
+                case "class" -> {
+                    return classHeader(i);
+                }
+                case "let", "const", "var" -> {
+                    if (isName(i + 1) || is(i + 1, "{") || is(i + 1, "[")) {
+                        declarationDepth = scopes.size();
+                        if (isName(i + 1) && (is(i + 2, "=") || is(i + 2, ":"))) {
+                            component(i + 1);
+                        }
+                        declarator(i + 1);
+                    }
+                    return i + 1;
+                }
+                case "as", "satisfies" -> {
+                    if (expressionEnd(i - 1) && !token.newlineBefore() && typeFollows(i + 1)) {
+                        int end = skipType(i + 1, Set.of());
+                        blank(i, end);
+                        return end;
+                    }
+                }
+                case "catch" -> {
+                    if (is(i + 1, "(")) {
+                        paramsAt = i + 1;
+                        paramsConstructor = false;
+                        paramsDeclaration = -1;
+                    }
+                }
+                case "super" -> {
+                    if (superSuffix != null && is(i + 1, "(") && match[i + 1] > 0) {
+                        int close = match[i + 1];
+                        boolean terminated = is(close + 1, ";");
+                        insertAfter(terminated ? close + 1 : close, (terminated ? " " : "; ") + superSuffix);
+                        superSuffix = null;
+                    }
+                }
+                default -> {
+                }
+            }
+            return i + 1;
+        }
+
+        private void component(int nameToken) {
+            String name = at(nameToken).text();
+            if (jsx && scopes.isEmpty() && Character.isUpperCase(name.charAt(0))) {
+                lastComponent = name;
+            }
+        }
+
+        private boolean typeFollows(int i) {
+            Token next = at(i);
+            if (next == null) {
+                return false;
+            }
+            if (next.kind() == Kind.NAME || next.kind() == Kind.STRING || next.kind() == Kind.NUMBER) {
+                return true;
+            }
+            return next.is("{") || next.is("[") || next.is("(");
+        }
+
+        // The binding after let/const/var or ',': strips its definite-assignment marker and type
+        private void declarator(int j) {
+            int k = isName(j) ? j + 1 : match[j] > j ? match[j] + 1 : j + 1;
+            if (is(k, "!")) {
+                blank(k, k + 1);
+                k++;
+            }
+            if (is(k, ":")) {
+                blank(k, skipType(k + 1, Set.of()));
+            }
+        }
+
+        private int classHeader(int i) {
+            int j = i + 1;
+            if (isName(j) && !is(j, "extends") && !is(j, "implements")) {
+                component(j);
+                j++;
+            }
+            if (is(j, "<")) {
+                int close = closeAngle(j);
+                blank(j, close + 1);
+                j = close + 1;
+            }
+            boolean extendsClass = false;
+            if (is(j, "extends")) {
+                extendsClass = true;
+                j++;
+                while (j < tokens.size() && !is(j, "{") && !is(j, "implements")) {
+                    if (is(j, "<")) {
+                        int close = closeAngle(j);
+                        blank(j, close + 1);
+                        j = close + 1;
+                    } else {
+                        j = match[j] > j ? match[j] + 1 : j + 1;
+                    }
+                }
+            }
+            if (is(j, "implements")) {
+                int brace = j;
+                while (brace < tokens.size() && !is(brace, "{")) {
+                    brace = is(brace, "<") ? closeAngle(brace) + 1 : brace + 1;
+                }
+                blank(j, brace);
+                j = brace;
+            }
+            if (is(j, "{")) {
+                classBodyAt = j;
+                classExtends = extendsClass;
+            }
+            return j;
+        }
+
+        private int punctuator(int i) {
+            Token token = tokens.get(i);
+            Scope scope = top();
+            switch (token.text()) {
+                case "(" -> {
+                    if (paramsAt == i || arrowParameters(i) || methodParameters(i)) {
+                        Scope params = new Scope(ScopeKind.PARAMS, null);
+                        params.constructor = paramsAt == i && paramsConstructor;
+                        params.declarationStart = paramsAt == i ? paramsDeclaration : -1;
+                        paramsAt = -1;
+                        scopes.push(params);
+                        return parameterModifiers(i + 1);
+                    }
+                    String keyword = at(i - 1) != null && at(i - 1).kind() == Kind.NAME ? at(i - 1).text() : null;
+                    scopes.push(new Scope(ScopeKind.PAREN, keyword));
+                    if ("while".equals(keyword) && match[i] > i) {
+                        insertAfter(i, TICK + " && (");
+                        insertBefore(match[i], ")");
+                    } else if ("for".equals(keyword) && match[i] > i) {
+                        forCondition(i);
+                    }
+                }
+                case ")" -> {
+                    Scope closed = scopes.isEmpty() ? null : scopes.pop();
+                    if (closed != null && closed.kind == ScopeKind.PARAMS) {
+                        return afterParameters(i, closed);
+                    }
+                    if (closed != null && "for".equals(closed.keyword) && is(i + 1, "{") && forInOf(match[i], i)) {
+                        bodyAt = i + 1;
+                        bodyPrefix = TICK + ";";
+                    }
+                }
+                case "{" -> {
+                    if (classBodyAt == i) {
+                        Scope body = new Scope(ScopeKind.CLASS, null);
+                        body.extendsClass = classExtends;
+                        scopes.push(body);
+                    } else if (bodyAt == i) {
+                        insertAfter(i, " " + bodyPrefix);
+                        scopes.push(new Scope(ScopeKind.BLOCK, null));
+                    } else {
+                        scopes.push(new Scope(objectLiteral(i) ? ScopeKind.OBJECT : ScopeKind.BLOCK, null));
+                    }
+                }
+                case "}", "]" -> {
+                    if (!scopes.isEmpty()) {
+                        scopes.pop();
+                    }
+                    if (declarationDepth > scopes.size()) {
+                        declarationDepth = -1;
+                    }
+                }
+                case "[" -> scopes.push(new Scope(ScopeKind.BRACKET, null));
+                case ":" -> {
+                    if (scope != null && scope.kind == ScopeKind.PARAMS && !scope.defaultValue && bindingBefore(i)) {
+                        int end = skipType(i + 1, Set.of());
+                        blank(i, end);
+                        return end;
+                    }
+                }
+                case "?" -> {
+                    if (scope != null && scope.kind == ScopeKind.PARAMS && !scope.defaultValue
+                            && (is(i + 1, ":") || is(i + 1, ",") || is(i + 1, ")") || is(i + 1, "="))) {
+                        blank(i, i + 1);
+                    }
+                }
+                case "=" -> {
+                    if (scope != null && scope.kind == ScopeKind.PARAMS) {
+                        scope.defaultValue = true;
+                    }
+                }
+                case "," -> {
+                    if (scope != null && scope.kind == ScopeKind.PARAMS) {
+                        scope.defaultValue = false;
+                        return parameterModifiers(i + 1);
+                    }
+                    if (declarationDepth == scopes.size()) {
+                        declarator(i + 1);
+                    }
+                }
+                case ";" -> {
+                    if (declarationDepth == scopes.size()) {
+                        declarationDepth = -1;
+                    }
+                }
+                case "!" -> {
+                    Token next = at(i + 1);
+                    if (expressionEnd(i - 1) && !token.newlineBefore() && next != null && next.kind() == Kind.PUNCT
+                            && Set.of(".", ")", "]", ",", ";", "[", "?.", "=", "}").contains(next.text())) {
+                        blank(i, i + 1);
+                    }
+                }
+                case "<" -> {
+                    int close = closeAngle(i);
+                    if (close < 0) {
+                        break;
+                    }
+                    boolean typeArguments = isName(i - 1) && !EXPRESSION_KEYWORDS.contains(at(i - 1).text())
+                            && is(close + 1, "(") && typeArgumentsBetween(i, close);
+                    boolean genericArrow = Lexer.expressionAllowed(at(i - 1)) && is(close + 1, "(");
+                    if (typeArguments || genericArrow) {
+                        blank(i, close + 1);
+                        return close + 1;
+                    }
+                }
+                case "=>" -> {
+                    if (is(i + 1, "{")) {
+                        bodyAt = i + 1;
+                        // (params) =>, (params): type => or a single parameter
+                        int close = is(i - 1, ")") ? i - 1 : is(i - 2, ":") && is(i - 3, ")") ? i - 3 : -1;
+                        int params = close >= 0 ? match[close] : i - 1;
+                        bodyPrefix = enterPrefix(params >= 0 ? functionName(params) : -1, i);
+                    }
+                }
+                default -> {
+                }
+            }
+            return i + 1;
+        }
+
+        // Strips accessibility modifiers and the this parameter at the start of a parameter
+        private int parameterModifiers(int j) {
+            Scope params = top();
+            int start = j;
+            while (isName(j) && TYPE_ONLY_MODIFIERS.contains(at(j).text())
+                    && (isName(j + 1) || is(j + 1, "{") || is(j + 1, "["))) {
+                j++;
+            }
+            if (j > start) {
+                blank(start, j);
+                if (params.constructor && isName(j)) {
+                    params.properties.add(at(j).text());
+                }
+            }
+            if (is(j, "this") && is(j + 1, ":")) {
+                int end = skipType(j + 2, Set.of());
+                blank(j, is(end, ",") ? end + 1 : end);
+                return is(end, ",") ? end + 1 : end;
+            }
+            return j;
+        }
+
+        private boolean bindingBefore(int i) {
+            Token previous = at(i - 1);
+            return previous != null && (previous.kind() == Kind.NAME || previous.is("}") || previous.is("]")
+                    || previous.is("?"));
+        }
+
+        private int afterParameters(int close, Scope params) {
+            int k = close + 1;
+            if (is(k, ":")) {
+                int end = skipType(k + 1, Set.of("=>"));
+                blank(k, end);
+                k = end;
+            }
+            if (is(k, "{")) {
+                int open = match[close];
+                // A catch clause shares the parameter handling but is no call
+                String prefix = open > 0 && is(open - 1, "catch") ? TICK + ";"
+                        : enterPrefix(open >= 0 ? functionName(open) : -1, open >= 0 ? open : close);
+                if (!params.properties.isEmpty()) {
+                    StringBuilder assignments = new StringBuilder();
+                    for (String property : params.properties) {
+                        assignments.append(" this.").append(property).append(" = ").append(property).append(";");
+                    }
+                    Scope enclosing = top();
+                    if (enclosing != null && enclosing.extendsClass) {
+                        superSuffix = assignments.toString().trim();
+                    } else {
+                        prefix += assignments;
+                    }
+                }
+                bodyAt = k;
+                bodyPrefix = prefix;
+            } else if (params.declarationStart >= 0 && !is(k, "=>")) {
+                // An overload or abstract signature without a body
+                int end = is(k, ";") ? k + 1 : k;
+                blank(params.declarationStart, end);
+                return end;
+            }
+            return k;
+        }
+
+        private boolean arrowParameters(int i) {
+            int close = match[i];
+            if (close < 0) {
+                return false;
+            }
+            if (is(close + 1, "=>")) {
+                return true;
+            }
+            return is(close + 1, ":") && is(skipType(close + 2, Set.of("=>")), "=>");
+        }
+
+        // Method shorthand in an object literal: name(params) { or name(params): type {
+        private boolean methodParameters(int i) {
+            if (topKind() != ScopeKind.OBJECT || !isName(i - 1) || CONTROL_KEYWORDS.contains(at(i - 1).text())) {
+                return false;
+            }
+            int nameStart = i - 1;
+            while (isName(nameStart - 1) && Set.of("get", "set", "async").contains(at(nameStart - 1).text())) {
+                nameStart--;
+            }
+            if (is(nameStart - 1, "*")) {
+                nameStart--;
+            }
+            if (!(is(nameStart - 1, "{") || is(nameStart - 1, ","))) {
+                return false;
+            }
+            int close = match[i];
+            return close > 0 && (is(close + 1, "{") || is(close + 1, ":"));
+        }
+
+        private boolean objectLiteral(int i) {
+            Token previous = at(i - 1);
+            if (previous == null) {
+                return false;
+            }
+            if (previous.kind() == Kind.NAME) {
+                return Set.of("return", "typeof", "yield", "await", "in", "of", "case", "throw", "new", "delete", "void",
+                        "let", "const", "var").contains(previous.text());
+            }
+            if (previous.kind() != Kind.PUNCT) {
+                return false;
+            }
+            return !(previous.is(")") || previous.is(";") || previous.is("{") || previous.is("}")
+                    || previous.is("=>") || previous.is("]"));
+        }
+
+        // for (init; condition; update): the condition also counts a statement
+        private void forCondition(int open) {
+            int close = match[open];
+            int first = -1;
+            int second = -1;
+            for (int j = open + 1; j < close; j++) {
+                if (is(j, ";")) {
+                    if (first < 0) {
+                        first = j;
+                    } else {
+                        second = j;
+                        break;
+                    }
+                } else if (match[j] > j) {
+                    j = match[j];
+                }
+            }
+            if (first < 0 || second < 0) {
+                return;
+            }
+            if (second == first + 1) {
+                insertAfter(first, " " + TICK);
+            } else {
+                insertAfter(first, " " + TICK + " && (");
+                insertBefore(second, ")");
+            }
+        }
+
+        private boolean forInOf(int open, int close) {
+            for (int j = open + 1; j < close; j++) {
+                if (is(j, ";")) {
+                    return false;
+                }
+                if (match[j] > j) {
+                    j = match[j];
+                }
+            }
+            return true;
+        }
+
+        // Index of the token holding the '>' that closes the '<' at i, or -1
+        private int closeAngle(int i) {
+            int depth = 0;
+            for (int j = i; j < tokens.size(); j++) {
+                Token token = tokens.get(j);
+                if (token.kind() != Kind.PUNCT) {
+                    continue;
+                }
+                if (token.is("<")) {
+                    depth++;
+                } else if (token.text().chars().allMatch(c -> c == '>')) {
+                    depth -= token.text().length();
+                    if (depth <= 0) {
+                        return j;
+                    }
+                } else if (token.is(";") || token.is(")") || token.is("}") || token.is("]")) {
+                    return -1;
+                } else if (match[j] > j) {
+                    j = match[j];
+                }
+            }
+            return -1;
+        }
+
+        private boolean typeArgumentsBetween(int open, int close) {
+            for (int j = open + 1; j < close; j++) {
+                Token token = tokens.get(j);
+                switch (token.kind()) {
+                    case NAME, STRING -> {
+                    }
+                    case PUNCT -> {
+                        if (match[j] > j) {
+                            j = match[j];
+                        } else if (!Set.of(",", ".", "|", "&", "<", ">", ">>", "=>", "?", ":").contains(token.text())) {
+                            return false;
+                        }
+                    }
+                    default -> {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * The index just past the type starting at i: stops at a closing
+         * bracket, ',', ';', '=', ':' or '?' outside the type's own brackets,
+         * at any of {@code stops}, and at a token that cannot continue a
+         * complete type.
+         */
+        private int skipType(int i, Set<String> stops) {
+            boolean expecting = true;
+            int angle = 0;
+            int j = i;
+            while (j < tokens.size()) {
+                Token token = tokens.get(j);
+                String text = token.text();
+                if (token.kind() == Kind.PUNCT) {
+                    if (angle == 0) {
+                        if (stops.contains(text) && !(expecting && text.equals("{"))) {
+                            return j;
+                        }
+                        if (Set.of(")", "]", "}", ",", ";", "=", ":", "?", ">", ">>", ">>>").contains(text)) {
+                            return j;
+                        }
+                        if (!expecting && !Set.of(".", "[", "|", "&", "<", "=>").contains(text)) {
+                            return j;
+                        }
+                    }
+                    if (text.equals("<")) {
+                        angle++;
+                    } else if (text.chars().allMatch(c -> c == '>') && !text.isEmpty()) {
+                        angle = Math.max(0, angle - text.length());
+                    } else if (match[j] > j) {
+                        j = match[j];
+                        expecting = false;
+                        j++;
+                        continue;
+                    }
+                    expecting = TYPE_CONTINUATIONS.contains(text) || text.equals("[") || text.equals(".");
+                    j++;
+                    continue;
+                }
+                if (angle == 0 && !expecting && !TYPE_CONTINUATIONS.contains(text)) {
+                    return j;
+                }
+                expecting = token.kind() == Kind.NAME && TYPE_CONTINUATIONS.contains(text);
+                j++;
+            }
+            return j;
+        }
+    }
+}
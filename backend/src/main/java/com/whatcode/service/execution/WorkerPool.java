@@ -0,0 +1,146 @@
+package com.whatcode.service.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of pre-warmed workers. Callers queue for a permit, reuse the
+ * most recently returned idle worker, and workers are retired after a fixed
+ * number of runs. Replacements are started in the background so the pool
+ * stays warm at its minimum size.
+ */
+public class WorkerPool<W extends PooledWorker> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkerPool.class);
+
+    private final String name;
+    private final Supplier<W> factory;
+    private final PoolSettings settings;
+    private final LinkedBlockingDeque<W> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger live = new AtomicInteger();
+    private final ExecutorService spawner = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean closed;
+
+    public WorkerPool(String name, Supplier<W> factory, PoolSettings settings) {
+        this.name = name;
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxWorkers(), true);
+    }
+
+    public void prewarm() {
+        for (int i = 0; i < settings.minWorkers(); i++) {
+            spawnAsync();
+        }
+    }
+
+    public W acquire() {
+        try {
+            if (!permits.tryAcquire(settings.acquireTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new EngineUnavailableException("No " + name + " worker available within "
+                        + settings.acquireTimeout().toMillis() + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EngineUnavailableException("Interrupted while waiting for a " + name + " worker", e);
+        }
+
+        try {
+            W worker;
+            while ((worker = idle.pollFirst()) != null) {
+                if (worker.isAlive()) {
+                    return worker;
+                }
+                discard(worker);
+            }
+            return spawn();
+        } catch (RuntimeException e) {
+            permits.release();
+            if (e instanceof EngineUnavailableException) {
+                throw e;
+            }
+            throw new EngineUnavailableException("Failed to start " + name + " worker", e);
+        }
+    }
+
+    public void release(W worker, boolean healthy) {
+        try {
+            if (!healthy || closed || !worker.isAlive() || worker.runs() >= settings.maxRunsPerWorker()) {
+                discard(worker);
+                if (!closed && live.get() < settings.minWorkers()) {
+                    spawnAsync();
+                }
+            } else {
+                // LIFO keeps the hottest workers in use
+                idle.offerFirst(worker);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int liveWorkers() {
+        return live.get();
+    }
+
+    public int idleWorkers() {
+        return idle.size();
+    }
+
+    public int busyWorkers() {
+        return settings.maxWorkers() - permits.availablePermits();
+    }
+
+    public int queuedCallers() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        spawner.shutdownNow();
+        W worker;
+        while ((worker = idle.pollFirst()) != null) {
+            discard(worker);
+        }
+    }
+
+    private void spawnAsync() {
+        spawner.execute(() -> {
+            try {
+                W worker = spawn();
+                if (closed) {
+                    discard(worker);
+                } else {
+                    idle.offerLast(worker);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to pre-warm {} worker: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    private W spawn() {
+        W worker = factory.get();
+        live.incrementAndGet();
+        return worker;
+    }
+
+    private void discard(W worker) {
+        live.decrementAndGet();
+        worker.destroy();
+    }
+
+    public record PoolSettings(int minWorkers, int maxWorkers, int maxRunsPerWorker, Duration acquireTimeout) {
+    }
+}
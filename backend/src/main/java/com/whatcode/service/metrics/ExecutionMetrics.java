@@ -0,0 +1,93 @@
+package com.whatcode.service.metrics;
+
+import com.whatcode.model.SupportedLanguage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request, phase and payload meters for the execution endpoints. Meters used
+ * inside trace generation are resolved once per language up front so the hot
+ * path never builds a meter id.
+ */
+@Component
+public class ExecutionMetrics {
+
+    /** Request attribute under which the controller records the request language. */
+    public static final String LANGUAGE_ATTRIBUTE = ExecutionMetrics.class.getName() + ".language";
+
+    public enum Phase {
+        PARSE("parse"),
+        TRACE("trace"),
+        EXECUTION("execution"),
+        OUTPUT("output"),
+        SERIALIZATION("serialization");
+
+        private final String value;
+
+        Phase(String value) {
+            this.value = value;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Phase, Map<SupportedLanguage, Timer>> phaseTimers = new EnumMap<>(Phase.class);
+    private final Map<SupportedLanguage, DistributionSummary> stepCounts = new EnumMap<>(SupportedLanguage.class);
+
+    public ExecutionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Phase phase : Phase.values()) {
+            Map<SupportedLanguage, Timer> timers = new EnumMap<>(SupportedLanguage.class);
+            for (SupportedLanguage language : SupportedLanguage.values()) {
+                timers.put(language, Timer.builder("whatcode.phase")
+                        .description("Time spent in one phase of handling a submission")
+                        .tag("phase", phase.value)
+                        .tag("language", language.getValue())
+                        .register(registry));
+            }
+            phaseTimers.put(phase, timers);
+        }
+        for (SupportedLanguage language : SupportedLanguage.values()) {
+            stepCounts.put(language, DistributionSummary.builder("whatcode.trace.steps")
+                    .description("Visualization steps produced per trace")
+                    .baseUnit("steps")
+                    .tag("language", language.getValue())
+                    .register(registry));
+        }
+    }
+
+    public void recordRequest(String endpoint, SupportedLanguage language, String outcome, long nanos) {
+        Timer.builder("whatcode.request")
+                .description("End-to-end handling time of an execution request")
+                .tag("endpoint", endpoint)
+                .tag("language", language != null ? language.getValue() : "unknown")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPhase(Phase phase, SupportedLanguage language, long nanos) {
+        if (language != null) {
+            phaseTimers.get(phase).get(language).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordSteps(SupportedLanguage language, int steps) {
+        stepCounts.get(language).record(steps);
+    }
+
+    public void recordResponseSize(String endpoint, String format, long bytes) {
+        DistributionSummary.builder("whatcode.response.size")
+                .description("Serialized response body size")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .tag("format", format)
+                .register(registry)
+                .record(bytes);
+    }
+}
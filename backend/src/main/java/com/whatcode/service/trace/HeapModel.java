@@ -0,0 +1,142 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.MemoryObject;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The live heap of one trace. Objects keep a small id for their whole life,
+ * allocated in order, and list the ids they reference. Objects that can no
+ * longer be reached from a variable are dropped, so a step's heap is the
+ * live heap rather than every value ever assigned.
+ *
+ * <p>A changed object is replaced by a new {@link MemoryObject}; unchanged
+ * objects are the same instances from step to step, and so is the whole
+ * list while nothing changes.
+ */
+final class HeapModel {
+
+    private final Map<Integer, MemoryObject> objects;
+    private int nextId;
+    private long bytes;
+    private List<MemoryObject> view;
+
+    HeapModel() {
+        this(List.of(), 1);
+    }
+
+    /** Resumes the heap a step saw, with {@code nextId} as the next id to allocate. */
+    HeapModel(List<MemoryObject> live, int nextId) {
+        this.objects = new LinkedHashMap<>();
+        for (MemoryObject object : live) {
+            objects.put(object.getId(), object);
+            bytes += TraceSizeEstimator.memoryObject(object);
+        }
+        this.nextId = nextId;
+        this.view = List.copyOf(live);
+    }
+
+    /** Allocates an id for a new object. */
+    int allocate() {
+        return nextId++;
+    }
+
+    /** The id {@link #allocate} hands out next. */
+    int nextId() {
+        return nextId;
+    }
+
+    MemoryObject get(int id) {
+        return objects.get(id);
+    }
+
+    /**
+     * Adds or replaces object {@code id}, which lists the variables naming
+     * it in {@code references} and the objects it points to in
+     * {@code pointsTo}. Returns the estimated size of the new version.
+     */
+    long put(int id, String type, Object value, List<String> references, List<Integer> pointsTo) {
+        MemoryObject object = MemoryObject.builder()
+                .id(id)
+                .address(address(id))
+                .type(type)
+                .value(value)
+                .references(references)
+                .pointsTo(pointsTo)
+                .build();
+        MemoryObject previous = objects.put(id, object);
+        long size = TraceSizeEstimator.memoryObject(object);
+        bytes += size - (previous != null ? TraceSizeEstimator.memoryObject(previous) : 0);
+        nextId = Math.max(nextId, id + 1);
+        view = null;
+        return size;
+    }
+
+    /**
+     * Replaces the value of object {@code id}, whose estimated size changes
+     * by {@code sizeChange}, without walking the new value.
+     */
+    void replaceValue(int id, Object value, long sizeChange) {
+        MemoryObject previous = objects.get(id);
+        objects.put(id, new MemoryObject(id, previous.getAddress(), previous.getType(), value,
+                previous.getReferences(), previous.getPointsTo()));
+        bytes += sizeChange;
+        view = null;
+    }
+
+    void remove(int id) {
+        MemoryObject previous = objects.remove(id);
+        if (previous != null) {
+            bytes -= TraceSizeEstimator.memoryObject(previous);
+            view = null;
+        }
+    }
+
+    /** Drops every object that cannot be reached from {@code roots}. */
+    void retainReachable(Collection<Integer> roots) {
+        Set<Integer> reached = new HashSet<>();
+        Deque<Integer> pending = new ArrayDeque<>(roots);
+        while (!pending.isEmpty()) {
+            Integer id = pending.pop();
+            MemoryObject object = objects.get(id);
+            if (object != null && reached.add(id) && object.getPointsTo() != null) {
+                pending.addAll(object.getPointsTo());
+            }
+        }
+        if (reached.size() == objects.size()) {
+            return;
+        }
+        objects.values().removeIf(object -> {
+            if (reached.contains(object.getId())) {
+                return false;
+            }
+            bytes -= TraceSizeEstimator.memoryObject(object);
+            return true;
+        });
+        view = null;
+    }
+
+    /** Live objects in allocation order; the same list until the heap changes. */
+    List<MemoryObject> view() {
+        if (view == null) {
+            view = List.copyOf(objects.values());
+        }
+        return view;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    // Deterministic, so identical programs produce identical traces
+    static String address(int id) {
+        return "0x" + Integer.toHexString(0x10000000 + (id - 1) * 16);
+    }
+}
@@ -0,0 +1,300 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.VisualizationStep;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * One client stepping through a trace. Steps are produced on demand: a run
+ * of the trace hands them over through a queue of {@code lookahead} steps
+ * and blocks while the client is not asking for more, which also holds the
+ * program (the Java debuggee stays suspended, the Python worker blocks on
+ * its pipe). The last {@code window} steps handed over are kept, and since
+ * steps share their state they cost little more than their changes, so
+ * stepping back inside the window is a lookup.
+ *
+ * <p>A run that waits for the client for longer than {@code releaseAfter}
+ * at a stretch, or for {@code maxPause} in total, is abandoned, which frees
+ * its worker and admission slot. Steps past an abandoned run, or before
+ * the window, are reached by tracing again from the start and keeping steps
+ * from a step number onward; this assumes the program runs the same way
+ * each time.
+ *
+ * <p>Movement is meant to be driven from one thread at a time;
+ * {@link #close} may be called from any thread.
+ */
+public final class InteractiveSession implements AutoCloseable {
+
+    private static final long PARK_SLICE_MILLIS = 100;
+    private static final AtomicInteger runCount = new AtomicInteger();
+
+    /** Limits of one session; see {@code code.visualization.interactive.*}. */
+    public record Settings(int window, int lookahead, Duration releaseAfter, Duration maxPause, Duration stepTimeout) {
+    }
+
+    /** Where the session stands: the current step, null before the first, and whether it is the trace's last. */
+    public record Position(VisualizationStep step, boolean last) {
+    }
+
+    private final BiFunction<TraceOptions, Consumer<VisualizationStep>, TraceResult> tracing;
+    private final Settings settings;
+    private final VisualizationStep[] window;
+    // A lock rather than synchronized, so a virtual thread waiting for the
+    // run does not pin the carrier the run needs
+    private final ReentrantLock lock = new ReentrantLock();
+    private int windowStart = 1;
+    private int windowEnd = 1;
+    private int cursor;
+    // Step number of the trace's final step, once a run has reached it
+    private int lastStep = -1;
+    private volatile Set<Integer> breakpoints = Set.of();
+    private volatile Run run;
+    private volatile boolean closed;
+
+    /**
+     * {@code tracing} runs the trace with the given options into the given
+     * sink; the session calls it on a thread of its own.
+     */
+    public InteractiveSession(BiFunction<TraceOptions, Consumer<VisualizationStep>, TraceResult> tracing,
+                              Settings settings) {
+        this.tracing = tracing;
+        this.settings = settings;
+        this.window = new VisualizationStep[Math.max(settings.window(), 2)];
+    }
+
+    public Position position() {
+        lock.lock();
+        try {
+            VisualizationStep step = cursor >= windowStart && cursor < windowEnd ? window[slot(cursor)] : null;
+            return new Position(step, step != null && cursor == lastStep);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Position forward() {
+        return advance(step -> true);
+    }
+
+    public Position back() {
+        lock.lock();
+        try {
+            VisualizationStep step = cursor > 1 ? stepFrom(cursor - 1) : null;
+            if (step != null) {
+                cursor = step.getStepNumber();
+            }
+            return position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Moves forward to the next step on {@code line}, or to the last step if none follows. */
+    public Position runToLine(int line) {
+        return advance(step -> Objects.equals(step.getLineHighlight(), line));
+    }
+
+    /** Moves forward to the next step on a breakpoint, or to the last step if none follows. */
+    public Position resume() {
+        Set<Integer> stops = breakpoints;
+        return advance(step -> step.getLineHighlight() != null && stops.contains(step.getLineHighlight()));
+    }
+
+    public void breakpoints(Collection<Integer> lines) {
+        breakpoints = Set.copyOf(lines);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Run current = run;
+        if (current != null) {
+            current.abandon();
+        }
+    }
+
+    private Position advance(Predicate<VisualizationStep> stop) {
+        lock.lock();
+        try {
+            VisualizationStep step;
+            while ((step = stepFrom(cursor + 1)) != null) {
+                cursor = step.getStepNumber();
+                if (stop.test(step)) {
+                    break;
+                }
+            }
+            // One step ahead, so the position can tell whether it is the last
+            if (cursor == windowEnd - 1 && lastStep < 0) {
+                fetch();
+            }
+            return position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The first step numbered n or later, tracing as far as needed, or null past the end
+    private VisualizationStep stepFrom(int n) {
+        if (n < windowStart) {
+            // Replays half a window back, so the next steps back are lookups again
+            restart(Math.max(1, n - window.length / 2));
+        }
+        while (n >= windowEnd) {
+            if (lastStep >= 0 && n > lastStep) {
+                return null;
+            }
+            if (!fetch()) {
+                return null;
+            }
+        }
+        return window[slot(Math.max(n, windowStart))];
+    }
+
+    /** Takes the next step from the run into the window; false once the trace has ended. */
+    private boolean fetch() {
+        if (run == null || run.stopped && run.queue.isEmpty()) {
+            restart(windowEnd);
+        }
+        long deadline = System.nanoTime() + settings.stepTimeout().toNanos();
+        Item item;
+        try {
+            while ((item = run.queue.poll(PARK_SLICE_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (closed) {
+                    throw new IllegalStateException("Session is closed");
+                }
+                if (run.stopped && run.queue.isEmpty()) {
+                    restart(windowEnd);
+                } else if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Timed out waiting for step " + windowEnd);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for step " + windowEnd);
+        }
+        if (item.failure() != null) {
+            run = null;
+            throw item.failure();
+        }
+        if (item.step() == null) {
+            lastStep = windowEnd - 1;
+            run = null;
+            return false;
+        }
+        keep(item.step());
+        return true;
+    }
+
+    private void keep(VisualizationStep step) {
+        int number = step.getStepNumber();
+        if (number < windowEnd) {
+            return;
+        }
+        // A rerun that diverged from the first one starts the window afresh
+        if (number > windowEnd) {
+            Arrays.fill(window, null);
+            windowStart = number;
+        }
+        // Takes the slot of the step that falls out of the window
+        window[slot(number)] = step;
+        windowEnd = number + 1;
+        windowStart = Math.max(windowStart, windowEnd - window.length);
+    }
+
+    // Starts a run whose first step is number `from`, emptying the window when it is not contiguous
+    private void restart(int from) {
+        if (closed) {
+            throw new IllegalStateException("Session is closed");
+        }
+        if (run != null) {
+            run.abandon();
+        }
+        if (from != windowEnd) {
+            Arrays.fill(window, null);
+            windowStart = from;
+            windowEnd = from;
+        }
+        run = new Run(from);
+    }
+
+    private int slot(int n) {
+        return n % window.length;
+    }
+
+    /** A step, the end of the trace (neither set), or the failure that ended it. */
+    private record Item(VisualizationStep step, RuntimeException failure) {
+    }
+
+    private static final class Abandoned extends RuntimeException {
+        Abandoned() {
+            super("Run abandoned", null, false, false);
+        }
+    }
+
+    /** One run of the trace, producing into its own queue on a virtual thread. */
+    private final class Run {
+        private final BlockingQueue<Item> queue = new ArrayBlockingQueue<>(Math.max(settings.lookahead(), 1));
+        private volatile boolean abandoned;
+        private volatile boolean stopped;
+        private long parkedNanos;
+
+        Run(int from) {
+            TraceOptions options = new TraceOptions(null, null, from > 1 ? from : null, null, false);
+            Thread.ofVirtual().name("interactive-trace-" + runCount.incrementAndGet()).start(() -> produce(options));
+        }
+
+        void abandon() {
+            abandoned = true;
+        }
+
+        private void produce(TraceOptions options) {
+            try {
+                tracing.apply(options, step -> offer(new Item(step, null)));
+                offer(new Item(null, null));
+            } catch (Abandoned e) {
+                // The session moved on or sat idle; the run's worker has been released
+            } catch (RuntimeException e) {
+                try {
+                    offer(new Item(null, e));
+                } catch (Abandoned ignored) {
+                    // Nobody is waiting for the failure either
+                }
+            } finally {
+                stopped = true;
+            }
+        }
+
+        private void offer(Item item) {
+            long start = System.nanoTime();
+            try {
+                while (!abandoned && !queue.offer(item, PARK_SLICE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    long waited = System.nanoTime() - start;
+                    if (waited > settings.releaseAfter().toNanos()
+                            || parkedNanos + waited > settings.maxPause().toNanos()) {
+                        abandoned = true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandoned = true;
+            } finally {
+                parkedNanos += System.nanoTime() - start;
+            }
+            if (abandoned) {
+                throw new Abandoned();
+            }
+        }
+    }
+}
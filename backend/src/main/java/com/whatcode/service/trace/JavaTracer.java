@@ -0,0 +1,463 @@
+package com.whatcode.service.trace;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.ArrayReference;
+import com.sun.jdi.BooleanValue;
+import com.sun.jdi.CharValue;
+import com.sun.jdi.DoubleValue;
+import com.sun.jdi.Field;
+import com.sun.jdi.FloatValue;
+import com.sun.jdi.IncompatibleThreadStateException;
+import com.sun.jdi.LocalVariable;
+import com.sun.jdi.Location;
+import com.sun.jdi.LongValue;
+import com.sun.jdi.Method;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.PrimitiveValue;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.StackFrame;
+import com.sun.jdi.StringReference;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Value;
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.whatcode.dto.VisualizationStep;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.analysis.SyntaxParser;
+import com.whatcode.service.execution.DebugListener;
+import com.whatcode.service.execution.EngineUnavailableException;
+import com.whatcode.service.execution.ExecutionResult;
+import com.whatcode.service.execution.ExecutionTask;
+import com.whatcode.service.execution.JavaDebugEngine;
+import com.whatcode.service.execution.JavaDebuggee;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import com.whatcode.service.metrics.ExecutionMetrics.Phase;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Traces Java by running the program in a debuggee JVM under the Java Debug
+ * Interface. Each JDI read is a round trip to the debuggee, so a step reads
+ * as little as it can: only the innermost frame's locals, in one request;
+ * strings and boxed values once per object; and fields of submission
+ * objects once, after which field-write events keep them current. Arrays
+ * and lists cannot be watched and are re-read while a frame holds them.
+ */
+@Component
+@ConditionalOnProperty(name = "code.visualization.java.tracer.enabled", havingValue = "true", matchIfMissing = true)
+public class JavaTracer implements Tracer {
+
+    private static final int MAX_STRING = 200;
+    private static final Set<String> BOXED = Set.of(
+            "java.lang.Integer", "java.lang.Long", "java.lang.Short", "java.lang.Byte",
+            "java.lang.Double", "java.lang.Float", "java.lang.Boolean", "java.lang.Character");
+
+    private final ObjectProvider<JavaDebugEngine> engine;
+    private final SyntaxParser syntaxParser;
+    private final ExecutionMetrics metrics;
+    private final Duration timeout;
+    private final int maxDepth;
+    private final int maxItems;
+    private final boolean changeDetection;
+
+    public JavaTracer(
+            ObjectProvider<JavaDebugEngine> engine,
+            SyntaxParser syntaxParser,
+            ExecutionMetrics metrics,
+            @org.springframework.beans.factory.annotation.Value("${code.execution.timeout:60000}") long timeoutMillis,
+            @org.springframework.beans.factory.annotation.Value("${code.visualization.java.max-depth:3}") int maxDepth,
+            @org.springframework.beans.factory.annotation.Value("${code.visualization.java.max-items:50}") int maxItems,
+            @org.springframework.beans.factory.annotation.Value("${code.visualization.java.change-detection:true}") boolean changeDetection
+    ) {
+        this.engine = engine;
+        this.syntaxParser = syntaxParser;
+        this.metrics = metrics;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.maxDepth = maxDepth;
+        this.maxItems = maxItems;
+        this.changeDetection = changeDetection;
+    }
+
+    @Override
+    public SupportedLanguage language() {
+        return SupportedLanguage.JAVA;
+    }
+
+    @Override
+    public TraceResult trace(String code, TraceOptions options, TraceBudget budget, Consumer<VisualizationStep> sink) {
+        JavaDebugEngine debugger = engine.getIfAvailable();
+        if (debugger == null) {
+            throw new EngineUnavailableException("No Java debuggee pool to trace with");
+        }
+        long start = System.nanoTime();
+        LiveTrace trace = new LiveTrace(syntaxParser.parse(code, SupportedLanguage.JAVA), options, budget, sink);
+        ExecutionResult result = debugger.debug(new ExecutionTask(code, null, timeout), new Run(trace));
+        TraceResult traced = trace.finish(result);
+        metrics.recordPhase(Phase.TRACE, SupportedLanguage.JAVA, System.nanoTime() - start - trace.waitedNanos());
+        return traced;
+    }
+
+    /** A submission frame as last read; depth is the thread's frame count while it runs. */
+    private static final class Frame {
+        private final int depth;
+        private final Method method;
+        private int pendingLine;
+        private boolean selfRead;
+        private ObjectReference self;
+        private Map<String, Value> values = Map.of();
+        private final Map<String, Object> encoded = new HashMap<>();
+
+        Frame(int depth, Method method, int line) {
+            this.depth = depth;
+            this.method = method;
+            this.pendingLine = line;
+        }
+    }
+
+    /**
+     * Folds the debug events of one run into {@link LiveTrace} updates. Like
+     * the Python tracer, a line's step is taken when its frame moves on, so
+     * it shows the line's effects.
+     */
+    private final class Run implements DebugListener {
+        private final LiveTrace trace;
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private final Map<Method, List<String>> parameterNames = new HashMap<>();
+        private final Map<Long, Integer> heapIds = new HashMap<>();
+        private final Map<Integer, List<Object>> reported = new HashMap<>();
+        // Values that never change: strings and boxed primitives
+        private final Map<Long, Object> immutable = new HashMap<>();
+        private final Map<Long, Map<String, Value>> fields = new HashMap<>();
+        private final Map<ReferenceType, Boolean> submissionTypes = new HashMap<>();
+        private Map<Long, Object> encodedThisStep = new HashMap<>();
+        // Objects each object expanded in this step refers to directly
+        private Map<Long, List<ObjectReference>> children = new HashMap<>();
+
+        Run(LiveTrace trace) {
+            this.trace = trace;
+        }
+
+        @Override
+        public boolean lineReached(LocatableEvent event) {
+            if (trace.done()) {
+                return false;
+            }
+            ThreadReference thread = event.thread();
+            Location location = event.location();
+            int depth = frameCount(thread);
+            Frame top = frames.peek();
+            // Frames unwound by an exception without an exit event
+            while (top != null && top.depth > depth) {
+                frames.pop();
+                trace.leave();
+                top = frames.peek();
+            }
+            if (top == null || depth > top.depth) {
+                Frame frame = new Frame(depth, location.method(), location.lineNumber());
+                frames.push(frame);
+                trace.enter(frameName(location.method()), parameterNames(location.method()), location.lineNumber());
+                read(thread, frame);
+                return true;
+            }
+            boolean more = close(thread, top);
+            top.pendingLine = location.lineNumber();
+            return more;
+        }
+
+        @Override
+        public boolean methodExiting(MethodExitEvent event) {
+            if (trace.done()) {
+                return false;
+            }
+            Frame top = frames.peek();
+            if (top == null || !top.method.equals(event.method())) {
+                return true;
+            }
+            boolean more = close(event.thread(), top);
+            frames.pop();
+            trace.leave();
+            return more;
+        }
+
+        @Override
+        public void fieldModified(ModificationWatchpointEvent event) {
+            ObjectReference object = event.object();
+            if (object != null) {
+                Map<String, Value> cached = fields.get(object.uniqueID());
+                if (cached != null) {
+                    cached.put(event.field().name(), event.valueToBe());
+                }
+            }
+        }
+
+        // The frame's pending line has finished: read its state and take the step
+        private boolean close(ThreadReference thread, Frame frame) {
+            read(thread, frame);
+            return trace.step(frame.pendingLine);
+        }
+
+        private void read(ThreadReference thread, Frame frame) {
+            Map<String, Value> current = new LinkedHashMap<>();
+            try {
+                StackFrame top = thread.frame(0);
+                if (!frame.selfRead) {
+                    frame.self = top.thisObject();
+                    frame.selfRead = true;
+                }
+                if (frame.self != null) {
+                    current.put("this", frame.self);
+                }
+                List<LocalVariable> visible = top.visibleVariables();
+                if (!visible.isEmpty()) {
+                    top.getValues(visible).forEach((variable, value) -> current.put(variable.name(), value));
+                }
+            } catch (AbsentInformationException e) {
+                // Compiled without local variable tables; nothing to show
+            } catch (IncompatibleThreadStateException e) {
+                throw new IllegalStateException("Submission thread is not suspended", e);
+            }
+
+            List<String> removed = new ArrayList<>();
+            for (String name : frame.values.keySet()) {
+                if (!current.containsKey(name)) {
+                    removed.add(name);
+                    frame.encoded.remove(name);
+                }
+            }
+            trace.remove(removed);
+
+            encodedThisStep = new HashMap<>();
+            children = new HashMap<>();
+            Set<String> assigned = new HashSet<>();
+            Map<Integer, List<String>> referencedBy = new LinkedHashMap<>();
+            Map<Integer, Object[]> objects = new HashMap<>();
+            current.forEach((name, value) -> {
+                Object encoded;
+                boolean same = frame.values.containsKey(name) && Objects.equals(frame.values.get(name), value);
+                if (changeDetection && same && !mutable(value)) {
+                    encoded = frame.encoded.get(name);
+                } else {
+                    encoded = encode(value, maxDepth);
+                    if (!changeDetection || !frame.encoded.containsKey(name)
+                            || !Objects.equals(frame.encoded.get(name), encoded)) {
+                        frame.encoded.put(name, encoded);
+                        trace.assign(name, encoded);
+                        assigned.add(name);
+                    }
+                }
+                if (mutable(value)) {
+                    ObjectReference object = (ObjectReference) value;
+                    int id = heapIds.computeIfAbsent(object.uniqueID(), key -> heapIds.size() + 1);
+                    referencedBy.computeIfAbsent(id, key -> new ArrayList<>()).add(name);
+                    objects.putIfAbsent(id, new Object[] {typeName(object), encoded, object.uniqueID()});
+                }
+            });
+            frame.values = current;
+
+            // Resent when a naming variable was assigned, since LiveTrace then forgets the name
+            referencedBy.forEach((id, names) -> {
+                Object[] object = objects.get(id);
+                List<Integer> pointsTo = pointsTo((Long) object[2]);
+                List<Object> entry = List.of(object[0], Objects.requireNonNullElse(object[1], "null"), names,
+                        pointsTo);
+                if (!changeDetection || !entry.equals(reported.get(id))
+                        || names.stream().anyMatch(assigned::contains)) {
+                    reported.put(id, entry);
+                    trace.object(id, (String) object[0], object[1], names, pointsTo);
+                }
+            });
+        }
+
+        // Heap ids of the numbered objects that object refers to directly
+        private List<Integer> pointsTo(long object) {
+            List<Integer> ids = new ArrayList<>();
+            for (ObjectReference child : children.getOrDefault(object, List.of())) {
+                Integer id = heapIds.get(child.uniqueID());
+                if (id != null && !ids.contains(id)) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        }
+
+        private Object encode(Value value, int depth) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof PrimitiveValue primitive) {
+                return primitive(primitive);
+            }
+            ObjectReference object = (ObjectReference) value;
+            long id = object.uniqueID();
+            if (value instanceof StringReference string) {
+                return immutable(id, () -> clip(string.value()));
+            }
+            if (encodedThisStep.containsKey(id)) {
+                return encodedThisStep.get(id);
+            }
+            ReferenceType type = object.referenceType();
+            if (BOXED.contains(type.name())) {
+                return immutable(id, () -> encode(object.getValue(type.fieldByName("value")), 0));
+            }
+            if (depth <= 0) {
+                return "<" + typeName(object) + ">";
+            }
+            if (object instanceof ArrayReference array) {
+                int length = array.length();
+                return encodeItems(id, length, length == 0 ? List.of() : array.getValues(0, Math.min(length, maxItems)),
+                        depth);
+            }
+            if (type.name().equals("java.util.ArrayList")) {
+                Map<Field, Value> list = object.getValues(List.of(type.fieldByName("size"),
+                        type.fieldByName("elementData")));
+                int size = ((PrimitiveValue) list.get(type.fieldByName("size"))).intValue();
+                ArrayReference elements = (ArrayReference) list.get(type.fieldByName("elementData"));
+                return encodeItems(id, size, size == 0 ? List.of() : elements.getValues(0, Math.min(size, maxItems)),
+                        depth);
+            }
+            if (isSubmissionType(type)) {
+                Map<String, Object> result = new LinkedHashMap<>();
+                encodedThisStep.put(id, result);
+                for (Map.Entry<String, Value> field : fields(object, type).entrySet()) {
+                    if (result.size() >= maxItems) {
+                        break;
+                    }
+                    result.put(field.getKey(), encode(field.getValue(), depth - 1));
+                    child(id, field.getValue());
+                }
+                return result;
+            }
+            return "<" + typeName(object) + ">";
+        }
+
+        private List<Object> encodeItems(long id, int length, List<Value> values, int depth) {
+            List<Object> items = new ArrayList<>();
+            encodedThisStep.put(id, items);
+            for (Value item : values) {
+                items.add(encode(item, depth - 1));
+                child(id, item);
+            }
+            if (length > maxItems) {
+                items.add("... " + (length - maxItems) + " more");
+            }
+            return items;
+        }
+
+        private void child(long parent, Value value) {
+            if (mutable(value)) {
+                children.computeIfAbsent(parent, key -> new ArrayList<>()).add((ObjectReference) value);
+            }
+        }
+
+        private Object immutable(long id, Supplier<Object> read) {
+            if (!changeDetection) {
+                return read.get();
+            }
+            Object cached = immutable.get(id);
+            if (cached == null) {
+                cached = read.get();
+                immutable.put(id, cached);
+            }
+            return cached;
+        }
+
+        private Map<String, Value> fields(ObjectReference object, ReferenceType type) {
+            Map<String, Value> cached = changeDetection ? fields.get(object.uniqueID()) : null;
+            if (cached == null) {
+                List<Field> instanceFields = type.allFields().stream().filter(f -> !f.isStatic()).toList();
+                cached = new LinkedHashMap<>();
+                if (!instanceFields.isEmpty()) {
+                    for (Map.Entry<Field, Value> entry : object.getValues(instanceFields).entrySet()) {
+                        cached.put(entry.getKey().name(), entry.getValue());
+                    }
+                }
+                if (changeDetection) {
+                    fields.put(object.uniqueID(), cached);
+                }
+            }
+            return cached;
+        }
+
+        // Objects whose contents can change while the same reference is held
+        private boolean mutable(Value value) {
+            return value instanceof ObjectReference object
+                    && !(value instanceof StringReference)
+                    && !BOXED.contains(object.referenceType().name());
+        }
+
+        private boolean isSubmissionType(ReferenceType type) {
+            return submissionTypes.computeIfAbsent(type, t -> t.classLoader() != null
+                    && t.classLoader().referenceType().name().equals(JavaDebuggee.SUBMISSION_LOADER));
+        }
+
+        private List<String> parameterNames(Method method) {
+            return parameterNames.computeIfAbsent(method, m -> {
+                try {
+                    return m.arguments().stream().map(LocalVariable::name).toList();
+                } catch (AbsentInformationException e) {
+                    return List.of();
+                }
+            });
+        }
+    }
+
+    private static int frameCount(ThreadReference thread) {
+        try {
+            return thread.frameCount();
+        } catch (IncompatibleThreadStateException e) {
+            throw new IllegalStateException("Submission thread is not suspended", e);
+        }
+    }
+
+    private static String frameName(Method method) {
+        if (method.isConstructor()) {
+            return simpleName(method.declaringType().name());
+        }
+        return method.name();
+    }
+
+    private static String typeName(ObjectReference object) {
+        return simpleName(object.referenceType().name());
+    }
+
+    private static String simpleName(String name) {
+        return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
+    }
+
+    private static String clip(String text) {
+        return text.length() <= MAX_STRING ? text : text.substring(0, MAX_STRING) + "...";
+    }
+
+    private static Object primitive(PrimitiveValue value) {
+        if (value instanceof BooleanValue bool) {
+            return bool.value();
+        }
+        if (value instanceof CharValue character) {
+            return String.valueOf(character.value());
+        }
+        if (value instanceof LongValue longValue) {
+            return longValue.value();
+        }
+        if (value instanceof DoubleValue || value instanceof FloatValue) {
+            double number = value.doubleValue();
+            return Double.isFinite(number) ? number : Double.toString(number);
+        }
+        return value.intValue();
+    }
+}
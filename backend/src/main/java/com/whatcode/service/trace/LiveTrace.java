@@ -0,0 +1,370 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.ControlFlow;
+import com.whatcode.dto.MemoryObject;
+import com.whatcode.dto.StackFrame;
+import com.whatcode.dto.VisualizationStep;
+import com.whatcode.service.analysis.SyntaxTree;
+import com.whatcode.service.execution.ExecutionResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Step builder for the {@link Tracer}s that observe a running program. The
+ * tracer reports calls, returns, changed variables of the innermost frame
+ * and changed heap objects as they happen, then closes each finished line
+ * with {@link #step}; this class keeps the running state in the same O(1)
+ * snapshot structures as the source-based trace and applies the request's
+ * window and budgets.
+ */
+final class LiveTrace {
+
+    private static final class Frame {
+        private final String name;
+        private final List<String> params;
+        private final boolean visible;
+        private VariableTable variables = new VariableTable();
+        // Heap object each variable names, the roots that keep objects alive
+        private final Map<String, Integer> references = new HashMap<>();
+        private long bytes;
+        private int line;
+        private StackFrame view;
+        private boolean returned;
+
+        Frame(String name, List<String> params, int line, boolean visible) {
+            this.name = name;
+            this.params = params;
+            this.line = line;
+            this.visible = visible;
+        }
+
+        StackFrame refreshView() {
+            Map<String, Object> current = variables.current();
+            Map<String, Object> parameters = new LinkedHashMap<>();
+            for (String param : params) {
+                parameters.put(param, current.get(param));
+            }
+            view = StackFrame.builder()
+                    .functionName(name)
+                    .parameters(parameters)
+                    .localVariables(variables.snapshot())
+                    .lineNumber(line)
+                    .build();
+            return view;
+        }
+    }
+
+    private final SyntaxTree tree;
+    private final TraceOptions options;
+    private final TraceBudget budget;
+    private final Consumer<VisualizationStep> sink;
+    private final long startNanos = System.nanoTime();
+    private long waitedNanos;
+
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final SnapshotList<StackFrame> stackFrames = new SnapshotList<>();
+    private final SnapshotList<ControlFlow> controlFlow = new SnapshotList<>();
+    private final HeapModel heap = new HeapModel();
+    // Names that stopped naming an object since the last step
+    private final Map<Integer, Set<String>> unnamed = new HashMap<>();
+    private final StructureTable structures = new StructureTable();
+    private long frameBytes;
+    private long flowBytes;
+    private long changedBytes;
+    private boolean variablesChanged;
+    private boolean rootsChanged;
+
+    private int stepNum = 1;
+    private int emitted;
+    private long traceBytes;
+    private long retainedBytes;
+    private String truncation;
+    private String tracerTruncation;
+    private int lastLine;
+    private int previousLine;
+    private String pendingFlow;
+    private boolean done;
+
+    LiveTrace(SyntaxTree tree, TraceOptions options, TraceBudget budget, Consumer<VisualizationStep> sink) {
+        this.tree = tree;
+        this.options = options;
+        this.budget = budget;
+        this.sink = sink;
+    }
+
+    /** Time spent handing steps to the sink, which the wall-time budget does not count. */
+    long waitedNanos() {
+        return waitedNanos;
+    }
+
+    /** True once the window or a budget is exhausted; later reports are ignored. */
+    boolean done() {
+        return done;
+    }
+
+    /** Starts a frame that holds variables but is not shown on the call stack, such as Python's module. */
+    void enterRoot(String name) {
+        frames.push(new Frame(name, List.of(), 0, false));
+    }
+
+    void enter(String name, List<String> params, int line) {
+        // A returned bottom frame only stays to show its final variables
+        if (frames.size() == 1 && frames.peek().returned) {
+            frames.pop().references.forEach(this::unname);
+        }
+        Frame frame = new Frame(name, params, line, true);
+        frames.push(frame);
+        stackFrames.add(frame.refreshView());
+        frameBytes += TraceSizeEstimator.frame(frame.view);
+        variablesChanged = true;
+        pendingFlow = "call";
+    }
+
+    void leave() {
+        Frame frame = frames.peek();
+        if (frame == null || !frame.visible || frame.returned) {
+            pendingFlow = "return";
+            return;
+        }
+        stackFrames.removeLast();
+        frameBytes -= TraceSizeEstimator.frame(frame.view);
+        if (frames.size() > 1) {
+            frames.pop().references.forEach(this::unname);
+        } else {
+            frame.returned = true;
+        }
+        variablesChanged = true;
+        pendingFlow = "return";
+    }
+
+    /** Sets a variable of the innermost frame. */
+    void assign(String name, Object value) {
+        Frame top = frames.peek();
+        Map<String, Object> current = top.variables.current();
+        if (current.containsKey(name)) {
+            top.bytes -= TraceSizeEstimator.variable(name, current.get(name));
+        }
+        top.variables.put(name, value);
+        // Names an object again only if the tracer reports it in this step
+        unname(name, top.references.remove(name));
+        long bytes = TraceSizeEstimator.variable(name, value);
+        top.bytes += bytes;
+        changedBytes += bytes;
+        variablesChanged = true;
+    }
+
+    /** Drops variables of the innermost frame that went out of scope. */
+    void remove(Collection<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        Frame top = frames.peek();
+        Map<String, Object> kept = new LinkedHashMap<>(top.variables.snapshot());
+        kept.keySet().removeAll(names);
+        top.variables = new VariableTable(kept);
+        for (String name : names) {
+            unname(name, top.references.remove(name));
+        }
+        top.bytes = 0;
+        kept.forEach((name, value) -> top.bytes += TraceSizeEstimator.variable(name, value));
+        variablesChanged = true;
+    }
+
+    /**
+     * Adds or replaces heap object {@code id}, named by {@code references}
+     * in the innermost frame and pointing to the objects in
+     * {@code pointsTo}. Ids are small, stable and start at 1. The tracer
+     * reports an object whenever it changes or a variable naming it is
+     * assigned; objects no frame can reach any more are dropped.
+     */
+    void object(int id, String type, Object value, List<String> references, List<Integer> pointsTo) {
+        changedBytes += heap.put(id, type, value, references, pointsTo);
+        Frame top = frames.peek();
+        for (String name : references) {
+            top.references.put(name, id);
+        }
+        rootsChanged = true;
+    }
+
+    private void unname(String name, Integer id) {
+        if (id != null) {
+            unnamed.computeIfAbsent(id, key -> new HashSet<>()).add(name);
+            rootsChanged = true;
+        }
+    }
+
+    /** Records why the run stopped reporting early. */
+    void truncate(String reason) {
+        tracerTruncation = reason;
+    }
+
+    /**
+     * Closes {@code line} of the innermost frame with the state reported so
+     * far. Returns false once no further step can be emitted.
+     */
+    boolean step(int line) {
+        Frame top = frames.peek();
+        top.line = line;
+        if (top.visible && !top.returned) {
+            frameBytes -= TraceSizeEstimator.frame(top.view);
+            stackFrames.removeLast();
+            stackFrames.add(top.refreshView());
+            frameBytes += TraceSizeEstimator.frame(top.view);
+        }
+        if (rootsChanged) {
+            List<Integer> roots = new ArrayList<>();
+            for (Frame frame : frames) {
+                roots.addAll(frame.references.values());
+            }
+            heap.retainReachable(roots);
+            // Objects that stay reachable through others stop listing the names they lost
+            unnamed.forEach((id, names) -> {
+                MemoryObject object = heap.get(id);
+                if (object == null) {
+                    return;
+                }
+                List<String> kept = object.getReferences().stream()
+                        .filter(name -> !names.contains(name) || id.equals(top.references.get(name)))
+                        .toList();
+                if (kept.size() < object.getReferences().size()) {
+                    changedBytes += heap.put(id, object.getType(), object.getValue(), kept, object.getPointsTo());
+                }
+            });
+            unnamed.clear();
+        }
+        if (variablesChanged || rootsChanged) {
+            refreshDataStructures();
+        }
+        long stepChanges = changedBytes;
+        variablesChanged = false;
+        rootsChanged = false;
+        changedBytes = 0;
+
+        if (previousLine > 0) {
+            // Calls and returns are known from the run itself; other edges come from the program's structure
+            ControlFlow flow = tree.flow(previousLine - 1, line - 1);
+            if (pendingFlow != null) {
+                flow.setType(pendingFlow);
+                flow.setCondition(null);
+            }
+            controlFlow.add(flow);
+            flowBytes += TraceSizeEstimator.controlFlow(flow);
+        }
+        previousLine = line;
+        pendingFlow = null;
+
+        if (options.pastLastStep(stepNum)) {
+            done = true;
+            return false;
+        }
+        if (System.nanoTime() - startNanos - waitedNanos > budget.maxWallTimeMillis() * 1_000_000) {
+            truncation = "time limit of " + budget.maxWallTimeMillis() + " ms reached";
+            done = true;
+            return false;
+        }
+        if (options.includesLine(line) && options.includesStep(stepNum)) {
+            if (emitted >= budget.maxSteps()) {
+                truncation = "step limit of " + budget.maxSteps() + " reached";
+                done = true;
+                return false;
+            }
+            long stepBytes = TraceSizeEstimator.STEP_OVERHEAD + (options.fullSnapshots() ? stateBytes() : stepChanges);
+            if (traceBytes + stepBytes > budget.maxTraceBytes()) {
+                truncation = "size limit of " + budget.maxTraceBytes() + " bytes reached";
+                done = true;
+                return false;
+            }
+            traceBytes += stepBytes;
+            retainedBytes += TraceSizeEstimator.STEP_OVERHEAD + stepChanges;
+            emit(snapshot(stepNum, describe(line), line, null));
+            emitted++;
+            lastLine = line;
+        }
+        stepNum++;
+        return true;
+    }
+
+    /** Ends the trace with the truncation marker, if any, and the step carrying the run's output. */
+    TraceResult finish(ExecutionResult result) {
+        // A step window that ended before the run's own limit is not a truncation
+        if (truncation == null && tracerTruncation != null && !options.pastLastStep(stepNum)) {
+            truncation = tracerTruncation;
+        }
+        if (truncation != null) {
+            emit(snapshot(stepNum++, "Trace truncated: " + truncation,
+                    lastLine > 0 ? lastLine : null, null));
+            emitted++;
+        }
+        // Emitted even without steps, so a program that fails to compile still shows why
+        if (options.toLine() == null && options.includesStep(stepNum)) {
+            String output = result.success() || result.stderr() == null || result.stderr().isEmpty()
+                    ? result.stdout()
+                    : result.stdout() + result.stderr();
+            emit(snapshot(stepNum, "Execution completed", null, output));
+            emitted++;
+        }
+        return new TraceResult(emitted, truncation != null, truncation, retainedBytes);
+    }
+
+    // A consumer that pauses, such as an interactive session, also pauses the program
+    private void emit(VisualizationStep step) {
+        long start = System.nanoTime();
+        sink.accept(step);
+        waitedNanos += System.nanoTime() - start;
+    }
+
+    // Lists and dicts held by the innermost frame's variables, one per heap object
+    private void refreshDataStructures() {
+        Set<Integer> live = new HashSet<>();
+        Frame top = frames.peek();
+        if (top != null) {
+            top.variables.snapshot().forEach((name, value) -> {
+                Integer id = top.references.get(name);
+                MemoryObject object = id != null ? heap.get(id) : null;
+                boolean structure = value instanceof List
+                        || value instanceof Map && object != null && "dict".equals(object.getType());
+                if (object != null && structure && live.add(id)) {
+                    changedBytes += structures.update(id, name, value);
+                }
+            });
+        }
+        structures.retain(live);
+    }
+
+    private long stateBytes() {
+        return (frames.isEmpty() ? 0 : frames.peek().bytes) + frameBytes + heap.bytes() + flowBytes + structures.bytes();
+    }
+
+    private String describe(int line) {
+        int index = line - 1;
+        if (index < 0 || index >= tree.lineCount()) {
+            return "Executing line " + line;
+        }
+        return TraceEngine.describe(tree.analysisAt(index));
+    }
+
+    private VisualizationStep snapshot(int stepNumber, String description, Integer lineHighlight, String output) {
+        return VisualizationStep.builder()
+                .stepNumber(stepNumber)
+                .description(description)
+                .lineHighlight(lineHighlight)
+                .output(output)
+                .variableStates(frames.isEmpty() ? Map.of() : frames.peek().variables.snapshot())
+                .stackFrames(stackFrames.snapshot())
+                .memoryObjects(heap.view())
+                .controlFlow(controlFlow.snapshot())
+                .dataStructures(structures.view())
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.whatcode.service.trace;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list whose updates return a new list sharing all but the
+ * changed path with the old one. Elements live in a 32-way trie plus a tail
+ * of up to 32 elements, so {@link #with}, {@link #push} and {@link #pop}
+ * copy at most one short array per trie level (O(log32 n)) and a trace can
+ * keep every version of a large array for the price of its changes.
+ */
+public final class PersistentVector<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[0];
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, EMPTY_NODE);
+
+    private final int size;
+    private final int shift;
+    // Interior nodes hold child nodes and leaves hold elements; nodes are
+    // only as long as they need to be
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    public static <T> PersistentVector<T> of(Collection<? extends T> items) {
+        PersistentVector<T> vector = empty();
+        for (T item : items) {
+            vector = vector.push(item);
+        }
+        return vector;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (T) leafFor(index)[index & MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** This list with element {@code index} replaced by {@code item}. */
+    public PersistentVector<T> with(int index, T item) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = item;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, with(shift, root, index, item), tail);
+    }
+
+    /** This list with {@code item} appended. */
+    public PersistentVector<T> push(T item) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = item;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // The tail is full: it becomes a leaf of the trie, which grows a level when the root is full
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[] {root, path(shift, tail)};
+            newShift += BITS;
+        } else {
+            newRoot = pushLeaf(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] {item});
+    }
+
+    /** This list without its last element. */
+    public PersistentVector<T> pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Cannot pop an empty vector");
+        }
+        if (size == 1) {
+            return empty();
+        }
+        if (size - tailOffset() > 1) {
+            return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+        // The tail empties: the trie's last leaf becomes the tail
+        Object[] newTail = leafFor(size - 2);
+        Object[] newRoot = popLeaf(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot.length == 1) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] with(int level, Object[] node, int index, Object item) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = item;
+        } else {
+            int child = (index >>> level) & MASK;
+            copy[child] = with(level - BITS, (Object[]) node[child], index, item);
+        }
+        return copy;
+    }
+
+    private Object[] pushLeaf(int level, Object[] parent, Object[] leaf) {
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] copy = Arrays.copyOf(parent, Math.max(parent.length, child + 1));
+        if (level == BITS) {
+            copy[child] = leaf;
+        } else if (child < parent.length) {
+            copy[child] = pushLeaf(level - BITS, (Object[]) parent[child], leaf);
+        } else {
+            copy[child] = path(level - BITS, leaf);
+        }
+        return copy;
+    }
+
+    // Null when the node is left without children
+    private Object[] popLeaf(int level, Object[] node) {
+        int child = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] newChild = popLeaf(level - BITS, (Object[]) node[child]);
+            if (newChild == null) {
+                return child == 0 ? null : Arrays.copyOf(node, child);
+            }
+            Object[] copy = node.clone();
+            copy[child] = newChild;
+            return copy;
+        }
+        return child == 0 ? null : Arrays.copyOf(node, child);
+    }
+
+    private static Object[] path(int level, Object[] leaf) {
+        return level == 0 ? leaf : new Object[] {path(level - BITS, leaf)};
+    }
+}
@@ -0,0 +1,146 @@
+package com.whatcode.service.trace;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.dto.VisualizationStep;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.analysis.SyntaxParser;
+import com.whatcode.service.execution.EngineUnavailableException;
+import com.whatcode.service.execution.ExecutionEngineRegistry;
+import com.whatcode.service.execution.ExecutionResult;
+import com.whatcode.service.execution.ExecutionTask;
+import com.whatcode.service.execution.ProcessExecutionEngine;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import com.whatcode.service.metrics.ExecutionMetrics.Phase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Traces Python by running the program under {@code sys.settrace} in the
+ * pooled workers, so steps show the real variables, frames and objects of
+ * the run. The worker streams compact events (see {@code python_worker.py})
+ * carrying only what changed, which {@link LiveTrace} folds into steps.
+ */
+@Component
+@ConditionalOnProperty(name = "code.visualization.python.tracer.enabled", havingValue = "true", matchIfMissing = true)
+public class PythonTracer implements Tracer {
+
+    private static final TypeReference<List<Object>> EVENT = new TypeReference<>() {
+    };
+
+    private final ExecutionEngineRegistry engines;
+    private final SyntaxParser syntaxParser;
+    private final ObjectMapper objectMapper;
+    private final ExecutionMetrics metrics;
+    private final Duration timeout;
+    private final int maxDepth;
+    private final int maxItems;
+    private final int maxEvents;
+
+    public PythonTracer(
+            ExecutionEngineRegistry engines,
+            SyntaxParser syntaxParser,
+            ObjectMapper objectMapper,
+            ExecutionMetrics metrics,
+            @Value("${code.execution.timeout:60000}") long timeoutMillis,
+            @Value("${code.visualization.python.max-depth:3}") int maxDepth,
+            @Value("${code.visualization.python.max-items:50}") int maxItems,
+            @Value("${code.visualization.python.max-events:100000}") int maxEvents
+    ) {
+        this.engines = engines;
+        this.syntaxParser = syntaxParser;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.maxDepth = maxDepth;
+        this.maxItems = maxItems;
+        this.maxEvents = maxEvents;
+    }
+
+    @Override
+    public SupportedLanguage language() {
+        return SupportedLanguage.PYTHON;
+    }
+
+    @Override
+    public TraceResult trace(String code, TraceOptions options, TraceBudget budget, Consumer<VisualizationStep> sink) {
+        if (!(engines.engineFor(SupportedLanguage.PYTHON) instanceof ProcessExecutionEngine engine)) {
+            throw new EngineUnavailableException("No Python worker pool to trace with");
+        }
+        Map<String, Object> tracerOptions = Map.of(
+                "maxSteps", stepLimit(options, budget),
+                "maxDepth", maxDepth,
+                "maxItems", maxItems,
+                "maxWallMs", budget.maxWallTimeMillis());
+
+        long start = System.nanoTime();
+        LiveTrace trace = new LiveTrace(syntaxParser.parse(code, SupportedLanguage.PYTHON), options, budget, sink);
+        ExecutionResult result = engine.trace(new ExecutionTask(code, null, timeout), tracerOptions,
+                new Run(trace)::accept);
+        TraceResult traced = trace.finish(result);
+        metrics.recordPhase(Phase.TRACE, SupportedLanguage.PYTHON, System.nanoTime() - start - trace.waitedNanos());
+        return traced;
+    }
+
+    // The worker counts every step, including those outside the requested window
+    private int stepLimit(TraceOptions options, TraceBudget budget) {
+        if (options.fromLine() != null || options.toLine() != null) {
+            return maxEvents;
+        }
+        long limit = (options.fromStep() != null ? options.fromStep() - 1L : 0L) + budget.maxSteps();
+        if (options.toStep() != null) {
+            limit = Math.min(limit, options.toStep());
+        }
+        return (int) Math.min(limit, maxEvents);
+    }
+
+    /** Decodes the event stream of one run into {@link LiveTrace} updates. */
+    private final class Run {
+        private final LiveTrace trace;
+
+        Run(LiveTrace trace) {
+            this.trace = trace;
+            trace.enterRoot("<module>");
+        }
+
+        @SuppressWarnings("unchecked")
+        void accept(String line) {
+            if (trace.done()) {
+                return;
+            }
+            List<Object> event;
+            try {
+                event = objectMapper.readValue(line, EVENT);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Malformed trace event from Python worker", e);
+            }
+            switch ((String) event.get(0)) {
+                case "c" -> trace.enter((String) event.get(1), (List<String>) event.get(3),
+                        ((Number) event.get(2)).intValue());
+                case "r" -> trace.leave();
+                case "s" -> step(((Number) event.get(1)).intValue(), (Map<String, Object>) event.get(2),
+                        (List<String>) event.get(3), (List<List<Object>>) event.get(4));
+                case "t" -> trace.truncate((String) event.get(1));
+                default -> { }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void step(int line, Map<String, Object> changed, List<String> removed, List<List<Object>> objects) {
+            trace.remove(removed);
+            changed.forEach(trace::assign);
+            for (List<Object> entry : objects) {
+                trace.object(((Number) entry.get(0)).intValue(), (String) entry.get(1), entry.get(2),
+                        (List<String>) entry.get(3), (List<Integer>) entry.get(4));
+            }
+            trace.step(line);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.whatcode.service.trace;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Growable list whose {@link #snapshot()} is O(1): a snapshot is an immutable
+ * view of the current prefix of the backing array. Appends never touch slots a
+ * snapshot can see; the only write that could, an append after
+ * {@link #removeLast()}, copies the array first.
+ */
+public final class SnapshotList<T> {
+
+    private Object[] items;
+    private int size;
+    // Slots [0, exposed) of the current array are visible through snapshots
+    private int exposed;
+
+    public SnapshotList() {
+        this.items = new Object[8];
+    }
+
+    public SnapshotList(List<T> initial) {
+        this.items = initial.toArray(new Object[Math.max(8, initial.size())]);
+        this.size = initial.size();
+    }
+
+    public void add(T item) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+            exposed = 0;
+        } else if (size < exposed) {
+            items = items.clone();
+            exposed = 0;
+        }
+        items[size++] = item;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T removeLast() {
+        T item = (T) items[--size];
+        if (size >= exposed) {
+            items[size] = null;
+        }
+        return item;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (T) items[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public List<T> snapshot() {
+        exposed = Math.max(exposed, size);
+        return new View<>(items, size);
+    }
+
+    private static final class View<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] items;
+        private final int size;
+
+        View(Object[] items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (T) items[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
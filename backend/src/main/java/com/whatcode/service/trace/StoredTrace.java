@@ -0,0 +1,24 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.StepDelta;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A delta-encoded trace held by the {@link TraceStore}, with the summary
+ * returned to clients when they first ask for it.
+ */
+public record StoredTrace(
+        String id,
+        List<StepDelta> deltas,
+        Map<Integer, List<Integer>> lineMap,
+        String output,
+        boolean truncated,
+        long weight
+) {
+
+    public int stepCount() {
+        return deltas.size();
+    }
+}
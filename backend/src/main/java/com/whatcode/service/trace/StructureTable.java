@@ -0,0 +1,299 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.DataStructure;
+import com.whatcode.dto.StructureOperation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The data structures of one trace, keyed by the id of the heap object that
+ * holds them. List contents are kept in {@link PersistentVector}s, so a new
+ * version shares everything but the changed elements with the one before
+ * and earlier steps keep theirs. Each version records the element
+ * operations that produced it, and {@link #replay} rebuilds it from the
+ * previous version and those operations.
+ */
+public final class StructureTable {
+
+    // Beyond this many element changes a version stores the new contents instead
+    private static final int MAX_OPERATIONS = 32;
+    private static final List<String> OPERATIONS = List.of("read", "write");
+
+    private final Map<Integer, DataStructure> structures = new LinkedHashMap<>();
+    private final Map<Integer, Long> sizes = new HashMap<>();
+    private long bytes;
+    private List<DataStructure> view = List.of();
+
+    StructureTable() {
+    }
+
+    /** Resumes the structures a step saw. */
+    StructureTable(List<DataStructure> live) {
+        for (DataStructure structure : live) {
+            long size = TraceSizeEstimator.dataStructure(structure);
+            structures.put(structure.getId(), structure);
+            sizes.put(structure.getId(), size);
+            bytes += size;
+        }
+        view = List.copyOf(live);
+    }
+
+    /**
+     * Records that object {@code id}, named {@code name}, holds {@code value},
+     * a list or a map. A value of the same shape as the object's previous
+     * one becomes a new version holding the element operations between
+     * them. Returns the estimated size of what changed.
+     */
+    long update(int id, String name, Object value) {
+        DataStructure previous = structures.get(id);
+        String type = type(value);
+        List<StructureOperation> changes = null;
+        Object data;
+        if (previous != null && previous.getData() == value) {
+            if (previous.getType().equals(type) && Objects.equals(previous.getName(), name)) {
+                return 0;
+            }
+            changes = List.of();
+        } else if (previous != null && value instanceof List<?> list
+                && previous.getData() instanceof PersistentVector<?> old) {
+            changes = listChanges(old, list, type.equals("graph"));
+        } else if (previous != null && value instanceof Map<?, ?> map && previous.getData() instanceof Map<?, ?> old) {
+            changes = mapChanges(old, map);
+        }
+        if (changes != null && changes.isEmpty() && previous.getType().equals(type)
+                && Objects.equals(previous.getName(), name)) {
+            return 0;
+        }
+        if (changes != null) {
+            data = replay(previous.getData(), changes);
+        } else if (value instanceof PersistentVector<?> vector) {
+            data = vector;
+        } else if (value instanceof List<?> list) {
+            data = PersistentVector.of(list);
+        } else {
+            data = Collections.unmodifiableMap(new LinkedHashMap<>((Map<?, ?>) value));
+        }
+        return put(previous, id, name, type, data, changes);
+    }
+
+    /**
+     * Applies {@code operation} to the list held by object {@code id}.
+     * Returns the new contents, or null when the object holds no list or
+     * the operation does not fit it.
+     */
+    PersistentVector<Object> apply(int id, StructureOperation operation) {
+        DataStructure previous = structures.get(id);
+        if (previous == null || !(previous.getData() instanceof PersistentVector<?> old)) {
+            return null;
+        }
+        int size = old.size();
+        boolean fits = switch (operation.getOp()) {
+            case "set", "edge" -> operation.getIndex() != null && operation.getIndex() >= 0
+                    && operation.getIndex() < size;
+            case "pop" -> size > 0;
+            case "push" -> true;
+            default -> false;
+        };
+        if (!fits) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        PersistentVector<Object> data = (PersistentVector<Object>) replay(old, List.of(operation));
+        put(previous, id, previous.getName(), previous.getType(), data, List.of(operation));
+        return data;
+    }
+
+    void remove(int id) {
+        if (structures.remove(id) != null) {
+            bytes -= sizes.remove(id);
+            view = null;
+        }
+    }
+
+    /** Drops the structures of every object not in {@code ids}. */
+    void retain(Collection<Integer> ids) {
+        Set<Integer> kept = ids instanceof Set<Integer> set ? set : new HashSet<>(ids);
+        for (Integer id : List.copyOf(structures.keySet())) {
+            if (!kept.contains(id)) {
+                remove(id);
+            }
+        }
+    }
+
+    /** Estimated size of the structure held by object {@code id}, or 0. */
+    long size(int id) {
+        return sizes.getOrDefault(id, 0L);
+    }
+
+    /** Live structures in order of first appearance; the same list until one changes. */
+    List<DataStructure> view() {
+        if (view == null) {
+            view = List.copyOf(structures.values());
+        }
+        return view;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Applies {@code changes} to {@code data}, a list or map version, and
+     * returns the resulting version. {@code data} is left untouched.
+     */
+    public static Object replay(Object data, List<StructureOperation> changes) {
+        if (data instanceof Map<?, ?> map) {
+            Map<Object, Object> result = new LinkedHashMap<>(map);
+            for (StructureOperation change : changes) {
+                if (change.getOp().equals("delete")) {
+                    result.remove(change.getKey());
+                } else {
+                    result.put(change.getKey(), change.getValue());
+                }
+            }
+            return Collections.unmodifiableMap(result);
+        }
+        @SuppressWarnings("unchecked")
+        PersistentVector<Object> vector = data instanceof PersistentVector<?> existing
+                ? (PersistentVector<Object>) existing
+                : PersistentVector.of((List<Object>) data);
+        for (StructureOperation change : changes) {
+            vector = switch (change.getOp()) {
+                case "set" -> vector.with(change.getIndex(), change.getValue());
+                case "push" -> vector.push(change.getValue());
+                case "pop" -> vector.pop();
+                case "edge" -> {
+                    List<Object> edges = new ArrayList<>((List<?>) vector.get(change.getIndex()));
+                    edges.add(change.getValue());
+                    yield vector.with(change.getIndex(), Collections.unmodifiableList(edges));
+                }
+                default -> throw new IllegalArgumentException("Unknown list operation " + change.getOp());
+            };
+        }
+        return vector;
+    }
+
+    private long put(DataStructure previous, int id, String name, String type, Object data,
+                     List<StructureOperation> changes) {
+        DataStructure structure = DataStructure.builder()
+                .id(id)
+                .name(name)
+                .type(type)
+                .version(previous != null ? previous.getVersion() + 1 : 1)
+                .data(data)
+                .operations(OPERATIONS)
+                .changes(changes)
+                .build();
+        structures.put(id, structure);
+        view = null;
+
+        long oldSize = previous != null ? sizes.get(id) : 0;
+        long changed;
+        long size;
+        if (changes == null) {
+            size = TraceSizeEstimator.dataStructure(structure);
+            changed = size;
+        } else {
+            // Large lists are never walked again; their size follows the operations
+            changed = 60;
+            size = oldSize;
+            Object before = previous.getData();
+            int popped = 0;
+            for (StructureOperation change : changes) {
+                long itemSize = TraceSizeEstimator.value(change.getValue()) + 1;
+                changed += 20 + itemSize;
+                size += switch (change.getOp()) {
+                    case "push", "edge" -> itemSize;
+                    case "set" -> itemSize - TraceSizeEstimator.value(((List<?>) before).get(change.getIndex())) - 1;
+                    case "pop" -> {
+                        List<?> list = (List<?>) before;
+                        yield -TraceSizeEstimator.value(list.get(list.size() - 1 - popped++)) - 1;
+                    }
+                    case "put" -> {
+                        Map<?, ?> map = (Map<?, ?>) before;
+                        yield map.containsKey(change.getKey())
+                                ? itemSize - TraceSizeEstimator.value(map.get(change.getKey())) - 1
+                                : itemSize + change.getKey().length() + 3;
+                    }
+                    case "delete" -> -TraceSizeEstimator.value(((Map<?, ?>) before).get(change.getKey()))
+                            - change.getKey().length() - 4;
+                    default -> 0;
+                };
+            }
+        }
+        sizes.put(id, size);
+        bytes += size - oldSize;
+        return changed;
+    }
+
+    private static String type(Object value) {
+        if (value instanceof Map) {
+            return "map";
+        }
+        List<?> list = (List<?>) value;
+        return !list.isEmpty() && list.get(0) instanceof List ? "graph" : "array";
+    }
+
+    // Null when the lists differ in too many places to be worth describing
+    private static List<StructureOperation> listChanges(List<?> old, List<?> current, boolean graph) {
+        List<StructureOperation> changes = new ArrayList<>();
+        int common = Math.min(old.size(), current.size());
+        if (Math.abs(old.size() - current.size()) > MAX_OPERATIONS) {
+            return null;
+        }
+        for (int i = 0; i < common; i++) {
+            Object before = old.get(i);
+            Object after = current.get(i);
+            if (!Objects.equals(before, after)) {
+                changes.add(graph && appendedOne(before, after)
+                        ? StructureOperation.builder().op("edge").index(i).value(last((List<?>) after)).build()
+                        : StructureOperation.builder().op("set").index(i).value(after).build());
+                if (changes.size() > MAX_OPERATIONS) {
+                    return null;
+                }
+            }
+        }
+        for (int i = common; i < current.size(); i++) {
+            changes.add(StructureOperation.builder().op("push").value(current.get(i)).build());
+        }
+        for (int i = common; i < old.size(); i++) {
+            changes.add(StructureOperation.builder().op("pop").build());
+        }
+        return changes.size() > MAX_OPERATIONS ? null : changes;
+    }
+
+    private static Object last(List<?> list) {
+        return list.get(list.size() - 1);
+    }
+
+    private static boolean appendedOne(Object before, Object after) {
+        return before instanceof List<?> shorter && after instanceof List<?> longer
+                && longer.size() == shorter.size() + 1
+                && longer.subList(0, shorter.size()).equals(shorter);
+    }
+
+    private static List<StructureOperation> mapChanges(Map<?, ?> old, Map<?, ?> current) {
+        List<StructureOperation> changes = new ArrayList<>();
+        for (Map.Entry<?, ?> entry : current.entrySet()) {
+            if (!old.containsKey(entry.getKey()) || !Objects.equals(old.get(entry.getKey()), entry.getValue())) {
+                changes.add(StructureOperation.builder()
+                        .op("put").key(String.valueOf(entry.getKey())).value(entry.getValue()).build());
+            }
+        }
+        for (Object key : old.keySet()) {
+            if (!current.containsKey(key)) {
+                changes.add(StructureOperation.builder().op("delete").key(String.valueOf(key)).build());
+            }
+        }
+        return changes.size() > MAX_OPERATIONS ? null : changes;
+    }
+}
@@ -0,0 +1,7 @@
+package com.whatcode.service.trace;
+
+/**
+ * Limits on one trace; hitting any of them ends the trace with a marker step.
+ */
+public record TraceBudget(int maxSteps, long maxTraceBytes, long maxWallTimeMillis) {
+}
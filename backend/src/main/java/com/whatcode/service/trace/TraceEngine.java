@@ -0,0 +1,473 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.*;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.analysis.LineAnalysis;
+import com.whatcode.service.analysis.ListMutation;
+import com.whatcode.service.analysis.SyntaxParser;
+import com.whatcode.service.analysis.SyntaxTree;
+import com.whatcode.service.analysis.ValueParser;
+import com.whatcode.service.execution.EngineUnavailableException;
+import com.whatcode.service.metrics.ExecutionMetrics;
+import com.whatcode.service.metrics.ExecutionMetrics.Phase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Builds visualization steps for a whole program. Trace state lives in
+ * {@link SnapshotList} and {@link VariableTable}, so each step captures the
+ * state in O(1) and total work grows linearly with program length. Budgets
+ * on step count, estimated trace size and wall time end the trace with a
+ * marker step instead of cutting it silently.
+ *
+ * <p>Languages with a {@link Tracer} are traced by running the program; the
+ * source-based trace remains the fallback when the tracer's engine is
+ * unavailable.
+ */
+@Slf4j
+@Component
+public class TraceEngine {
+
+    private final SyntaxParser syntaxParser;
+    private final Map<SupportedLanguage, Tracer> tracers = new EnumMap<>(SupportedLanguage.class);
+    private final ExecutionMetrics metrics;
+    private final int maxSteps;
+    private final long maxTraceBytes;
+    private final long maxWallTimeNanos;
+
+    public TraceEngine(
+            SyntaxParser syntaxParser,
+            ExecutionMetrics metrics,
+            List<Tracer> tracers,
+            @Value("${code.visualization.max-steps:10000}") int maxSteps,
+            @Value("${code.visualization.max-trace-bytes:16777216}") long maxTraceBytes,
+            @Value("${code.visualization.max-wall-time-ms:5000}") long maxWallTimeMillis
+    ) {
+        this.syntaxParser = syntaxParser;
+        this.metrics = metrics;
+        this.maxSteps = maxSteps;
+        this.maxTraceBytes = maxTraceBytes;
+        this.maxWallTimeNanos = maxWallTimeMillis * 1_000_000;
+        for (Tracer tracer : tracers) {
+            this.tracers.putIfAbsent(tracer.language(), tracer);
+        }
+    }
+
+    /**
+     * Streams the trace of {@code code} into {@code sink}. The final
+     * "Execution completed" step carries the text from {@code output}, which
+     * is only invoked when that step falls inside the requested window.
+     */
+    public TraceResult trace(
+            String code,
+            SupportedLanguage language,
+            TraceOptions options,
+            Supplier<String> output,
+            Consumer<VisualizationStep> sink
+    ) {
+        return trace(code, language, options, output, sink, null);
+    }
+
+    /**
+     * Like {@link #trace(String, SupportedLanguage, TraceOptions, Supplier, Consumer)},
+     * but when {@code session} traced an earlier version of the code, steps
+     * before the first changed line are replayed from it and tracing resumes
+     * from that line. Sessions only apply to whole-program, source-based
+     * traces; a language with a live tracer re-runs its program in full, so
+     * {@code session} is ignored for it (see {@link #resumesSessions}).
+     */
+    public TraceResult trace(
+            String code,
+            SupportedLanguage language,
+            TraceOptions options,
+            Supplier<String> output,
+            Consumer<VisualizationStep> sink,
+            TraceSession session
+    ) {
+        Tracer tracer = tracers.get(language);
+        if (tracer != null) {
+            try {
+                return tracer.trace(code, options,
+                        new TraceBudget(maxSteps, maxTraceBytes, maxWallTimeNanos / 1_000_000), sink);
+            } catch (EngineUnavailableException e) {
+                log.debug("Tracing {} from source: {}", language.getValue(), e.getMessage());
+            }
+        }
+        if (session == null || !options.wholeTrace()) {
+            return run(code, language, options, output, sink, null);
+        }
+        // A lock rather than synchronized, so a virtual thread waiting on
+        // the program's output does not pin its carrier
+        session.lock().lock();
+        try {
+            return run(code, language, options, output, sink, session);
+        } finally {
+            session.lock().unlock();
+        }
+    }
+
+    /**
+     * Whether a session can resume traces of {@code language}. A live tracer
+     * runs the real program, whose state at a resume point cannot be restored
+     * without running it from the start, so only source-based traces resume.
+     */
+    public boolean resumesSessions(SupportedLanguage language) {
+        return !tracesLive(language);
+    }
+
+    /** Whether traces of {@code language} come from running the real program rather than from its source. */
+    public boolean tracesLive(SupportedLanguage language) {
+        return tracers.containsKey(language);
+    }
+
+    private TraceResult run(
+            String code,
+            SupportedLanguage language,
+            TraceOptions options,
+            Supplier<String> output,
+            Consumer<VisualizationStep> sink,
+            TraceSession session
+    ) {
+        long parseStart = System.nanoTime();
+        // Parsed once per distinct program; steps, control flow and frames all derive from the tree
+        SyntaxTree tree = syntaxParser.parse(code, language);
+        LineAnalysis[] analyses = tree.analyses();
+        int lineCount = options.toLine() != null ? Math.min(analyses.length, options.toLine()) : analyses.length;
+        String[] lines = null;
+        if (session != null) {
+            lines = code.split("\n");
+            session.compare(lines, tree, language, options.fullSnapshots());
+        }
+        long traceStart = System.nanoTime();
+        metrics.recordPhase(Phase.PARSE, language, traceStart - parseStart);
+
+        TraceState state = new TraceState();
+        int stepNum = 1;
+        int emitted = 0;
+        long traceBytes = 0;
+        long retainedBytes = 0;
+        String truncation = null;
+        int lastLine = 0;
+        int firstLine = 0;
+        int previousLine = -1;
+        // Time spent in the sink is the consumer's, not the trace's
+        long waited = 0;
+
+        List<TraceSession.Checkpoint> checkpoints = null;
+        if (session != null) {
+            List<TraceSession.Checkpoint> reused = session.reusablePrefix();
+            checkpoints = new ArrayList<>(reused);
+            if (!reused.isEmpty()) {
+                for (TraceSession.Checkpoint checkpoint : reused) {
+                    sink.accept(checkpoint.step());
+                }
+                TraceSession.Checkpoint last = reused.get(reused.size() - 1);
+                state = TraceState.restore(last);
+                stepNum = reused.size() + 1;
+                emitted = reused.size();
+                traceBytes = last.traceBytes();
+                retainedBytes = last.retainedBytes();
+                lastLine = last.lineIndex() + 1;
+                firstLine = lastLine;
+                previousLine = last.lineIndex();
+            }
+        }
+
+        for (int i = firstLine; i < lineCount; i++) {
+            LineAnalysis line = analyses[i];
+            if (!line.isExecutable()) {
+                continue;
+            }
+            if (options.pastEnd(i + 1, stepNum)) {
+                break;
+            }
+            if (System.nanoTime() - traceStart - waited > maxWallTimeNanos) {
+                truncation = "time limit of " + maxWallTimeNanos / 1_000_000 + " ms reached";
+                break;
+            }
+
+            long before = state.bytes;
+            state.apply(tree, i, previousLine, language);
+            previousLine = i;
+
+            if (options.includesLine(i + 1) && options.includesStep(stepNum)) {
+                if (emitted >= maxSteps) {
+                    truncation = "step limit of " + maxSteps + " reached";
+                    break;
+                }
+                long stepBytes = TraceSizeEstimator.STEP_OVERHEAD
+                        + (options.fullSnapshots() ? state.bytes : state.bytes - before);
+                if (traceBytes + stepBytes > maxTraceBytes) {
+                    truncation = "size limit of " + maxTraceBytes + " bytes reached";
+                    break;
+                }
+                traceBytes += stepBytes;
+                retainedBytes += TraceSizeEstimator.STEP_OVERHEAD + Math.max(0, state.bytes - before);
+                VisualizationStep step = state.step(stepNum, describe(line), i + 1, null);
+                long handOff = System.nanoTime();
+                sink.accept(step);
+                waited += System.nanoTime() - handOff;
+                if (checkpoints != null) {
+                    checkpoints.add(new TraceSession.Checkpoint(step, state.bytes, traceBytes, retainedBytes,
+                            state.heap.nextId()));
+                }
+                emitted++;
+                lastLine = i + 1;
+            }
+            stepNum++;
+        }
+        if (session != null) {
+            session.update(lines, tree, language, options.fullSnapshots(), checkpoints);
+        }
+
+        if (truncation != null) {
+            sink.accept(state.step(stepNum++, "Trace truncated: " + truncation,
+                    lastLine > 0 ? lastLine : null, null));
+            emitted++;
+        }
+        metrics.recordPhase(Phase.TRACE, language, System.nanoTime() - traceStart - waited);
+
+        // Add final output step
+        if (stepNum > 1 && options.toLine() == null && options.includesStep(stepNum)) {
+            sink.accept(state.step(stepNum, "Execution completed", null, output.get()));
+            emitted++;
+        }
+        return new TraceResult(emitted, truncation != null, truncation, retainedBytes);
+    }
+
+    static String describe(LineAnalysis line) {
+        // Generate human-readable descriptions
+        return switch (line.kind()) {
+            case FUNCTION_DEF -> "Defining a function";
+            case CONDITION -> "Checking condition";
+            case LOOP -> "Starting loop iteration";
+            case ASSIGNMENT -> "Assigning value to variable";
+            case PRINT -> "Printing output";
+            case RETURN -> "Returning value";
+            default -> "Executing line: " + line.preview(50);
+        };
+    }
+
+    /**
+     * Mutable interpreter state for one trace, with a running size estimate
+     * of a full snapshot.
+     */
+    private static final class TraceState {
+        private final VariableTable variables;
+        private final SnapshotList<StackFrame> stackFrames;
+        private final HeapModel heap;
+        // Heap id of each list a variable holds, by identity: "b = a" names the same object
+        private final Map<Object, Integer> heapIds = new IdentityHashMap<>();
+        private final SnapshotList<ControlFlow> controlFlow;
+        private final StructureTable structures;
+        private long bytes;
+
+        TraceState() {
+            this(new VariableTable(), new SnapshotList<>(), new HeapModel(), new SnapshotList<>(),
+                    new StructureTable());
+        }
+
+        private TraceState(VariableTable variables, SnapshotList<StackFrame> stackFrames,
+                           HeapModel heap, SnapshotList<ControlFlow> controlFlow,
+                           StructureTable structures) {
+            this.variables = variables;
+            this.stackFrames = stackFrames;
+            this.heap = heap;
+            this.controlFlow = controlFlow;
+            this.structures = structures;
+            for (MemoryObject object : heap.view()) {
+                heapIds.put(object.getValue(), object.getId());
+            }
+        }
+
+        // Copies the state a checkpointed step saw, leaving the step itself untouched
+        static TraceState restore(TraceSession.Checkpoint checkpoint) {
+            VisualizationStep step = checkpoint.step();
+            TraceState state = new TraceState(
+                    new VariableTable(step.getVariableStates()),
+                    new SnapshotList<>(step.getStackFrames()),
+                    new HeapModel(step.getMemoryObjects(), checkpoint.nextObjectId()),
+                    new SnapshotList<>(step.getControlFlow()),
+                    new StructureTable(step.getDataStructures()));
+            state.bytes = checkpoint.stateBytes();
+            return state;
+        }
+
+        void apply(SyntaxTree tree, int index, int previousIndex, SupportedLanguage language) {
+            LineAnalysis line = tree.analyses()[index];
+            enterFunctions(tree.functionsAt(index));
+
+            if (previousIndex >= 0) {
+                ControlFlow flow = tree.flow(previousIndex, index);
+                if (flow.getType().equals("sequential") && line.callLike()) {
+                    flow.setType("call");
+                }
+                controlFlow.add(flow);
+                bytes += TraceSizeEstimator.controlFlow(flow);
+            }
+
+            ListMutation mutation = ListMutation.parse(line);
+            if (mutation != null && mutate(mutation, language)) {
+                return;
+            }
+
+            if (line.assignment()) {
+                Map<String, Object> current = variables.current();
+                Object value = ValueParser.parse(line.valueText(), language, current);
+                // Lists are persistent, so in-place changes share the rest of the list with earlier steps
+                if (value instanceof List<?> list && !(value instanceof PersistentVector)) {
+                    value = PersistentVector.of(list);
+                }
+
+                String name = line.variableName();
+                boolean defined = current.containsKey(name);
+                Object previousValue = current.get(name);
+                bytes -= heap.bytes() + structures.bytes();
+                if (defined) {
+                    bytes -= TraceSizeEstimator.variable(name, previousValue);
+                }
+                variables.put(name, value);
+                bytes += TraceSizeEstimator.variable(name, value);
+                if (!defined || previousValue != value) {
+                    if (defined) {
+                        unbind(name, previousValue);
+                    }
+                    if (value instanceof List) {
+                        bind(name, value);
+                    }
+                }
+                bytes += heap.bytes() + structures.bytes();
+            }
+        }
+
+        /**
+         * Applies a change to a list a variable holds, to every variable
+         * naming it. Returns false when the target holds no list, so the line
+         * is treated as an ordinary assignment or call.
+         */
+        private boolean mutate(ListMutation mutation, SupportedLanguage language) {
+            Map<String, Object> current = variables.current();
+            Object list = current.get(mutation.target());
+            Integer id = list instanceof PersistentVector ? heapIds.get(list) : null;
+            if (id == null) {
+                return false;
+            }
+            StructureOperation operation = switch (mutation.kind()) {
+                case SET -> ValueParser.parse(mutation.indexText(), language, current) instanceof Integer index
+                        ? StructureOperation.builder().op("set").index(index)
+                                .value(ValueParser.parse(mutation.valueText(), language, current)).build()
+                        : null;
+                case PUSH -> StructureOperation.builder().op("push")
+                        .value(ValueParser.parse(mutation.valueText(), language, current)).build();
+                case POP -> StructureOperation.builder().op("pop").build();
+            };
+            long sizeBefore = structures.size(id);
+            PersistentVector<Object> updated = operation != null ? structures.apply(id, operation) : null;
+            // An index the trace cannot evaluate leaves the list as it was
+            if (updated == null) {
+                return true;
+            }
+            long sizeChange = structures.size(id) - sizeBefore;
+            MemoryObject object = heap.get(id);
+            heapIds.remove(list);
+            heapIds.put(updated, id);
+            heap.replaceValue(id, updated, sizeChange);
+            for (String name : object.getReferences()) {
+                variables.put(name, updated);
+            }
+            bytes += sizeChange * (2 + object.getReferences().size());
+            return true;
+        }
+
+        private void bind(String name, Object value) {
+            Integer id = heapIds.get(value);
+            List<String> names = new ArrayList<>();
+            if (id == null) {
+                id = heap.allocate();
+                heapIds.put(value, id);
+            } else {
+                names.addAll(heap.get(id).getReferences());
+            }
+            names.add(name);
+            heap.put(id, detectType(value), value, List.copyOf(names), List.of());
+            structures.update(id, names.get(0), value);
+        }
+
+        // A list no variable names any more is garbage
+        private void unbind(String name, Object value) {
+            Integer id = heapIds.get(value);
+            if (id == null) {
+                return;
+            }
+            List<String> names = new ArrayList<>(heap.get(id).getReferences());
+            names.remove(name);
+            if (names.isEmpty()) {
+                heap.remove(id);
+                heapIds.remove(value);
+                structures.remove(id);
+            } else {
+                heap.put(id, detectType(value), value, List.copyOf(names), List.of());
+                structures.update(id, names.get(0), value);
+            }
+        }
+
+        // The call stack is the chain of functions whose body holds the line
+        private void enterFunctions(List<SyntaxTree.Block> functions) {
+            int kept = 0;
+            while (kept < stackFrames.size() && kept < functions.size()
+                    && stackFrames.get(kept).getLineNumber() == functions.get(kept).firstLine() + 1) {
+                kept++;
+            }
+            while (stackFrames.size() > kept) {
+                bytes -= TraceSizeEstimator.frame(stackFrames.removeLast());
+            }
+            for (SyntaxTree.Block function : functions.subList(kept, functions.size())) {
+                Map<String, Object> params = new HashMap<>();
+                for (String param : function.analysis().parameters()) {
+                    params.put(param, "value");
+                }
+                StackFrame frame = StackFrame.builder()
+                        .functionName(function.analysis().functionName())
+                        .parameters(params)
+                        .localVariables(Map.of())
+                        .lineNumber(function.firstLine() + 1)
+                        .build();
+                stackFrames.add(frame);
+                bytes += TraceSizeEstimator.frame(frame);
+            }
+        }
+
+        VisualizationStep step(int stepNumber, String description, Integer lineHighlight, String output) {
+            return VisualizationStep.builder()
+                    .stepNumber(stepNumber)
+                    .description(description)
+                    .lineHighlight(lineHighlight)
+                    .output(output)
+                    .variableStates(variables.snapshot())
+                    .stackFrames(stackFrames.snapshot())
+                    .memoryObjects(heap.view())
+                    .controlFlow(controlFlow.snapshot())
+                    .dataStructures(structures.view())
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+        }
+    }
+
+    private static String detectType(Object value) {
+        if (value instanceof Integer) return "int";
+        if (value instanceof Double) return "double";
+        if (value instanceof String) return "String";
+        if (value instanceof List) return "List/Array";
+        return "Object";
+    }
+}
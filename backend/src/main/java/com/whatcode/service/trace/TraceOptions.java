@@ -0,0 +1,41 @@
+package com.whatcode.service.trace;
+
+/**
+ * Per-request trace window. Line bounds are 1-based and inclusive and select
+ * which lines emit steps; step bounds select by step number. Lines outside
+ * the window still run so variable state stays correct.
+ */
+public record TraceOptions(Integer fromLine, Integer toLine, Integer fromStep, Integer toStep, boolean fullSnapshots) {
+
+    public static TraceOptions all(boolean fullSnapshots) {
+        return new TraceOptions(null, null, null, null, fullSnapshots);
+    }
+
+    boolean wholeTrace() {
+        return fromLine == null && toLine == null && fromStep == null && toStep == null;
+    }
+
+    boolean includesLine(int lineNumber) {
+        return (fromLine == null || lineNumber >= fromLine) && (toLine == null || lineNumber <= toLine);
+    }
+
+    boolean includesStep(int stepNumber) {
+        return (fromStep == null || stepNumber >= fromStep) && (toStep == null || stepNumber <= toStep);
+    }
+
+    boolean pastEnd(int lineNumber, int stepNumber) {
+        return (toLine != null && lineNumber > toLine) || (toStep != null && stepNumber > toStep);
+    }
+
+    boolean pastLastStep(int stepNumber) {
+        return toStep != null && stepNumber > toStep;
+    }
+
+    /** Cache-key suffix describing the window; empty when the whole trace is requested. */
+    public String key() {
+        if (wholeTrace()) {
+            return "";
+        }
+        return ":lines=" + fromLine + "-" + toLine + ":steps=" + fromStep + "-" + toStep;
+    }
+}
@@ -0,0 +1,8 @@
+package com.whatcode.service.trace;
+
+/**
+ * Outcome of one trace. {@code retainedBytes} estimates the memory the
+ * emitted steps hold beyond what they share with each other.
+ */
+public record TraceResult(int steps, boolean truncated, String truncationReason, long retainedBytes) {
+}
@@ -0,0 +1,90 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.VisualizationStep;
+import com.whatcode.model.SupportedLanguage;
+import com.whatcode.service.analysis.SyntaxTree;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * What the last trace of one editing session left behind: its lines and a
+ * checkpoint per emitted step. When the next submission of the session is
+ * an edit, every step before the statement holding the first changed line
+ * is reused, so tracing resumes from there instead of from line 1.
+ *
+ * <p>Checkpointed steps are never modified; tracing resumes on copies of
+ * their state, so earlier responses that still hold them stay valid.
+ */
+public final class TraceSession {
+
+    /** A step with the running totals and next heap object id the trace had reached after it. */
+    record Checkpoint(VisualizationStep step, long stateBytes, long traceBytes, long retainedBytes,
+                      int nextObjectId) {
+
+        int lineIndex() {
+            return step.getLineHighlight() - 1;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private SupportedLanguage language;
+    private boolean fullSnapshots;
+    private String[] lines = new String[0];
+    private SyntaxTree tree;
+    private List<Checkpoint> checkpoints = List.of();
+    private int firstChangedLine;
+
+    /** Held while a trace reads or replaces the session. */
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    /**
+     * Compares {@code lines}, parsed as {@code tree}, with the previous
+     * submission and remembers where the edit starts. An edit inside a
+     * statement spanning several lines, before or after the edit, starts at
+     * its first line.
+     */
+    void compare(String[] lines, SyntaxTree tree, SupportedLanguage language, boolean fullSnapshots) {
+        int prefix = 0;
+        if (language == this.language) {
+            int shorter = Math.min(lines.length, this.lines.length);
+            while (prefix < shorter && lines[prefix].equals(this.lines[prefix])) {
+                prefix++;
+            }
+        }
+        if (prefix < tree.lineCount()) {
+            prefix = tree.statementStart(prefix);
+        }
+        if (this.tree != null && prefix < this.tree.lineCount()) {
+            prefix = this.tree.statementStart(prefix);
+        }
+        // Snapshot sizes differ between full and delta traces, so the running
+        // totals of one cannot seed the other
+        firstChangedLine = language == this.language && fullSnapshots == this.fullSnapshots ? prefix : 0;
+    }
+
+    /** Checkpoints of the steps on lines before the first changed line. */
+    List<Checkpoint> reusablePrefix() {
+        int count = 0;
+        while (count < checkpoints.size() && checkpoints.get(count).lineIndex() < firstChangedLine) {
+            count++;
+        }
+        return checkpoints.subList(0, count);
+    }
+
+    void update(String[] lines, SyntaxTree tree, SupportedLanguage language, boolean fullSnapshots,
+                List<Checkpoint> checkpoints) {
+        this.lines = lines;
+        this.tree = tree;
+        this.language = language;
+        this.fullSnapshots = fullSnapshots;
+        this.checkpoints = checkpoints;
+    }
+
+    /** Estimated bytes held by the checkpointed steps. */
+    long weight() {
+        return checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1).retainedBytes();
+    }
+}
@@ -0,0 +1,39 @@
+package com.whatcode.service.trace;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Editing sessions for incremental re-visualization, weighed by the steps
+ * they keep and dropped after a period without edits. Losing a session only
+ * costs the next request a full trace.
+ */
+@Component
+public class TraceSessionStore {
+
+    private final Cache<String, TraceSession> sessions;
+
+    public TraceSessionStore(
+            @Value("${code.visualization.sessions.max-bytes:134217728}") long maxBytes,
+            @Value("${code.visualization.sessions.ttl-seconds:900}") long ttlSeconds
+    ) {
+        this.sessions = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String id, TraceSession session) -> (int) Math.min(session.weight(), Integer.MAX_VALUE))
+                .expireAfterAccess(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public TraceSession session(String id) {
+        return sessions.get(id, key -> new TraceSession());
+    }
+
+    /** Stores the session again so its new weight is accounted for. */
+    public void updated(String id, TraceSession session) {
+        sessions.put(id, session);
+    }
+}
@@ -0,0 +1,69 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.ControlFlow;
+import com.whatcode.dto.DataStructure;
+import com.whatcode.dto.MemoryObject;
+import com.whatcode.dto.StackFrame;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rough JSON size of trace elements, used to enforce the trace byte budget
+ * without serializing anything. Figures err slightly high.
+ */
+final class TraceSizeEstimator {
+
+    static final int STEP_OVERHEAD = 160;
+
+    private TraceSizeEstimator() {
+    }
+
+    static long value(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 12;
+        }
+        if (value instanceof CharSequence text) {
+            return text.length() + 2;
+        }
+        if (value instanceof List<?> list) {
+            long size = 2;
+            for (Object item : list) {
+                size += value(item) + 1;
+            }
+            return size;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += String.valueOf(entry.getKey()).length() + 4 + value(entry.getValue());
+            }
+            return size;
+        }
+        return 16;
+    }
+
+    static long variable(String name, Object value) {
+        return name.length() + 4 + value(value);
+    }
+
+    static long frame(StackFrame frame) {
+        return 90 + frame.getFunctionName().length() + value(frame.getParameters());
+    }
+
+    static long memoryObject(MemoryObject object) {
+        return 80 + object.getType().length() + value(object.getValue()) + value(object.getReferences())
+                + value(object.getPointsTo());
+    }
+
+    static long controlFlow(ControlFlow flow) {
+        return 60 + flow.getType().length();
+    }
+
+    static long dataStructure(DataStructure structure) {
+        return 60 + structure.getType().length() + value(structure.getData()) + value(structure.getOperations());
+    }
+}
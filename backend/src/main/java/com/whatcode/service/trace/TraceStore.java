@@ -0,0 +1,171 @@
+package com.whatcode.service.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded server-side store of paged traces, weighed by estimated size and
+ * expired after a period without access. When spilling is enabled, traces
+ * evicted for size are written to disk and read back on the next request;
+ * the spill directory has its own byte budget, oldest file first out.
+ */
+@Slf4j
+@Component
+public class TraceStore {
+
+    private final Cache<String, StoredTrace> memory;
+    private final ObjectMapper objectMapper;
+    private final Path spillDirectory;
+    private final long maxSpillBytes;
+    private final Map<String, Long> spilled = new LinkedHashMap<>(16, 0.75f, true);
+    private long spilledBytes;
+
+    public TraceStore(
+            ObjectMapper objectMapper,
+            @Value("${code.traces.max-bytes:268435456}") long maxBytes,
+            @Value("${code.traces.ttl-seconds:1800}") long ttlSeconds,
+            @Value("${code.traces.spill.enabled:false}") boolean spillEnabled,
+            @Value("${code.traces.spill.directory:${java.io.tmpdir}/whatcode-traces}") String spillDirectory,
+            @Value("${code.traces.spill.max-bytes:1073741824}") long maxSpillBytes
+    ) {
+        this.objectMapper = objectMapper;
+        this.maxSpillBytes = maxSpillBytes;
+        this.spillDirectory = spillEnabled ? prepareSpillDirectory(Path.of(spillDirectory)) : null;
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String id, StoredTrace trace) -> (int) Math.min(trace.weight(), Integer.MAX_VALUE))
+                .expireAfterAccess(Duration.ofSeconds(ttlSeconds))
+                // Evict on the caller's thread so a trace is on disk before the put that displaced it returns
+                .executor(Runnable::run)
+                .evictionListener((String id, StoredTrace trace, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE && trace != null && this.spillDirectory != null) {
+                        spill(trace);
+                    }
+                })
+                .build();
+    }
+
+    public void put(StoredTrace trace) {
+        memory.put(trace.id(), trace);
+    }
+
+    /** Returns the trace, reading it back from disk if it was spilled, or null. */
+    public StoredTrace get(String id) {
+        if (!isTraceId(id)) {
+            return null;
+        }
+        StoredTrace trace = memory.getIfPresent(id);
+        if (trace != null || spillDirectory == null) {
+            return trace;
+        }
+        trace = load(id);
+        if (trace != null) {
+            memory.put(id, trace);
+        }
+        return trace;
+    }
+
+    public boolean contains(String id) {
+        if (!isTraceId(id)) {
+            return false;
+        }
+        if (memory.getIfPresent(id) != null) {
+            return true;
+        }
+        if (spillDirectory == null) {
+            return false;
+        }
+        synchronized (spilled) {
+            return spilled.containsKey(id);
+        }
+    }
+
+    private void spill(StoredTrace trace) {
+        Path file = spillFile(trace.id());
+        try {
+            Path partial = Files.createTempFile(spillDirectory, trace.id(), ".partial");
+            objectMapper.writeValue(partial.toFile(), trace);
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long size = Files.size(file);
+            synchronized (spilled) {
+                Long previous = spilled.put(trace.id(), size);
+                spilledBytes += size - (previous != null ? previous : 0);
+                Iterator<Map.Entry<String, Long>> oldest = spilled.entrySet().iterator();
+                while (spilledBytes > maxSpillBytes && oldest.hasNext()) {
+                    Map.Entry<String, Long> entry = oldest.next();
+                    Files.deleteIfExists(spillFile(entry.getKey()));
+                    spilledBytes -= entry.getValue();
+                    oldest.remove();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not spill trace {} to disk: {}", trace.id(), e.getMessage());
+        }
+    }
+
+    private StoredTrace load(String id) {
+        synchronized (spilled) {
+            if (spilled.get(id) == null) {
+                return null;
+            }
+        }
+        try {
+            return objectMapper.readValue(spillFile(id).toFile(), StoredTrace.class);
+        } catch (IOException e) {
+            log.warn("Could not read spilled trace {}: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path spillFile(String id) {
+        return spillDirectory.resolve(id + ".json");
+    }
+
+    // Trace ids are SHA-256 hex digests; anything else must never reach the file system
+    private static boolean isTraceId(String id) {
+        if (id == null || id.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Spill files from an earlier run are unknown to this one, so remove them
+    private static Path prepareSpillDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "*.json")) {
+                for (Path file : stale) {
+                    String name = file.getFileName().toString();
+                    if (isTraceId(name.substring(0, name.length() - ".json".length()))) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare trace spill directory " + directory, e);
+        }
+    }
+}
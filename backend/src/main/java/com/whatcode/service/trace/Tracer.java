@@ -0,0 +1,25 @@
+package com.whatcode.service.trace;
+
+import com.whatcode.dto.VisualizationStep;
+import com.whatcode.model.SupportedLanguage;
+
+import java.util.function.Consumer;
+
+/**
+ * A tracer that observes the program actually running, as opposed to the
+ * trace {@link TraceEngine} derives from the source text. Implementations
+ * are discovered as Spring beans; a language without one, or whose tracer
+ * is unavailable, gets the source-based trace.
+ */
+public interface Tracer {
+
+    SupportedLanguage language();
+
+    /**
+     * Streams the trace of {@code code} into {@code sink}, ending with the
+     * "Execution completed" step that carries the run's output. Throws
+     * {@link com.whatcode.service.execution.EngineUnavailableException},
+     * before emitting anything, when the program cannot be run.
+     */
+    TraceResult trace(String code, TraceOptions options, TraceBudget budget, Consumer<VisualizationStep> sink);
+}
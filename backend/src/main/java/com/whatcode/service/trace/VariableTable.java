@@ -0,0 +1,183 @@
+package com.whatcode.service.trace;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Variable store that keeps every write, versioned, so a point-in-time view
+ * of all variables costs O(1) to take. Each write bumps the version; a
+ * {@link Snapshot} resolves a variable by binary-searching that variable's
+ * history for the last write at or before its version.
+ *
+ * <p>One thread writes. Snapshots handed to other threads may be read while
+ * the writer goes on: a history publishes its arrays and count through
+ * volatile fields, and a snapshot only looks at writes up to its version,
+ * all of which happened before it was taken.
+ */
+public final class VariableTable {
+
+    private final Map<String, History> histories = new ConcurrentHashMap<>();
+    private final Map<String, Object> current = new HashMap<>();
+    private final SnapshotList<String> names = new SnapshotList<>();
+    private final SnapshotList<String> writes = new SnapshotList<>();
+
+    public VariableTable() {
+    }
+
+    public VariableTable(Map<String, Object> initial) {
+        initial.forEach(this::put);
+    }
+
+    public void put(String name, Object value) {
+        History history = histories.get(name);
+        if (history == null) {
+            history = new History(names.size());
+            histories.put(name, history);
+            names.add(name);
+        }
+        writes.add(name);
+        history.append(writes.size(), value);
+        current.put(name, value);
+    }
+
+    /** Live, read-only view of the latest values. */
+    public Map<String, Object> current() {
+        return Collections.unmodifiableMap(current);
+    }
+
+    public int version() {
+        return writes.size();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this, writes.size(), names.snapshot(), writes.snapshot());
+    }
+
+    // Grown arrays are published before the count that covers them, so a
+    // reader that reads the count first finds every entry below it
+    private static final class History {
+        private final int order;
+        private volatile int[] versions = new int[2];
+        private volatile Object[] values = new Object[2];
+        private volatile int count;
+
+        History(int order) {
+            this.order = order;
+        }
+
+        void append(int version, Object value) {
+            int n = count;
+            int[] v = versions;
+            Object[] o = values;
+            if (n == v.length) {
+                v = Arrays.copyOf(v, n * 2);
+                o = Arrays.copyOf(o, n * 2);
+                versions = v;
+                values = o;
+            }
+            v[n] = version;
+            o[n] = value;
+            count = n + 1;
+        }
+
+        Object valueAt(int version) {
+            int n = count;
+            int index = Arrays.binarySearch(versions, 0, n, version);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            return index >= 0 ? values[index] : null;
+        }
+
+        boolean existsAt(int version) {
+            return count > 0 && versions[0] <= version;
+        }
+    }
+
+    /**
+     * Immutable view of every variable as of one version. Iteration follows
+     * first-assignment order.
+     */
+    public static final class Snapshot extends AbstractMap<String, Object> {
+        private final VariableTable table;
+        private final int version;
+        private final List<String> names;
+        private final List<String> writes;
+
+        private Snapshot(VariableTable table, int version, List<String> names, List<String> writes) {
+            this.table = table;
+            this.version = version;
+            this.names = names;
+            this.writes = writes;
+        }
+
+        @Override
+        public Object get(Object key) {
+            History history = table.histories.get(key);
+            return history != null && history.order < names.size() ? history.valueAt(version) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            History history = table.histories.get(key);
+            return history != null && history.order < names.size() && history.existsAt(version);
+        }
+
+        @Override
+        public int size() {
+            return names.size();
+        }
+
+        /**
+         * Returns the variables written after {@code earlier} was taken, or
+         * null if the two snapshots do not come from the same table.
+         */
+        public Map<String, Object> changedSince(Snapshot earlier) {
+            if (earlier.table != table || earlier.version > version) {
+                return null;
+            }
+            Map<String, Object> changed = new LinkedHashMap<>();
+            for (int i = earlier.version; i < version; i++) {
+                String name = writes.get(i);
+                changed.put(name, get(name));
+            }
+            return changed;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<String> keys = names.iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            String name = keys.next();
+                            return new SimpleImmutableEntry<>(name, get(name));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return names.size();
+                }
+            };
+        }
+    }
+}
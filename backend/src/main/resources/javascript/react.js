@@ -0,0 +1,477 @@
+// A small React for server-side rendering, loaded after runtime.js. It
+// covers what a single-file component submission uses: elements and
+// fragments, function and class components, the common hooks, context and
+// memo, rendered once to static markup. Effects run after the render that
+// scheduled them; state updates during an effect re-render the root, up to
+// a fixed number of passes.
+(function (global) {
+    'use strict';
+
+    var ELEMENT = {};
+    var Fragment = { displayName: 'Fragment' };
+    var MAX_RENDER_PASSES = 25;
+
+    var VOID_ELEMENTS = {
+        area: true, base: true, br: true, col: true, embed: true, hr: true, img: true, input: true,
+        link: true, meta: true, param: true, source: true, track: true, wbr: true
+    };
+    var ATTRIBUTE_NAMES = { className: 'class', htmlFor: 'for' };
+    var UNITLESS = {
+        flex: true, flexGrow: true, flexShrink: true, fontWeight: true, lineHeight: true, opacity: true,
+        order: true, zIndex: true, zoom: true
+    };
+
+    function same(a, b) {
+        return a === b ? a !== 0 || 1 / a === 1 / b : a !== a && b !== b;
+    }
+
+    function assign(target) {
+        for (var i = 1; i < arguments.length; i++) {
+            for (var name in arguments[i]) {
+                if (Object.prototype.hasOwnProperty.call(arguments[i], name)) {
+                    target[name] = arguments[i][name];
+                }
+            }
+        }
+        return target;
+    }
+
+    function flatten(children, into) {
+        for (var i = 0; i < children.length; i++) {
+            if (Array.isArray(children[i])) {
+                flatten(children[i], into);
+            } else {
+                into.push(children[i]);
+            }
+        }
+        return into;
+    }
+
+    function createElement(type, config) {
+        var props = {};
+        var key = null;
+        var ref = null;
+        if (config) {
+            for (var name in config) {
+                if (!Object.prototype.hasOwnProperty.call(config, name)) {
+                    continue;
+                }
+                if (name === 'key') {
+                    key = config.key === undefined ? null : String(config.key);
+                } else if (name === 'ref') {
+                    ref = config.ref;
+                } else {
+                    props[name] = config[name];
+                }
+            }
+        }
+        if (arguments.length > 2) {
+            var children = flatten(Array.prototype.slice.call(arguments, 2), []);
+            props.children = children.length === 1 ? children[0] : children;
+        }
+        if (type && type.defaultProps) {
+            for (var defaultName in type.defaultProps) {
+                if (props[defaultName] === undefined) {
+                    props[defaultName] = type.defaultProps[defaultName];
+                }
+            }
+        }
+        return { $$typeof: ELEMENT, type: type, props: props, key: key, ref: ref };
+    }
+
+    function isValidElement(value) {
+        return value !== null && typeof value === 'object' && value.$$typeof === ELEMENT;
+    }
+
+    function Component(props) {
+        this.props = props;
+        this.state = this.state || {};
+    }
+    Component.prototype.isReactComponent = true;
+    Component.prototype.setState = function (update) {
+        var next = typeof update === 'function' ? update(this.state, this.props) : update;
+        this.state = assign({}, this.state, next);
+        if (this.__whatcodeInstance) {
+            requestRender();
+        }
+    };
+    Component.prototype.forceUpdate = function () {
+        requestRender();
+    };
+
+    function PureComponent(props) {
+        Component.call(this, props);
+    }
+    PureComponent.prototype = Object.create(Component.prototype);
+    PureComponent.prototype.constructor = PureComponent;
+
+    // Hook state lives on the component's position in the tree, so a
+    // re-render of the root finds each component's state again
+    var instances = {};
+    var current = null;
+    var effects = [];
+    var contextValues = [];
+    var renderRequested = false;
+    var rendering = false;
+
+    function requestRender() {
+        renderRequested = true;
+    }
+
+    function nextHook() {
+        if (!current) {
+            throw new Error('Invalid hook call. Hooks can only be called inside the body of a function component.');
+        }
+        var index = current.hookIndex++;
+        return { slots: current.hooks, index: index, fresh: index >= current.hooks.length };
+    }
+
+    function changed(previous, next) {
+        if (!previous || !next || previous.length !== next.length) {
+            return true;
+        }
+        for (var i = 0; i < next.length; i++) {
+            if (!same(previous[i], next[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    function useReducer(reducer, initialArg, init) {
+        var hook = nextHook();
+        if (hook.fresh) {
+            var slot = { value: init ? init(initialArg) : initialArg };
+            slot.dispatch = function (action) {
+                var next = reducer(slot.value, action);
+                if (!same(next, slot.value)) {
+                    slot.value = next;
+                    requestRender();
+                }
+            };
+            hook.slots.push(slot);
+        }
+        var state = hook.slots[hook.index];
+        return [state.value, state.dispatch];
+    }
+
+    function useState(initial) {
+        return useReducer(function (state, action) {
+            return typeof action === 'function' ? action(state) : action;
+        }, initial, function (value) {
+            return typeof value === 'function' ? value() : value;
+        });
+    }
+
+    function useEffect(effect, deps) {
+        var hook = nextHook();
+        if (hook.fresh) {
+            hook.slots.push({ deps: undefined, cleanup: null });
+        }
+        var slot = hook.slots[hook.index];
+        if (deps === undefined || changed(slot.deps, deps)) {
+            slot.deps = deps;
+            effects.push(function () {
+                if (typeof slot.cleanup === 'function') {
+                    slot.cleanup();
+                }
+                slot.cleanup = effect();
+            });
+        }
+    }
+
+    function useMemo(factory, deps) {
+        var hook = nextHook();
+        if (hook.fresh) {
+            hook.slots.push({ deps: deps, value: factory() });
+        } else if (deps === undefined || changed(hook.slots[hook.index].deps, deps)) {
+            hook.slots[hook.index] = { deps: deps, value: factory() };
+        }
+        return hook.slots[hook.index].value;
+    }
+
+    function useCallback(callback, deps) {
+        return useMemo(function () {
+            return callback;
+        }, deps);
+    }
+
+    function useRef(initial) {
+        var hook = nextHook();
+        if (hook.fresh) {
+            hook.slots.push({ current: initial });
+        }
+        return hook.slots[hook.index];
+    }
+
+    function createContext(defaultValue) {
+        var context = { defaultValue: defaultValue };
+        context.Provider = { __whatcodeProvider: context };
+        context.Consumer = { __whatcodeConsumer: context };
+        return context;
+    }
+
+    function useContext(context) {
+        for (var i = contextValues.length - 1; i >= 0; i--) {
+            if (contextValues[i].context === context) {
+                return contextValues[i].value;
+            }
+        }
+        return context.defaultValue;
+    }
+
+    function memo(component) {
+        return component;
+    }
+
+    function forwardRef(render) {
+        return function (props) {
+            return render(props, null);
+        };
+    }
+
+    var Children = {
+        toArray: function (children) {
+            return children === undefined || children === null ? []
+                : flatten(Array.isArray(children) ? children : [children], []);
+        },
+        map: function (children, fn) {
+            return Children.toArray(children).map(fn);
+        },
+        forEach: function (children, fn) {
+            Children.toArray(children).forEach(fn);
+        },
+        count: function (children) {
+            return Children.toArray(children).length;
+        },
+        only: function (children) {
+            if (!isValidElement(children)) {
+                throw new Error('React.Children.only expected to receive a single React element child.');
+            }
+            return children;
+        }
+    };
+
+    function escape(text) {
+        return String(text).replace(/[&<>"']/g, function (c) {
+            return { '&': '&amp;', '<': '&lt;', '>': '&gt;', '"': '&quot;', "'": '&#x27;' }[c];
+        });
+    }
+
+    function hyphenate(name) {
+        return name.replace(/[A-Z]/g, function (c) {
+            return '-' + c.toLowerCase();
+        }).replace(/^ms-/, '-ms-');
+    }
+
+    function styleText(style) {
+        var parts = [];
+        for (var name in style) {
+            var value = style[name];
+            if (value === null || value === undefined || value === '' || typeof value === 'boolean') {
+                continue;
+            }
+            if (typeof value === 'number' && value !== 0 && !UNITLESS[name]) {
+                value = value + 'px';
+            }
+            parts.push(hyphenate(name) + ':' + value);
+        }
+        return parts.join(';');
+    }
+
+    function attributes(props) {
+        var text = '';
+        for (var name in props) {
+            var value = props[name];
+            if (name === 'children' || name === 'dangerouslySetInnerHTML' || name === 'key' || name === 'ref'
+                    || name === 'suppressHydrationWarning' || typeof value === 'function'
+                    || value === null || value === undefined || value === false) {
+                continue;
+            }
+            if (name === 'style' && typeof value === 'object') {
+                value = styleText(value);
+                if (!value) {
+                    continue;
+                }
+            }
+            if (name === 'defaultValue') {
+                name = 'value';
+            } else if (name === 'defaultChecked') {
+                name = 'checked';
+            }
+            var attribute = ATTRIBUTE_NAMES[name] || (/^aria[A-Z]/.test(name) ? hyphenate(name) : name);
+            text += value === true ? ' ' + attribute : ' ' + attribute + '="' + escape(value) + '"';
+        }
+        return text;
+    }
+
+    function renderNode(node, path) {
+        if (node === null || node === undefined || typeof node === 'boolean') {
+            return '';
+        }
+        if (typeof node === 'string' || typeof node === 'number') {
+            return escape(node);
+        }
+        if (Array.isArray(node)) {
+            var html = '';
+            for (var i = 0; i < node.length; i++) {
+                var child = node[i];
+                html += renderNode(child, path + '.' + (isValidElement(child) && child.key !== null ? '$' + child.key : i));
+            }
+            return html;
+        }
+        if (!isValidElement(node)) {
+            throw new Error('Objects are not valid as a React child (found: ' + Object.prototype.toString.call(node)
+                + '). If you meant to render a collection of children, use an array instead.');
+        }
+        var type = node.type;
+        var props = node.props;
+        if (typeof type === 'string') {
+            var open = '<' + type + attributes(props);
+            if (VOID_ELEMENTS[type]) {
+                return open + '/>';
+            }
+            var inner = props.dangerouslySetInnerHTML && props.dangerouslySetInnerHTML.__html !== undefined
+                ? String(props.dangerouslySetInnerHTML.__html)
+                : renderNode(props.children, path + '/' + type);
+            return open + '>' + inner + '</' + type + '>';
+        }
+        if (type === Fragment) {
+            return renderNode(props.children, path + '/');
+        }
+        if (type && type.__whatcodeProvider) {
+            contextValues.push({ context: type.__whatcodeProvider, value: props.value });
+            try {
+                return renderNode(props.children, path + '/provider');
+            } finally {
+                contextValues.pop();
+            }
+        }
+        if (type && type.__whatcodeConsumer) {
+            return renderNode(props.children(useContext(type.__whatcodeConsumer)), path + '/consumer');
+        }
+        if (typeof type !== 'function') {
+            throw new Error('Element type is invalid: expected a string or a component but got: '
+                + (type === null ? 'null' : typeof type));
+        }
+        var name = type.displayName || type.name || 'Anonymous';
+        var id = path + '/' + name;
+        var instance = instances[id];
+        if (type.prototype && type.prototype.isReactComponent) {
+            if (!instance) {
+                instance = instances[id] = { component: new type(props) };
+                instance.component.__whatcodeInstance = true;
+                if (typeof instance.component.componentDidMount === 'function') {
+                    effects.push(function () {
+                        instance.component.componentDidMount();
+                    });
+                }
+            }
+            instance.component.props = props;
+            if (type.getDerivedStateFromProps) {
+                instance.component.state = assign({}, instance.component.state,
+                    type.getDerivedStateFromProps(props, instance.component.state));
+            }
+            return renderNode(instance.component.render(), id);
+        }
+        if (!instance) {
+            instance = instances[id] = { hooks: [] };
+        }
+        var previous = current;
+        current = { hooks: instance.hooks, hookIndex: 0 };
+        try {
+            return renderNode(type(props), id);
+        } finally {
+            current = previous;
+        }
+    }
+
+    // Renders until effects stop changing state, and returns the last markup
+    function renderRoot(element) {
+        if (rendering) {
+            throw new Error('Cannot render while a render is in progress');
+        }
+        rendering = true;
+        instances = {};
+        try {
+            var html = '';
+            for (var pass = 0; pass < MAX_RENDER_PASSES; pass++) {
+                renderRequested = false;
+                effects = [];
+                contextValues = [];
+                html = renderNode(element, '');
+                var pending = effects;
+                effects = [];
+                for (var i = 0; i < pending.length; i++) {
+                    pending[i]();
+                }
+                if (!renderRequested) {
+                    return html;
+                }
+            }
+            throw new Error('Too many re-renders. React limits the number of renders to prevent an infinite loop.');
+        } finally {
+            rendering = false;
+            current = null;
+        }
+    }
+
+    function renderToStaticMarkup(element) {
+        return renderRoot(element);
+    }
+
+    function print(element) {
+        __whatcode.rendered();
+        console.log(renderRoot(element));
+    }
+
+    global.React = {
+        createElement: createElement,
+        isValidElement: isValidElement,
+        Fragment: Fragment,
+        Component: Component,
+        PureComponent: PureComponent,
+        Children: Children,
+        useState: useState,
+        useReducer: useReducer,
+        useEffect: useEffect,
+        useLayoutEffect: useEffect,
+        useMemo: useMemo,
+        useCallback: useCallback,
+        useRef: useRef,
+        createContext: createContext,
+        useContext: useContext,
+        memo: memo,
+        forwardRef: forwardRef
+    };
+
+    global.ReactDOMServer = {
+        renderToString: renderToStaticMarkup,
+        renderToStaticMarkup: renderToStaticMarkup
+    };
+
+    global.ReactDOM = {
+        render: function (element) {
+            print(element);
+        },
+        createRoot: function () {
+            return {
+                render: function (element) {
+                    print(element);
+                },
+                unmount: function () {
+                }
+            };
+        }
+    };
+
+    // Enough of a DOM for the usual createRoot(document.getElementById('root')) line
+    global.document = {
+        getElementById: function (id) {
+            return { id: id };
+        },
+        querySelector: function (selector) {
+            return { selector: selector };
+        }
+    };
+})(this);
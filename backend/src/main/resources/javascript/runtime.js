@@ -0,0 +1,423 @@
+// Loaded once into every pooled JavaScript context, before the React
+// runtime. Submissions run through __whatcode.run(), which applies the
+// limits the server put in __whatcodeRun (a JSON string) and polls
+// __whatcodeHost.stopped(), which the server raises to end a run early.
+// Console output goes straight to __whatcodeHost.write(), the server's
+// bounded capture, so the runtime holds none of it. __whatcode.finish() returns the
+// run's outcome as JSON, and for a profiled run the counts the transpiled
+// line() and enter() calls kept.
+// Written in ES5 so any JSR-223 engine can load it.
+(function (global) {
+    'use strict';
+
+    var limits = null;
+    var host = null;
+    var statements = 0;
+    var exceeded = null;
+    var active = false;
+    var failed = false;
+    var stdinLines = [];
+    var timers = [];
+    var timerSequence = 0;
+    var clock = 0;
+    var rendered = false;
+    var baseline = {};
+    var builtins = [];
+    var profile = null;
+    var currentTime = Date.now;
+
+    function LimitError(message) {
+        this.name = 'LimitError';
+        this.message = message;
+    }
+    LimitError.prototype = Object.create(Error.prototype);
+    LimitError.prototype.constructor = LimitError;
+
+    function exceed(kind, message) {
+        exceeded = exceeded || kind;
+        throw new LimitError(message);
+    }
+
+    function tick() {
+        if (!active) {
+            throw new LimitError('Code ran after the submission finished');
+        }
+        if (exceeded === 'statements' || ++statements > limits.maxStatements) {
+            exceed('statements', 'Statement limit of ' + limits.maxStatements + ' exceeded');
+        }
+        if (exceeded === 'time' || ((statements & 1023) === 0 && Date.now() > limits.deadline)) {
+            exceed('time', 'Execution timed out');
+        }
+        if (exceeded === 'stopped' || ((statements & 1023) === 0 && host.stopped())) {
+            exceed('stopped', 'Execution stopped');
+        }
+        return true;
+    }
+
+    function zeros(length) {
+        var values = new Array(length);
+        for (var i = 0; i < length; i++) {
+            values[i] = 0;
+        }
+        return values;
+    }
+
+    // A line's time runs until the next line starts, at the clock's
+    // millisecond resolution
+    function line(number) {
+        if (profile !== null) {
+            var now = currentTime();
+            profile.timeMillis[profile.line] += now - profile.since;
+            profile.since = now;
+            profile.line = number;
+            profile.hits[number]++;
+        }
+    }
+
+    function enter(index) {
+        tick();
+        if (profile !== null) {
+            profile.calls[index]++;
+        }
+    }
+
+    function write(error, text) {
+        if (active) {
+            host.write(error, text);
+        }
+    }
+
+    function inspect(value, depth, seen, nested) {
+        if (typeof value === 'string') {
+            return nested ? "'" + value.replace(/'/g, "\\'") + "'" : value;
+        }
+        if (value === null || value === undefined || typeof value === 'number' || typeof value === 'boolean') {
+            return String(value);
+        }
+        if (typeof value === 'bigint') {
+            return String(value) + 'n';
+        }
+        if (typeof value === 'symbol') {
+            return value.toString();
+        }
+        if (typeof value === 'function') {
+            return value.name ? '[Function: ' + value.name + ']' : '[Function (anonymous)]';
+        }
+        if (value instanceof Error) {
+            return value.stack && nested ? String(value) : describeError(value);
+        }
+        if (seen.indexOf(value) >= 0) {
+            return '[Circular]';
+        }
+        if (depth > 2) {
+            return Array.isArray(value) ? '[Array]' : '[Object]';
+        }
+        seen.push(value);
+        try {
+            var parts = [];
+            var prefix = '';
+            if (Array.isArray(value)) {
+                for (var i = 0; i < value.length && i < 100; i++) {
+                    parts.push(inspect(value[i], depth + 1, seen, true));
+                }
+                if (value.length > 100) {
+                    parts.push('... ' + (value.length - 100) + ' more items');
+                }
+                return parts.length ? '[ ' + parts.join(', ') + ' ]' : '[]';
+            }
+            if (typeof Map !== 'undefined' && value instanceof Map) {
+                value.forEach(function (v, k) {
+                    parts.push(inspect(k, depth + 1, seen, true) + ' => ' + inspect(v, depth + 1, seen, true));
+                });
+                return 'Map(' + value.size + ') {' + (parts.length ? ' ' + parts.join(', ') + ' ' : '') + '}';
+            }
+            if (typeof Set !== 'undefined' && value instanceof Set) {
+                value.forEach(function (v) {
+                    parts.push(inspect(v, depth + 1, seen, true));
+                });
+                return 'Set(' + value.size + ') {' + (parts.length ? ' ' + parts.join(', ') + ' ' : '') + '}';
+            }
+            if (value instanceof Date) {
+                return value.toISOString();
+            }
+            var constructor = Object.getPrototypeOf(value) && Object.getPrototypeOf(value).constructor;
+            if (constructor && constructor !== Object && constructor.name) {
+                prefix = constructor.name + ' ';
+            }
+            var keys = Object.keys(value);
+            for (var k = 0; k < keys.length; k++) {
+                var key = /^[A-Za-z_$][\w$]*$/.test(keys[k]) ? keys[k] : "'" + keys[k] + "'";
+                parts.push(key + ': ' + inspect(value[keys[k]], depth + 1, seen, true));
+            }
+            return prefix + (parts.length ? '{ ' + parts.join(', ') + ' }' : '{}');
+        } finally {
+            seen.pop();
+        }
+    }
+
+    function format(args) {
+        var parts = [];
+        for (var i = 0; i < args.length; i++) {
+            parts.push(inspect(args[i], 0, [], false));
+        }
+        return parts.join(' ') + '\n';
+    }
+
+    // The message and the stack frames that belong to the submission
+    function describeError(error) {
+        if (!(error instanceof Error)) {
+            return 'Uncaught ' + inspect(error, 0, [], true);
+        }
+        var text = String(error);
+        if (typeof error.stack === 'string') {
+            var frames = error.stack.split('\n').filter(function (line) {
+                return /^\s*at /.test(line) && line.indexOf('main.') >= 0;
+            });
+            if (frames.length) {
+                text += '\n' + frames.join('\n');
+            }
+        } else if (error.lineNumber) {
+            text += '\n    at line ' + error.lineNumber;
+        }
+        return text;
+    }
+
+    function fail(error) {
+        failed = true;
+        if (!(error instanceof LimitError)) {
+            write(true, describeError(error) + '\n');
+        }
+    }
+
+    var console = {
+        log: function () { write(false, format(arguments)); },
+        info: function () { write(false, format(arguments)); },
+        debug: function () { write(false, format(arguments)); },
+        warn: function () { write(true, format(arguments)); },
+        error: function () { write(true, format(arguments)); },
+        table: function (data) { write(false, inspect(data, 0, [], false) + '\n'); }
+    };
+
+    function schedule(callback, delay, args, firstArgument, repeat) {
+        if (typeof callback !== 'function') {
+            throw new TypeError('Callback must be a function');
+        }
+        var timer = {
+            id: ++timerSequence,
+            at: clock + (Number(delay) || 0),
+            sequence: timerSequence,
+            callback: callback,
+            args: Array.prototype.slice.call(args, firstArgument),
+            repeat: repeat ? Math.max(1, Number(delay) || 0) : 0
+        };
+        timers.push(timer);
+        return timer.id;
+    }
+
+    function cancel(id) {
+        timers = timers.filter(function (timer) {
+            return timer.id !== id;
+        });
+    }
+
+    // Timers fire in order of due time on a virtual clock, without waiting
+    function drainTimers() {
+        while (timers.length && !exceeded) {
+            timers.sort(function (a, b) {
+                return a.at - b.at || a.sequence - b.sequence;
+            });
+            var timer = timers.shift();
+            clock = Math.max(clock, timer.at);
+            if (timer.repeat) {
+                timer.at = clock + timer.repeat;
+                timer.sequence = ++timerSequence;
+                timers.push(timer);
+            }
+            try {
+                tick();
+                timer.callback.apply(null, timer.args);
+            } catch (e) {
+                fail(e);
+            }
+        }
+    }
+
+    // Keyed with a prefix so a property named __proto__ stays an ordinary key
+    function ownProperties(target) {
+        var properties = {};
+        var names = Object.getOwnPropertyNames(target);
+        for (var i = 0; i < names.length; i++) {
+            properties['$' + names[i]] = Object.getOwnPropertyDescriptor(target, names[i]);
+        }
+        return properties;
+    }
+
+    function sameDescriptor(a, b) {
+        return a.value === b.value && a.get === b.get && a.set === b.set && a.writable === b.writable
+            && a.enumerable === b.enumerable;
+    }
+
+    // Properties a run added to or changed on a built-in are put back
+    function restoreBuiltin(target, properties) {
+        var names = Object.getOwnPropertyNames(target);
+        for (var i = 0; i < names.length; i++) {
+            var descriptor = Object.getOwnPropertyDescriptor(target, names[i]);
+            var original = properties['$' + names[i]];
+            if (!descriptor.configurable || (original && sameDescriptor(descriptor, original))) {
+                continue;
+            }
+            if (original) {
+                Object.defineProperty(target, names[i], original);
+            } else {
+                delete target[names[i]];
+            }
+        }
+        for (var key in properties) {
+            if (!Object.prototype.hasOwnProperty.call(target, key.substring(1))) {
+                Object.defineProperty(target, key.substring(1), properties[key]);
+            }
+        }
+    }
+
+    // Globals the submission added are removed so the next run starts clean
+    function restoreGlobals() {
+        for (var b = 0; b < builtins.length; b++) {
+            restoreBuiltin(builtins[b].target, builtins[b].properties);
+        }
+        var names = Object.getOwnPropertyNames(global);
+        for (var i = 0; i < names.length; i++) {
+            var descriptor = Object.getOwnPropertyDescriptor(global, names[i]);
+            if (!descriptor || !descriptor.configurable) {
+                continue;
+            }
+            if (!Object.prototype.hasOwnProperty.call(baseline, '$' + names[i])) {
+                delete global[names[i]];
+            } else if ('value' in descriptor && descriptor.value !== baseline['$' + names[i]]) {
+                global[names[i]] = baseline['$' + names[i]];
+            }
+        }
+    }
+
+    var api = {
+        run: function (program) {
+            if (active) {
+                throw new LimitError('A run is already in progress');
+            }
+            var settings = JSON.parse(global.__whatcodeRun);
+            host = global.__whatcodeHost;
+            delete global.__whatcodeRun;
+            delete global.__whatcodeHost;
+            limits = {
+                maxStatements: settings.maxStatements,
+                deadline: settings.deadline
+            };
+            statements = 0;
+            exceeded = null;
+            failed = false;
+            stdinLines = settings.stdin ? String(settings.stdin).split('\n') : [];
+            timers = [];
+            clock = 0;
+            rendered = false;
+            profile = settings.profile ? {
+                hits: zeros(settings.profile.lines),
+                timeMillis: zeros(settings.profile.lines),
+                calls: zeros(settings.profile.functions),
+                line: 0,
+                since: currentTime()
+            } : null;
+            active = true;
+            try {
+                program();
+            } catch (e) {
+                fail(e);
+            }
+        },
+
+        tick: tick,
+        line: line,
+        enter: enter,
+
+        /** Marks that the submission rendered something itself, so the default component is not rendered again. */
+        rendered: function () {
+            rendered = true;
+        },
+
+        render: function (component) {
+            if (rendered || failed || typeof component !== 'function' || !global.ReactDOMServer) {
+                return;
+            }
+            try {
+                console.log(global.ReactDOMServer.renderToStaticMarkup(global.React.createElement(component, null)));
+            } catch (e) {
+                fail(e);
+            }
+        },
+
+        finish: function () {
+            drainTimers();
+            if (profile !== null) {
+                line(0);
+                // Time outside any line, and the line() above, belong to no line
+                profile.hits[0] = 0;
+                profile.timeMillis[0] = 0;
+            }
+            if (exceeded === 'statements') {
+                write(true, 'Statement limit of ' + limits.maxStatements + ' exceeded\n');
+            }
+            active = false;
+            host = null;
+            restoreGlobals();
+            var result = JSON.stringify({
+                ok: !failed && !exceeded,
+                limit: exceeded,
+                profile: profile && { hits: profile.hits, timeMillis: profile.timeMillis, calls: profile.calls }
+            });
+            profile = null;
+            return result;
+        }
+    };
+
+    Object.defineProperty(global, '__whatcode', { value: Object.freeze(api) });
+    global.console = console;
+    global.setTimeout = function (callback, delay) { return schedule(callback, delay, arguments, 2, false); };
+    global.setInterval = function (callback, delay) { return schedule(callback, delay, arguments, 2, true); };
+    global.setImmediate = function (callback) { return schedule(callback, 0, arguments, 1, false); };
+    global.clearTimeout = cancel;
+    global.clearInterval = cancel;
+    global.clearImmediate = cancel;
+    global.readline = function () {
+        return stdinLines.length ? stdinLines.shift() : null;
+    };
+    global.prompt = global.readline;
+    if (typeof global.globalThis === 'undefined') {
+        global.globalThis = global;
+    }
+
+    // Host access and file loading, where the engine offers them
+    ['Java', 'JavaImporter', 'Packages', 'java', 'javax', 'com', 'org', 'net', 'edu', 'load', 'loadWithNewGlobal',
+        'read', 'readbuffer', 'readFully', 'quit', 'exit', 'Polyglot'].forEach(function (name) {
+        delete global[name];
+    });
+
+    // Called once the React runtime is loaded; what exists then survives every run
+    global.__whatcodeSnapshot = function () {
+        var names = Object.getOwnPropertyNames(global);
+        for (var i = 0; i < names.length; i++) {
+            var descriptor = Object.getOwnPropertyDescriptor(global, names[i]);
+            baseline['$' + names[i]] = descriptor && 'value' in descriptor ? descriptor.value : undefined;
+        }
+        ['Object', 'Function', 'Array', 'String', 'Number', 'Boolean', 'Symbol', 'Date', 'RegExp', 'Error',
+            'Map', 'Set', 'WeakMap', 'Promise', 'Math', 'JSON', 'React', 'ReactDOM', 'ReactDOMServer', 'console',
+            'document'].forEach(function (name) {
+            var target = global[name];
+            if (target === null || (typeof target !== 'object' && typeof target !== 'function')) {
+                return;
+            }
+            builtins.push({ target: target, properties: ownProperties(target) });
+            if (typeof target === 'function' && target.prototype) {
+                builtins.push({ target: target.prototype, properties: ownProperties(target.prototype) });
+            }
+        });
+        delete global.__whatcodeSnapshot;
+    };
+})(this);
@@ -0,0 +1,166 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Debuggee side of the Java tracer. Runs in a JVM started with the JDWP
+ * agent; the server stays attached and traces each submission this process
+ * runs. It prints "ready" on stdout, which the server discards from then
+ * on, so nothing a submission writes there reaches it. One request per line
+ * on stdin:
+ *
+ *   nonce TAB maxOutputBytes TAB mainClass TAB base64(stdin) TAB name=base64(class file) ...
+ *
+ * Every run ends in finished(), whose arguments are the reply: the server's
+ * breakpoint there reads them over the debugger connection, which
+ * submissions, loaded where this class is not visible, cannot call into.
+ */
+public class WhatcodeDebuggee {
+
+    public static void main(String[] args) throws Exception {
+        PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        protocol.println("ready");
+        BufferedReader requests = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        Base64.Decoder decoder = Base64.getDecoder();
+
+        String line;
+        while ((line = requests.readLine()) != null) {
+            String[] parts = line.split("\t");
+            int limit = Integer.parseInt(parts[1]);
+            Map<String, byte[]> classes = new HashMap<>();
+            for (int i = 4; i < parts.length; i++) {
+                int eq = parts[i].indexOf('=');
+                classes.put(parts[i].substring(0, eq), decoder.decode(parts[i].substring(eq + 1)));
+            }
+
+            Set<Thread> before = userThreads();
+            Capture out = new Capture(limit);
+            Capture err = new Capture(limit);
+            PrintStream stdout = new PrintStream(out, true, StandardCharsets.UTF_8);
+            PrintStream stderr = new PrintStream(err, true, StandardCharsets.UTF_8);
+            System.setOut(stdout);
+            System.setErr(stderr);
+            System.setIn(new ByteArrayInputStream(decoder.decode(parts[3])));
+            boolean ok = run(parts[2], classes, stderr);
+            stdout.flush();
+            stderr.flush();
+            Set<Thread> after = userThreads();
+            after.removeAll(before);
+            finished(parts[0], ok, out.text(), err.text(), !after.isEmpty());
+        }
+    }
+
+    /**
+     * The reply to one request. {@code lingering} is set when the submission
+     * left threads running that would keep a JVM of its own alive.
+     */
+    static void finished(String nonce, boolean ok, String stdout, String stderr, boolean lingering) {
+    }
+
+    private static Set<Thread> userThreads() {
+        ThreadGroup group = Thread.currentThread().getThreadGroup();
+        Thread[] threads = new Thread[group.activeCount() + 16];
+        int count = group.enumerate(threads, true);
+        Set<Thread> running = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            if (!threads[i].isDaemon() && threads[i] != Thread.currentThread()) {
+                running.add(threads[i]);
+            }
+        }
+        return running;
+    }
+
+    private static boolean run(String mainClass, Map<String, byte[]> classes, PrintStream err) {
+        try {
+            Method main = new SubmissionLoader(classes).loadClass(mainClass).getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                err.println("main method must be static");
+                return false;
+            }
+            main.invoke(null, (Object) new String[0]);
+            return true;
+        } catch (InvocationTargetException e) {
+            printUserStackTrace(e.getCause(), classes, err);
+            return false;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            err.println("No runnable main method in class " + mainClass);
+            return false;
+        }
+    }
+
+    private static void printUserStackTrace(Throwable error, Map<String, byte[]> classes, PrintStream err) {
+        String prefix = "Exception in thread \"main\" ";
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            err.println(prefix + t);
+            for (StackTraceElement frame : t.getStackTrace()) {
+                if (classes.containsKey(frame.getClassName())) {
+                    err.println("\tat " + frame.getClassName() + "." + frame.getMethodName()
+                            + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")");
+                }
+            }
+            prefix = "Caused by: ";
+        }
+    }
+
+    private static final class SubmissionLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        SubmissionLoader(Map<String, byte[]> classes) {
+            super("submission", ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Capture extends OutputStream {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final int limit;
+        private boolean truncated;
+
+        Capture(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            int room = limit - buffer.size();
+            if (len > room) {
+                truncated = true;
+                len = Math.max(room, 0);
+            }
+            buffer.write(b, off, len);
+        }
+
+        String text() {
+            String text = buffer.toString(StandardCharsets.UTF_8);
+            return truncated ? text + "\n... [output truncated]" : text;
+        }
+    }
+}
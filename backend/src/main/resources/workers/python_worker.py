@@ -0,0 +1,668 @@
+"""Pre-warmed Python execution worker.
+
+Reads one JSON request per line on stdin and answers with one JSON line on
+stdout. The parent interpreter stays warm; every submission runs in a forked
+child with its own CPU and address-space rlimits, so a run can neither see
+nor damage state left by earlier runs.
+
+Requests with "trace": true run under sys.settrace. The child then streams
+trace events, one JSON array per line, ahead of its result object, and the
+parent relays them as they arrive. Requests with "profile": true run under a
+much lighter hook that only counts lines and calls, and the result object
+carries the counts. Requests with "stream": true relay the submission's output
+the same way, as ["o", stream, text] lines.
+
+The child keeps only the first and last maxOutputBytes / 2 characters of each
+output stream, however much the submission prints.
+
+The child reaches the parent only through its own pipe: its standard
+descriptors point at /dev/null, so a submission cannot write to the
+protocol stream or read the next request. The parent echoes each request's
+nonce in its response.
+
+The child runs in a session of its own, whose process group is killed when
+it ends. A process that leaves the group (setsid, a double fork) is still
+caught: the parent is the child subreaper, so orphans of a run become its
+children and are killed after the run. Each run may also start only
+MAX_PROCESSES processes, write files of up to MAX_FILE_BYTES and hold
+MAX_OPEN_FILES descriptors. These are rlimits, not a cgroup: the memory
+limit applies to each process on its own, and the process limit does not
+bind a worker running as root. A cgroup needs the external sandbox prefix
+of the worker command.
+"""
+import collections
+import io
+import itertools
+import json
+import math
+import os
+import resource
+import select
+import signal
+import sys
+import time
+import traceback
+import types
+
+PROTOCOL_OUT = sys.stdout
+SUBMISSION = "<submission>"
+MAX_STRING = 200
+# Deeper calls stop the trace, which keeps the tracer's own encoding well
+# clear of the interpreter's recursion limit
+MAX_FRAMES = 256
+# rlimits of a run besides the CPU and memory ones the request carries
+MAX_PROCESSES = 32
+MAX_FILE_BYTES = 16 * 1024 * 1024
+MAX_OPEN_FILES = 64
+PR_SET_CHILD_SUBREAPER = 36
+_MISSING = object()
+
+
+def respond(payload):
+    PROTOCOL_OUT.write(json.dumps(payload) + "\n")
+    PROTOCOL_OUT.flush()
+
+
+def write_all(fd, data):
+    view = memoryview(data)
+    while view:
+        written = os.write(fd, view)
+        view = view[written:]
+
+
+def compact(value):
+    return json.dumps(value, separators=(",", ":"))
+
+
+class Tracer:
+    """sys.settrace hook that streams what the submission does:
+
+      ["c", name, line, params]            a submission function was entered
+      ["r"]                                the innermost function returned
+      ["s", line, changed, removed, heap]  a line of the innermost frame finished
+      ["t", reason]                        tracing stopped early
+
+    A step carries only the variables of the innermost frame that changed
+    since that frame's previous step, and only the heap objects that are new
+    or changed; the receiver keeps everything else. Heap objects are sent as
+    [id, type, value, names, points_to], numbered in order of first
+    appearance and kept alive so their ids stay unique.
+    """
+
+    def __init__(self, write_fd, request):
+        self.write_fd = write_fd
+        self.max_steps = request.get("maxSteps") or 10000
+        self.max_depth = request.get("maxDepth") or 3
+        self.max_items = request.get("maxItems") or 50
+        self.max_wall_ms = request.get("maxWallMs") or 5000
+        self.deadline = time.monotonic() + self.max_wall_ms / 1000.0
+        self.steps = 0
+        self.stopped = False
+        self.stack = []
+        # frame -> [line awaiting its step, {name: encoded value last sent}]
+        self.frames = {}
+        # id(obj) -> [heap id, obj, encoded entry last sent]
+        self.heap = {}
+        self.buffer = []
+        self.buffered = 0
+        self.flushed_at = time.monotonic()
+
+    def start(self):
+        sys.settrace(self.on_call)
+
+    def stop(self, reason=None):
+        sys.settrace(None)
+        for frame in self.stack:
+            frame.f_trace = None
+        self.stopped = True
+        if reason:
+            self.emit(compact(["t", reason]))
+        self.flush()
+
+    def on_call(self, frame, event, arg):
+        if self.stopped or frame.f_code.co_filename != SUBMISSION:
+            return None
+        if len(self.stack) >= MAX_FRAMES:
+            self.stop("call depth limit of %d frames reached" % MAX_FRAMES)
+            return None
+        code = frame.f_code
+        # The module frame comes first and is implied by the receiver
+        if self.stack:
+            params = list(code.co_varnames[:code.co_argcount + code.co_kwonlyargcount])
+            self.emit(compact(["c", code.co_name, frame.f_lineno, params]))
+        self.stack.append(frame)
+        # Fresh state on every call, so a resumed generator resends its locals
+        self.frames[frame] = [None, {}]
+        return self.on_event
+
+    def on_event(self, frame, event, arg):
+        state = self.frames.get(frame)
+        if self.stopped or state is None:
+            return None
+        # A line's step is taken when its frame moves on, so it shows the
+        # line's effects, after any calls the line made
+        if event == "line":
+            if state[0] is not None:
+                self.step(frame, state)
+            state[0] = frame.f_lineno
+        elif event == "return":
+            if state[0] is not None:
+                self.step(frame, state)
+            if self.stopped:
+                return None
+            self.stack.pop()
+            del self.frames[frame]
+            if self.stack:
+                self.emit('["r"]')
+        return self.on_event
+
+    def step(self, frame, state):
+        self.steps += 1
+        if self.steps > self.max_steps:
+            self.stop("step limit of %d reached" % self.max_steps)
+            return
+        if time.monotonic() > self.deadline:
+            self.stop("time limit of %d ms reached" % self.max_wall_ms)
+            return
+
+        variables = self.variables(frame)
+        sent = state[1]
+        encoded = {}
+        changed = []
+        assigned = set()
+        for name, value in variables.items():
+            text = compact(self.encode(value, self.max_depth))
+            encoded[id(value)] = text
+            if sent.get(name, _MISSING) != text:
+                sent[name] = text
+                changed.append(compact(name) + ":" + text)
+                assigned.add(name)
+        removed = [name for name in sent if name not in variables]
+        for name in removed:
+            del sent[name]
+
+        self.emit('["s",%d,{%s},%s,[%s]]' % (
+            state[0], ",".join(changed), compact(removed), ",".join(self.heap_changes(variables, encoded, assigned))))
+
+    def variables(self, frame):
+        source = frame.f_globals if frame is self.stack[0] else frame.f_locals
+        return {name: value for name, value in source.items()
+                if not name.startswith("__") and not isinstance(value, types.ModuleType)}
+
+    def heap_changes(self, variables, encoded, assigned):
+        referenced = {}
+        for name, value in variables.items():
+            if is_heap_object(value):
+                referenced.setdefault(id(value), (value, []))[1].append(name)
+        # Ids first, so objects can point to ones first named in this step
+        for key, (value, names) in referenced.items():
+            if key not in self.heap:
+                self.heap[key] = [len(self.heap) + 1, value, None]
+
+        # An object is resent when it changes, and when a variable naming it
+        # was assigned, since the server drops objects no variable names
+        changes = []
+        for key, (value, names) in referenced.items():
+            entry = self.heap[key]
+            text = "[%d,%s,%s,%s,%s]" % (entry[0], compact(type(value).__name__), encoded[key], compact(names),
+                                         compact(self.points_to(value)))
+            if text != entry[2] or not assigned.isdisjoint(names):
+                entry[2] = text
+                changes.append(text)
+        return changes
+
+    def points_to(self, value):
+        if isinstance(value, dict):
+            items = value.values()
+        elif isinstance(value, (list, tuple, set, frozenset)):
+            items = value
+        else:
+            items = vars(value).values()
+        ids = []
+        for item in itertools.islice(items, self.max_items):
+            entry = self.heap.get(id(item)) if is_heap_object(item) else None
+            if entry is not None and entry[0] not in ids:
+                ids.append(entry[0])
+        return ids
+
+    def encode(self, value, depth):
+        if value is None or isinstance(value, (bool, int)):
+            return value
+        if isinstance(value, str):
+            return value if len(value) <= MAX_STRING else value[:MAX_STRING] + "..."
+        if isinstance(value, float):
+            return value if math.isfinite(value) else repr(value)
+        if isinstance(value, (list, tuple, set, frozenset)):
+            if depth <= 0:
+                return "<%s of %d>" % (type(value).__name__, len(value))
+            items = [self.encode(item, depth - 1) for item in itertools.islice(value, self.max_items)]
+            if len(value) > self.max_items:
+                items.append("... %d more" % (len(value) - self.max_items))
+            return items
+        if isinstance(value, dict):
+            if depth <= 0:
+                return "<dict of %d>" % len(value)
+            result = {}
+            for key, item in itertools.islice(value.items(), self.max_items):
+                result[key if isinstance(key, str) else safe_repr(key)] = self.encode(item, depth - 1)
+            if len(value) > self.max_items:
+                result["..."] = "%d more" % (len(value) - self.max_items)
+            return result
+        if isinstance(value, (types.FunctionType, types.BuiltinFunctionType, types.MethodType)):
+            return "<function %s>" % getattr(value, "__qualname__", "?")
+        if isinstance(value, type):
+            return "<class %s>" % value.__name__
+        if is_heap_object(value):
+            if depth <= 0:
+                return "<%s object>" % type(value).__name__
+            return {name: self.encode(item, depth - 1)
+                    for name, item in itertools.islice(vars(value).items(), self.max_items)}
+        return safe_repr(value)
+
+    def emit(self, line):
+        data = (line + "\n").encode("utf-8")
+        self.buffer.append(data)
+        self.buffered += len(data)
+        now = time.monotonic()
+        if self.buffered >= 32768 or now - self.flushed_at >= 0.05:
+            self.flush()
+
+    def flush(self):
+        if self.buffer:
+            started = time.monotonic()
+            write_all(self.write_fd, b"".join(self.buffer))
+            self.buffer = []
+            self.buffered = 0
+            # Time blocked on a reader that is not asking for steps yet does
+            # not count against the run's wall-time budget
+            self.deadline += time.monotonic() - started
+        self.flushed_at = time.monotonic()
+
+
+class Output(io.TextIOBase):
+    """Text stream that keeps the first and last limit / 2 characters written
+    and counts the rest. Given a write_fd, it also relays what is written as
+    ["o", name, text] lines, batched like trace events but only cut at a line
+    end; a large write is sent in pieces so no line grows past RELAY_CHARS.
+    """
+
+    RELAY_CHARS = 8192
+
+    def __init__(self, name, limit, write_fd=None):
+        self.name = name
+        self.head = []
+        self.head_room = limit // 2
+        self.tail = collections.deque()
+        self.tail_length = 0
+        self.tail_room = max(limit - limit // 2, 1)
+        self.omitted = 0
+        self.write_fd = write_fd
+        self.pending = []
+        self.pending_length = 0
+        self.flushed_at = time.monotonic()
+
+    def writable(self):
+        return True
+
+    def write(self, text):
+        if not isinstance(text, str):
+            raise TypeError("write() argument must be str, not %s" % type(text).__name__)
+        length = len(text)
+        rest = text
+        if self.head_room:
+            kept = rest[:self.head_room]
+            self.head.append(kept)
+            self.head_room -= len(kept)
+            rest = rest[len(kept):]
+        if rest:
+            self.tail.append(rest)
+            self.tail_length += len(rest)
+            while self.tail_length - len(self.tail[0]) >= self.tail_room:
+                dropped = self.tail.popleft()
+                self.tail_length -= len(dropped)
+                self.omitted += len(dropped)
+            excess = self.tail_length - self.tail_room
+            if excess > 0:
+                self.tail[0] = self.tail[0][excess:]
+                self.tail_length -= excess
+                self.omitted += excess
+        if self.write_fd is not None and text:
+            self.pending.append(text)
+            self.pending_length += length
+            # Like a line-buffered stream, so print() sends whole lines
+            if self.pending_length >= self.RELAY_CHARS or (
+                    text.endswith("\n") and time.monotonic() - self.flushed_at >= 0.05):
+                self.flush()
+        return length
+
+    def flush(self):
+        if self.pending:
+            text = "".join(self.pending)
+            lines = [compact(["o", self.name, text[i:i + self.RELAY_CHARS]]) + "\n"
+                     for i in range(0, len(text), self.RELAY_CHARS)]
+            write_all(self.write_fd, "".join(lines).encode("utf-8"))
+            self.pending = []
+            self.pending_length = 0
+        self.flushed_at = time.monotonic()
+
+    def getvalue(self):
+        head = "".join(self.head)
+        if not self.omitted:
+            return head + "".join(self.tail)
+        return "%s\n... [%d characters of output omitted] ...\n%s" % (head, self.omitted, "".join(self.tail))
+
+
+class Profiler:
+    """sys.settrace hook that counts, per line of the submission, how often
+    the line ran and how long it took, and how often each function was
+    called. The counters are flat lists indexed by line number and updated
+    in place. A line's time runs from its line event to the submission's
+    next line or return event, so time in submission functions it calls is
+    counted on their lines, and time in library code on the line itself.
+    The time spent in the hook itself is left out.
+    """
+
+    def __init__(self, code):
+        self.hits = [0] * (code.count("\n") + 2)
+        self.times = [0] * len(self.hits)
+        self.calls = {}
+
+    def start(self):
+        hits = self.hits
+        times = self.times
+        calls = self.calls
+        clock = time.perf_counter_ns
+        # [current line, when it became current]
+        state = [0, clock()]
+
+        def on_event(frame, event, arg):
+            current = state[0]
+            times[current] += clock() - state[1]
+            if event == "line":
+                current = frame.f_lineno
+                hits[current] += 1
+            elif event == "return":
+                caller = frame.f_back
+                current = caller.f_lineno if caller is not None and caller.f_code.co_filename == SUBMISSION else 0
+            state[0] = current
+            state[1] = clock()
+            return on_event
+
+        def on_call(frame, event, arg):
+            code = frame.f_code
+            if code.co_filename != SUBMISSION:
+                return None
+            times[state[0]] += clock() - state[1]
+            # A resumed generator is called again, from the line it left off on
+            if frame.f_lineno == code.co_firstlineno and code.co_name != "<module>":
+                calls[code] = calls.get(code, 0) + 1
+            state[1] = clock()
+            return on_event
+
+        sys.settrace(on_call)
+
+    def result(self):
+        functions = [{"name": getattr(code, "co_qualname", code.co_name), "line": code.co_firstlineno, "calls": count}
+                     for code, count in self.calls.items()]
+        functions.sort(key=lambda function: function["line"])
+        # Time outside any line of the submission
+        self.times[0] = 0
+        return {"hits": self.hits, "timeNanos": self.times, "functions": functions}
+
+
+def is_heap_object(value):
+    if isinstance(value, (list, dict, set, frozenset, tuple)):
+        return True
+    return type(value).__module__ == "__main__" and hasattr(value, "__dict__") and not isinstance(value, type)
+
+
+def safe_repr(value):
+    try:
+        text = repr(value)
+    except Exception:
+        return "<%s object>" % type(value).__name__
+    return text if len(text) <= MAX_STRING else text[:MAX_STRING] + "..."
+
+
+def isolate():
+    os.setsid()
+    null = os.open(os.devnull, os.O_RDWR)
+    for fd in (0, 1, 2):
+        os.dup2(null, fd)
+    os.close(null)
+
+
+def user_tasks():
+    """Tasks of this user, threads included, which RLIMIT_NPROC counts."""
+    uid = os.getuid()
+    count = 0
+    for entry in os.listdir("/proc"):
+        if not entry.isdigit():
+            continue
+        try:
+            if os.stat("/proc/" + entry).st_uid == uid:
+                count += len(os.listdir("/proc/%s/task" % entry))
+        except OSError:
+            pass
+    return count
+
+
+def limit_resources(request):
+    cpu = request.get("cpuSeconds") or 0
+    memory = request.get("memoryBytes") or 0
+    if cpu > 0:
+        resource.setrlimit(resource.RLIMIT_CPU, (cpu, cpu + 1))
+    if memory > 0:
+        resource.setrlimit(resource.RLIMIT_AS, (memory, memory))
+    # The kernel counts every task of the user, the server's threads too, and
+    # does not apply the limit to root
+    if os.getuid() != 0:
+        processes = user_tasks() + MAX_PROCESSES
+        resource.setrlimit(resource.RLIMIT_NPROC, (processes, processes))
+    resource.setrlimit(resource.RLIMIT_FSIZE, (MAX_FILE_BYTES, MAX_FILE_BYTES))
+    resource.setrlimit(resource.RLIMIT_NOFILE, (MAX_OPEN_FILES, MAX_OPEN_FILES))
+    # A write past the file size limit then fails with an OSError the
+    # submission sees, instead of killing it
+    signal.signal(signal.SIGXFSZ, signal.SIG_IGN)
+
+
+def run_child(request, write_fd):
+    isolate()
+    limit_resources(request)
+
+    limit = request.get("maxOutputBytes") or 65536
+    relay = write_fd if request.get("stream") else None
+    out = Output("stdout", limit, relay)
+    err = Output("stderr", limit, relay)
+    sys.stdout = out
+    sys.stderr = err
+    sys.stdin = io.StringIO(request.get("stdin") or "")
+
+    tracer = Tracer(write_fd, request) if request.get("trace") else None
+    profiler = Profiler(request["code"]) if request.get("profile") and not tracer else None
+    ok = True
+    try:
+        code = compile(request["code"], SUBMISSION, "exec")
+        if tracer:
+            tracer.start()
+        elif profiler:
+            profiler.start()
+        try:
+            exec(code, {"__name__": "__main__", "__builtins__": __builtins__})
+        finally:
+            if tracer or profiler:
+                sys.settrace(None)
+    except SystemExit as e:
+        ok = e.code in (None, 0)
+    except MemoryError:
+        ok = False
+        err.write("MemoryError: memory limit exceeded\n")
+    except BaseException:
+        ok = False
+        etype, value, tb = sys.exc_info()
+        # Drop the worker's own frame so the traceback starts in user code
+        traceback.print_exception(etype, value, tb.tb_next, file=err)
+
+    if tracer:
+        tracer.flush()
+    out.flush()
+    err.flush()
+    result = {
+        "ok": ok,
+        "stdout": out.getvalue(),
+        "stderr": err.getvalue(),
+        "timedOut": False,
+    }
+    if profiler:
+        result["profile"] = profiler.result()
+    payload = json.dumps(result) + "\n"
+    write_all(write_fd, payload.encode("utf-8"))
+    os._exit(0)
+
+
+def execute(request):
+    read_fd, write_fd = os.pipe()
+    pid = os.fork()
+    if pid == 0:
+        os.close(read_fd)
+        try:
+            run_child(request, write_fd)
+        finally:
+            os._exit(1)
+
+    os.close(write_fd)
+    deadline = time.monotonic() + (request.get("timeoutMs") or 60000) / 1000.0
+    pending = bytearray()
+    scanned = 0
+    result = None
+    timed_out = False
+    while True:
+        remaining = deadline - time.monotonic()
+        if remaining <= 0:
+            timed_out = True
+            break
+        ready, _, _ = select.select([read_fd], [], [], remaining)
+        if not ready:
+            continue
+        chunk = os.read(read_fd, 65536)
+        if not chunk:
+            break
+        pending += chunk
+
+        # Trace events go straight through; the object line is the result
+        events = []
+        start = 0
+        while True:
+            newline = pending.find(b"\n", scanned)
+            if newline < 0:
+                scanned = len(pending)
+                break
+            line = bytes(pending[start:newline])
+            start = scanned = newline + 1
+            if line.startswith(b"["):
+                events.append(line)
+            elif line:
+                result = line
+        del pending[:start]
+        scanned -= start
+        if events:
+            PROTOCOL_OUT.buffer.write(b"\n".join(events) + b"\n")
+            PROTOCOL_OUT.buffer.flush()
+        # The result is the child's last line; a process it left behind may
+        # still hold the pipe open
+        if result is not None:
+            break
+    os.close(read_fd)
+
+    if timed_out:
+        kill_group(pid)
+    # Waits without reaping, so the group id cannot be reused before whatever
+    # else the submission started is killed with it
+    os.waitid(os.P_PID, pid, os.WEXITED | os.WNOWAIT)
+    kill_group(pid)
+    _, status = os.waitpid(pid, 0)
+    kill_strays()
+
+    if timed_out:
+        return {"ok": False, "stdout": "", "stderr": "Execution timed out", "timedOut": True}
+    if os.WIFSIGNALED(status):
+        sig = os.WTERMSIG(status)
+        reason = "CPU time limit exceeded" if sig in (signal.SIGXCPU, signal.SIGKILL) else "signal %d" % sig
+        return {"ok": False, "stdout": "", "stderr": "Execution terminated: " + reason, "timedOut": False}
+    try:
+        response = json.loads(result.decode("utf-8")) if result is not None else None
+    except ValueError:
+        response = None
+    if not isinstance(response, dict):
+        return {"ok": False, "stdout": "", "stderr": "Execution produced no result", "timedOut": False}
+    return response
+
+
+def kill_group(pid):
+    try:
+        os.killpg(pid, signal.SIGKILL)
+    except (ProcessLookupError, PermissionError):
+        pass
+
+
+def become_subreaper():
+    try:
+        import ctypes
+        libc = ctypes.CDLL(None, use_errno=True)
+        return libc.prctl(PR_SET_CHILD_SUBREAPER, 1, 0, 0, 0) == 0
+    except (OSError, AttributeError):
+        return False
+
+
+def children():
+    pid = os.getpid()
+    try:
+        with open("/proc/%d/task/%d/children" % (pid, pid)) as f:
+            return [int(child) for child in f.read().split()]
+    except OSError:
+        return []
+
+
+def kill_strays():
+    """Kills processes of the last run that left its process group.
+
+    Between runs the worker has no children of its own, so any child is an
+    orphan of the run. Killing one can orphan its own children, hence the
+    rounds; MAX_PROCESSES bounds how many there can be.
+    """
+    for _ in range(MAX_PROCESSES + 1):
+        strays = children()
+        if not strays:
+            return
+        for stray in strays:
+            try:
+                os.kill(stray, signal.SIGKILL)
+            except ProcessLookupError:
+                pass
+        for stray in strays:
+            try:
+                os.waitpid(stray, 0)
+            except ChildProcessError:
+                pass
+
+
+def main():
+    become_subreaper()
+    respond({"ready": True})
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        nonce = None
+        try:
+            request = json.loads(line)
+            nonce = request.get("nonce")
+            response = execute(request)
+        except Exception as e:
+            response = {"ok": False, "stdout": "", "stderr": "Worker error: %s" % e, "timedOut": False}
+        response["nonce"] = nonce
+        respond(response)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,110 @@
+package com.whatcode.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.dto.ControlFlow;
+import com.whatcode.dto.DataStructure;
+import com.whatcode.dto.MemoryObject;
+import com.whatcode.dto.StackFrame;
+import com.whatcode.dto.VisualizationStep;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SerializationConfigTest {
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper smile = Jackson2ObjectMapperBuilder.smile()
+            .factory(SerializationConfig.smileFactory()).build();
+    private final ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor()
+            .factory(SerializationConfig.cborFactory()).build();
+
+    @Test
+    void smileDecodesToTheJsonTree() throws Exception {
+        List<VisualizationStep> trace = trace(30);
+        byte[] encoded = smile.writeValueAsBytes(trace);
+
+        // Header ":)\n" then a flags byte: bit 0 shared names, bit 1 shared string values
+        assertThat(new String(encoded, 0, 3)).isEqualTo(":)\n");
+        assertThat(encoded[3] & 0x03).isEqualTo(0x03);
+        assertThat(smile.readTree(encoded)).isEqualTo(jsonTree(trace));
+    }
+
+    @Test
+    void cborWithStringrefsDecodesToTheJsonTree() throws Exception {
+        List<VisualizationStep> trace = trace(30);
+        byte[] encoded = cbor.writeValueAsBytes(trace);
+
+        // The document opens a stringref namespace, tag 256
+        assertThat(encoded[0] & 0xFF).isEqualTo(0xD9);
+        assertThat(encoded[1] & 0xFF).isEqualTo(0x01);
+        assertThat(encoded[2] & 0xFF).isEqualTo(0x00);
+        assertThat(cbor.readTree(encoded)).isEqualTo(jsonTree(trace));
+    }
+
+    @Test
+    void sharedStringsMakeBothFormatsSmallerThanJson() throws Exception {
+        List<VisualizationStep> trace = trace(30);
+        int jsonSize = json.writeValueAsBytes(trace).length;
+
+        assertThat(smile.writeValueAsBytes(trace).length).isLessThan(jsonSize / 2);
+        assertThat(cbor.writeValueAsBytes(trace).length).isLessThan(jsonSize / 2);
+    }
+
+    private JsonNode jsonTree(List<VisualizationStep> trace) throws Exception {
+        return json.readTree(json.writeValueAsBytes(trace));
+    }
+
+    // A loop filling a list: every step repeats the field names, descriptions and frame names
+    private static List<VisualizationStep> trace(int steps) {
+        List<VisualizationStep> trace = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        List<ControlFlow> flow = new ArrayList<>();
+        for (int i = 1; i <= steps; i++) {
+            int line = i % 2 == 0 ? 3 : 4;
+            values.add("item-" + (i % 4));
+            flow.add(ControlFlow.builder().fromLine(line == 3 ? 4 : 3).toLine(line).type("loop").build());
+            Map<String, Object> variables = new LinkedHashMap<>();
+            variables.put("i", i);
+            variables.put("items", List.copyOf(values));
+            variables.put("label", "loop");
+            trace.add(VisualizationStep.builder()
+                    .stepNumber(i)
+                    .description(line == 3 ? "Starting loop iteration" : "Executing statement")
+                    .variableStates(variables)
+                    .lineHighlight(line)
+                    .stackFrames(List.of(StackFrame.builder()
+                            .functionName("main")
+                            .parameters(Map.of())
+                            .localVariables(variables)
+                            .lineNumber(line)
+                            .build()))
+                    .memoryObjects(List.of(MemoryObject.builder()
+                            .id(1)
+                            .address("0x10000000")
+                            .type("list")
+                            .value(List.copyOf(values))
+                            .references(List.of("items"))
+                            .pointsTo(List.of())
+                            .build()))
+                    .controlFlow(List.copyOf(flow))
+                    .dataStructures(List.of(DataStructure.builder()
+                            .id(1)
+                            .name("items")
+                            .type("array")
+                            .version(i)
+                            .data(List.copyOf(values))
+                            .operations(List.of("read", "write"))
+                            .build()))
+                    .timestamp(1_700_000_000_000L + i)
+                    .build());
+        }
+        return trace;
+    }
+}
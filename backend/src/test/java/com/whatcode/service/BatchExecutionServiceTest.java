@@ -0,0 +1,139 @@
+package com.whatcode.service;
+
+import com.whatcode.dto.BatchExecutionRequest;
+import com.whatcode.dto.BatchResultEvent;
+import com.whatcode.dto.BatchTestCase;
+import com.whatcode.dto.CodeExecutionRequest;
+import com.whatcode.dto.CodeExecutionResponse;
+import com.whatcode.exception.ServerSaturatedException;
+import com.whatcode.model.SupportedLanguage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchExecutionServiceTest {
+
+    private final CodeExecutionService codeExecutionService = mock(CodeExecutionService.class);
+    private final BatchExecutionService batchService = new BatchExecutionService(codeExecutionService, 4, 16, 3);
+
+    @BeforeEach
+    void keyByLanguageCodeAndStdin() {
+        when(codeExecutionService.executionKey(any())).thenAnswer(invocation -> {
+            CodeExecutionRequest request = invocation.getArgument(0);
+            return request.getLanguage() + "|" + request.getCode().strip() + "|" + request.getStdin();
+        });
+    }
+
+    @Test
+    void runsEachDistinctSubmissionAndTestCaseOnce() {
+        when(codeExecutionService.executeCode(any())).thenAnswer(invocation ->
+                success("ran " + ((CodeExecutionRequest) invocation.getArgument(0)).getStdin()));
+        BatchExecutionRequest batch = batch(
+                List.of(submission("print(input())"), submission("print(input())  "), submission("print(2)")),
+                List.of(new BatchTestCase("one", "1", null), new BatchTestCase("two", "2", null)));
+
+        List<BatchResultEvent> events = run(batch);
+
+        // Two distinct programs times two inputs
+        verify(codeExecutionService, times(4)).executeCode(any());
+        assertThat(events).last().satisfies(complete -> {
+            assertThat(complete.getType()).isEqualTo("complete");
+            assertThat(complete.getRuns()).isEqualTo(6);
+            assertThat(complete.getExecuted()).isEqualTo(4);
+        });
+        assertThat(events.subList(0, events.size() - 1))
+                .extracting(BatchResultEvent::getSubmission, BatchResultEvent::getTestCase,
+                        BatchResultEvent::getTestName, event -> event.getResult().getOutput())
+                .containsExactlyInAnyOrder(
+                        tuple(0, 0, "one", "ran 1"), tuple(0, 1, "two", "ran 2"),
+                        tuple(1, 0, "one", "ran 1"), tuple(1, 1, "two", "ran 2"),
+                        tuple(2, 0, "one", "ran 1"), tuple(2, 1, "two", "ran 2"));
+    }
+
+    @Test
+    void stdinComesFromTheTestCaseThenTheSubmissionThenTheBatch() {
+        when(codeExecutionService.executeCode(any())).thenReturn(success(""));
+        CodeExecutionRequest own = submission("a");
+        own.setStdin("own");
+        BatchExecutionRequest batch = batch(List.of(own, submission("b")), null);
+        batch.setStdin("shared");
+
+        run(batch);
+
+        ArgumentCaptor<CodeExecutionRequest> requests = ArgumentCaptor.forClass(CodeExecutionRequest.class);
+        verify(codeExecutionService, times(2)).executeCode(requests.capture());
+        assertThat(requests.getAllValues())
+                .extracting(CodeExecutionRequest::getCode, CodeExecutionRequest::getStdin)
+                .containsExactlyInAnyOrder(tuple("a", "own"), tuple("b", "shared"));
+
+        BatchExecutionRequest withCase = batch(List.of(own), List.of(new BatchTestCase("case", "case", null)));
+        run(withCase);
+        verify(codeExecutionService, times(3)).executeCode(requests.capture());
+        assertThat(requests.getValue().getStdin()).isEqualTo("case");
+    }
+
+    @Test
+    void comparesOutputIgnoringTrailingWhitespaceAndLineEndings() {
+        when(codeExecutionService.executeCode(any())).thenReturn(success("1\r\n2\r\n"));
+        BatchExecutionRequest batch = batch(List.of(submission("x")), List.of(
+                new BatchTestCase("match", "a", "1\n2"),
+                new BatchTestCase("mismatch", "b", "1\n3"),
+                new BatchTestCase("unchecked", "c", null)));
+
+        List<BatchResultEvent> events = run(batch);
+
+        assertThat(events.subList(0, 3))
+                .extracting(BatchResultEvent::getTestName, BatchResultEvent::getPassed)
+                .containsExactlyInAnyOrder(tuple("match", true), tuple("mismatch", false), tuple("unchecked", null));
+    }
+
+    @Test
+    void retriesSaturatedRunsAndGivesUpAfterMaxAttempts() {
+        ServerSaturatedException saturated = new ServerSaturatedException(SupportedLanguage.PYTHON, 0);
+        when(codeExecutionService.executeCode(any()))
+                .thenThrow(saturated)
+                .thenReturn(success("done"));
+
+        List<BatchResultEvent> events = run(batch(List.of(submission("x")), null));
+        assertThat(events.get(0).getResult().getOutput()).isEqualTo("done");
+
+        when(codeExecutionService.executeCode(any())).thenThrow(saturated);
+        events = run(batch(List.of(submission("y")), null));
+        assertThat(events.get(0).getResult().isSuccess()).isFalse();
+        assertThat(events.get(0).getResult().getError()).isEqualTo(saturated.getMessage());
+        // One success, then two runs of three attempts each
+        verify(codeExecutionService, times(5)).executeCode(any());
+    }
+
+    private List<BatchResultEvent> run(BatchExecutionRequest batch) {
+        List<BatchResultEvent> events = new ArrayList<>();
+        batchService.executeBatch(batch, events::add);
+        return events;
+    }
+
+    private static BatchExecutionRequest batch(List<CodeExecutionRequest> submissions, List<BatchTestCase> testCases) {
+        return new BatchExecutionRequest(submissions, null, testCases, null);
+    }
+
+    private static CodeExecutionRequest submission(String code) {
+        CodeExecutionRequest request = new CodeExecutionRequest();
+        request.setLanguage(SupportedLanguage.PYTHON);
+        request.setCode(code);
+        return request;
+    }
+
+    private static CodeExecutionResponse success(String output) {
+        return CodeExecutionResponse.builder().success(true).output(output).build();
+    }
+}
@@ -0,0 +1,167 @@
+package com.whatcode.service;
+
+import com.whatcode.dto.ControlFlow;
+import com.whatcode.dto.DataStructure;
+import com.whatcode.dto.MemoryObject;
+import com.whatcode.dto.StackFrame;
+import com.whatcode.dto.StepDelta;
+import com.whatcode.dto.VisualizationStep;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TraceDeltaCodecTest {
+
+    private final TraceDeltaCodec codec = new TraceDeltaCodec();
+
+    @Test
+    void intervalOfOneMakesEveryStepAKeyframe() {
+        List<StepDelta> deltas = encode(trace(6), 1);
+
+        assertThat(deltas).allMatch(StepDelta::isKeyframe);
+    }
+
+    @Test
+    void keyframesFallOnMultiplesOfTheInterval() {
+        List<StepDelta> deltas = encode(trace(12), 5);
+
+        assertThat(keyframeIndexes(deltas)).containsExactly(0, 5, 10);
+    }
+
+    @Test
+    void intervalLongerThanTheTraceKeepsOnlyTheFirstKeyframe() {
+        List<StepDelta> deltas = encode(trace(7), 7);
+        assertThat(keyframeIndexes(deltas)).containsExactly(0);
+
+        assertThat(keyframeIndexes(encode(trace(7), 100))).containsExactly(0);
+        assertThat(keyframeIndexes(encode(trace(8), 7))).containsExactly(0, 7);
+    }
+
+    @Test
+    void everyStepIsRebuiltExactly() {
+        List<VisualizationStep> trace = trace(23);
+        for (int interval : new int[] {1, 2, 5, 22, 23, 24}) {
+            List<StepDelta> deltas = encode(trace, interval);
+            for (int i = 0; i < trace.size(); i++) {
+                assertThat(codec.reconstructStep(deltas, i)).as("step %d, interval %d", i, interval)
+                        .isEqualTo(trace.get(i));
+            }
+        }
+    }
+
+    @Test
+    void rangesAcrossKeyframesAreRebuiltInOnePass() {
+        List<VisualizationStep> trace = trace(23);
+        List<StepDelta> deltas = encode(trace, 5);
+
+        assertThat(codec.reconstructSteps(deltas, 3, 17)).isEqualTo(trace.subList(3, 17));
+        assertThat(codec.reconstructSteps(deltas, 5, 6)).isEqualTo(trace.subList(5, 6));
+        assertThat(codec.reconstructSteps(deltas, 4, 5)).isEqualTo(trace.subList(4, 5));
+        assertThat(codec.reconstructSteps(deltas, 0, 23)).isEqualTo(trace);
+        assertThat(codec.reconstructSteps(deltas, 9, 9)).isEmpty();
+    }
+
+    @Test
+    void stepWhoseControlFlowIsNotAnAppendBecomesAKeyframe() {
+        List<VisualizationStep> trace = trace(4);
+        // A copy of the flow list whose last edge is a different object
+        List<ControlFlow> rewritten = new ArrayList<>(trace.get(1).getControlFlow());
+        ControlFlow last = rewritten.get(rewritten.size() - 1);
+        rewritten.set(rewritten.size() - 1, ControlFlow.builder().fromLine(last.getFromLine())
+                .toLine(last.getToLine()).type("branch").build());
+        trace.get(2).setControlFlow(rewritten);
+
+        List<StepDelta> deltas = encode(trace, 100);
+
+        // Step 3 extends the original flow, not the rewritten one, so it starts over too
+        assertThat(keyframeIndexes(deltas)).containsExactly(0, 2, 3);
+        assertThat(codec.reconstructStep(deltas, 2)).isEqualTo(trace.get(2));
+        assertThat(codec.reconstructStep(deltas, 3)).isEqualTo(trace.get(3));
+    }
+
+    @Test
+    void streamingEncoderForwardsDeltasWithoutKeepingThem() {
+        List<StepDelta> forwarded = new ArrayList<>();
+        TraceDeltaCodec.Encoder encoder = codec.newEncoder(3, forwarded::add);
+        trace(7).forEach(encoder);
+
+        assertThat(keyframeIndexes(forwarded)).containsExactly(0, 3, 6);
+        assertThatThrownBy(encoder::getDeltas).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsBadIntervalsAndIndexes() {
+        List<StepDelta> deltas = encode(trace(3), 2);
+
+        assertThatThrownBy(() -> codec.newEncoder(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.reconstructStep(deltas, 3)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> codec.reconstructSteps(deltas, 2, 1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    private List<StepDelta> encode(List<VisualizationStep> trace, int keyframeInterval) {
+        TraceDeltaCodec.Encoder encoder = codec.newEncoder(keyframeInterval);
+        trace.forEach(encoder);
+        return encoder.getDeltas();
+    }
+
+    private static List<Integer> keyframeIndexes(List<StepDelta> deltas) {
+        return IntStream.range(0, deltas.size()).filter(i -> deltas.get(i).isKeyframe()).boxed().toList();
+    }
+
+    // A loop that calls a helper every third step: variables change and go
+    // away, frames are pushed and popped, heap objects come and go and the
+    // control flow only grows
+    private static List<VisualizationStep> trace(int steps) {
+        List<VisualizationStep> trace = new ArrayList<>();
+        List<ControlFlow> flow = new ArrayList<>();
+        StackFrame main = StackFrame.builder().functionName("main").parameters(Map.of()).lineNumber(1).build();
+        for (int i = 0; i < steps; i++) {
+            boolean inHelper = i % 3 == 2;
+            int line = inHelper ? 10 : 2 + i % 3;
+            if (i > 0) {
+                flow.add(ControlFlow.builder().fromLine(trace.get(i - 1).getLineHighlight()).toLine(line)
+                        .type(inHelper ? "call" : "loop").build());
+            }
+            Map<String, Object> variables = new LinkedHashMap<>();
+            variables.put("i", i);
+            variables.put("total", i * (i + 1) / 2);
+            if (inHelper) {
+                variables.put("n", i);
+            }
+            List<StackFrame> frames = new ArrayList<>(List.of(main));
+            if (inHelper) {
+                frames.add(StackFrame.builder().functionName("helper").parameters(Map.of("n", i))
+                        .localVariables(Map.of("n", i)).lineNumber(line).build());
+            }
+            List<MemoryObject> heap = new ArrayList<>();
+            heap.add(MemoryObject.builder().id(1).address("0x10000000").type("list")
+                    .value(List.of(i / 4)).references(List.of("items")).pointsTo(List.of()).build());
+            if (i % 4 < 2) {
+                heap.add(MemoryObject.builder().id(2).address("0x10000010").type("str")
+                        .value("s" + i / 4).references(List.of("label")).pointsTo(List.of()).build());
+            }
+            trace.add(VisualizationStep.builder()
+                    .stepNumber(i + 1)
+                    .description(inHelper ? "Calling helper" : "Executing statement")
+                    .variableStates(variables)
+                    .lineHighlight(line)
+                    .output(i == steps - 1 ? "done" : null)
+                    .stackFrames(frames)
+                    .memoryObjects(heap)
+                    .controlFlow(new ArrayList<>(flow))
+                    .dataStructures(List.of(DataStructure.builder().id(1).name("items").type("array")
+                            .version(i / 4 + 1).data(List.of(i / 4)).operations(List.of("read", "write"))
+                            .build()))
+                    .timestamp(1_000L + i)
+                    .build());
+        }
+        return trace;
+    }
+}
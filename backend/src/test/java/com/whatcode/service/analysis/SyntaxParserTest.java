@@ -0,0 +1,145 @@
+package com.whatcode.service.analysis;
+
+import com.whatcode.dto.ControlFlow;
+import com.whatcode.model.SupportedLanguage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SyntaxParserTest {
+
+    private final SyntaxParser parser = new SyntaxParser(new LineAnalyzer(), 16);
+
+    @Test
+    void pythonBlocksFollowIndentation() {
+        SyntaxTree tree = parser.parse(String.join("\n",
+                "def total(items):",          // 0
+                "    result = 0",             // 1
+                "    for item in items:",     // 2
+                "        if item > 0:",       // 3
+                "            result += item", // 4
+                "    return result",          // 5
+                "",                           // 6
+                "print(total([1, -2, 3]))"),  // 7
+                SupportedLanguage.PYTHON);
+
+        assertThat(tree.statements()).extracting(SyntaxTree.Block::firstLine).containsExactly(0, 7);
+        SyntaxTree.Block function = tree.statements().get(0);
+        assertThat(function.analysis().functionDef()).isTrue();
+        assertThat(function.lastLine()).isEqualTo(5);
+        assertThat(function.children()).extracting(SyntaxTree.Block::firstLine).containsExactly(1, 2, 5);
+        SyntaxTree.Block loop = function.children().get(1);
+        assertThat(loop.analysis().loop()).isTrue();
+        assertThat(loop.lastLine()).isEqualTo(4);
+        assertThat(tree.statementAt(4).parent().parent()).isSameAs(loop);
+        assertThat(tree.functionsAt(4)).containsExactly(function);
+        assertThat(tree.functionsAt(7)).isEmpty();
+        assertThat(tree.statementAt(6)).isNull();
+    }
+
+    @Test
+    void pythonStatementContinuesInsideBrackets() {
+        SyntaxTree tree = parser.parse(String.join("\n",
+                "values = [",
+                "    1,",
+                "    2,",
+                "]",
+                "print(len(values))"),
+                SupportedLanguage.PYTHON);
+
+        SyntaxTree.Block assignment = tree.statementAt(0);
+        assertThat(assignment.headerEnd()).isEqualTo(3);
+        assertThat(assignment.analysis().assignment()).isTrue();
+        assertThat(tree.statementAt(2)).isSameAs(assignment);
+        assertThat(tree.statementStart(2)).isZero();
+        assertThat(tree.analyses()[2].kind()).isEqualTo(LineKind.CONTINUATION);
+        assertThat(tree.statementAt(4).firstLine()).isEqualTo(4);
+    }
+
+    @Test
+    void bracedBlocksFollowBracesButNotObjectLiterals() {
+        SyntaxTree tree = parser.parse(String.join("\n",
+                "function area(shape) {",                  // 0
+                "  const sizes = {",                       // 1
+                "    width: shape.w,",                     // 2
+                "    height: shape.h",                     // 3
+                "  };",                                    // 4
+                "  if (sizes.width > 0) {",                // 5
+                "    return sizes.width * sizes.height;",  // 6
+                "  }",                                     // 7
+                "  return 0;",                             // 8
+                "}",                                       // 9
+                "console.log(area({ w: 2, h: 3 }));"),     // 10
+                SupportedLanguage.TYPESCRIPT);
+
+        SyntaxTree.Block function = tree.statements().get(0);
+        assertThat(function.analysis().functionDef()).isTrue();
+        assertThat(function.lastLine()).isEqualTo(9);
+        assertThat(function.children()).extracting(SyntaxTree.Block::firstLine).containsExactly(1, 5, 8);
+        // The object literal is one statement, not a block
+        SyntaxTree.Block sizes = function.children().get(0);
+        assertThat(sizes.headerEnd()).isEqualTo(4);
+        assertThat(sizes.children()).isEmpty();
+        assertThat(function.children().get(1).children()).extracting(SyntaxTree.Block::firstLine)
+                .containsExactly(6);
+        // A line that only closes a block belongs to no statement
+        assertThat(tree.statementAt(7)).isNull();
+        assertThat(tree.analyses()[9].kind()).isEqualTo(LineKind.CONTINUATION);
+        assertThat(tree.statements().get(1).firstLine()).isEqualTo(10);
+    }
+
+    @Test
+    void bracedStatementContinuesAfterATrailingOperator() {
+        SyntaxTree tree = parser.parse(String.join("\n",
+                "int total = first +",
+                "    second +",
+                "    third;",
+                "System.out.println(total);"),
+                SupportedLanguage.JAVA);
+
+        assertThat(tree.statements()).extracting(SyntaxTree.Block::firstLine, SyntaxTree.Block::headerEnd)
+                .containsExactly(tuple(0, 2), tuple(3, 3));
+        assertThat(tree.statementAt(0).analysis().variableName()).isEqualTo("total");
+    }
+
+    @Test
+    void flowEdgesComeFromTheTree() {
+        SyntaxTree tree = parser.parse(String.join("\n",
+                "for (let i = 0; i < 3; i++) {", // 0
+                "  if (i > 0) {",                // 1
+                "    console.log(i);",           // 2
+                "  }",                           // 3
+                "  total += i;",                 // 4
+                "}",                             // 5
+                "console.log('done');"),         // 6
+                SupportedLanguage.TYPESCRIPT);
+
+        ControlFlow taken = tree.flow(1, 2);
+        assertThat(taken.getType()).isEqualTo("branch");
+        assertThat(taken.getCondition()).isTrue();
+        ControlFlow notTaken = tree.flow(1, 4);
+        assertThat(notTaken.getType()).isEqualTo("branch");
+        assertThat(notTaken.getCondition()).isFalse();
+        // Going back to the loop header is a loop edge, from the branch as from any other statement
+        assertThat(tree.flow(1, 0).getType()).isEqualTo("loop");
+        assertThat(tree.flow(2, 4).getType()).isEqualTo("sequential");
+        assertThat(tree.flow(4, 0).getType()).isEqualTo("loop");
+        assertThat(tree.flow(0, 6).getType()).isEqualTo("loop");
+        // Lines are reported 1-based
+        assertThat(List.of(taken.getFromLine(), taken.getToLine())).containsExactly(2, 3);
+    }
+
+    @Test
+    void treesAreSharedPerLanguageAndSource() {
+        String code = "x = 1\nprint(x)";
+
+        SyntaxTree first = parser.parse(code, SupportedLanguage.PYTHON);
+
+        assertThat(parser.parse(code, SupportedLanguage.PYTHON)).isSameAs(first);
+        assertThat(parser.parse(code, SupportedLanguage.TYPESCRIPT)).isNotSameAs(first);
+        assertThat(parser.parse(code + "\n", SupportedLanguage.PYTHON)).isNotSameAs(first);
+    }
+}
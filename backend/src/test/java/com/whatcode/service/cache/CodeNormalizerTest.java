@@ -0,0 +1,54 @@
+package com.whatcode.service.cache;
+
+import com.whatcode.model.SupportedLanguage;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CodeNormalizerTest {
+
+    @Test
+    void dropsJavaCommentsAndCollapsesWhitespace() {
+        String code = "int  x = 1; // one\n/* block */int y =   2;\n\n";
+
+        assertThat(CodeNormalizer.normalize(code, SupportedLanguage.JAVA)).isEqualTo("int x = 1;\nint y = 2;");
+    }
+
+    @Test
+    void keepsJavaTextBlocksAsWritten() {
+        String code = "String s = \"\"\"\n  a  // b\n  \"\"\";";
+
+        assertThat(CodeNormalizer.normalize(code, SupportedLanguage.JAVA)).isEqualTo(code);
+    }
+
+    @Test
+    void keepsPythonIndentationAndDropsHashComments() {
+        String code = "def f():  # doc\n    return  '#'\n";
+
+        assertThat(CodeNormalizer.normalize(code, SupportedLanguage.PYTHON)).isEqualTo("def f():\n    return '#'");
+    }
+
+    @Test
+    void keepsJsxTextThatLooksLikeAComment() {
+        String a = "const App = () => <p>http://a.com</p>;";
+        String b = "const App = () => <p>http://b.com</p>;";
+
+        assertThat(CodeNormalizer.normalize(a, SupportedLanguage.REACT)).isEqualTo(a);
+        assertThat(CodeNormalizer.normalize(a, SupportedLanguage.REACT))
+                .isNotEqualTo(CodeNormalizer.normalize(b, SupportedLanguage.REACT));
+    }
+
+    @Test
+    void keepsRegexLiteralsInTypeScript() {
+        String code = "const slashes = /[//]+/;\nconst star = /[/*]  x/;\nconst y = 1;";
+
+        assertThat(CodeNormalizer.normalize(code, SupportedLanguage.TYPESCRIPT)).isEqualTo(code);
+    }
+
+    @Test
+    void trimsOnlyLineEdgesInTypeScript() {
+        String code = "  let  x = 1;   \r\n\n";
+
+        assertThat(CodeNormalizer.normalize(code, SupportedLanguage.TYPESCRIPT)).isEqualTo("let  x = 1;");
+    }
+}
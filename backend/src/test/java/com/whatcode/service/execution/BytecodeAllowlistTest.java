@@ -0,0 +1,107 @@
+package com.whatcode.service.execution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BytecodeAllowlistTest {
+
+    private final JavaProgramCompiler compiler = new JavaProgramCompiler(8);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "Class.forName(\"java.lang.Runtime\");",
+            "String.class.getDeclaredMethods();",
+            "ClassLoader.getSystemClassLoader();",
+            "new ProcessBuilder(\"ls\").start();",
+            "Runtime.getRuntime().exec(\"ls\");",
+            "System.exit(0);",
+            "System.setProperty(\"a\", \"b\");",
+            "new java.io.File(\"/etc/passwd\");",
+            "java.nio.file.Files.readString(java.nio.file.Path.of(\"/etc/passwd\"));",
+            "new java.net.Socket(\"localhost\", 80);",
+            "new java.io.PrintStream(\"/tmp/out\");",
+            "new java.io.PrintWriter(\"/tmp/out\");",
+            "new java.util.Formatter(\"/tmp/out\");",
+    })
+    void refusesWhatReachesOutsideTheRun(String code) {
+        assertThatThrownBy(() -> compiler.compile(code))
+                .isInstanceOf(JavaProgramCompiler.CompilationException.class)
+                .hasMessageContaining("is not allowed in submissions");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "new Thread(() -> {}).start();",
+            "Thread.ofVirtual().start(() -> {});",
+            "Thread.startVirtualThread(() -> {});",
+            "java.util.concurrent.Executors.newFixedThreadPool(2);",
+            "java.util.concurrent.ForkJoinPool.commonPool().submit(() -> {});",
+            "java.util.concurrent.CompletableFuture.runAsync(() -> {});",
+            "java.util.concurrent.CompletableFuture.completedFuture(1).thenApplyAsync(x -> x);",
+            "new java.util.concurrent.CompletableFuture<Integer>().orTimeout(1, java.util.concurrent.TimeUnit.SECONDS);",
+            "java.util.List.of(1, 2).parallelStream().count();",
+            "java.util.stream.IntStream.range(0, 9).parallel().sum();",
+            "java.util.Arrays.parallelSort(new int[] {2, 1});",
+            "new java.util.concurrent.ConcurrentHashMap<String, Integer>().forEach(1L, (k, v) -> {});",
+            "new java.util.Timer();",
+    })
+    void refusesRunningCodeOnAnotherThread(String code) {
+        assertThatThrownBy(() -> compiler.compile(code))
+                .isInstanceOf(JavaProgramCompiler.CompilationException.class)
+                .hasMessageContaining("is not allowed in submissions");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "System.out.println(java.util.List.of(3, 1, 2).stream().sorted().toList());",
+            "Thread.sleep(1); System.out.println(Thread.currentThread().getName());",
+            "new java.util.concurrent.ConcurrentHashMap<String, Integer>().forEach((k, v) -> {});",
+            "java.util.concurrent.CompletableFuture.completedFuture(1).thenApply(x -> x).join();",
+            "new java.io.PrintWriter(System.out).flush();",
+            "new java.util.Formatter(new StringBuilder()).format(\"%d\", 1);",
+            "new java.io.BufferedReader(new java.io.InputStreamReader(System.in)).readLine();",
+            "ThreadLocal<Integer> local = ThreadLocal.withInitial(() -> 1); local.get();",
+    })
+    void allowsWhatStaysInTheRun(String code) {
+        assertThatCode(() -> compiler.compile(code)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void namesTheLineOfTheRefusedUse() {
+        String code = """
+                public class Main {
+                    public static void main(String[] args) {
+                        System.out.println("hi");
+                        new Thread(() -> {}).start();
+                    }
+                }
+                """;
+
+        assertThatThrownBy(() -> compiler.compile(code))
+                .hasMessageStartingWith("Line 4: java.lang.Thread.new");
+    }
+
+    @Test
+    void checksThreadMembersReachedThroughASubclass() {
+        String code = """
+                public class Main {
+                    static class Worker extends Thread {
+                        Worker() {
+                            super("worker");
+                        }
+                    }
+
+                    public static void main(String[] args) {
+                        new Worker();
+                    }
+                }
+                """;
+
+        assertThatThrownBy(() -> compiler.compile(code))
+                .hasMessageContaining("java.lang.Thread.new");
+    }
+}
@@ -0,0 +1,92 @@
+package com.whatcode.service.execution;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JavaInProcessEngineTest {
+
+    private final JavaInProcessEngine engine =
+            new JavaInProcessEngine(1, 1, 8, 64L << 20, 1, new ExecutionLimits(5, 256L << 20, 64 * 1024));
+
+    @AfterEach
+    void close() {
+        engine.close();
+    }
+
+    private ExecutionResult run(String code, Duration timeout) {
+        return engine.execute(new ExecutionTask(code, null, timeout));
+    }
+
+    @Test
+    void stopsALoopAtItsTimeout() {
+        ExecutionResult result = run("System.out.println(\"start\"); while (true) { }", Duration.ofMillis(300));
+
+        assertThat(result.timedOut()).isTrue();
+        assertThat(result.stdout()).isEqualTo("start\n");
+        assertThat(engine.abandonedRuns()).isZero();
+    }
+
+    @Test
+    void stopsARecursionThatCatchesEverything() {
+        String code = """
+                public class Main {
+                    static void spin() {
+                        try {
+                            while (true) {
+                                spin();
+                            }
+                        } catch (Throwable t) {
+                            spin();
+                        }
+                    }
+
+                    public static void main(String[] args) {
+                        spin();
+                    }
+                }
+                """;
+
+        ExecutionResult result = run(code, Duration.ofMillis(300));
+
+        assertThat(result.timedOut()).isTrue();
+        assertThat(engine.abandonedRuns()).isZero();
+    }
+
+    @Test
+    void stopsARunOverItsAllocationBudget() {
+        String code = """
+                public class Main {
+                    static Object sink;
+
+                    public static void main(String[] args) {
+                        while (true) {
+                            sink = new byte[1 << 20];
+                        }
+                    }
+                }
+                """;
+
+        ExecutionResult result = run(code, Duration.ofSeconds(10));
+
+        assertThat(result.success()).isFalse();
+        assertThat(result.timedOut()).isFalse();
+        assertThat(result.stderr()).startsWith("Allocation limit exceeded");
+    }
+
+    @Test
+    void replacesTheThreadOfARunStuckInTheJdk() {
+        String stuck = "new java.util.concurrent.Semaphore(0).acquireUninterruptibly();";
+
+        ExecutionResult result = run(stuck, Duration.ofMillis(100));
+
+        assertThat(result.timedOut()).isTrue();
+        assertThat(engine.abandonedRuns()).isEqualTo(1);
+        ExecutionResult next = run("System.out.println(6 * 7);", Duration.ofSeconds(5));
+        assertThat(next.success()).isTrue();
+        assertThat(next.stdout()).isEqualTo("42\n");
+    }
+}
@@ -0,0 +1,68 @@
+package com.whatcode.service.execution;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.model.SupportedLanguage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Runs only when an embedded engine is on the classpath (build with -Pgraaljs)
+class JavaScriptExecutionEngineTest {
+
+    private JavaScriptExecutionEngine engine;
+
+    @BeforeEach
+    void start() {
+        ScriptEngine scriptEngine = new ScriptEngineManager().getEngineByName("graal.js");
+        assumeTrue(scriptEngine != null, "graal.js is not on the classpath");
+        engine = new JavaScriptExecutionEngine(SupportedLanguage.TYPESCRIPT, scriptEngine,
+                new JavaScriptExecutionEngine.Settings(
+                        new WorkerPool.PoolSettings(1, 1, 100, Duration.ofSeconds(5)),
+                        4, 16, 10_000_000L, 256L << 20, 1),
+                new ExecutionLimits(5, 256L << 20, 64 * 1024), new ObjectMapper());
+    }
+
+    @AfterEach
+    void close() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    private ExecutionResult run(String code) {
+        return engine.execute(new ExecutionTask(code, null, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void scriptsSeeNoHostObjectsBesideTheRuntime() {
+        ExecutionResult result = run("""
+                const names = Object.getOwnPropertyNames(globalThis).filter(n => n.startsWith('__what' + 'code'));
+                console.log(names.join(), typeof (globalThis as any).Java, typeof (globalThis as any).Packages);
+                """);
+
+        assertThat(result.success()).as(result.toString()).isTrue();
+        assertThat(result.stdout().trim()).isEqualTo(TypeScriptTranspiler.RUNTIME + " undefined undefined");
+    }
+
+    @Test
+    void cancelsARunStuckInARegexAndKeepsServing() {
+        ExecutionResult stuck = run("""
+                console.log('before');
+                /^((a+)+)\\2x$/.test('a'.repeat(40));
+                """);
+
+        assertThat(stuck.timedOut()).as(stuck.toString()).isTrue();
+        assertThat(stuck.stdout()).contains("before");
+        assertThat(engine.abandonedRuns()).isZero();
+        ExecutionResult next = run("console.log(1 + 1);");
+        assertThat(next.success()).isTrue();
+        assertThat(next.stdout().trim()).isEqualTo("2");
+    }
+}
@@ -0,0 +1,79 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.dto.FunctionProfile;
+import com.whatcode.dto.LineProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LineProfilerTest {
+
+    private static final String PROGRAM = """
+            public class Main {
+                static int square(int x) {
+                    return x * x;
+                }
+
+                public static void main(String[] args) {
+                    int total = 0;
+                    for (int i = 0; i < 3; i++) {
+                        total += square(i);
+                    }
+                    System.out.println(total);
+                }
+            }
+            """;
+
+    private final JavaInProcessEngine engine =
+            new JavaInProcessEngine(1, 1, 8, 64L << 20, 1, new ExecutionLimits(5, 256L << 20, 64 * 1024));
+
+    @AfterEach
+    void close() {
+        engine.close();
+    }
+
+    @Test
+    void countsLineHitsAndFunctionCalls() {
+        ExecutionResult result = engine.execute(new ExecutionTask(PROGRAM, null, Duration.ofSeconds(10), true));
+
+        assertThat(result.success()).isTrue();
+        assertThat(result.stdout()).isEqualTo("5\n");
+        LineProfile profile = result.profile();
+        assertThat(profile.getHits()).hasSize(15);
+        assertThat(profile.getHits()[0]).isZero();
+        assertThat(profile.getHits()[3]).isEqualTo(3);
+        assertThat(profile.getHits()[7]).isEqualTo(1);
+        assertThat(profile.getHits()[9]).isEqualTo(3);
+        assertThat(profile.getHits()[11]).isEqualTo(1);
+        assertThat(profile.getHits()[5]).isZero();
+        assertThat(profile.getFunctions())
+                .extracting(FunctionProfile::getName, FunctionProfile::getLine, FunctionProfile::getCalls)
+                .containsExactly(tuple("Main.square", 3, 3L), tuple("Main.main", 7, 1L));
+    }
+
+    @Test
+    void chargesSampledTimeToTheLinesThatRan() {
+        String busy = """
+                public class Main {
+                    public static void main(String[] args) {
+                        long total = 0;
+                        for (int i = 0; i < 20_000_000; i++) {
+                            total += i % 7;
+                        }
+                        System.out.println(total > 0);
+                    }
+                }
+                """;
+
+        ExecutionResult result = engine.execute(new ExecutionTask(busy, null, Duration.ofSeconds(10), true));
+
+        assertThat(result.success()).isTrue();
+        long[] time = result.profile().getTimeNanos();
+        assertThat(time[4] + time[5]).isGreaterThan(0);
+        assertThat(time[1]).isZero();
+    }
+}
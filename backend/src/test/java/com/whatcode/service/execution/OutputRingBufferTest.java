@@ -0,0 +1,113 @@
+package com.whatcode.service.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputRingBufferTest {
+
+    private static final String ALPHABET = "0123456789abcdefghij";
+
+    @Test
+    void keepsEverythingThatFits() {
+        try (OutputRingBuffer buffer = new OutputRingBuffer(32)) {
+            write(buffer, ALPHABET);
+
+            assertThat(buffer.written()).isEqualTo(20);
+            assertThat(buffer.contents()).isEqualTo(ALPHABET);
+        }
+    }
+
+    @Test
+    void keepsTheHeadAndTheLatestTailWithAMarkerBetween() {
+        try (OutputRingBuffer buffer = new OutputRingBuffer(16)) {
+            write(buffer, ALPHABET);
+
+            assertThat(buffer.written()).isEqualTo(20);
+            assertThat(buffer.contents())
+                    .isEqualTo("01234567\n... [4 bytes of output omitted] ...\ncdefghij");
+        }
+    }
+
+    @Test
+    void wrapsTheTailByteByByte() {
+        try (OutputRingBuffer buffer = new OutputRingBuffer(16)) {
+            for (int round = 0; round < 3; round++) {
+                for (char c : ALPHABET.toCharArray()) {
+                    buffer.write(c);
+                }
+            }
+
+            // 60 bytes: 8 kept at the head, the last 8 in the ring
+            assertThat(buffer.contents())
+                    .isEqualTo("01234567\n... [44 bytes of output omitted] ...\ncdefghij");
+        }
+    }
+
+    @Test
+    void writeLongerThanTheTailKeepsItsEnd() {
+        try (OutputRingBuffer buffer = new OutputRingBuffer(16)) {
+            write(buffer, "01234567");
+            write(buffer, "this write is longer than the ring");
+
+            assertThat(buffer.contents()).endsWith("\nthe ring");
+            assertThat(buffer.written()).isEqualTo(8 + 34);
+        }
+    }
+
+    @Test
+    void readerSkipsWhatTheRingOvertook() {
+        try (OutputRingBuffer buffer = new OutputRingBuffer(16)) {
+            write(buffer, ALPHABET);
+
+            OutputRingBuffer.Chunk head = buffer.read(0, 100);
+            assertThat(text(head)).isEqualTo("01234567");
+            assertThat(head.skipped()).isZero();
+            assertThat(head.next()).isEqualTo(8);
+
+            OutputRingBuffer.Chunk tail = buffer.read(head.next(), 100);
+            assertThat(tail.skipped()).isEqualTo(4);
+            assertThat(text(tail)).isEqualTo("cdefghij");
+            assertThat(tail.next()).isEqualTo(20);
+
+            OutputRingBuffer.Chunk caughtUp = buffer.read(tail.next(), 100);
+            assertThat(caughtUp.bytes()).isEmpty();
+            assertThat(caughtUp.next()).isEqualTo(20);
+        }
+    }
+
+    @Test
+    void neverCutsACharacterAtTheHeadBoundary() {
+        try (OutputRingBuffer buffer = new OutputRingBuffer(8)) {
+            // The head holds four bytes, ending inside the two-byte é
+            write(buffer, "aaaé" + "xxxxxxxx");
+
+            String contents = buffer.contents();
+            assertThat(contents).startsWith("aaa\n... [").endsWith("] ...\nxxxx");
+            assertThat(contents).doesNotContain("�");
+            assertThat(text(buffer.read(0, 100))).isEqualTo("aaa");
+        }
+    }
+
+    @Test
+    void discardsWritesOnceClosed() {
+        OutputRingBuffer buffer = new OutputRingBuffer(16);
+        write(buffer, "before");
+        buffer.close();
+        write(buffer, "after");
+
+        assertThat(buffer.contents()).isEmpty();
+        assertThat(buffer.written()).isEqualTo(6);
+    }
+
+    private static void write(OutputRingBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.write(bytes, 0, bytes.length);
+    }
+
+    private static String text(OutputRingBuffer.Chunk chunk) {
+        return new String(chunk.bytes(), StandardCharsets.UTF_8);
+    }
+}
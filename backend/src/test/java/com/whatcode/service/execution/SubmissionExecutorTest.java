@@ -0,0 +1,90 @@
+package com.whatcode.service.execution;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubmissionExecutorTest {
+
+    private final SubmissionExecutor executor = new SubmissionExecutor("test-submission", 1, 4, 1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        executor.close();
+    }
+
+    // Ignores interrupts, like a run stuck inside a JDK call
+    private String stuck(CountDownLatch started) {
+        started.countDown();
+        while (true) {
+            try {
+                if (release.await(10, TimeUnit.SECONDS)) {
+                    return "released";
+                }
+            } catch (InterruptedException e) {
+                // Keeps waiting
+            }
+        }
+    }
+
+    @Test
+    void replacesTheThreadOfAnAbandonedRun() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        SubmissionExecutor.Run<String> stuckRun = executor.submit(() -> stuck(started));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        SubmissionExecutor.Run<String> queued = executor.submit(() -> "next");
+
+        executor.abandon(stuckRun);
+
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("next");
+        assertThat(executor.abandonedRuns()).isEqualTo(1);
+        assertThat(stuckRun.isCancelled()).isTrue();
+    }
+
+    @Test
+    void startsNoMoreReplacementsThanAllowedAndRecoversWhenRunsEnd() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        SubmissionExecutor.Run<String> first = executor.submit(() -> stuck(firstStarted));
+        assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.abandon(first);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        SubmissionExecutor.Run<String> second = executor.submit(() -> stuck(secondStarted));
+        assertThat(secondStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.abandon(second);
+
+        // Both threads are stuck and no third is started, so work waits in the queue
+        SubmissionExecutor.Run<String> waiting = executor.submit(() -> "waited");
+        Thread.sleep(200);
+        assertThat(waiting.isDone()).isFalse();
+        assertThat(executor.abandonedRuns()).isEqualTo(2);
+
+        release.countDown();
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isEqualTo("waited");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.abandonedRuns() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(executor.abandonedRuns()).isZero();
+    }
+
+    @Test
+    void abandoningAQueuedRunCostsNoThread() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        SubmissionExecutor.Run<String> busy = executor.submit(() -> stuck(started));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        SubmissionExecutor.Run<String> queued = executor.submit(() -> "never");
+
+        executor.abandon(queued);
+        release.countDown();
+
+        assertThat(busy.get(5, TimeUnit.SECONDS)).isEqualTo("released");
+        assertThat(queued.isCancelled()).isTrue();
+        assertThat(executor.abandonedRuns()).isZero();
+    }
+}
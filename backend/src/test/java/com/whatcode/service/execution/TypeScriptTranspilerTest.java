@@ -0,0 +1,166 @@
+package com.whatcode.service.execution;
+
+import com.whatcode.service.execution.TypeScriptTranspiler.FunctionSite;
+import com.whatcode.service.execution.TypeScriptTranspiler.Program;
+import com.whatcode.service.execution.TypeScriptTranspiler.TranspileException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TypeScriptTranspilerTest {
+
+    private final TypeScriptTranspiler transpiler = new TypeScriptTranspiler();
+
+    @Test
+    void blanksGenericsAndAnnotationsInPlace() {
+        String source = """
+                function id<T>(x: T): T {
+                  return x;
+                }
+                const m: Map<string, number[]> = new Map<string, number[]>();
+                const f = <T,>(y: T): T => y;
+                class Box<T> { value: T; }
+                console.log(id<number>(3));
+                """;
+
+        String script = transpiler.transpile(source, false).script();
+
+        assertThat(script).doesNotContain("<", ">(", ": T", "number", "string");
+        assertThat(script).contains("function id   (x   )    {", "const m ", "new Map",
+                "const f =     (y   )    => y;", "class Box    { value   ; }", "console.log(id        (3));");
+        assertSameLayout(source, script);
+    }
+
+    @Test
+    void keepsComparisonsThatLookLikeTypeArguments() {
+        String script = transpiler.transpile("const r = a < b && c > d;", false).script();
+
+        assertThat(script).isEqualTo("const r = a < b && c > d;");
+    }
+
+    @Test
+    void dropsAsCastsAndNonNullAssertions() {
+        String source = """
+                const v = (input as unknown) as string;
+                const s = f("a") as string;
+                let x = y!;
+                """;
+
+        String script = transpiler.transpile(source, false).script();
+
+        assertThat(script).doesNotContain(" as ", "unknown", "string", "!");
+        assertThat(script).contains("const v = (input           )          ;", "const s = f(\"a\")          ;", "let x = y ;");
+        assertSameLayout(source, script);
+    }
+
+    @Test
+    void erasesDeclarationsThatOnlyExistAsTypes() {
+        String source = """
+                interface P { a: number }
+                type Q = P | null;
+                class A { private x: number = 1; constructor(public y: string) {} }
+                """;
+
+        String script = transpiler.transpile(source, false).script();
+
+        assertThat(script).doesNotContain("interface", "type", "private", "public");
+        assertThat(script).contains("x         = 1;", "this.y = y;");
+        assertSameLayout(source, script);
+    }
+
+    @Test
+    void compilesJsxToCreateElementCalls() {
+        String source = """
+                function App() {
+                  return <div className="a">{items.map(i => <Item key={i} />)}</div>;
+                }
+                """;
+
+        Program program = transpiler.transpile(source, true);
+
+        assertThat(program.script()).contains("return React.createElement(\"div\", {className: \"a\"}, "
+                + "items.map(i => React.createElement(Item, {key: i})));");
+        assertThat(program.component()).isEqualTo("App");
+        assertSameLayout(source, program.script());
+    }
+
+    @Test
+    void keepsTheLinesOfMultilineJsxAndPrefersTheDefaultExport() {
+        String source = """
+                export default function counter({ start }: { start: number }) {
+                  const [n, setN] = useState<number>(start);
+                  return <>
+                    <button onClick={() => setN(n + 1)}>+</button>
+                    {n}
+                  </>;
+                }
+                function Unused() {
+                  return null;
+                }
+                """;
+
+        Program program = transpiler.transpile(source, true);
+
+        assertThat(program.script()).contains("React.createElement(React.Fragment, null",
+                "React.createElement(\"button\", {onClick: () => setN(n + 1)}, \"+\")", "useState        (start)");
+        assertThat(program.component()).isEqualTo("counter");
+        assertSameLayout(source, program.script());
+    }
+
+    @Test
+    void leavesComponentEmptyWithoutJsx() {
+        assertThat(transpiler.transpile("function App() {}", false).component()).isNull();
+    }
+
+    @Test
+    void ticksInLoopsWithoutBraces() {
+        String source = """
+                let total = 0;
+                for (let i = 0; i < 3; i++) total += i;
+                while (total > 0) total--;
+                do total++; while (total < 3);
+                for (;;) break;
+                if (total) for (let j = 0; j < 2; j++) total++; else total--;
+                """;
+
+        String script = transpiler.transpile(source, false).script();
+
+        assertThat(script.lines()).containsExactly(
+                "let total = 0;",
+                "for (let i = 0; __whatcode.tick() && ( i < 3); i++) total += i;",
+                "while (__whatcode.tick() && (total > 0)) total--;",
+                "do total++; while (__whatcode.tick() && (total < 3));",
+                "for (; __whatcode.tick();) break;",
+                "if (total) for (let j = 0; __whatcode.tick() && ( j < 2); j++) total++; else total--;");
+    }
+
+    @Test
+    void ticksOnFunctionEntry() {
+        String script = transpiler.transpile("function f() {\n  return 1;\n}", false).script();
+
+        assertThat(script).startsWith("function f() { __whatcode.tick();\n");
+    }
+
+    @Test
+    void profilesLinesAndFunctionEntries() {
+        Program program = transpiler.transpile("function f(n: number) {\n  return n;\n}\nf(1);", false, true);
+
+        assertThat(program.functions()).containsExactly(new FunctionSite("f", 1));
+        assertThat(program.script()).contains("__whatcode.line(1);", "__whatcode.enter(0);",
+                "__whatcode.line(2);", "__whatcode.line(4);");
+        assertThat(transpiler.transpile("f(1);", false).functions()).isEmpty();
+    }
+
+    @Test
+    void rejectsTheRuntimeIdentifier() {
+        assertThatThrownBy(() -> transpiler.transpile("let __whatcode = 1;", false))
+                .isInstanceOf(TranspileException.class)
+                .hasMessageContaining("reserved");
+    }
+
+    // Line numbers in errors and traces refer to the submitted source
+    private static void assertSameLayout(String source, String script) {
+        assertThat(script.lines().count()).isEqualTo(source.lines().count());
+    }
+}
@@ -0,0 +1,71 @@
+package com.whatcode.service.trace;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whatcode.dto.VisualizationStep;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InteractiveSessionTest {
+
+    private static final int STEPS = 3_000;
+    private static final InteractiveSession.Settings SETTINGS = new InteractiveSession.Settings(
+            64, 256, Duration.ofSeconds(30), Duration.ofSeconds(60), Duration.ofSeconds(10));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Step i sets x to i and adds variable vi, so the producer keeps growing
+    // the table and its histories while the client serializes older steps
+    private static TraceResult trace(TraceOptions options, Consumer<VisualizationStep> sink) {
+        VariableTable variables = new VariableTable();
+        for (int i = 1; i <= STEPS; i++) {
+            variables.put("x", i);
+            variables.put("v" + i, i);
+            sink.accept(VisualizationStep.builder()
+                    .stepNumber(i)
+                    .lineHighlight(1)
+                    .variableStates(variables.snapshot())
+                    .build());
+        }
+        return new TraceResult(STEPS, false, null, 0);
+    }
+
+    @Test
+    void serializesStepsWhileTheRunProducesAhead() throws Exception {
+        try (InteractiveSession session = new InteractiveSession(InteractiveSessionTest::trace, SETTINGS)) {
+            for (int i = 1; i <= STEPS; i++) {
+                InteractiveSession.Position position = session.forward();
+
+                assertThat(position.step().getStepNumber()).isEqualTo(i);
+                assertVariablesAt(position.step(), i);
+            }
+            assertThat(session.forward().last()).isTrue();
+        }
+    }
+
+    @Test
+    void stepsBackToStatesTheRunHasMovedPast() throws Exception {
+        try (InteractiveSession session = new InteractiveSession(InteractiveSessionTest::trace, SETTINGS)) {
+            for (int i = 1; i <= 200; i++) {
+                session.forward();
+            }
+            for (int i = 199; i > 150; i--) {
+                assertVariablesAt(session.back().step(), i);
+            }
+        }
+    }
+
+    private void assertVariablesAt(VisualizationStep step, int i) throws Exception {
+        JsonNode variables = objectMapper.readTree(objectMapper.writeValueAsString(step)).get("variableStates");
+
+        assertThat(variables.size()).isEqualTo(i + 1);
+        assertThat(variables.get("x").asInt()).isEqualTo(i);
+        assertThat(variables.get("v" + i).asInt()).isEqualTo(i);
+        assertThat(variables.get("v1").asInt()).isEqualTo(1);
+        assertThat(variables.has("v" + (i + 1))).isFalse();
+    }
+}
@@ -0,0 +1,88 @@
+package com.whatcode.service.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PersistentVectorTest {
+
+    // Across the tail, one trie level, two levels and the start of a third
+    private static final int[] SIZES = {0, 1, 31, 32, 33, 64, 65, 1024, 1056, 1057, 32 * 32 * 32 + 33};
+
+    @Test
+    void pushAndGetAcrossTrieLevels() {
+        for (int size : SIZES) {
+            PersistentVector<Integer> vector = PersistentVector.of(range(size));
+
+            assertThat(vector).hasSize(size).isEqualTo(range(size));
+        }
+    }
+
+    @Test
+    void popUndoesPushAtEverySize() {
+        int size = 32 * 32 + 70;
+        List<PersistentVector<Integer>> versions = new ArrayList<>();
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < size; i++) {
+            versions.add(vector);
+            vector = vector.push(i);
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            vector = vector.pop();
+            assertThat(vector).isEqualTo(versions.get(i));
+        }
+        assertThat(vector).isSameAs(PersistentVector.empty());
+    }
+
+    @Test
+    void popThenPushAgainAcrossTheRootBoundary() {
+        PersistentVector<Integer> vector = PersistentVector.of(range(32 * 32 + 33));
+        for (int i = 0; i < 40; i++) {
+            vector = vector.pop();
+        }
+        for (int i = 32 * 32 + 33 - 40; i < 32 * 32 + 100; i++) {
+            vector = vector.push(i);
+        }
+
+        assertThat(vector).isEqualTo(range(32 * 32 + 100));
+    }
+
+    @Test
+    void updatesLeaveEarlierVersionsUnchanged() {
+        PersistentVector<Integer> original = PersistentVector.of(range(2000));
+        List<Integer> expected = new ArrayList<>(range(2000));
+        PersistentVector<Integer> updated = original;
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            int index = random.nextInt(2000);
+            updated = updated.with(index, -i);
+            expected.set(index, -i);
+        }
+
+        assertThat(updated).isEqualTo(expected);
+        assertThat(original).isEqualTo(range(2000));
+        assertThat(original.push(1).pop()).isEqualTo(original);
+        assertThat(updated.with(1999, 5).get(1999)).isEqualTo(5);
+        assertThat(updated.get(1999)).isEqualTo(expected.get(1999));
+    }
+
+    @Test
+    void rejectsOutOfRangeAccess() {
+        PersistentVector<Integer> vector = PersistentVector.of(range(40));
+
+        assertThatThrownBy(() -> vector.get(40)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> vector.get(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> vector.with(40, 0)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> PersistentVector.empty().pop()).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().toList();
+    }
+}
@@ -11,6 +11,18 @@ import OutputPanel from "../OutputPanel/OutputPanel";
 import apiService from "../../services/api";
 import "./CodeVisualizer.css";
 
+// Streamed output kept in the browser; the middle is dropped beyond this
+const MAX_OUTPUT_CHARS = 200000;
+
+const appendOutput = (current: string, text: string, omitted?: number): string => {
+  const next = current + (omitted ? `\n... [${omitted} bytes of output omitted] ...\n` : "") + text;
+  if (next.length <= MAX_OUTPUT_CHARS) {
+    return next;
+  }
+  const half = MAX_OUTPUT_CHARS / 2;
+  return next.slice(0, half) + "\n... [output omitted] ...\n" + next.slice(next.length - half);
+};
+
 const CodeVisualizer: React.FC = () => {
   const [selectedLanguage, setSelectedLanguage] = useState<SupportedLanguage>(
     SupportedLanguage.PYTHON
@@ -27,6 +39,8 @@ const CodeVisualizer: React.FC = () => {
   const [isExecuting, setIsExecuting] = useState<boolean>(false);
   const [executionTime, setExecutionTime] = useState<number | undefined>();
   const [highlightedLine, setHighlightedLine] = useState<number | undefined>();
+  // Lets the backend reuse the unchanged part of the previous trace on rerun
+  const [sessionId] = useState<string>(() => crypto.randomUUID());
 
   useEffect(() => {
     // Reset visualization when language changes
@@ -68,23 +82,24 @@ const CodeVisualizer: React.FC = () => {
     setCurrentStep(0);
 
     try {
-      const response = await apiService.executeCode({
-        code,
-        language: selectedLanguage,
-      });
-
-      setIsExecuting(false);
-
-      if (response.success) {
-        setOutput(response.output || "");
-        setExecutionTime(response.executionTime);
-        if (response.visualizationSteps) {
-          setVisualizationSteps(response.visualizationSteps);
-          setCurrentStep(0);
+      // Output shows up while the program runs
+      await apiService.streamExecution(
+        { code, language: selectedLanguage },
+        (event) => {
+          if (event.type === "stdout" && event.text !== undefined) {
+            const text = event.text;
+            setOutput((current) => appendOutput(current, text, event.omitted));
+          } else if (event.type === "complete") {
+            setExecutionTime(event.executionTime);
+            if (!event.success) {
+              setError(event.error || "Execution failed");
+            }
+          } else if (event.type === "error") {
+            setError(event.error || "Execution failed");
+          }
         }
-      } else {
-        setError(response.error || "Execution failed");
-      }
+      );
+      setIsExecuting(false);
     } catch (err: any) {
       setIsExecuting(false);
       setError(err.message || "An unexpected error occurred");
@@ -107,6 +122,7 @@ const CodeVisualizer: React.FC = () => {
       const response = await apiService.visualizeCode({
         code,
         language: selectedLanguage,
+        sessionId,
       });
 
       setIsExecuting(false);
@@ -146,9 +146,9 @@ const DataStructureVisualization: React.FC<DataStructureVisualizationProps> = ({
             </div>
           )}
 
-          {dataStructures.map((ds, index) => (
+          {dataStructures.map((ds) => (
             <motion.div
-              key={index}
+              key={ds.id}
               initial={{ opacity: 0, y: 20 }}
               animate={{ opacity: 1, y: 0 }}
               className="structure-section"
@@ -156,6 +156,7 @@ const DataStructureVisualization: React.FC<DataStructureVisualizationProps> = ({
               <h5>
                 {ds.type.charAt(0).toUpperCase() + ds.type.slice(1)}{" "}
                 {ds.type === "linkedList" && "(Linked List)"}
+                {ds.name && ` ${ds.name}`}
               </h5>
 
               {ds.type === "linkedList" && (
@@ -175,6 +176,16 @@ const DataStructureVisualization: React.FC<DataStructureVisualizationProps> = ({
                 </div>
               )}
 
+              {ds.type === "map" && ds.data && (
+                <div className="array-display">
+                  {Object.entries(ds.data).map(([key, value]) => (
+                    <div key={key} className="array-item">
+                      {key}: {String(value)}
+                    </div>
+                  ))}
+                </div>
+              )}
+
               {ds.operations && ds.operations.length > 0 && (
                 <div className="operations">
                   <strong>Operations:</strong> {ds.operations.join(", ")}
@@ -42,6 +42,14 @@ const MemoryVisualization: React.FC<MemoryVisualizationProps> = ({
                     <strong>References:</strong> {obj.references.join(', ')}
                   </div>
                 )}
+                {obj.pointsTo && obj.pointsTo.length > 0 && (
+                  <div className="memory-references">
+                    <strong>Points to:</strong>{' '}
+                    {obj.pointsTo
+                      .map((id) => memoryObjects.find((other) => other.id === id)?.address ?? `#${id}`)
+                      .join(', ')}
+                  </div>
+                )}
               </motion.div>
             ))}
           </div>
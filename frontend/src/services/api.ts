@@ -1,5 +1,13 @@
 import axios, { AxiosInstance } from 'axios';
-import { CodeExecutionRequest, CodeExecutionResponse } from '../types';
+import {
+  CodeExecutionRequest,
+  CodeExecutionResponse,
+  ExecutionStreamEvent,
+  InteractiveCommand,
+  InteractiveEvent,
+  TraceWindow,
+  VisualizationStreamEvent,
+} from '../types';
 
 const API_BASE_URL = process.env.REACT_APP_API_BASE_URL || 'http://localhost:8080/api';
 
@@ -83,6 +91,94 @@ class ApiService {
       };
     }
   }
+
+  /**
+   * Fetches steps [from, to) of a trace returned by a `paged` visualization.
+   */
+  async getTraceSteps(traceId: string, from: number, to?: number): Promise<TraceWindow> {
+    const response = await this.client.get<TraceWindow>(`/traces/${traceId}/steps`, {
+      params: { from, to },
+    });
+    return response.data;
+  }
+
+  /**
+   * Streams visualization events (NDJSON) and invokes onEvent for each one as
+   * soon as it arrives, so long traces can start animating immediately.
+   */
+  async streamVisualization(
+    request: CodeExecutionRequest,
+    onEvent: (event: VisualizationStreamEvent) => void
+  ): Promise<void> {
+    return this.stream('/visualize/stream', request, onEvent);
+  }
+
+  /**
+   * Runs code and streams its output (NDJSON) in chunks while it runs,
+   * ending with a `complete` event.
+   */
+  async streamExecution(
+    request: CodeExecutionRequest,
+    onEvent: (event: ExecutionStreamEvent) => void
+  ): Promise<void> {
+    return this.stream('/execute/stream', request, onEvent);
+  }
+
+  /**
+   * Opens an interactive stepping session over a WebSocket. The session starts
+   * on the first step; every command sent is answered with one event.
+   */
+  openInteractiveSession(
+    request: CodeExecutionRequest,
+    onEvent: (event: InteractiveEvent) => void
+  ): { send: (command: InteractiveCommand) => void; close: () => void } {
+    const socket = new WebSocket(`${API_BASE_URL.replace(/^http/, 'ws')}/visualize/session`);
+    const pending: string[] = [JSON.stringify({ type: 'open', request })];
+    socket.onopen = () => pending.splice(0).forEach((message) => socket.send(message));
+    socket.onmessage = (message) => onEvent(JSON.parse(message.data));
+    socket.onerror = () => onEvent({ type: 'error', error: 'Stepping session failed' });
+    return {
+      send: (command) => {
+        const message = JSON.stringify(command);
+        if (socket.readyState === WebSocket.OPEN) socket.send(message);
+        else pending.push(message);
+      },
+      close: () => socket.close(),
+    };
+  }
+
+  private async stream<T extends { type: string; error?: string }>(
+    path: string,
+    request: CodeExecutionRequest,
+    onEvent: (event: T) => void
+  ): Promise<void> {
+    const response = await fetch(`${API_BASE_URL}${path}`, {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify(request),
+    });
+    if (!response.ok || !response.body) {
+      onEvent({ type: 'error', error: response.statusText || 'Streaming request failed' } as T);
+      return;
+    }
+
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+    for (;;) {
+      const { done, value } = await reader.read();
+      if (done) break;
+      buffer += decoder.decode(value, { stream: true });
+      let newline = buffer.indexOf('\n');
+      while (newline >= 0) {
+        const line = buffer.slice(0, newline).trim();
+        buffer = buffer.slice(newline + 1);
+        if (line) onEvent(JSON.parse(line));
+        newline = buffer.indexOf('\n');
+      }
+    }
+    if (buffer.trim()) onEvent(JSON.parse(buffer));
+  }
 }
 
 export default new ApiService();
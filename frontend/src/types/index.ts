@@ -5,9 +5,20 @@ export enum SupportedLanguage {
   REACT = 'react'
 }
 
+export type TraceMode = 'full' | 'delta' | 'paged';
+
 export interface CodeExecutionRequest {
   code: string;
   language: SupportedLanguage;
+  stdin?: string;
+  sessionId?: string;
+  traceMode?: TraceMode;
+  keyframeInterval?: number;
+  fromLine?: number;
+  toLine?: number;
+  fromStep?: number;
+  toStep?: number;
+  profile?: boolean;
 }
 
 export interface StackFrame {
@@ -19,10 +30,12 @@ export interface StackFrame {
 }
 
 export interface MemoryObject {
+  id: number;
   address: string;
   type: string;
   value: any;
   references: string[];
+  pointsTo?: number[];
 }
 
 export interface ControlFlow {
@@ -32,10 +45,21 @@ export interface ControlFlow {
   condition?: boolean;
 }
 
+export interface StructureOperation {
+  op: 'set' | 'push' | 'pop' | 'edge' | 'put' | 'delete';
+  index?: number;
+  key?: string;
+  value?: any;
+}
+
 export interface DataStructure {
-  type: 'array' | 'linkedList' | 'tree' | 'graph' | 'stack' | 'queue';
-  data: any;
+  id: number;
+  name?: string;
+  type: 'array' | 'linkedList' | 'tree' | 'graph' | 'stack' | 'queue' | 'map';
+  version: number;
+  data?: any;
   operations?: string[];
+  changes?: StructureOperation[];
 }
 
 export interface VisualizationStep {
@@ -51,11 +75,90 @@ export interface VisualizationStep {
   timestamp?: number;
 }
 
+export interface StepDelta {
+  stepNumber: number;
+  keyframe: boolean;
+  snapshot?: VisualizationStep;
+  description?: string;
+  lineHighlight?: number;
+  output?: string;
+  timestamp?: number;
+  setVariables?: Record<string, any>;
+  removedVariables?: string[];
+  poppedFrames?: number;
+  pushedFrames?: StackFrame[];
+  addedMemoryObjects?: MemoryObject[];
+  removedMemoryObjects?: number[];
+  addedControlFlow?: ControlFlow[];
+  addedDataStructures?: DataStructure[];
+  removedDataStructures?: number[];
+}
+
 export interface CodeExecutionResponse {
   success: boolean;
   output?: string;
   error?: string;
   visualizationSteps?: VisualizationStep[];
+  stepDeltas?: StepDelta[];
+  truncated?: boolean;
+  traceId?: string;
+  stepCount?: number;
+  lineMap?: Record<number, number[]>;
+  executionTime?: number;
+  profile?: LineProfile;
+}
+
+export interface FunctionProfile {
+  name: string;
+  line: number;
+  calls: number;
+}
+
+// Indexed by line number, like VisualizationStep.lineHighlight
+export interface LineProfile {
+  hits: number[];
+  timeNanos: number[];
+  functions: FunctionProfile[];
+}
+
+export interface TraceWindow {
+  traceId: string;
+  from: number;
+  to: number;
+  stepCount: number;
+  steps: VisualizationStep[];
+}
+
+export interface VisualizationStreamEvent {
+  type: 'step' | 'delta' | 'complete' | 'error';
+  step?: VisualizationStep;
+  delta?: StepDelta;
+  output?: string;
+  error?: string;
+  truncated?: boolean;
+  executionTime?: number;
+}
+
+export type InteractiveCommand =
+  | { type: 'forward' | 'back' | 'continue' }
+  | { type: 'runToLine'; line: number }
+  | { type: 'breakpoints'; lines: number[] };
+
+export interface InteractiveEvent {
+  type: 'step' | 'end' | 'error';
+  step?: VisualizationStep;
+  last?: boolean;
+  error?: string;
+  executionTime?: number;
+}
+
+export interface ExecutionStreamEvent {
+  type: 'stdout' | 'stderr' | 'complete' | 'error';
+  text?: string;
+  omitted?: number; // bytes of the stream dropped just before text
+  success?: boolean;
+  error?: string;
+  profile?: LineProfile;
   executionTime?: number;
 }
 